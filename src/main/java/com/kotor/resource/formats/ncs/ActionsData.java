@@ -6,9 +6,19 @@ package com.kotor.resource.formats.ncs;
 
 import com.kotor.resource.formats.ncs.utils.Type;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,12 +28,36 @@ import java.util.regex.Pattern;
  * The table describes every engine action: name, return type, and parameter
  * types. Decompilation and type analysis use this metadata to size the stack
  * correctly and emit meaningful prototypes.
+ * <p>
+ * Instances are frozen after construction: per-action stack effects are
+ * precomputed into primitive arrays and all returned lists are unmodifiable,
+ * so one table can be shared by every decompiler thread. {@link #load(File)}
+ * hands out one shared instance per distinct nwscript source.
  */
 public class ActionsData {
-   /** Ordered list of parsed actions (index matches opcode value). */
-   private final List<Action> actions;
-   /** Reader over the nwscript actions block. */
-   private final BufferedReader actionsreader;
+   /** Suffix of the binary tables, which are named after the SHA-256 of their nwscript source. */
+   public static final String CACHE_SUFFIX = ".actcache";
+   private static final int CACHE_MAGIC = 0x4E414354; // "NACT"
+   private static final short CACHE_VERSION = 2;
+   private static final Pattern HEADER = Pattern.compile("^\\s*//\\s*(\\d+)\\b.*$");
+   private static final Pattern SIGNATURE = Pattern.compile("^\\s*(\\w+)\\s+(\\w+)\\s*\\((.*)\\)\\s*;?.*");
+   private static final Pattern PARAM = Pattern.compile("\\s*(\\w+)\\s+\\w+(\\s*=\\s*(\\S+))?\\s*");
+   /** Shared tables by nwscript SHA-256, so K1 and TSL each parse/load once per process. */
+   private static final ConcurrentHashMap<String, ActionsData> SHARED = new ConcurrentHashMap<>();
+   /** Parsed actions (index matches opcode value); null entries are gaps in the table. */
+   private final Action[] actions;
+   /** Return type code per action. */
+   private final byte[] returnType;
+   /** Stack slots pushed by the return value per action. */
+   private final int[] pushSlots;
+   /** Stack slots consumed when every declared parameter is passed. */
+   private final int[] paramSlots;
+   /** Number of leading parameters without defaults per action. */
+   private final int[] requiredParams;
+   /** Stack slots consumed by the first {@code n} parameters: {@code removeSlots[id][n]}. */
+   private final int[][] removeSlots;
+   /** SHA-256 of the nwscript source, or null when read from a stream. */
+   private final String sourceHash;
 
    /**
     * Reads the actions table from the provided reader.
@@ -32,9 +66,158 @@ public class ActionsData {
     * @throws IOException if the table cannot be parsed
     */
    public ActionsData(BufferedReader actionsreader) throws IOException {
-      this.actionsreader = actionsreader;
-      this.actions = new ArrayList<>(877);
-      this.readActions();
+      this(readActions(actionsreader), null);
+   }
+
+   private ActionsData(List<Action> parsed, String sourceHash) {
+      this.sourceHash = sourceHash;
+      int count = parsed.size();
+      this.actions = parsed.toArray(new Action[count]);
+      this.returnType = new byte[count];
+      this.pushSlots = new int[count];
+      this.paramSlots = new int[count];
+      this.requiredParams = new int[count];
+      this.removeSlots = new int[count][];
+      for (int i = 0; i < count; i++) {
+         Action action = this.actions[i];
+         if (action == null) {
+            continue;
+         }
+         this.returnType[i] = action.returntype.byteValue();
+         this.pushSlots[i] = action.returntype.typeSize() / 4;
+         this.requiredParams[i] = action.requiredParamCount();
+         int[] prefix = new int[action.paramlist.size() + 1];
+         for (int p = 0; p < action.paramlist.size(); p++) {
+            prefix[p + 1] = prefix[p] + action.paramlist.get(p).typeSize() / 4;
+         }
+         this.removeSlots[i] = prefix;
+         this.paramSlots[i] = prefix[prefix.length - 1];
+      }
+   }
+
+   /**
+    * Loads the action table for an nwscript file, preferring a precompiled binary table in
+    * the {@code actions} directory of the {@link UserCache}.
+    *
+    * @param nwscriptFile the {@code *_nwscript.nss} source
+    * @throws IOException if the source cannot be read or parsed
+    */
+   public static ActionsData load(File nwscriptFile) throws IOException {
+      return load(nwscriptFile, UserCache.directory("actions"));
+   }
+
+   /**
+    * Loads the action table for an nwscript file, preferring the precompiled binary table
+    * {@code <sha256>.actcache} in {@code cacheDir}.
+    * <p>
+    * The binary table records the SHA-256 of the source it was built from; when it is
+    * missing, stale, or unreadable the source is parsed and the table is rewritten
+    * (best effort, a read-only directory just skips the write).
+    *
+    * @param nwscriptFile the {@code *_nwscript.nss} source
+    * @param cacheDir directory of binary tables, or null to always parse the source
+    * @throws IOException if the source cannot be read or parsed
+    */
+   public static ActionsData load(File nwscriptFile, File cacheDir) throws IOException {
+      String sha = HashUtil.calculateSHA256(nwscriptFile);
+      ActionsData shared = SHARED.get(sha);
+      if (shared != null) {
+         return shared;
+      }
+      ActionsData loaded = loadUncached(nwscriptFile, sha, cacheDir);
+      shared = SHARED.putIfAbsent(sha, loaded);
+      return shared != null ? shared : loaded;
+   }
+
+   private static ActionsData loadUncached(File nwscriptFile, String sha, File cacheDir) throws IOException {
+      File cacheFile = cacheDir != null ? new File(cacheDir, sha.toLowerCase(Locale.ROOT) + CACHE_SUFFIX) : null;
+      if (cacheFile != null && cacheFile.isFile()) {
+         try {
+            ActionsData cached = readCache(Files.readAllBytes(cacheFile.toPath()), sha);
+            if (cached != null) {
+               return cached;
+            }
+         } catch (IOException | RuntimeException e) {
+            Logger.info("ActionsData: Ignoring unreadable action cache " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+         }
+      }
+
+      ActionsData parsed;
+      try (BufferedReader reader = Files.newBufferedReader(nwscriptFile.toPath(), StandardCharsets.ISO_8859_1)) {
+         parsed = new ActionsData(readActions(reader), sha);
+      }
+      if (cacheFile != null) {
+         try {
+            Files.createDirectories(cacheDir.toPath());
+            Files.write(cacheFile.toPath(), parsed.writeCache(sha));
+         } catch (IOException | RuntimeException e) {
+            Logger.info("ActionsData: Could not write action cache " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+         }
+      }
+      return parsed;
+   }
+
+   /**
+    * Serializes the table: header (magic, version, source SHA-256, count), then per action
+    * a presence flag, name, return type code and (type code, default) per parameter.
+    */
+   byte[] writeCache(String sha) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+         out.writeInt(CACHE_MAGIC);
+         out.writeShort(CACHE_VERSION);
+         out.writeUTF(sha);
+         out.writeInt(this.actions.length);
+         for (Action action : this.actions) {
+            out.writeBoolean(action != null);
+            if (action == null) {
+               continue;
+            }
+            out.writeUTF(action.name);
+            out.writeByte(action.returntype.byteValue());
+            out.writeShort(action.paramlist.size());
+            for (int i = 0; i < action.paramlist.size(); i++) {
+               out.writeByte(action.paramlist.get(i).byteValue());
+               String def = action.defaultValues.get(i);
+               out.writeBoolean(def != null);
+               if (def != null) {
+                  out.writeUTF(def);
+               }
+            }
+         }
+      }
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Deserializes a table written by {@link #writeCache(String)}.
+    *
+    * @return the table, or {@code null} if it was built from a different source or format
+    */
+   static ActionsData readCache(byte[] data, String sha) throws IOException {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+      if (in.readInt() != CACHE_MAGIC || in.readShort() != CACHE_VERSION || !in.readUTF().equalsIgnoreCase(sha)) {
+         return null;
+      }
+      int count = in.readInt();
+      List<Action> actions = new ArrayList<>(count);
+      for (int a = 0; a < count; a++) {
+         if (!in.readBoolean()) {
+            actions.add(null);
+            continue;
+         }
+         String name = in.readUTF();
+         Type returntype = Type.declared(in.readByte());
+         int paramcount = in.readUnsignedShort();
+         List<Type> params = new ArrayList<>(paramcount);
+         List<String> defaults = new ArrayList<>(paramcount);
+         for (int i = 0; i < paramcount; i++) {
+            params.add(Type.declared(in.readByte()));
+            defaults.add(in.readBoolean() ? in.readUTF() : null);
+         }
+         actions.add(new Action(name, returntype, params, defaults));
+      }
+      return new ActionsData(actions, sha);
    }
 
    /**
@@ -44,18 +227,29 @@ public class ActionsData {
     * @return quoted name plus return type and parameter size
     */
    public String getAction(int index) {
-      try {
-         ActionsData.Action action = this.actions.get(index);
-         return action.toString();
-      } catch (IndexOutOfBoundsException var3) {
+      if (index < 0 || index >= this.actions.length || this.actions[index] == null) {
          throw new RuntimeException("Invalid action call: action " + Integer.toString(index));
       }
+      return this.actions[index].toString();
+   }
+
+   /**
+    * SHA-256 of the nwscript source this table was loaded from by {@link #load(File)},
+    * or {@code null} when it was read from a stream.
+    */
+   public String getSourceHash() {
+      return this.sourceHash;
+   }
+
+   /** Number of slots in the table (highest action index + 1). */
+   public int size() {
+      return this.actions.length;
    }
 
    /**
     * Parses the action table, starting at the first {@code // 0} marker.
     */
-   private void readActions() throws IOException {
+   private static List<Action> readActions(BufferedReader actionsreader) throws IOException {
       // KOTOR/TSL nwscript files interleave documentation comments like:
       //   // 768. GetScriptParameter
       // followed by a signature line:
@@ -66,16 +260,15 @@ public class ActionsData {
       // That is brittle and can desync action indices, breaking stack typing and
       // round-trip fidelity. Instead, bind signatures to their explicit numeric
       // indices in the comment headers.
-      Pattern header = Pattern.compile("^\\s*//\\s*(\\d+)\\b.*$");
-      Pattern sig = Pattern.compile("^\\s*(\\w+)\\s+(\\w+)\\s*\\((.*)\\)\\s*;?.*");
-
+      List<Action> actions = new ArrayList<>(877);
       String str;
       boolean started = false;
       int pendingIndex = -1;
+      int lastIndex = -1;
       int maxIndex = -1;
 
-      while ((str = this.actionsreader.readLine()) != null) {
-         Matcher h = header.matcher(str);
+      while ((str = actionsreader.readLine()) != null) {
+         Matcher h = HEADER.matcher(str);
          if (h.matches()) {
             int idx;
             try {
@@ -84,10 +277,14 @@ public class ActionsData {
                continue;
             }
             // We only consider ourselves "in" the actions table once we see index 0.
-            if (idx == 0) {
+            if (idx == 0 && !started) {
                started = true;
+               pendingIndex = -1;
             }
-            if (started) {
+            // Documentation also has numbered lines ("// 0.0f and 360.0f", "// 1) ...") between a
+            // header and its signature; they must not replace the header unless they are the
+            // index that follows the last signature
+            if (started && (pendingIndex < 0 || idx == lastIndex + 1)) {
                pendingIndex = idx;
                if (idx > maxIndex) {
                   maxIndex = idx;
@@ -107,71 +304,83 @@ public class ActionsData {
 
          // Bind the next signature line to the last seen numeric header.
          if (pendingIndex >= 0) {
-            Matcher m = sig.matcher(str);
+            Matcher m = SIGNATURE.matcher(str);
             if (m.matches()) {
-               while (this.actions.size() <= pendingIndex) {
-                  this.actions.add(null);
+               while (actions.size() <= pendingIndex) {
+                  actions.add(null);
                }
-               this.actions.set(pendingIndex, new ActionsData.Action(m.group(1), m.group(2), m.group(3)));
+               actions.set(pendingIndex, new ActionsData.Action(m.group(1), m.group(2), m.group(3)));
+               lastIndex = pendingIndex;
             }
             pendingIndex = -1;
          }
       }
 
       // Ensure list size is at least maxIndex+1 (preserve stable indexing).
-      while (this.actions.size() <= maxIndex) {
-         this.actions.add(null);
+      while (actions.size() <= maxIndex) {
+         actions.add(null);
       }
+      return actions;
    }
 
-   public Type getReturnType(int index) {
-      if (index < 0 || index >= this.actions.size()) {
-         throw new RuntimeException("Invalid action index: " + index + " (actions list size: " + this.actions.size() + ")");
+   private Action action(int index) {
+      if (index < 0 || index >= this.actions.length) {
+         throw new RuntimeException("Invalid action index: " + index + " (actions list size: " + this.actions.length + ")");
       }
-      if (this.actions.get(index) == null) {
-         throw new RuntimeException("Missing action metadata for index: " + index + " (actions list size: " + this.actions.size() + ")");
+      Action action = this.actions[index];
+      if (action == null) {
+         throw new RuntimeException("Missing action metadata for index: " + index + " (actions list size: " + this.actions.length + ")");
       }
-      return this.actions.get(index).returnType();
+      return action;
+   }
+
+   public Type getReturnType(int index) {
+      return this.action(index).returnType();
+   }
+
+   /** Return type code of the action, see {@link Type#byteValue()}. */
+   public byte getReturnTypeCode(int index) {
+      this.action(index);
+      return this.returnType[index];
    }
 
    public String getName(int index) {
-      if (index < 0 || index >= this.actions.size()) {
-         throw new RuntimeException("Invalid action index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      if (this.actions.get(index) == null) {
-         throw new RuntimeException("Missing action metadata for index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      return this.actions.get(index).name();
+      return this.action(index).name();
    }
 
    public List<Type> getParamTypes(int index) {
-      if (index < 0 || index >= this.actions.size()) {
-         throw new RuntimeException("Invalid action index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      if (this.actions.get(index) == null) {
-         throw new RuntimeException("Missing action metadata for index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      return this.actions.get(index).params();
+      return this.action(index).params();
    }
 
    public List<String> getDefaultValues(int index) {
-      if (index < 0 || index >= this.actions.size()) {
-         throw new RuntimeException("Invalid action index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      if (this.actions.get(index) == null) {
-         throw new RuntimeException("Missing action metadata for index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      return this.actions.get(index).defaultValues();
+      return this.action(index).defaultValues();
    }
 
    public int getRequiredParamCount(int index) {
-      if (index < 0 || index >= this.actions.size()) {
-         throw new RuntimeException("Invalid action index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      if (this.actions.get(index) == null) {
-         throw new RuntimeException("Missing action metadata for index: " + index + " (actions list size: " + this.actions.size() + ")");
-      }
-      return this.actions.get(index).requiredParamCount();
+      this.action(index);
+      return this.requiredParams[index];
+   }
+
+   /** Stack slots consumed when every declared parameter is passed. */
+   public int getParamSlots(int index) {
+      this.action(index);
+      return this.paramSlots[index];
+   }
+
+   /** Stack slots pushed by the action's return value (0 for void). */
+   public int getPushSlots(int index) {
+      this.action(index);
+      return this.pushSlots[index];
+   }
+
+   /**
+    * Stack slots removed by a call passing {@code argCount} arguments; counts beyond the
+    * declared parameters are clamped.
+    */
+   public int getRemoveSlots(int index, int argCount) {
+      this.action(index);
+      int[] prefix = this.removeSlots[index];
+      return prefix[Math.max(0, Math.min(argCount, prefix.length - 1))];
    }
 
    /**
@@ -194,21 +403,32 @@ public class ActionsData {
       public Action(String type, String name, String params) {
          this.name = name;
          this.returntype = Type.parseType(type);
-         this.paramlist = new ArrayList<>();
-         this.defaultValues = new ArrayList<>();
+         List<Type> paramlist = new ArrayList<>();
+         List<String> defaultValues = new ArrayList<>();
          this.paramsize = 0;
-         Pattern p = Pattern.compile("\\s*(\\w+)\\s+\\w+(\\s*=\\s*(\\S+))?\\s*");
          String[] tokens = params.split(",");
 
          for (int i = 0; i < tokens.length; i++) {
-            Matcher m = p.matcher(tokens[i]);
+            Matcher m = PARAM.matcher(tokens[i]);
             if (m.matches()) {
-               this.paramlist.add(new Type(m.group(1)));
+               paramlist.add(new Type(m.group(1)));
                String defaultValue = m.group(3);
-               this.defaultValues.add(defaultValue != null ? defaultValue.trim() : null);
+               defaultValues.add(defaultValue != null ? defaultValue.trim() : null);
                this.paramsize = this.paramsize + Type.typeSize(m.group(1));
             }
          }
+         this.paramlist = Collections.unmodifiableList(paramlist);
+         this.defaultValues = Collections.unmodifiableList(defaultValues);
+      }
+
+      private Action(String name, Type returntype, List<Type> paramlist, List<String> defaultValues) {
+         this.name = name;
+         this.returntype = returntype;
+         this.paramlist = Collections.unmodifiableList(paramlist);
+         this.defaultValues = Collections.unmodifiableList(defaultValues);
+         for (Type param : paramlist) {
+            this.paramsize = this.paramsize + param.typeSize();
+         }
       }
 
       @Override
@@ -0,0 +1,68 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shared helpers of the game archive readers ({@link KeyFile}, {@link Capsule}).
+ */
+final class ArchiveIO {
+   private ArchiveIO() {
+   }
+
+   /**
+    * Maps a whole archive read-only in little-endian order. The mapping outlives the
+    * channel, which is closed before returning.
+    */
+   static MappedByteBuffer map(File file) throws IOException {
+      MappedByteBuffer buf;
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      return buf;
+   }
+
+   /** Read-only view of {@code length} bytes at {@code offset}, checked against the archive size. */
+   static ByteBuffer slice(File file, ByteBuffer buf, long offset, long length) throws IOException {
+      check(file, buf, offset, length);
+      ByteBuffer data = buf.duplicate();
+      data.position((int) offset);
+      data.limit((int) (offset + length));
+      return data.slice().asReadOnlyBuffer();
+   }
+
+   static void check(File file, ByteBuffer buf, long offset, long size) throws IOException {
+      if (offset < 0 || size < 0 || offset + size > buf.limit()) {
+         throw new IOException("truncated or corrupt archive: " + file.getAbsolutePath());
+      }
+   }
+
+   /** Fixed-size ASCII field, cut at the first NUL. */
+   static String ascii(ByteBuffer buf, int offset, int size) {
+      byte[] bytes = new byte[size];
+      for (int i = 0; i < size; i++) {
+         bytes[i] = buf.get(offset + i);
+      }
+      int end = 0;
+      while (end < size && bytes[end] != 0) {
+         end++;
+      }
+      return new String(bytes, 0, end, StandardCharsets.US_ASCII);
+   }
+
+   /** An unsigned 32-bit field. */
+   static long u32(ByteBuffer buf, int offset) {
+      return buf.getInt(offset) & 0xFFFFFFFFL;
+   }
+}
@@ -0,0 +1,171 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reader for module capsules: ERF V1.0 files ({@code .erf}, {@code .mod}, {@code .sav},
+ * {@code .hak}) and RIM V1.0 files ({@code .rim}).
+ * <p>
+ * The capsule is memory-mapped read-only once, its key and resource lists are parsed
+ * right away, and every resource is a {@link ResourceEntry} view of the mapping. The format
+ * is told by the signature, not the extension. All multi-byte values are little-endian.
+ */
+public final class Capsule {
+   private static final int ERF_KEY_SIZE = 24;
+   private static final int ERF_RESOURCE_SIZE = 8;
+   private static final int RIM_KEY_SIZE = 32;
+   /** Where RIM key lists start when the header leaves the offset at zero. */
+   private static final int RIM_DEFAULT_KEYS = 120;
+   private final File file;
+   private final String type;
+   private final List<ResourceEntry> entries;
+
+   private Capsule(File file, String type, List<ResourceEntry> entries) {
+      this.file = file;
+      this.type = type;
+      this.entries = entries;
+   }
+
+   /** Whether a file name has one of the capsule extensions. */
+   public static boolean isCapsule(String name) {
+      String n = name.toLowerCase(Locale.ROOT);
+      return n.endsWith(".erf") || n.endsWith(".mod") || n.endsWith(".rim") || n.endsWith(".sav")
+            || n.endsWith(".hak");
+   }
+
+   /**
+    * Maps a capsule and reads its resource table.
+    *
+    * @throws IOException if the file cannot be read or is not an ERF or RIM V1.0 file
+    */
+   public static Capsule read(File file) throws IOException {
+      ByteBuffer buf = ArchiveIO.map(file);
+      String type = buf.limit() >= 8 ? ArchiveIO.ascii(buf, 0, 4) : "";
+      String version = buf.limit() >= 8 ? ArchiveIO.ascii(buf, 4, 4) : "";
+      if (!"V1.0".equals(version)) {
+         throw new IOException("not an ERF or RIM V1.0 file: " + file.getAbsolutePath());
+      }
+      List<ResourceEntry> entries;
+      if ("RIM ".equals(type)) {
+         entries = readRim(file, buf);
+      } else if ("ERF ".equals(type) || "MOD ".equals(type) || "SAV ".equals(type) || "HAK ".equals(type)) {
+         entries = readErf(file, buf);
+      } else {
+         throw new IOException("not an ERF or RIM V1.0 file: " + file.getAbsolutePath());
+      }
+      // Capsules list resources in build order; sort so outputs come in a stable order
+      Collections.sort(entries, new Comparator<ResourceEntry>() {
+         @Override
+         public int compare(ResourceEntry a, ResourceEntry b) {
+            int c = a.resref().compareTo(b.resref());
+            return c != 0 ? c : Integer.compare(a.restype(), b.restype());
+         }
+      });
+      return new Capsule(file, type.trim(), entries);
+   }
+
+   private static List<ResourceEntry> readErf(File file, ByteBuffer buf) throws IOException {
+      ArchiveIO.check(file, buf, 0, 44);
+      int count = buf.getInt(16);
+      int keyList = buf.getInt(24);
+      int resourceList = buf.getInt(28);
+      ArchiveIO.check(file, buf, keyList, (long) count * ERF_KEY_SIZE);
+      ArchiveIO.check(file, buf, resourceList, (long) count * ERF_RESOURCE_SIZE);
+      List<ResourceEntry> entries = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         int key = keyList + i * ERF_KEY_SIZE;
+         String resref = ArchiveIO.ascii(buf, key, 16).toLowerCase(Locale.ROOT);
+         int restype = buf.getShort(key + 20) & 0xFFFF;
+         int resource = resourceList + i * ERF_RESOURCE_SIZE;
+         long offset = ArchiveIO.u32(buf, resource);
+         long length = ArchiveIO.u32(buf, resource + 4);
+         entries.add(new ResourceEntry(resref, restype, file, offset, (int) length,
+               ArchiveIO.slice(file, buf, offset, length)));
+      }
+      return entries;
+   }
+
+   private static List<ResourceEntry> readRim(File file, ByteBuffer buf) throws IOException {
+      ArchiveIO.check(file, buf, 0, 20);
+      int count = buf.getInt(12);
+      int keyList = buf.getInt(16);
+      if (keyList == 0) {
+         keyList = RIM_DEFAULT_KEYS;
+      }
+      ArchiveIO.check(file, buf, keyList, (long) count * RIM_KEY_SIZE);
+      List<ResourceEntry> entries = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         int key = keyList + i * RIM_KEY_SIZE;
+         String resref = ArchiveIO.ascii(buf, key, 16).toLowerCase(Locale.ROOT);
+         int restype = buf.getInt(key + 16);
+         long offset = ArchiveIO.u32(buf, key + 24);
+         long length = ArchiveIO.u32(buf, key + 28);
+         entries.add(new ResourceEntry(resref, restype, file, offset, (int) length,
+               ArchiveIO.slice(file, buf, offset, length)));
+      }
+      return entries;
+   }
+
+   public File getFile() {
+      return this.file;
+   }
+
+   /** The signature without padding: "ERF", "MOD", "SAV", "HAK" or "RIM". */
+   public String getType() {
+      return this.type;
+   }
+
+   /** Number of resources of all types. */
+   public int size() {
+      return this.entries.size();
+   }
+
+   /** Number of resources of one type. */
+   public int size(int restype) {
+      int n = 0;
+      for (ResourceEntry e : this.entries) {
+         if (e.restype() == restype) {
+            n++;
+         }
+      }
+      return n;
+   }
+
+   /** Resources of one type whose resref passes {@code filter}, sorted by resref. */
+   public List<ResourceEntry> entries(int restype, ResrefFilter filter) {
+      List<ResourceEntry> selected = new ArrayList<>();
+      for (ResourceEntry e : this.entries) {
+         if (e.restype() == restype && filter.matches(e.resref())) {
+            selected.add(e);
+         }
+      }
+      return selected;
+   }
+
+   /** Looks up one resource, or returns null if the capsule does not hold it. */
+   public ResourceEntry find(String resref, int restype) {
+      String name = resref.toLowerCase(Locale.ROOT);
+      for (ResourceEntry e : this.entries) {
+         if (e.restype() == restype && e.resref().equals(name)) {
+            return e;
+         }
+      }
+      return null;
+   }
+
+   @Override
+   public String toString() {
+      return this.file.getAbsolutePath();
+   }
+}
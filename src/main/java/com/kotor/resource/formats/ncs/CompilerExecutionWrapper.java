@@ -31,6 +31,11 @@ import java.util.regex.Matcher;
  *    <li>Temporary file management: Automatically cleans up all temporary files</li>
  *    <li>Process execution: Unified process execution with proper error handling</li>
  * </ul>
+ * <p>
+ * Given a {@link CompilerSandboxPool}, the wrapper leaves the compiler's own directory alone:
+ * it borrows a sandbox already holding a compiler copy and the right nwscript.nss, copies
+ * only the source (and includes it has not seen yet) into it, and hands the sandbox back
+ * in {@link #cleanup()}.
  */
 public class CompilerExecutionWrapper {
    private final File compilerFile;
@@ -39,6 +44,8 @@ public class CompilerExecutionWrapper {
    private final boolean isK2;
    private final KnownExternalCompilers compiler;
    private final NwnnsscompConfig config;
+   private final CompilerSandboxPool sandboxPool;
+   private CompilerSandboxPool.Sandbox sandbox = null; // Borrowed from sandboxPool between prepare and cleanup
    /** Process-level environment overrides applied during compiler invocation. */
    private final java.util.Map<String, String> envOverrides = new java.util.HashMap<>();
 
@@ -59,7 +66,23 @@ public class CompilerExecutionWrapper {
     * @throws IOException If configuration cannot be created
     */
    public CompilerExecutionWrapper(File compilerFile, File sourceFile, File outputFile, boolean isK2) throws IOException {
+      this(compilerFile, sourceFile, outputFile, isK2, null);
+   }
+
+   /**
+    * Creates a compiler execution wrapper that compiles in a pooled sandbox.
+    *
+    * @param compilerFile Path to the compiler executable
+    * @param sourceFile Source NSS file to compile
+    * @param outputFile Output NCS file path
+    * @param isK2 true for KotOR 2 (TSL), false for KotOR 1
+    * @param sandboxPool Pool of prepared working directories, or null to prepare the compiler directory itself
+    * @throws IOException If configuration cannot be created
+    */
+   public CompilerExecutionWrapper(File compilerFile, File sourceFile, File outputFile, boolean isK2,
+         CompilerSandboxPool sandboxPool) throws IOException {
       this.compilerFile = compilerFile;
+      this.sandboxPool = sandboxPool;
       this.sourceFile = sourceFile;
       this.outputFile = outputFile;
       this.isK2 = isK2;
@@ -76,6 +99,11 @@ public class CompilerExecutionWrapper {
     * @throws IOException If preparation fails
     */
    public void prepareExecutionEnvironment(List<File> includeDirs) throws IOException {
+      if (sandboxPool != null) {
+         prepareSandbox(includeDirs);
+         return;
+      }
+
       // Pattern 2: nwscript.nss abstraction (must be done first for registry spoofing logic)
       prepareNwscriptFile();
 
@@ -91,6 +119,36 @@ public class CompilerExecutionWrapper {
       // Additional patterns handled automatically during execution
    }
 
+   /**
+    * Borrows a sandbox matching the compiler, game and nwscript variant and stages the source in it.
+    * Includes are looked up next to the original source first, since the copy no longer sits there.
+    */
+   private void prepareSandbox(List<File> includeDirs) throws IOException {
+      File nwscriptSource = determineNwscriptSource();
+      if (nwscriptSource != null && !nwscriptSource.exists()) {
+         Logger.warn("CompilerExecutionWrapper: nwscript.nss source not found");
+         nwscriptSource = null;
+      }
+      sandbox = sandboxPool.acquire(compilerFile, isK2, nwscriptSource);
+      try {
+         List<File> searchDirs = new ArrayList<>();
+         searchDirs.add(sourceFile.getAbsoluteFile().getParentFile());
+         if (includeDirs != null) {
+            searchDirs.addAll(includeDirs);
+         }
+         sandbox.provideIncludes(extractIncludeFiles(sourceFile), searchDirs);
+         actualSourceFile = sandbox.stage(sourceFile);
+      } catch (IOException e) {
+         sandboxPool.release(sandbox);
+         sandbox = null;
+         throw e;
+      }
+      // Legacy compilers find their install through these; point them at the sandbox
+      for (String name : new ArrayList<>(envOverrides.keySet())) {
+         envOverrides.put(name, sandbox.directory().getAbsolutePath());
+      }
+   }
+
    /**
     * Checks if registry spoofing will be used for this compiler.
     */
@@ -237,7 +295,7 @@ public class CompilerExecutionWrapper {
       // Determine which nwscript.nss to use
       File nwscriptSource = determineNwscriptSource();
       if (nwscriptSource == null || !nwscriptSource.exists()) {
-         System.out.println("[INFO] CompilerExecutionWrapper: Warning: nwscript.nss source not found");
+         Logger.warn("CompilerExecutionWrapper: nwscript.nss source not found");
          return;
       }
 
@@ -351,6 +409,9 @@ public class CompilerExecutionWrapper {
     * Pattern 3: Working directory normalization.
     */
    public File getWorkingDirectory() {
+      if (sandbox != null) {
+         return sandbox.directory();
+      }
       // Some legacy compilers (KOTOR Tool / Scripting Tool) behave more reliably
       // when run from their own directory because they probe for nwscript.nss and
       // other resources relative to the executable instead of the source file.
@@ -384,6 +445,9 @@ public class CompilerExecutionWrapper {
     * When registry spoofing is used, this uses the copied source file in the spoofed directory.
     */
    public String[] getCompileArgs(List<File> includeDirs) {
+      if (sandbox != null) {
+         return config.forSource(actualSourceFile).getCompileArgs(sandbox.compiler().getAbsolutePath(), includeDirs);
+      }
       // If we copied the source file for registry spoofing, we need to create a new config with the copied file
       if (actualSourceFile != null && !actualSourceFile.equals(sourceFile)) {
          try {
@@ -404,6 +468,13 @@ public class CompilerExecutionWrapper {
     * Pattern 5: Temporary file management.
     */
    public void cleanup() {
+      // A pooled sandbox only needs its staged source removed; everything else is reused
+      if (sandbox != null) {
+         sandboxPool.release(sandbox);
+         sandbox = null;
+         return;
+      }
+
       // Clean up copied source file (if registry spoofing was used)
       if (copiedSourceFile != null && copiedSourceFile.exists()) {
          try {
@@ -531,8 +602,8 @@ public class CompilerExecutionWrapper {
    public AutoCloseable createRegistrySpoofer() {
       // Only KOTOR Tool and KOTOR Scripting Tool require registry spoofing
       if (compiler == KnownExternalCompilers.KOTOR_TOOL || compiler == KnownExternalCompilers.KOTOR_SCRIPTING_TOOL) {
-         // Use the tools directory as the installation path (where compiler and nwscript files are)
-         File toolsDir = CompilerUtil.getToolsDirectory();
+         // Use the tools directory (or the sandbox) as the installation path (where compiler and nwscript files are)
+         File toolsDir = sandbox != null ? sandbox.directory() : CompilerUtil.getToolsDirectory();
          try {
             RegistrySpoofer spoofer = new RegistrySpoofer(toolsDir, isK2);
             System.out.println("[INFO] CompilerExecutionWrapper: Created RegistrySpoofer for " + compiler.getName());
@@ -0,0 +1,343 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs external compiler processes without tying up the threads that start them.
+ * <p>
+ * {@link #submit} returns at once with a future of the process's {@link Result}. At most
+ * {@code maxConcurrent} processes run at a time; further submissions wait in a queue and
+ * are started as running ones finish. Each running process has its stdout and stderr drained
+ * by a small shared pool sized to two threads per concurrent process, so a compiler cannot
+ * stall on a full pipe. Besides the two streams on their own, the output is kept merged in
+ * the order it was read, so diagnostics a compiler splits across stdout and stderr stay
+ * interleaved. A process still running after the timeout is killed along with any
+ * children it started, and its future completes with {@link Result#timedOut()} set and the
+ * output read until then.
+ * <p>
+ * Dependent stages attached to a future run on a pool thread unless added with the
+ * {@code *Async} methods, so stages that block should use those.
+ * <p>
+ * All threads are daemons and go away when idle, so the shared {@link #getDefault()} runner
+ * needs no shutdown; {@link #close()} is for runners whose queued work should be abandoned.
+ */
+public final class CompilerProcessRunner implements Closeable {
+   /** Same allowance as the round-trip test gives each compiler run. */
+   public static final long DEFAULT_TIMEOUT_MILLIS = 25000L;
+   private static volatile CompilerProcessRunner defaultRunner;
+   private final int maxConcurrent;
+   private final long timeoutMillis;
+   private final ThreadPoolExecutor drainers;
+   private final ScheduledExecutorService watchdog;
+   private final Deque<Run> queued = new ArrayDeque<>();
+   private int running;
+   private boolean closed;
+
+   /**
+    * @param maxConcurrent processes allowed to run at once
+    * @param timeoutMillis wall-clock allowance per process; zero means unlimited
+    */
+   public CompilerProcessRunner(int maxConcurrent, long timeoutMillis) {
+      if (maxConcurrent < 1) {
+         throw new IllegalArgumentException("maxConcurrent must be at least 1: " + maxConcurrent);
+      }
+      this.maxConcurrent = maxConcurrent;
+      this.timeoutMillis = timeoutMillis;
+      // Two drains per running process, plus room for the threads completing futures
+      this.drainers = new ThreadPoolExecutor(2 * maxConcurrent + 2, 2 * maxConcurrent + 2, 10L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), daemonThreads("compiler-drain-"));
+      this.drainers.allowCoreThreadTimeOut(true);
+      ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, daemonThreads("compiler-watchdog-"));
+      timer.setRemoveOnCancelPolicy(true);
+      timer.setKeepAliveTime(10L, TimeUnit.SECONDS);
+      timer.allowCoreThreadTimeOut(true);
+      this.watchdog = timer;
+   }
+
+   /**
+    * The process-wide runner: one process per available processor, {@link #DEFAULT_TIMEOUT_MILLIS} each.
+    */
+   public static CompilerProcessRunner getDefault() {
+      CompilerProcessRunner r = defaultRunner;
+      if (r == null) {
+         synchronized (CompilerProcessRunner.class) {
+            r = defaultRunner;
+            if (r == null) {
+               r = new CompilerProcessRunner(Runtime.getRuntime().availableProcessors(), DEFAULT_TIMEOUT_MILLIS);
+               defaultRunner = r;
+            }
+         }
+      }
+      return r;
+   }
+
+   public int getMaxConcurrent() {
+      return this.maxConcurrent;
+   }
+
+   public long getTimeoutMillis() {
+      return this.timeoutMillis;
+   }
+
+   /**
+    * Queues a process and returns a future of its result. The future fails with an
+    * IOException if the process cannot be started, or if the runner is closed first.
+    * Cancelling the future before the process starts takes it off the queue; a process
+    * already running is left to finish or time out.
+    *
+    * @param args command line; the first element is the executable
+    * @param workingDir working directory, or null to inherit ours
+    * @param envOverrides variables to set on top of our environment, or null
+    */
+   public CompletableFuture<Result> submit(String[] args, File workingDir, Map<String, String> envOverrides) {
+      ProcessBuilder pb = new ProcessBuilder(args);
+      if (workingDir != null && workingDir.exists()) {
+         pb.directory(workingDir);
+      }
+      if (envOverrides != null && !envOverrides.isEmpty()) {
+         pb.environment().putAll(envOverrides);
+      }
+      Run run = new Run(pb);
+      synchronized (this) {
+         if (this.closed) {
+            run.future.completeExceptionally(new IOException("Compiler process runner is closed"));
+            return run.future;
+         }
+         if (this.running >= this.maxConcurrent) {
+            this.queued.add(run);
+            return run.future;
+         }
+         this.running++;
+      }
+      this.start(run);
+      return run.future;
+   }
+
+   /** Fails every queued submission. Processes already running are left to finish or time out. */
+   @Override
+   public void close() {
+      Deque<Run> abandoned;
+      synchronized (this) {
+         this.closed = true;
+         abandoned = new ArrayDeque<>(this.queued);
+         this.queued.clear();
+      }
+      for (Run run : abandoned) {
+         run.future.completeExceptionally(new IOException("Compiler process runner is closed"));
+      }
+   }
+
+   private void start(Run run) {
+      try {
+         run.process = run.builder.start();
+      } catch (IOException e) {
+         run.future.completeExceptionally(e);
+         this.finished();
+         return;
+      }
+      try {
+         run.process.getOutputStream().close();
+      } catch (IOException e) {
+         // Compilers never read stdin; nothing lost
+      }
+      if (this.timeoutMillis > 0) {
+         run.timeout = this.watchdog.schedule(run::kill, this.timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+      this.drainers.execute(() -> run.drain(run.process.getInputStream(), run.stdout));
+      this.drainers.execute(() -> run.drain(run.process.getErrorStream(), run.stderr));
+   }
+
+   /**
+    * Frees the slot of a finished process and starts the next queued one in it. Submissions
+    * whose futures were cancelled while they waited are dropped without being started.
+    */
+   private void finished() {
+      Run next;
+      synchronized (this) {
+         do {
+            next = this.queued.poll();
+         } while (next != null && next.future.isDone());
+         if (next == null) {
+            this.running--;
+            return;
+         }
+      }
+      this.start(next);
+   }
+
+   /** Kills a process and, where the platform lets us see them, the processes it started. */
+   static void destroyTree(Process process) {
+      try {
+         // ProcessHandle is Java 9+; the build targets Java 8, so reach it reflectively
+         Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+         Object handle = Process.class.getMethod("toHandle").invoke(process);
+         Method destroy = handleClass.getMethod("destroyForcibly");
+         Object descendants = handleClass.getMethod("descendants").invoke(handle);
+         Iterator<?> it = ((Stream<?>) descendants).iterator();
+         while (it.hasNext()) {
+            destroy.invoke(it.next());
+         }
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         // Java 8: only the direct child can be reached
+      }
+      process.destroyForcibly();
+   }
+
+   private static ThreadFactory daemonThreads(final String prefix) {
+      return new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + this.count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         }
+      };
+   }
+
+   /** One submission, from queueing to its last drained byte. */
+   private final class Run {
+      final ProcessBuilder builder;
+      final CompletableFuture<Result> future = new CompletableFuture<>();
+      final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+      final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+      final ByteArrayOutputStream merged = new ByteArrayOutputStream();
+      final AtomicInteger openStreams = new AtomicInteger(2);
+      volatile Process process;
+      volatile ScheduledFuture<?> timeout;
+      volatile boolean timedOut;
+
+      Run(ProcessBuilder builder) {
+         this.builder = builder;
+      }
+
+      void kill() {
+         if (!this.process.isAlive()) {
+            return;
+         }
+         this.timedOut = true;
+         destroyTree(this.process);
+      }
+
+      void drain(InputStream in, ByteArrayOutputStream sink) {
+         byte[] buf = new byte[4096];
+         try {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+               synchronized (sink) {
+                  sink.write(buf, 0, n);
+               }
+               synchronized (this.merged) {
+                  this.merged.write(buf, 0, n);
+               }
+            }
+         } catch (IOException e) {
+            // The stream closes under us when the process is killed; keep what was read
+         } finally {
+            try {
+               in.close();
+            } catch (IOException e) {
+               // ignore
+            }
+         }
+         if (this.openStreams.decrementAndGet() == 0) {
+            this.complete();
+         }
+      }
+
+      /** Runs on the drainer that saw the last stream end, so the process has exited or is about to. */
+      private void complete() {
+         int exitCode;
+         try {
+            exitCode = this.process.waitFor();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            destroyTree(this.process);
+            exitCode = -1;
+         }
+         ScheduledFuture<?> t = this.timeout;
+         if (t != null) {
+            t.cancel(false);
+         }
+         Result result;
+         synchronized (this.stdout) {
+            synchronized (this.stderr) {
+               synchronized (this.merged) {
+                  result = new Result(exitCode, this.timedOut, this.stdout.toByteArray(), this.stderr.toByteArray(),
+                        this.merged.toByteArray());
+               }
+            }
+         }
+         // Hand the slot on before running dependent stages, which may take a while
+         CompilerProcessRunner.this.finished();
+         this.future.complete(result);
+      }
+   }
+
+   /** Exit status and captured output of one compiler process. */
+   public static final class Result {
+      private final int exitCode;
+      private final boolean timedOut;
+      private final byte[] stdout;
+      private final byte[] stderr;
+      private final byte[] merged;
+
+      Result(int exitCode, boolean timedOut, byte[] stdout, byte[] stderr, byte[] merged) {
+         this.exitCode = exitCode;
+         this.timedOut = timedOut;
+         this.stdout = stdout;
+         this.stderr = stderr;
+         this.merged = merged;
+      }
+
+      public int exitCode() {
+         return this.exitCode;
+      }
+
+      /** True if the process was killed for running past the runner's timeout. */
+      public boolean timedOut() {
+         return this.timedOut;
+      }
+
+      public String stdout() {
+         return new String(this.stdout, Charset.defaultCharset());
+      }
+
+      public String stderr() {
+         return new String(this.stderr, Charset.defaultCharset());
+      }
+
+      /**
+       * Stdout and stderr together, in the order the chunks were read. Each chunk is written
+       * whole, so a line is split between the streams only if the process split it.
+       */
+      public String output() {
+         return new String(this.merged, Charset.defaultCharset());
+      }
+   }
+}
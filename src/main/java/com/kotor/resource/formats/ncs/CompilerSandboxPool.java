@@ -0,0 +1,250 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-provisioned working directories for external compiler runs, reused across a batch.
+ * <p>
+ * Without a pool, {@link CompilerExecutionWrapper} copies {@code nwscript.nss} next to the
+ * compiler before every compile, backs up the one that was there, and restores it afterwards,
+ * which costs about as much as the compile itself. A sandbox is set up once per compiler,
+ * game and nwscript variant: a private directory holding a copy of the compiler executable
+ * and the matching {@code nwscript.nss}. Include files are copied in the first time a script
+ * needs them and kept. Between compiles only the source file changes; it is staged under a
+ * reserved name so that a script called {@code nwscript.nss}, or named like an include,
+ * cannot overwrite the file of the same name in the sandbox.
+ * <p>
+ * A sandbox is handed to one compile at a time, so compiles can run side by side with one
+ * sandbox each; the pool grows to the number of concurrent compiles. {@link #close()} deletes
+ * every sandbox and should be called once the batch is done.
+ */
+public final class CompilerSandboxPool implements Closeable {
+   /**
+    * Name the source is staged under. Longer than the 16 characters a resref allows, so no
+    * nwscript or include file can share it.
+    */
+   static final String STAGED_SOURCE_NAME = "ncsdecomp_staged_source.nss";
+   private File root;
+   private final Map<String, Deque<Sandbox>> idle = new HashMap<>();  // key -> sandboxes not in use
+   private final List<Sandbox> all = new ArrayList<>();
+   private int created;
+   private boolean closed;
+
+   /**
+    * A pool whose sandboxes live in a fresh directory under {@code java.io.tmpdir}. The
+    * directory is only created for the first sandbox, so a batch that never runs the
+    * compiler leaves nothing behind.
+    */
+   public CompilerSandboxPool() {
+      this(null);
+   }
+
+   /** A pool whose sandboxes are created as subdirectories of {@code root}. */
+   public CompilerSandboxPool(File root) {
+      this.root = root;
+   }
+
+   /** The directory holding the sandboxes, or null while a temp-directory pool has none yet. */
+   public synchronized File getRoot() {
+      return this.root;
+   }
+
+   /** Number of sandboxes provisioned so far, in use or not. */
+   public synchronized int size() {
+      return this.all.size();
+   }
+
+   /**
+    * Takes an idle sandbox for this compiler, game and nwscript file, provisioning a new one
+    * if all of them are in use. Hand it back with {@link #release} when the compile is done.
+    *
+    * @param compiler the compiler executable
+    * @param k2 true for KotOR 2 (TSL)
+    * @param nwscript the nwscript.nss variant to provide, or null for none
+    * @throws IOException if the pool is closed or the sandbox cannot be set up
+    */
+   public Sandbox acquire(File compiler, boolean k2, File nwscript) throws IOException {
+      String key = compiler.getAbsolutePath() + "|" + (k2 ? "k2" : "k1") + "|"
+            + (nwscript != null ? nwscript.getAbsolutePath() : "");
+      File dir;
+      synchronized (this) {
+         if (this.closed) {
+            throw new IOException("Compiler sandbox pool is closed");
+         }
+         Deque<Sandbox> free = this.idle.get(key);
+         if (free != null && !free.isEmpty()) {
+            return free.pop();
+         }
+         if (this.root == null) {
+            this.root = Files.createTempDirectory("ncsdecomp_sandbox").toFile();
+         }
+         dir = new File(this.root, "sandbox" + this.created++);
+      }
+      // Provisioning copies files, so it runs outside the lock
+      Sandbox sandbox = new Sandbox(key, dir, compiler, nwscript);
+      synchronized (this) {
+         this.all.add(sandbox);
+         if (this.closed) {
+            sandbox.delete();
+            throw new IOException("Compiler sandbox pool is closed");
+         }
+      }
+      return sandbox;
+   }
+
+   /** Returns a sandbox for reuse, removing the source file staged in it. */
+   public void release(Sandbox sandbox) {
+      sandbox.unstage();
+      synchronized (this) {
+         if (this.closed) {
+            sandbox.delete();
+            this.root.delete();
+            return;
+         }
+         Deque<Sandbox> free = this.idle.get(sandbox.key);
+         if (free == null) {
+            free = new ArrayDeque<>();
+            this.idle.put(sandbox.key, free);
+         }
+         free.push(sandbox);
+      }
+   }
+
+   /** Deletes every sandbox and the pool directory. Sandboxes still in use are deleted on release. */
+   @Override
+   public void close() {
+      Collection<Sandbox> idleSandboxes = new ArrayList<>();
+      File dir;
+      synchronized (this) {
+         if (this.closed) {
+            return;
+         }
+         this.closed = true;
+         dir = this.root;
+         for (Deque<Sandbox> free : this.idle.values()) {
+            idleSandboxes.addAll(free);
+         }
+         this.idle.clear();
+      }
+      for (Sandbox sandbox : idleSandboxes) {
+         sandbox.delete();
+      }
+      if (dir != null && dir.delete()) {
+         Logger.info("CompilerSandboxPool: Deleted " + dir.getAbsolutePath());
+      }
+   }
+
+   /**
+    * One working directory with its own compiler copy and nwscript.nss. Not thread-safe;
+    * it belongs to whoever acquired it until it is released.
+    */
+   public static final class Sandbox {
+      private final String key;
+      private final File directory;
+      private final File compiler;
+      private final Map<String, String> includes = new HashMap<>();  // name in sandbox -> origin and its mtime
+      private File staged;
+
+      private Sandbox(String key, File directory, File compiler, File nwscript) throws IOException {
+         this.key = key;
+         this.directory = directory;
+         if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create sandbox directory: " + directory.getAbsolutePath());
+         }
+         this.compiler = new File(directory, compiler.getName());
+         Files.copy(compiler.toPath(), this.compiler.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         this.compiler.setExecutable(true);
+         if (nwscript != null) {
+            Files.copy(nwscript.toPath(), new File(directory, "nwscript.nss").toPath(),
+                  StandardCopyOption.REPLACE_EXISTING);
+         }
+         Logger.info("CompilerSandboxPool: Provisioned " + directory.getAbsolutePath() + " for "
+               + compiler.getName() + (nwscript != null ? " with " + nwscript.getName() : ""));
+      }
+
+      /** The working directory; the compiler, nwscript.nss, includes and source all live here. */
+      public File directory() {
+         return this.directory;
+      }
+
+      /** The sandbox's copy of the compiler executable. */
+      public File compiler() {
+         return this.compiler;
+      }
+
+      /**
+       * Copies a source file into the sandbox under {@link #STAGED_SOURCE_NAME}, replacing the
+       * one staged before. The compiler is always given an explicit output path, so the
+       * source's own name is not needed.
+       *
+       * @return the copy to hand to the compiler
+       */
+      public File stage(File source) throws IOException {
+         this.unstage();
+         File copy = new File(this.directory, STAGED_SOURCE_NAME);
+         Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         this.staged = copy;
+         return copy;
+      }
+
+      /**
+       * Makes the named include files available next to the staged source. Each is looked up
+       * in {@code includeDirs} in order and copied only if the sandbox does not already hold
+       * a copy of the same file at the same modification time.
+       */
+      public void provideIncludes(Collection<String> names, List<File> includeDirs) throws IOException {
+         for (String name : names) {
+            if (name.equalsIgnoreCase(STAGED_SOURCE_NAME)) {
+               throw new IOException("Include name is reserved for the staged source: " + name);
+            }
+            for (File dir : includeDirs) {
+               File include = dir != null ? new File(dir, name) : null;
+               if (include == null || !include.isFile()) {
+                  continue;
+               }
+               String origin = include.getAbsolutePath() + "@" + include.lastModified();
+               if (!origin.equals(this.includes.get(name))) {
+                  Files.copy(include.toPath(), new File(this.directory, name).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                  this.includes.put(name, origin);
+               }
+               break;
+            }
+         }
+      }
+
+      private void unstage() {
+         if (this.staged != null) {
+            this.staged.delete();
+            this.staged = null;
+         }
+      }
+
+      private void delete() {
+         File[] files = this.directory.listFiles();
+         if (files != null) {
+            for (File f : files) {
+               if (!f.delete()) {
+                  Logger.warn("CompilerSandboxPool: Could not delete " + f.getAbsolutePath());
+               }
+            }
+         }
+         this.directory.delete();
+      }
+   }
+}
@@ -70,6 +70,8 @@ public class Decoder {
    private ActionsData actions;
    /** Current byte position within the stream for error reporting. */
    private int pos;
+   /** Instructions decoded so far. */
+   private int commands;
 
    /**
     * @param in Input stream containing the NCS content
@@ -91,6 +93,11 @@ public class Decoder {
       return this.readCommands();
    }
 
+   /** Number of instructions decoded by {@link #decode()}. */
+   public int getCommandCount() {
+      return this.commands;
+   }
+
    private String readCommands() throws IOException, Exception {
       StringBuffer strbuffer = new StringBuffer();
 
@@ -108,6 +115,7 @@ public class Decoder {
       if (status == -1) {
          return status;
       } else {
+         this.commands++;
          strbuffer.append(this.getCommand(buffer[0]));
          strbuffer.append(" " + Integer.toString(commandpos));
 
@@ -0,0 +1,183 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput benchmark for batch decompilation under the per-file memory options.
+ * <p>
+ * Loads every {@code .ncs} file below the given paths into memory once, then decompiles
+ * the whole set repeatedly with each configuration on a fixed pool of worker threads,
+ * alternating configurations every round so drift affects all of them alike. The first
+ * round only warms up the JIT. Reports the median files per second of each configuration
+ * together with garbage collection counts and time:
+ *
+ * <pre>
+ * java -cp NCSDecompCLI.jar com.kotor.resource.formats.ncs.DecompileBenchmark \
+ *       --nwscript k1_nwscript.nss [-j 4] [--rounds 5] scripts_dir
+ * </pre>
+ */
+public final class DecompileBenchmark {
+   private DecompileBenchmark() {
+   }
+
+   public static void main(String[] args) throws Exception {
+      File nwscript = null;
+      int jobs = 1;
+      int rounds = 5;
+      List<File> inputs = new ArrayList<>();
+      for (int i = 0; i < args.length; i++) {
+         switch (args[i]) {
+            case "--nwscript":
+               nwscript = new File(args[++i]);
+               break;
+            case "-j":
+            case "--jobs":
+               jobs = Integer.parseInt(args[++i]);
+               break;
+            case "--rounds":
+               rounds = Integer.parseInt(args[++i]);
+               break;
+            default:
+               inputs.add(new File(args[i]));
+         }
+      }
+      if (nwscript == null || inputs.isEmpty() || jobs < 1 || rounds < 1) {
+         System.err.println("Usage: DecompileBenchmark --nwscript <file> [-j <n>] [--rounds <n>] <file|dir>...");
+         System.exit(2);
+         return;
+      }
+      if (System.getProperty("ncsdecomp.log") == null) {
+         Logger.setLevel(Logger.Level.WARN);
+      }
+
+      List<String> names = new ArrayList<>();
+      List<byte[]> scripts = new ArrayList<>();
+      for (File input : inputs) {
+         collect(input, names, scripts);
+      }
+      if (scripts.isEmpty()) {
+         System.err.println("No .ncs files found");
+         System.exit(2);
+         return;
+      }
+
+      DecompilerOptions base = new DecompilerOptions();
+      Map<String, DecompilerOptions> configs = new LinkedHashMap<>();
+      configs.put("scoped", base);
+      configs.put("lean", base.withLean(true));
+      configs.put("destroy+gc", base.withDestroyParseTrees(true).withGcPerFile(true));
+
+      // One decompiler per worker thread, as in CLI batch runs
+      final File actions = nwscript;
+      final ThreadLocal<FileDecompiler> decompilers = ThreadLocal.withInitial(() -> {
+         try {
+            return new FileDecompiler(actions, base);
+         } catch (DecompilerException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+         }
+      });
+      ExecutorService pool = Executors.newFixedThreadPool(jobs, r -> {
+         Thread t = new Thread(r, "ncsdecomp-bench");
+         t.setDaemon(true);
+         return t;
+      });
+
+      Map<String, long[]> nanos = new LinkedHashMap<>();
+      Map<String, long[]> gcCounts = new LinkedHashMap<>();
+      Map<String, long[]> gcMillis = new LinkedHashMap<>();
+      for (String config : configs.keySet()) {
+         nanos.put(config, new long[rounds]);
+         gcCounts.put(config, new long[rounds]);
+         gcMillis.put(config, new long[rounds]);
+      }
+
+      System.out.println("Benchmark: " + scripts.size() + " files, " + jobs + " jobs, " + rounds + " rounds");
+      for (DecompilerOptions options : configs.values()) {
+         runRound(pool, decompilers, names, scripts, options);
+      }
+      for (int round = 0; round < rounds; round++) {
+         for (Map.Entry<String, DecompilerOptions> e : configs.entrySet()) {
+            long[] gcBefore = gcTotals();
+            long start = System.nanoTime();
+            runRound(pool, decompilers, names, scripts, e.getValue());
+            nanos.get(e.getKey())[round] = System.nanoTime() - start;
+            long[] gcAfter = gcTotals();
+            gcCounts.get(e.getKey())[round] = gcAfter[0] - gcBefore[0];
+            gcMillis.get(e.getKey())[round] = gcAfter[1] - gcBefore[1];
+         }
+      }
+      pool.shutdown();
+
+      System.out.println(String.format("%-12s%12s%12s%10s%10s", "config", "files/s", "round ms", "gcs", "gc ms"));
+      for (String config : configs.keySet()) {
+         long round = median(nanos.get(config));
+         System.out.println(String.format("%-12s%12.1f%12.1f%10d%10d", config, scripts.size() * 1e9 / round,
+               round / 1e6, median(gcCounts.get(config)), median(gcMillis.get(config))));
+      }
+   }
+
+   private static void runRound(ExecutorService pool, ThreadLocal<FileDecompiler> decompilers, List<String> names,
+         List<byte[]> scripts, DecompilerOptions options) throws Exception {
+      List<Future<?>> pending = new ArrayList<>(scripts.size());
+      for (int i = 0; i < scripts.size(); i++) {
+         final String name = names.get(i);
+         final byte[] ncs = scripts.get(i);
+         pending.add(pool.submit(() -> {
+            decompilers.get().decompile(name, ByteBuffer.wrap(ncs), options);
+            return null;
+         }));
+      }
+      for (Future<?> f : pending) {
+         f.get();
+      }
+   }
+
+   private static void collect(File input, List<String> names, List<byte[]> scripts) throws IOException {
+      if (input.isDirectory()) {
+         File[] children = input.listFiles();
+         if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+               collect(child, names, scripts);
+            }
+         }
+      } else if (input.getName().toLowerCase().endsWith(".ncs")) {
+         names.add(input.getName());
+         scripts.add(Files.readAllBytes(input.toPath()));
+      }
+   }
+
+   /** Collections and collection milliseconds so far, summed over all collectors. */
+   private static long[] gcTotals() {
+      long count = 0L;
+      long millis = 0L;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+         count += Math.max(0L, gc.getCollectionCount());
+         millis += Math.max(0L, gc.getCollectionTime());
+      }
+      return new long[] {count, millis};
+   }
+
+   private static long median(long[] values) {
+      long[] sorted = values.clone();
+      Arrays.sort(sorted);
+      return sorted[sorted.length / 2];
+   }
+}
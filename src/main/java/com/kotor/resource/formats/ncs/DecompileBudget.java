@@ -0,0 +1,87 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+/**
+ * Wall-clock and analysis-step allowance for decompiling one file.
+ * <p>
+ * Long-running loops (the typing fixpoint, subroutine path finding, per-subroutine passes)
+ * call {@link #step(String)}; once either limit is used up the budget throws
+ * {@link Exceeded}, and {@link FileDecompiler} replaces the output with a fallback stub
+ * naming the stage that ran out. A limit of zero or less means unlimited.
+ * <p>
+ * Instances are confined to the thread decompiling the file.
+ */
+public final class DecompileBudget {
+   /** How many steps pass between clock reads. */
+   private static final int CLOCK_INTERVAL = 64;
+   private final long timeLimitMillis;
+   private final long maxSteps;
+   private final long deadline;
+   private long steps;
+
+   public DecompileBudget(long timeLimitMillis, long maxSteps) {
+      this.timeLimitMillis = timeLimitMillis;
+      this.maxSteps = maxSteps;
+      this.deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1000000L : 0L;
+   }
+
+   /** A budget that never runs out. */
+   public static DecompileBudget unlimited() {
+      return new DecompileBudget(0L, 0L);
+   }
+
+   /**
+    * Counts one unit of analysis work in {@code stage}.
+    *
+    * @throws Exceeded if the step or time limit is used up
+    */
+   public void step(String stage) {
+      this.steps++;
+      if (this.maxSteps > 0 && this.steps > this.maxSteps) {
+         throw new Exceeded(stage, "step limit of " + this.maxSteps + " reached");
+      }
+      if (this.deadline != 0L && this.steps % CLOCK_INTERVAL == 0) {
+         this.check(stage);
+      }
+   }
+
+   /**
+    * Checks the wall-clock limit without counting a step; called between stages.
+    *
+    * @throws Exceeded if the time limit is used up
+    */
+   public void check(String stage) {
+      if (this.deadline != 0L && System.nanoTime() - this.deadline > 0L) {
+         throw new Exceeded(stage, "time limit of " + this.timeLimitMillis + " ms reached");
+      }
+   }
+
+   public long steps() {
+      return this.steps;
+   }
+
+   /**
+    * Thrown when a budget runs out.
+    * <p>
+    * This is an {@link Error} on purpose: the pipeline recovers from almost every
+    * {@code Exception} locally and carries on, which would swallow the abort. Only
+    * {@link FileDecompiler} catches it.
+    */
+   public static final class Exceeded extends Error {
+      private static final long serialVersionUID = 1L;
+      private final String stage;
+
+      public Exceeded(String stage, String reason) {
+         super("Budget exceeded in " + stage + ": " + reason);
+         this.stage = stage;
+      }
+
+      /** The pipeline stage that was running, see {@link StageTimings}. */
+      public String getStage() {
+         return this.stage;
+      }
+   }
+}
@@ -0,0 +1,191 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects {@link DecompileStats} of many files and summarizes them per stage.
+ * <p>
+ * Pass an instance through {@link DecompilerServices.Builder#profile(DecompileProfile)} and every
+ * {@link FileDecompiler#decompileToString} call records its figures here; {@link #summary()}
+ * then reports time and allocation percentiles for each stage and totals and percentiles
+ * for each counter. A stage's percentiles cover only the files that ran it. Safe for use
+ * by several decompilers at once.
+ */
+public final class DecompileProfile {
+   /** Percentiles reported by {@link #summary()}. */
+   private static final double[] PERCENTILES = {50.0, 90.0, 99.0};
+   private final Map<String, LongSamples> stageNanos = new LinkedHashMap<>();
+   private final Map<String, LongSamples> stageAllocated = new LinkedHashMap<>();
+   private final Map<String, LongSamples> counters = new LinkedHashMap<>();
+   private final LongSamples totalNanos = new LongSamples();
+   private final Map<String, Integer> statuses = new LinkedHashMap<>();
+   private int files;
+   private int cached;
+
+   /** Adds the figures of one decompiled file. */
+   public synchronized void record(DecompileStats stats) {
+      this.files++;
+      if (stats.cached()) {
+         this.cached++;
+      }
+      String status = stats.status() != null ? stats.status() : "failed";
+      Integer count = this.statuses.get(status);
+      this.statuses.put(status, (count != null ? count : 0) + 1);
+
+      StageTimings timings = stats.timings();
+      for (Map.Entry<String, Long> e : timings.nanos().entrySet()) {
+         samples(this.stageNanos, e.getKey()).add(e.getValue());
+      }
+      for (Map.Entry<String, Long> e : timings.allocatedBytes().entrySet()) {
+         samples(this.stageAllocated, e.getKey()).add(e.getValue());
+      }
+      this.totalNanos.add(timings.totalNanos());
+
+      if (stats.instructions() >= 0) {
+         samples(this.counters, "instructions").add(stats.instructions());
+      }
+      if (stats.subroutines() >= 0) {
+         samples(this.counters, "subroutines").add(stats.subroutines());
+         samples(this.counters, "typedSubroutines").add(stats.typedSubroutines());
+      }
+      for (Map.Entry<String, Long> e : stats.counters().entrySet()) {
+         samples(this.counters, e.getKey()).add(e.getValue());
+      }
+   }
+
+   public synchronized int files() {
+      return this.files;
+   }
+
+   /**
+    * Returns the {@code percentile} (0-100, nearest rank) of the time spent in
+    * {@code stage} in nanoseconds, or -1 if no file ran it.
+    */
+   public synchronized long stagePercentileNanos(String stage, double percentile) {
+      LongSamples samples = this.stageNanos.get(stage);
+      return samples != null ? samples.percentile(percentile) : -1L;
+   }
+
+   /**
+    * Returns the {@code percentile} (0-100, nearest rank) of a counter over the files that
+    * reported it, or -1 if none did.
+    */
+   public synchronized long counterPercentile(String counter, double percentile) {
+      LongSamples samples = this.counters.get(counter);
+      return samples != null ? samples.percentile(percentile) : -1L;
+   }
+
+   /** A human-readable table of all stages and counters. */
+   public synchronized String summary() {
+      String nl = System.lineSeparator();
+      StringBuilder sb = new StringBuilder();
+      sb.append("Profile: ").append(this.files).append(" files");
+      if (!this.statuses.isEmpty()) {
+         sb.append(" (");
+         boolean first = true;
+         for (Map.Entry<String, Integer> e : this.statuses.entrySet()) {
+            sb.append(first ? "" : ", ").append(e.getValue()).append(' ').append(e.getKey());
+            first = false;
+         }
+         sb.append(", ").append(this.cached).append(" cached)");
+      }
+      sb.append(nl);
+      if (this.files == 0) {
+         return sb.toString();
+      }
+
+      sb.append(String.format("%-16s%7s%12s%10s%10s%10s%10s%12s%12s", "stage (ms)", "files", "total", "p50", "p90",
+            "p99", "max", "alloc p50", "alloc max")).append(nl);
+      for (Map.Entry<String, LongSamples> e : this.stageNanos.entrySet()) {
+         this.appendTimeRow(sb, e.getKey(), e.getValue(), this.stageAllocated.get(e.getKey()));
+         sb.append(nl);
+      }
+      this.appendTimeRow(sb, "total", this.totalNanos, null);
+      sb.append(nl);
+
+      if (!this.counters.isEmpty()) {
+         sb.append(String.format("%-16s%7s%12s%10s%10s%10s%10s", "counter", "files", "total", "p50", "p90", "p99",
+               "max")).append(nl);
+         for (Map.Entry<String, LongSamples> e : this.counters.entrySet()) {
+            LongSamples s = e.getValue();
+            sb.append(String.format("%-16s%7d%12d", e.getKey(), s.size(), s.sum()));
+            for (double p : PERCENTILES) {
+               sb.append(String.format("%10d", s.percentile(p)));
+            }
+            sb.append(String.format("%10d", s.percentile(100.0))).append(nl);
+         }
+      }
+      return sb.toString();
+   }
+
+   private void appendTimeRow(StringBuilder sb, String name, LongSamples nanos, LongSamples allocated) {
+      sb.append(String.format("%-16s%7d%12.1f", name, nanos.size(), nanos.sum() / 1e6));
+      for (double p : PERCENTILES) {
+         sb.append(String.format("%10.2f", nanos.percentile(p) / 1e6));
+      }
+      sb.append(String.format("%10.2f", nanos.percentile(100.0) / 1e6));
+      if (allocated != null) {
+         sb.append(String.format("%12s%12s", bytes(allocated.percentile(50.0)), bytes(allocated.percentile(100.0))));
+      }
+   }
+
+   private static String bytes(long n) {
+      if (n >= 1L << 20) {
+         return String.format("%.1f MB", n / (double) (1L << 20));
+      }
+      if (n >= 1L << 10) {
+         return String.format("%.1f KB", n / (double) (1L << 10));
+      }
+      return n + " B";
+   }
+
+   private static LongSamples samples(Map<String, LongSamples> map, String key) {
+      LongSamples samples = map.get(key);
+      if (samples == null) {
+         samples = new LongSamples();
+         map.put(key, samples);
+      }
+      return samples;
+   }
+
+   /**
+    * Growable list of long samples.
+    */
+   private static final class LongSamples {
+      private long[] values = new long[64];
+      private int size;
+      private long sum;
+
+      void add(long value) {
+         if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+         }
+         this.values[this.size++] = value;
+         this.sum += value;
+      }
+
+      int size() {
+         return this.size;
+      }
+
+      long sum() {
+         return this.sum;
+      }
+
+      long percentile(double percentile) {
+         if (this.size == 0) {
+            return -1L;
+         }
+         long[] sorted = Arrays.copyOf(this.values, this.size);
+         Arrays.sort(sorted);
+         int rank = (int) Math.ceil(percentile / 100.0 * this.size);
+         return sorted[Math.min(this.size, Math.max(1, rank)) - 1];
+      }
+   }
+}
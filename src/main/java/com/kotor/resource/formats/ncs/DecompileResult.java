@@ -0,0 +1,59 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+/**
+ * Source and outcome of one in-memory decompilation, returned by
+ * {@link FileDecompiler#decompile(String, java.nio.ByteBuffer, DecompilerOptions)}.
+ * <p>
+ * Holds no reference to the parse tree or analysis state of the script, so keeping a
+ * result does not keep those alive.
+ */
+public final class DecompileResult {
+   private final String name;
+   private final String code;
+   private final DecompileStats stats;
+
+   DecompileResult(String name, String code, DecompileStats stats) {
+      this.name = name;
+      this.code = code;
+      this.stats = stats;
+   }
+
+   /** The script name the caller passed in. */
+   public String name() {
+      return this.name;
+   }
+
+   /** Generated NSS source; a fallback stub if {@link #status()} is {@link DecompileStats#STUB}. */
+   public String code() {
+      return this.code;
+   }
+
+   /** One of {@link DecompileStats#SUCCESS}, {@link DecompileStats#PARTIAL} or {@link DecompileStats#STUB}. */
+   public String status() {
+      return this.stats.status();
+   }
+
+   /** Whether every stage ran and the source was generated from complete analysis. */
+   public boolean isComplete() {
+      return DecompileStats.SUCCESS.equals(this.stats.status());
+   }
+
+   /** Which budget the script ran out of, or null if it finished within budget. */
+   public String budgetExceeded() {
+      return this.stats.budgetExceeded();
+   }
+
+   /** Sizes, counters and stage timings of the call. */
+   public DecompileStats stats() {
+      return this.stats;
+   }
+
+   @Override
+   public String toString() {
+      return this.name + " (" + this.stats.status() + ")";
+   }
+}
@@ -0,0 +1,133 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome, size figures and counters of one decompilation, for batch reports and
+ * {@link DecompileProfile}.
+ * <p>
+ * Counts that were never reached (for example the subroutine count of a file that failed to
+ * decode) are -1. Instances are filled in by the thread decompiling the file.
+ */
+public final class DecompileStats {
+   /** Every stage ran and the source was generated from complete analysis. */
+   public static final String SUCCESS = "success";
+   /** Analysis failed part-way; the source was recovered from partial state. */
+   public static final String PARTIAL = "partial";
+   /** Nothing could be recovered; the source is a fallback stub. */
+   public static final String STUB = "stub";
+
+   /** Counter: parse tree nodes that were given a position. */
+   public static final String NODES = "nodes";
+   /** Counter: passes of the whole-program typing loop. */
+   public static final String TYPE_ITERATIONS = "typeIterations";
+   /** Counter: failures the pipeline recovered from by skipping or degrading a step. */
+   public static final String RECOVERIES = "recoveries";
+
+   private final StageTimings timings;
+   private final Map<String, Long> counters = new LinkedHashMap<>();
+   private String status;
+   private String failedStage;
+   private String budgetExceeded;
+   private boolean cached;
+   private long byteSize = -1L;
+   private int instructions = -1;
+   private int subroutines = -1;
+   private int typedSubroutines = -1;
+
+   public DecompileStats(StageTimings timings) {
+      this.timings = timings;
+   }
+
+   public StageTimings timings() {
+      return this.timings;
+   }
+
+   /** One of {@link #SUCCESS}, {@link #PARTIAL} or {@link #STUB}. */
+   public String status() {
+      return this.status;
+   }
+
+   /** The stage that was running when analysis gave up, or null on success. */
+   public String failedStage() {
+      return this.failedStage;
+   }
+
+   /**
+    * Which budget the file ran out of, including the stage, or null if it finished within
+    * budget.
+    */
+   public String budgetExceeded() {
+      return this.budgetExceeded;
+   }
+
+   /** Whether the source came from the result cache without decompiling. */
+   public boolean cached() {
+      return this.cached;
+   }
+
+   public long byteSize() {
+      return this.byteSize;
+   }
+
+   public int instructions() {
+      return this.instructions;
+   }
+
+   public int subroutines() {
+      return this.subroutines;
+   }
+
+   /** Subroutines whose prototype (return and parameter types) was fully inferred. */
+   public int typedSubroutines() {
+      return this.typedSubroutines;
+   }
+
+   /** Counters such as {@link #NODES}, in the order they were first incremented. */
+   public Map<String, Long> counters() {
+      return Collections.unmodifiableMap(this.counters);
+   }
+
+   /** Adds one to a counter. */
+   public void count(String counter) {
+      this.add(counter, 1L);
+   }
+
+   /** Adds {@code amount} to a counter. */
+   public void add(String counter, long amount) {
+      Long previous = this.counters.get(counter);
+      this.counters.put(counter, (previous != null ? previous : 0L) + amount);
+   }
+
+   void setOutcome(String status, String failedStage) {
+      this.status = status;
+      this.failedStage = failedStage;
+   }
+
+   void setBudgetExceeded(String budgetExceeded) {
+      this.budgetExceeded = budgetExceeded;
+   }
+
+   void setCached(boolean cached) {
+      this.cached = cached;
+   }
+
+   void setByteSize(long byteSize) {
+      this.byteSize = byteSize;
+   }
+
+   void setInstructions(int instructions) {
+      this.instructions = instructions;
+   }
+
+   void setSubroutines(int subroutines, int typedSubroutines) {
+      this.subroutines = subroutines;
+      this.typedSubroutines = typedSubroutines;
+   }
+}
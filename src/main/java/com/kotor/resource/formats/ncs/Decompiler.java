@@ -106,6 +106,8 @@ import java.io.OutputStream;
 public class Decompiler extends JFrame implements DropTargetListener, KeyListener, ChangeListener,
       TreeSelectionListener, ActionListener, WindowListener, MouseListener, AdjustmentListener, CaretListener {
    public static Settings settings = new Settings();
+   /** Options edited in the settings dialog; read afresh by every decompile started from the GUI. */
+   private static volatile DecompilerOptions options = new DecompilerOptions();
    public static final double screenWidth = Toolkit.getDefaultToolkit().getScreenSize().getWidth();
    public static final double screenHeight = Toolkit.getDefaultToolkit().getScreenSize().getHeight();
    private static final long serialVersionUID = 1L;
@@ -165,7 +167,10 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
    private transient Map<JComponent, TreeModel> hash_TabComponent2TreeModel;
    protected static List<File> unsavedFiles;
    private static Set<File> filesBeingLoaded = new HashSet<>();
-   private transient FileDecompiler fileDecompiler = new FileDecompiler();
+   /** Compiler working directories reused by every round-trip of the session; closed by {@link #exit()}. */
+   private static final CompilerSandboxPool SANDBOX_POOL = new CompilerSandboxPool();
+   private transient FileDecompiler fileDecompiler = new FileDecompiler(Decompiler::getOptions,
+         DecompilerServices.builder().sandboxPool(SANDBOX_POOL).build());
    private JToolBar commandBar;
    private JTextField treeFilterField;
    private JLabel statusBarLabel;
@@ -204,9 +209,22 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
       }
       // Apply game variant setting to FileDecompiler
       String gameVariant = settings.getProperty("Game Variant", "k1").toLowerCase();
-      FileDecompiler.isK2Selected = gameVariant.equals("k2") || gameVariant.equals("tsl") || gameVariant.equals("2");
-      FileDecompiler.preferSwitches = Boolean.parseBoolean(settings.getProperty("Prefer Switches", "false"));
-      FileDecompiler.strictSignatures = Boolean.parseBoolean(settings.getProperty("Strict Signatures", "false"));
+      setOptions(getOptions().withK2(gameVariant.equals("k2") || gameVariant.equals("tsl") || gameVariant.equals("2")));
+      setOptions(getOptions().withPreferSwitches(Boolean.parseBoolean(settings.getProperty("Prefer Switches", "false"))));
+      setOptions(getOptions().withStrictSignatures(Boolean.parseBoolean(settings.getProperty("Strict Signatures", "false"))));
+   }
+
+   /** The options the GUI decompiles with. */
+   static DecompilerOptions getOptions() {
+      return options;
+   }
+
+   /** Replaces the options the GUI decompiles with; takes effect from the next decompiled file. */
+   static void setOptions(DecompilerOptions newOptions) {
+      if (newOptions == null) {
+         throw new IllegalArgumentException("options must not be null");
+      }
+      options = newOptions;
    }
 
    public Decompiler() throws HeadlessException, DecompilerException {
@@ -2119,13 +2137,14 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
                   String gameVariant = Decompiler.settings.getProperty("Game Variant", "k1").toLowerCase();
                   boolean isK2 = gameVariant.equals("k2") || gameVariant.equals("tsl") || gameVariant.equals("2");
                   // Also update the static field for consistency
-                  FileDecompiler.isK2Selected = isK2;
+                  setOptions(getOptions().withK2(isK2));
                   System.out.println("[INFO] loadNssFile: Compiling NSS with isK2: " + isK2 + " (from Settings: " + gameVariant + ")");
 
                   // nwscript.nss handling is now done by CompilerExecutionWrapper.prepareExecutionEnvironment()
 
                   // Use unified compiler execution wrapper - abstracts ALL compiler quirks
-                  CompilerExecutionWrapper wrapper = new CompilerExecutionWrapper(compiler, file, compiledNcs, isK2);
+                  CompilerExecutionWrapper wrapper = new CompilerExecutionWrapper(compiler, file, compiledNcs, isK2,
+                        this.fileDecompiler.getServices().sandboxPool());
 
                   // Include the source file's parent directory for relative #include resolution
                   java.util.List < File > includeDirs = new java.util.ArrayList < > ();
@@ -2245,8 +2264,7 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
                         }
 
                         // Decompile the compiled NCS to get round-trip NSS
-                        String gameFlag = isK2 ? "k2" : "k1";
-                        String roundTripCode = RoundTripUtil.decompileNcsToNss(compiledNcs, gameFlag);
+                        String roundTripCode = RoundTripUtil.decompileNcsToNss(compiledNcs, getOptions().withK2(isK2));
                         System.out.println("[INFO] loadNssFile: Round-trip code result: " +
                         (roundTripCode != null ? "not null, length=" + roundTripCode.length() : "null"));
 
@@ -2564,7 +2582,7 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
 
                         if (recompiledNcs != null && recompiledNcs.exists()) {
                            // Capture bytecode from recompiled NCS (NCS->NSS->NCS) as "new bytecode" (right panel)
-                           boolean newBytecodeCaptured = this.fileDecompiler.captureBytecodeFromNcs(file, recompiledNcs, FileDecompiler.isK2Selected, false);
+                           boolean newBytecodeCaptured = this.fileDecompiler.captureBytecodeFromNcs(file, recompiledNcs, getOptions().isK2(), false);
                            if (newBytecodeCaptured) {
                               System.out.println("[INFO] decompile: Successfully captured new bytecode from recompiled NCS (right panel)");
                            } else {
@@ -2572,9 +2590,10 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
                            }
 
                            // Decompile the recompiled NCS to show round-trip result
-                           String gameFlag = FileDecompiler.isK2Selected ? "k2" : "k1";
-                           System.out.println("[INFO] decompile: Decompiling recompiled NCS with gameFlag: " + gameFlag);
-                           String roundTripCode = RoundTripUtil.decompileNcsToNss(recompiledNcs, gameFlag);
+                           DecompilerOptions roundTripOptions = getOptions();
+                           System.out.println("[INFO] decompile: Decompiling recompiled NCS with K2: "
+                                 + roundTripOptions.isK2());
+                           String roundTripCode = RoundTripUtil.decompileNcsToNss(recompiledNcs, roundTripOptions);
                            System.out.println("[INFO] decompile: Round-trip code result: "
                                  + (roundTripCode != null ? "not null, length=" + roundTripCode.length() : "null"));
 
@@ -2710,6 +2729,7 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
    }
 
    public static void exit() {
+      SANDBOX_POOL.close();
       System.exit(0);
    }
 
@@ -3516,8 +3536,7 @@ public class Decompiler extends JFrame implements DropTargetListener, KeyListene
     * @return Round-trip decompiled NSS code, or null if not available
     */
    private String getRoundTripDecompiledCode(File savedNssFile) {
-      String gameFlag = FileDecompiler.isK2Selected ? "k2" : "k1";
-      return RoundTripUtil.getRoundTripDecompiledCode(savedNssFile, gameFlag);
+      return RoundTripUtil.getRoundTripDecompiledCode(savedNssFile, getOptions());
    }
 
    private void saveAll() {
@@ -0,0 +1,305 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import com.kotor.resource.formats.ncs.analysis.SignatureDatabase;
+
+/**
+ * Immutable set of decompiler options.
+ * <p>
+ * A {@link FileDecompiler} keeps the options it was built with for its whole lifetime,
+ * so decompilers for different games or option sets can run side by side in one JVM.
+ * Build a set with {@link #builder()}, or derive one from another with
+ * {@link #toBuilder()} or the {@code with*} shortcuts.
+ * <p>
+ * Options only describe how to decompile. Stateful collaborators shared across files,
+ * such as caches, profilers and compiler process management, are passed separately as
+ * {@link DecompilerServices}.
+ */
+public final class DecompilerOptions {
+   private final boolean k2;
+   private final boolean preferSwitches;
+   private final boolean strictSignatures;
+   private final String nwnnsscompPath;
+   private final String ncsdisPath;
+   private final boolean preferNcsdis;
+   private final boolean subroutineCache;
+   private final SignatureDatabase signatureDatabase;
+   private final long timeBudgetMillis;
+   private final long stepBudget;
+   private final boolean lean;
+   private final boolean destroyParseTrees;
+   private final boolean gcPerFile;
+
+   /** Options with every setting at its default (K1, no switches, ncsdis preferred). */
+   public DecompilerOptions() {
+      this(new Builder());
+   }
+
+   private DecompilerOptions(Builder b) {
+      this.k2 = b.k2;
+      this.preferSwitches = b.preferSwitches;
+      this.strictSignatures = b.strictSignatures;
+      this.nwnnsscompPath = b.nwnnsscompPath;
+      this.ncsdisPath = b.ncsdisPath;
+      this.preferNcsdis = b.preferNcsdis;
+      this.subroutineCache = b.subroutineCache;
+      this.signatureDatabase = b.signatureDatabase;
+      this.timeBudgetMillis = b.timeBudgetMillis;
+      this.stepBudget = b.stepBudget;
+      this.lean = b.lean;
+      this.destroyParseTrees = b.destroyParseTrees;
+      this.gcPerFile = b.gcPerFile;
+   }
+
+   /** A builder starting from the default options. */
+   public static Builder builder() {
+      return new Builder();
+   }
+
+   /** A builder starting from these options. */
+   public Builder toBuilder() {
+      return new Builder(this);
+   }
+
+   /** True for KotOR 2 (TSL), false for KotOR 1. */
+   public boolean isK2() {
+      return this.k2;
+   }
+
+   /** Prefer generating switch structures instead of if-elseif chains. */
+   public boolean preferSwitches() {
+      return this.preferSwitches;
+   }
+
+   /** Report subroutines whose signature stays partially inferred. */
+   public boolean strictSignatures() {
+      return this.strictSignatures;
+   }
+
+   /** Path to nwnnsscomp.exe, null means use default (tools/nwnnsscomp.exe or current directory). */
+   public String nwnnsscompPath() {
+      return this.nwnnsscompPath;
+   }
+
+   /** Path to ncsdis.exe for pcode decompilation, null means use default (tools/ncsdis.exe). */
+   public String ncsdisPath() {
+      return this.ncsdisPath;
+   }
+
+   /** Prefer ncsdis.exe over nwnnsscomp for pcode decompilation. */
+   public boolean preferNcsdis() {
+      return this.preferNcsdis;
+   }
+
+   /** Reuse prototypes of fingerprinted subroutines across files. */
+   public boolean subroutineCache() {
+      return this.subroutineCache;
+   }
+
+   /** Library of known subroutine signatures, or null. */
+   public SignatureDatabase signatureDatabase() {
+      return this.signatureDatabase;
+   }
+
+   /** Wall-clock allowance per file in milliseconds; zero means unlimited. */
+   public long timeBudgetMillis() {
+      return this.timeBudgetMillis;
+   }
+
+   /** Analysis steps allowed per file; zero means unlimited. See {@link DecompileBudget}. */
+   public long stepBudget() {
+      return this.stepBudget;
+   }
+
+   /**
+    * Batch mode: whitespace tokens are not indexed while parsing and analysis structures
+    * are dropped as soon as the source is rendered. Only the generated code of a file is
+    * kept, so it does not suit callers that rename subroutines or round-trip afterwards.
+    */
+   public boolean lean() {
+      return this.lean;
+   }
+
+   /**
+    * Take each file's parse tree and node table apart node by node once it is decompiled.
+    * The per-file state is unreachable afterwards anyway; this only helps collectors that
+    * struggle with large dead object graphs.
+    */
+   public boolean destroyParseTrees() {
+      return this.destroyParseTrees;
+   }
+
+   /** Force a full garbage collection after every file, trading throughput for a small heap. */
+   public boolean gcPerFile() {
+      return this.gcPerFile;
+   }
+
+   public DecompilerOptions withK2(boolean k2) {
+      return this.toBuilder().k2(k2).build();
+   }
+
+   public DecompilerOptions withPreferSwitches(boolean preferSwitches) {
+      return this.toBuilder().preferSwitches(preferSwitches).build();
+   }
+
+   public DecompilerOptions withStrictSignatures(boolean strictSignatures) {
+      return this.toBuilder().strictSignatures(strictSignatures).build();
+   }
+
+   public DecompilerOptions withNwnnsscompPath(String nwnnsscompPath) {
+      return this.toBuilder().nwnnsscompPath(nwnnsscompPath).build();
+   }
+
+   public DecompilerOptions withNcsdisPath(String ncsdisPath) {
+      return this.toBuilder().ncsdisPath(ncsdisPath).build();
+   }
+
+   public DecompilerOptions withPreferNcsdis(boolean preferNcsdis) {
+      return this.toBuilder().preferNcsdis(preferNcsdis).build();
+   }
+
+   public DecompilerOptions withSubroutineCache(boolean subroutineCache) {
+      return this.toBuilder().subroutineCache(subroutineCache).build();
+   }
+
+   public DecompilerOptions withSignatureDatabase(SignatureDatabase signatureDatabase) {
+      return this.toBuilder().signatureDatabase(signatureDatabase).build();
+   }
+
+   public DecompilerOptions withTimeBudgetMillis(long timeBudgetMillis) {
+      return this.toBuilder().timeBudgetMillis(timeBudgetMillis).build();
+   }
+
+   public DecompilerOptions withStepBudget(long stepBudget) {
+      return this.toBuilder().stepBudget(stepBudget).build();
+   }
+
+   public DecompilerOptions withLean(boolean lean) {
+      return this.toBuilder().lean(lean).build();
+   }
+
+   public DecompilerOptions withDestroyParseTrees(boolean destroyParseTrees) {
+      return this.toBuilder().destroyParseTrees(destroyParseTrees).build();
+   }
+
+   public DecompilerOptions withGcPerFile(boolean gcPerFile) {
+      return this.toBuilder().gcPerFile(gcPerFile).build();
+   }
+
+   @Override
+   public String toString() {
+      return "DecompilerOptions[k2=" + this.k2 + ", preferSwitches=" + this.preferSwitches + ", strictSignatures="
+            + this.strictSignatures + ", nwnnsscompPath=" + this.nwnnsscompPath + ", ncsdisPath=" + this.ncsdisPath
+            + ", preferNcsdis=" + this.preferNcsdis + ", subroutineCache=" + this.subroutineCache + ", timeBudgetMillis="
+            + this.timeBudgetMillis + ", stepBudget=" + this.stepBudget + ", lean=" + this.lean
+            + ", destroyParseTrees=" + this.destroyParseTrees + ", gcPerFile=" + this.gcPerFile + "]";
+   }
+
+   /** Mutable staging area for a {@link DecompilerOptions}; not thread-safe. */
+   public static final class Builder {
+      private boolean k2;
+      private boolean preferSwitches;
+      private boolean strictSignatures;
+      private String nwnnsscompPath;
+      private String ncsdisPath;
+      private boolean preferNcsdis = true;
+      private boolean subroutineCache;
+      private SignatureDatabase signatureDatabase;
+      private long timeBudgetMillis;
+      private long stepBudget;
+      private boolean lean;
+      private boolean destroyParseTrees;
+      private boolean gcPerFile;
+
+      private Builder() {
+      }
+
+      private Builder(DecompilerOptions o) {
+         this.k2 = o.k2;
+         this.preferSwitches = o.preferSwitches;
+         this.strictSignatures = o.strictSignatures;
+         this.nwnnsscompPath = o.nwnnsscompPath;
+         this.ncsdisPath = o.ncsdisPath;
+         this.preferNcsdis = o.preferNcsdis;
+         this.subroutineCache = o.subroutineCache;
+         this.signatureDatabase = o.signatureDatabase;
+         this.timeBudgetMillis = o.timeBudgetMillis;
+         this.stepBudget = o.stepBudget;
+         this.lean = o.lean;
+         this.destroyParseTrees = o.destroyParseTrees;
+         this.gcPerFile = o.gcPerFile;
+      }
+
+      public Builder k2(boolean k2) {
+         this.k2 = k2;
+         return this;
+      }
+
+      public Builder preferSwitches(boolean preferSwitches) {
+         this.preferSwitches = preferSwitches;
+         return this;
+      }
+
+      public Builder strictSignatures(boolean strictSignatures) {
+         this.strictSignatures = strictSignatures;
+         return this;
+      }
+
+      public Builder nwnnsscompPath(String nwnnsscompPath) {
+         this.nwnnsscompPath = nwnnsscompPath;
+         return this;
+      }
+
+      public Builder ncsdisPath(String ncsdisPath) {
+         this.ncsdisPath = ncsdisPath;
+         return this;
+      }
+
+      public Builder preferNcsdis(boolean preferNcsdis) {
+         this.preferNcsdis = preferNcsdis;
+         return this;
+      }
+
+      public Builder subroutineCache(boolean subroutineCache) {
+         this.subroutineCache = subroutineCache;
+         return this;
+      }
+
+      public Builder signatureDatabase(SignatureDatabase signatureDatabase) {
+         this.signatureDatabase = signatureDatabase;
+         return this;
+      }
+
+      public Builder timeBudgetMillis(long timeBudgetMillis) {
+         this.timeBudgetMillis = timeBudgetMillis;
+         return this;
+      }
+
+      public Builder stepBudget(long stepBudget) {
+         this.stepBudget = stepBudget;
+         return this;
+      }
+
+      public Builder lean(boolean lean) {
+         this.lean = lean;
+         return this;
+      }
+
+      public Builder destroyParseTrees(boolean destroyParseTrees) {
+         this.destroyParseTrees = destroyParseTrees;
+         return this;
+      }
+
+      public Builder gcPerFile(boolean gcPerFile) {
+         this.gcPerFile = gcPerFile;
+         return this;
+      }
+
+      public DecompilerOptions build() {
+         return new DecompilerOptions(this);
+      }
+   }
+}
@@ -0,0 +1,104 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import com.kotor.resource.formats.ncs.analysis.SignatureDatabase;
+
+/**
+ * Stateful collaborators a {@link FileDecompiler} works with: the result cache, the
+ * profile and signature sinks, and the machinery for running external compilers.
+ * <p>
+ * Unlike {@link DecompilerOptions} these accumulate state, are usually shared by every
+ * decompiler of a batch, and are owned (saved, closed) by whoever created them. The
+ * holder itself is immutable; every collaborator is optional.
+ */
+public final class DecompilerServices {
+   /** No cache, no sinks, a sandbox-less compiler setup and the shared process runner. */
+   public static final DecompilerServices NONE = builder().build();
+
+   private final ResultCache resultCache;
+   private final DecompileProfile profile;
+   private final SignatureDatabase signatureExport;
+   private final CompilerSandboxPool sandboxPool;
+   private final CompilerProcessRunner processRunner;
+
+   private DecompilerServices(Builder b) {
+      this.resultCache = b.resultCache;
+      this.profile = b.profile;
+      this.signatureExport = b.signatureExport;
+      this.sandboxPool = b.sandboxPool;
+      this.processRunner = b.processRunner;
+   }
+
+   public static Builder builder() {
+      return new Builder();
+   }
+
+   /** On-disk cache of finished decompilations, or null. */
+   public ResultCache resultCache() {
+      return this.resultCache;
+   }
+
+   /** Collector of per-stage timings and counters of every decompiled file, or null. */
+   public DecompileProfile profile() {
+      return this.profile;
+   }
+
+   /** Sink collecting fingerprints of every decompiled subroutine, or null. */
+   public SignatureDatabase signatureExport() {
+      return this.signatureExport;
+   }
+
+   /** Prepared working directories for nwnnsscomp runs, or null to prepare the compiler directory per compile. */
+   public CompilerSandboxPool sandboxPool() {
+      return this.sandboxPool;
+   }
+
+   /** Runner for nwnnsscomp processes; falls back to {@link CompilerProcessRunner#getDefault()} when unset. */
+   public CompilerProcessRunner processRunner() {
+      return this.processRunner != null ? this.processRunner : CompilerProcessRunner.getDefault();
+   }
+
+   /** Mutable staging area for a {@link DecompilerServices}; not thread-safe. */
+   public static final class Builder {
+      private ResultCache resultCache;
+      private DecompileProfile profile;
+      private SignatureDatabase signatureExport;
+      private CompilerSandboxPool sandboxPool;
+      private CompilerProcessRunner processRunner;
+
+      private Builder() {
+      }
+
+      public Builder resultCache(ResultCache resultCache) {
+         this.resultCache = resultCache;
+         return this;
+      }
+
+      public Builder profile(DecompileProfile profile) {
+         this.profile = profile;
+         return this;
+      }
+
+      public Builder signatureExport(SignatureDatabase signatureExport) {
+         this.signatureExport = signatureExport;
+         return this;
+      }
+
+      public Builder sandboxPool(CompilerSandboxPool sandboxPool) {
+         this.sandboxPool = sandboxPool;
+         return this;
+      }
+
+      public Builder processRunner(CompilerProcessRunner processRunner) {
+         this.processRunner = processRunner;
+         return this;
+      }
+
+      public DecompilerServices build() {
+         return new DecompilerServices(this);
+      }
+   }
+}
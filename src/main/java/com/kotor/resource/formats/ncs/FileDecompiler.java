@@ -6,6 +6,10 @@ package com.kotor.resource.formats.ncs;
 
 import com.kotor.resource.formats.ncs.lexer.Lexer;
 import com.kotor.resource.formats.ncs.analysis.PrototypeEngine;
+import com.kotor.resource.formats.ncs.analysis.SignatureDatabase;
+import com.kotor.resource.formats.ncs.analysis.SubroutineCache;
+import com.kotor.resource.formats.ncs.analysis.SubroutineFingerprint;
+import com.kotor.resource.formats.ncs.analysis.SubroutineSignature;
 import com.kotor.resource.formats.ncs.node.ASubroutine;
 import com.kotor.resource.formats.ncs.node.Start;
 import com.kotor.resource.formats.ncs.parser.Parser;
@@ -21,6 +25,8 @@ import com.kotor.resource.formats.ncs.utils.SetPositions;
 import com.kotor.resource.formats.ncs.utils.SubroutineAnalysisData;
 import com.kotor.resource.formats.ncs.utils.SubroutineState;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -28,15 +34,23 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.PushbackReader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.function.Supplier;
 
 /**
  * Core coordinator for decompiling and recompiling KotOR/TSL NSS scripts.
@@ -52,7 +66,9 @@ import java.util.Vector;
  * </ul>
  * The class is intentionally stateful: it caches parsed scripts in
  * {@link #filedata} and reuses a single {@link ActionsData} instance describing
- * nwscript actions for the chosen game (KotOR 1 vs TSL).
+ * nwscript actions for the chosen game (KotOR 1 vs TSL). Callers that hold scripts
+ * in memory can use {@link #decompile(String, ByteBuffer, DecompilerOptions)}
+ * instead, which keeps no per-file state.
  */
 public class FileDecompiler {
    /** Return code indicating a failed compile/decompile/compare operation. */
@@ -65,75 +81,141 @@ public class FileDecompiler {
    public static final int PARTIAL_COMPARE = 3;
    /** Name used when storing globals alongside subroutine variables. */
    public static final String GLOBAL_SUB_NAME = "GLOBALS";
+   /** Script name used by {@link #decompile(ByteBuffer, DecompilerOptions)}. */
+   public static final String IN_MEMORY_NAME = "memory.ncs";
 
    /** Parsed actions table for the currently selected game ruleset. */
    private ActionsData actions;
+   /** Game {@link #actions} belongs to: true for TSL. */
+   private boolean actionsK2;
+   /** Actions table of the other game, loaded the first time a call selects it. */
+   private ActionsData otherActions;
    /** Per-file cache of intermediate and generated data. */
    private Hashtable<File, FileScriptData> filedata;
-   /** Global flag toggled by UI/CLI to indicate KotOR 2 (TSL) mode. */
-   public static boolean isK2Selected = false;
+   /** Cross-file cache of subroutine prototypes, valid for the current {@link #actions}. */
+   private final SubroutineCache subroutineCache = new SubroutineCache();
+   /** Source of the options in effect; asked once per decompiled file. */
+   private final Supplier<DecompilerOptions> options;
+   /** Caches, sinks and compiler machinery shared with the rest of the run. */
+   private final DecompilerServices services;
+   /** Stage timings of the most recent {@link #decompileNcs(File)} call. */
+   private StageTimings lastTimings = new StageTimings();
+   /** Outcome and size figures of the most recent {@link #decompileToString} call. */
+   private DecompileStats lastStats;
+
    /**
-    * Global flag to prefer generating switch structures instead of if-elseif
-    * chains.
+    * Builds a decompiler with default options, configured for the current working directory.
+    * <p>
+    * Actions data is loaded lazily when needed (via {@link #ensureActionsLoaded()}).
+    * This prevents startup failures if the actions file is missing.
+    * <p>
+    * Uses {@code user.dir} to locate {@code k1_nwscript.nss} or
+    * {@code tsl_nwscript.nss} depending on {@link DecompilerOptions#isK2()}, which
+    * mirrors legacy GUI behavior.
     */
-   public static boolean preferSwitches = false;
-   /** Whether to abort when any signature stays partially inferred. */
-   public static boolean strictSignatures = false;
+   public FileDecompiler() {
+      this(new DecompilerOptions());
+   }
+
    /**
-    * Path to nwnnsscomp.exe, null means use default (tools/nwnnsscomp.exe or
-    * current directory)
+    * Builds a decompiler with fixed options; actions data is loaded lazily for
+    * the game selected by {@code options}.
     */
-   public static String nwnnsscompPath = null;
+   public FileDecompiler(DecompilerOptions options) {
+      this(fixed(options), DecompilerServices.NONE);
+   }
 
    /**
-    * Path to ncsdis.exe for pcode decompilation, null means use default (tools/ncsdis.exe).
+    * Builds a decompiler whose options may change between files, as the GUI settings do.
+    * {@code options} is asked once at the start of every decompiled file.
     */
-   public static String ncsdisPath = null;
+   public FileDecompiler(Supplier<DecompilerOptions> options, DecompilerServices services) {
+      this.filedata = new Hashtable<>(1);
+      this.actions = null; // Load lazily when needed to prevent startup failures
+      this.options = options;
+      this.services = services;
+   }
 
    /**
-    * If true, prefer ncsdis.exe over nwnnsscomp for pcode decompilation.
-    * Defaults to true since ncsdis is faster and has no nwscript.nss dependency.
+    * CLI-specific constructor that accepts an explicit nwscript file path and
+    * uses default options.
     */
-   public static boolean preferNcsdis = true;
+   public FileDecompiler(File nwscriptFile) throws DecompilerException {
+      this(nwscriptFile, new DecompilerOptions());
+   }
 
    /**
-    * Builds a decompiler configured for the current working directory.
-    * <p>
-    * Actions data is loaded lazily when needed (via {@link #ensureActionsLoaded()}).
-    * This prevents startup failures if the actions file is missing. Also loads
-    * {@link #preferSwitches} from config file if present.
-    * <p>
-    * Uses {@code user.dir} to locate {@code k1_nwscript.nss} or
-    * {@code tsl_nwscript.nss} depending on {@link #isK2Selected}, which mirrors
-    * legacy GUI behavior.
+    * Constructor that accepts an explicit nwscript file path and fixed options.
+    * This bypasses the user.dir lookup and allows complete CLI independence.
     */
-   public FileDecompiler() {
-      this.filedata = new Hashtable<>(1);
-      this.actions = null; // Load lazily when needed to prevent startup failures
-      loadPreferSwitchesFromConfig();
+   public FileDecompiler(File nwscriptFile, DecompilerOptions options) throws DecompilerException {
+      this(nwscriptFile, options, DecompilerServices.NONE);
    }
 
    /**
-    * CLI-specific constructor that accepts an explicit nwscript file path. This
-    * bypasses the user.dir lookup and allows complete CLI independence. Note:
-    * preferSwitches should be set via CLI argument or static flag before
-    * construction.
+    * Constructor that accepts an explicit nwscript file path, fixed options and the
+    * collaborators shared with the rest of a batch.
     */
-   public FileDecompiler(File nwscriptFile) throws DecompilerException {
+   public FileDecompiler(File nwscriptFile, DecompilerOptions options, DecompilerServices services)
+         throws DecompilerException {
       this.filedata = new Hashtable<>(1);
+      this.options = fixed(options);
+      this.services = services;
+      this.actionsK2 = options.isK2();
       if (nwscriptFile == null || !nwscriptFile.isFile()) {
          throw new DecompilerException("Error: nwscript file does not exist: "
                + (nwscriptFile != null ? nwscriptFile.getAbsolutePath() : "null"));
       }
       try {
-         System.out.println("[INFO] FileDecompiler: READING nwscript file: " + nwscriptFile.getAbsolutePath());
-         this.actions = new ActionsData(new BufferedReader(new FileReader(nwscriptFile)));
-         System.out.println("[INFO] FileDecompiler: Read nwscript file: " + nwscriptFile.getAbsolutePath());
+         Logger.debug(() -> "FileDecompiler: READING nwscript file: " + nwscriptFile.getAbsolutePath());
+         this.actions = ActionsData.load(nwscriptFile);
+         Logger.debug(() -> "FileDecompiler: Read nwscript file: " + nwscriptFile.getAbsolutePath());
       } catch (IOException ex) {
          throw new DecompilerException("Error reading nwscript file: " + ex.getMessage());
       }
    }
 
+   private static Supplier<DecompilerOptions> fixed(DecompilerOptions options) {
+      if (options == null) {
+         throw new IllegalArgumentException("options must not be null");
+      }
+      return () -> options;
+   }
+
+   /** Returns the options in effect for the next decompiled file. */
+   public DecompilerOptions getOptions() {
+      return this.options.get();
+   }
+
+   /** Returns the collaborators this decompiler shares with the rest of the run. */
+   public DecompilerServices getServices() {
+      return this.services;
+   }
+
+   /**
+    * Returns per-stage timings of the most recently decompiled file. Code generation is
+    * included for {@link #decompileToString(File)} and {@link #decompileToFile}.
+    */
+   public StageTimings getLastTimings() {
+      return this.lastTimings;
+   }
+
+   /**
+    * Returns the outcome, sizes and stage timings of the most recent
+    * {@link #decompileToString} call, or null before the first.
+    */
+   public DecompileStats getLastStats() {
+      return this.lastStats;
+   }
+
+   /**
+    * Returns a description of the budget the most recently decompiled file ran out of
+    * (including the stage), or {@code null} if it finished within budget.
+    */
+   public String getLastBudgetExceeded() {
+      return this.lastStats != null ? this.lastStats.budgetExceeded() : null;
+   }
+
    /**
     * Reloads the action table for the requested game variant. Useful when the user
     * toggles KotOR 1/2 mode after construction.
@@ -143,6 +225,9 @@ public class FileDecompiler {
     */
    public void loadActionsData(boolean isK2Selected) throws DecompilerException {
       this.actions = loadActionsDataInternal(isK2Selected);
+      this.actionsK2 = isK2Selected;
+      this.otherActions = null;
+      this.subroutineCache.clear();
    }
 
    /**
@@ -168,14 +253,15 @@ public class FileDecompiler {
             if (settingsPath != null && !settingsPath.isEmpty()) {
                actionfile = new File(settingsPath);
                if (actionfile.isFile()) {
-                  System.out.println("[INFO] loadActionsDataInternal: READING nwscript file from settings: " + actionfile.getAbsolutePath() + " (K2=" + isK2Selected + ")");
-                  ActionsData result = new ActionsData(new BufferedReader(new FileReader(actionfile)));
-                  System.out.println("[INFO] loadActionsDataInternal: Read nwscript file: " + actionfile.getAbsolutePath());
+                  Logger.debug("loadActionsDataInternal: READING nwscript file from settings: " + actionfile.getAbsolutePath() + " (K2=" + isK2Selected + ")");
+                  ActionsData result = ActionsData.load(actionfile);
+                  Logger.debug("loadActionsDataInternal: Read nwscript file: " + actionfile.getAbsolutePath());
                   return result;
                }
             }
-         } catch (NoClassDefFoundError | Exception e) {
-            // Settings not available (CLI mode) or invalid path, fall through to default
+         } catch (LinkageError | Exception e) {
+            // Settings not available (CLI mode, or headless so the GUI class cannot initialize)
+            // or invalid path, fall through to default
          }
 
          // Use CompilerUtil.resolveToolsFile to search in proper order:
@@ -186,9 +272,9 @@ public class FileDecompiler {
          actionfile = CompilerUtil.resolveToolsFile(nwscriptFilename);
 
          if (actionfile.isFile()) {
-            System.out.println("[INFO] loadActionsDataInternal: READING nwscript file (resolved): " + actionfile.getAbsolutePath() + " (K2=" + isK2Selected + ")");
-            ActionsData result = new ActionsData(new BufferedReader(new FileReader(actionfile)));
-            System.out.println("[INFO] loadActionsDataInternal: Read nwscript file: " + actionfile.getAbsolutePath());
+            Logger.debug("loadActionsDataInternal: READING nwscript file (resolved): " + actionfile.getAbsolutePath() + " (K2=" + isK2Selected + ")");
+            ActionsData result = ActionsData.load(actionfile);
+            Logger.debug("loadActionsDataInternal: Read nwscript file: " + actionfile.getAbsolutePath());
             return result;
          } else {
             throw new DecompilerException("Error: cannot open actions file " + actionfile.getAbsolutePath() + ".\n" +
@@ -200,54 +286,6 @@ public class FileDecompiler {
       }
    }
 
-   /**
-    * Loads preferSwitches setting from configuration file if present.
-    * <p>
-    * Checks for {@code Prefer Switches} property in {@code .\config\ncsdecomp.conf}.
-    * If not found or unparseable, leaves the current value unchanged.
-    */
-   private static void loadPreferSwitchesFromConfig() {
-      try {
-         // Use getNCSDecompDirectory() to handle both JAR and EXE cases correctly
-         File baseDir = CompilerUtil.getNCSDecompDirectory();
-         File configDir = new File(baseDir, "config");
-         // Ensure config directory exists (though it may not have files yet)
-         if (!configDir.exists()) {
-            System.out.println("[INFO] loadPreferSwitchesFromConfig: CREATING config directory: " + configDir.getAbsolutePath());
-            if (!configDir.mkdirs()) {
-               System.err.println("[WARNING] loadPreferSwitchesFromConfig: Failed to create config directory: " + configDir.getAbsolutePath());
-            } else {
-               System.out.println("[INFO] loadPreferSwitchesFromConfig: Created config directory: " + configDir.getAbsolutePath());
-            }
-         }
-         File configFile = new File(configDir, "ncsdecomp.conf");
-         if (!configFile.exists()) {
-            configFile = new File(configDir, "dencs.conf");
-         }
-
-         if (configFile.exists() && configFile.isFile()) {
-            System.out.println("[INFO] loadPreferSwitchesFromConfig: READING config file: " + configFile.getAbsolutePath());
-            try (BufferedReader reader = new BufferedReader(new FileReader(configFile))) {
-               String line;
-               while ((line = reader.readLine()) != null) {
-                  line = line.trim();
-                  // Accept both legacy and canonical "Prefer Switches" spelling
-                  if (line.startsWith("Prefer Switches") || line.startsWith("preferSwitches")) {
-                     int equalsIdx = line.indexOf('=');
-                     if (equalsIdx >= 0) {
-                        String value = line.substring(equalsIdx + 1).trim();
-                        preferSwitches = value.equalsIgnoreCase("true") || value.equals("1");
-                     }
-                     break;
-                  }
-               }
-            }
-         }
-      } catch (Exception ex) {
-         // Silently ignore config file errors - use default value
-      }
-   }
-
    /**
     * Returns a map of variable data for a previously decompiled script.
     *
@@ -303,11 +341,12 @@ public class FileDecompiler {
       try {
          this.ensureActionsLoaded();
       } catch (DecompilerException e) {
-         System.out.println("Error loading actions data: " + e.getMessage());
+         Logger.info("Error loading actions data: " + e.getMessage());
          // Create comprehensive fallback stub for actions data loading failure
          FileDecompiler.FileScriptData errorData = new FileDecompiler.FileScriptData();
-         String expectedFile = isK2Selected ? "tsl_nwscript.nss" : "k1_nwscript.nss";
-         String stubCode = this.generateComprehensiveFallbackStub(file, "Actions data loading", e,
+         String expectedFile = this.getOptions().isK2() ? "tsl_nwscript.nss" : "k1_nwscript.nss";
+         String stubCode = this.generateComprehensiveFallbackStub(file, this.getOptions(), this.actions != null,
+               "Actions data loading", e,
                "The actions data table (nwscript.nss) is required to decompile NCS files.\n" + "Expected file: "
                      + expectedFile + "\n"
                      + "Please ensure the appropriate nwscript.nss file is available in tools/ directory, working directory, or configured path.");
@@ -317,7 +356,7 @@ public class FileDecompiler {
       }
       FileDecompiler.FileScriptData data = this.filedata.get(file);
       if (data == null) {
-         System.out.println("\n---> starting decompilation: " + file.getName() + " <---");
+         Logger.debug(() -> "starting decompilation: " + file.getName());
          try {
             data = this.decompileNcs(file);
             // decompileNcs now always returns a FileScriptData (never null)
@@ -326,10 +365,13 @@ public class FileDecompiler {
          } catch (Exception e) {
             // Last resort: create comprehensive fallback stub data so we always have
             // something to show
-            System.out.println("Critical error during decompilation, creating fallback stub: " + e.getMessage());
-            e.printStackTrace(System.out);
+            Logger.info("Critical error during decompilation, creating fallback stub: " + e.getMessage());
+            if (Logger.isDebugEnabled()) {
+               e.printStackTrace();
+            }
             data = new FileDecompiler.FileScriptData();
-            data.setCode(this.generateComprehensiveFallbackStub(file, "Initial decompilation attempt", e, null));
+            data.setCode(this.generateComprehensiveFallbackStub(file, this.getOptions(), this.actions != null,
+                  "Initial decompilation attempt", e, null));
             this.filedata.put(file, data);
          }
       }
@@ -340,15 +382,17 @@ public class FileDecompiler {
          String code = data.getCode();
          if (code == null || code.trim().isEmpty()) {
             // If code generation failed, provide comprehensive fallback stub
-            System.out.println("Warning: Generated code is empty, creating fallback stub.");
-            String fallback = this.generateComprehensiveFallbackStub(file, "Code generation - empty output", null,
+            Logger.warn("Generated code is empty, creating fallback stub.");
+            String fallback = this.generateComprehensiveFallbackStub(file, this.getOptions(), this.actions != null,
+                  "Code generation - empty output", null,
                   "The decompilation process completed but generated no source code. This may indicate the file contains no executable code or all code was marked as dead/unreachable.");
             data.setCode(fallback);
             return PARTIAL_COMPILE;
          }
       } catch (Exception e) {
-         System.out.println("Error during code generation (creating fallback stub): " + e.getMessage());
-         String fallback = this.generateComprehensiveFallbackStub(file, "Code generation", e,
+         Logger.info("Error during code generation (creating fallback stub): " + e.getMessage());
+         String fallback = this.generateComprehensiveFallbackStub(file, this.getOptions(), this.actions != null,
+               "Code generation", e,
                "An exception occurred while generating NSS source code from the decompiled parse tree.");
          data.setCode(fallback);
          return PARTIAL_COMPILE;
@@ -360,7 +404,7 @@ public class FileDecompiler {
          try {
             Logger.ncsdecomp("Attempting to capture original bytecode from NCS file...");
             // Use temp directory to avoid creating files outside temp without user consent
-            File olddecompiled = this.externalDecompile(file, isK2Selected, null);
+            File olddecompiled = this.externalDecompile(file, this.getOptions().isK2(), null);
             if (olddecompiled != null && olddecompiled.exists()) {
                String originalByteCode = this.readFile(olddecompiled);
                if (originalByteCode != null && !originalByteCode.trim().isEmpty()) {
@@ -494,7 +538,7 @@ public class FileDecompiler {
     * @return The compiled NCS file, or null if compilation failed
     */
    public File compileNssToNcs(File nssFile, File outputDir) {
-      return this.externalCompile(nssFile, isK2Selected, outputDir);
+      return this.externalCompile(nssFile, this.getOptions().isK2(), outputDir);
    }
 
    /**
@@ -558,7 +602,9 @@ public class FileDecompiler {
          this.filedata.remove(file);
       }
 
-      System.gc();
+      if (this.getOptions().gcPerFile()) {
+         System.gc();
+      }
    }
 
    /**
@@ -573,7 +619,9 @@ public class FileDecompiler {
       }
 
       this.filedata.clear();
-      System.gc();
+      if (this.getOptions().gcPerFile()) {
+         System.gc();
+      }
    }
 
    /**
@@ -581,13 +629,206 @@ public class FileDecompiler {
     * external tools.
     */
    public String decompileToString(File file) throws DecompilerException {
-      FileDecompiler.FileScriptData data = this.decompileNcs(file);
+      return this.decompileToString(file, null);
+   }
+
+   /**
+    * Decompiles NCS bytes that were already read from {@code file}, so batch callers can
+    * prefetch inputs on another thread. The file is only used for names and diagnostics.
+    *
+    * @param ncs contents of {@code file}, or null to read the file
+    */
+   public String decompileToString(File file, byte[] ncs) throws DecompilerException {
+      DecompileStats stats = new DecompileStats(new StageTimings(file.getName()));
+      this.lastStats = stats;
+      this.lastTimings = stats.timings();
+      return this.decompile(file.getName(), file, ncs, this.getOptions(), stats).code();
+   }
+
+   /**
+    * Decompiles an in-memory script, such as an entry mapped from a game archive, with the
+    * options of this decompiler. Unlike {@link #decompile(String, ByteBuffer, DecompilerOptions)}
+    * the {@code getLast*} accessors are updated, as for files. The buffer is not modified.
+    *
+    * @param name script name used in diagnostics and fallback stubs, e.g. "k_act_com.ncs"
+    */
+   public String decompileToString(String name, ByteBuffer ncs) throws DecompilerException {
+      DecompileStats stats = new DecompileStats(new StageTimings(name));
+      this.lastStats = stats;
+      this.lastTimings = stats.timings();
+      return this.decompile(name, null, toBytes(ncs), this.getOptions(), stats).code();
+   }
+
+   /**
+    * Decompiles an in-memory script without touching the file system or the per-file
+    * state of this decompiler: nothing is kept in {@link #filedata} and the
+    * {@code getLast*} accessors are left alone, so all analysis structures can be
+    * reclaimed as soon as the call returns. The bytes between the buffer's position and
+    * limit are decompiled; the buffer itself is not modified.
+    * <p>
+    * The actions table is the one for the game {@code options} selects. The cross-file
+    * subroutine cache is shared when that is this decompiler's own game and
+    * {@code options} enables it; the result cache is shared as usual.
+    *
+    * @param name    script name used in diagnostics and fallback stubs, e.g. "k_act_com.ncs"
+    * @param ncs     NCS bytecode
+    * @param options options for this call only
+    * @throws DecompilerException if nothing, not even a fallback stub, could be produced
+    */
+   public DecompileResult decompile(String name, ByteBuffer ncs, DecompilerOptions options) throws DecompilerException {
+      return this.decompile(name, null, toBytes(ncs), options, new DecompileStats(new StageTimings(name)));
+   }
+
+   /** The remaining bytes of a buffer, without copying when it wraps exactly an array. */
+   private static byte[] toBytes(ByteBuffer ncs) {
+      if (ncs.hasArray() && ncs.arrayOffset() == 0 && ncs.position() == 0 && ncs.remaining() == ncs.array().length) {
+         return ncs.array();
+      }
+      byte[] bytes = new byte[ncs.remaining()];
+      ncs.duplicate().get(bytes);
+      return bytes;
+   }
+
+   /**
+    * Replaces the callee of every call {@code name(} whose name is a key of {@code renames}.
+    * String literals and comments are copied unchanged, and the source is scanned once, so a
+    * new name that looks like another generic name is not renamed again.
+    */
+   static String renameCalls(String code, Map<String, String> renames) {
+      StringBuilder out = new StringBuilder(code.length() + 64);
+      int n = code.length();
+      int i = 0;
+      while (i < n) {
+         char c = code.charAt(i);
+         int end;
+         if (c == '"') {
+            end = i + 1;
+            while (end < n && code.charAt(end) != '"' && code.charAt(end) != '\n') {
+               end += code.charAt(end) == '\\' ? 2 : 1;
+            }
+            end = Math.min(end + 1, n);
+         } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+            end = code.indexOf('\n', i);
+            end = end < 0 ? n : end;
+         } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+            end = code.indexOf("*/", i + 2);
+            end = end < 0 ? n : end + 2;
+         } else if (Character.isJavaIdentifierStart(c)) {
+            end = i + 1;
+            while (end < n && Character.isJavaIdentifierPart(code.charAt(end))) {
+               end++;
+            }
+            String renamed = end < n && code.charAt(end) == '(' ? renames.get(code.substring(i, end)) : null;
+            if (renamed != null) {
+               out.append(renamed);
+               i = end;
+               continue;
+            }
+         } else if (Character.isDigit(c)) {
+            // Keep literals such as 1e5 or 0x1F whole so their tail is not read as a name
+            end = i + 1;
+            while (end < n && Character.isLetterOrDigit(code.charAt(end))) {
+               end++;
+            }
+         } else {
+            end = i + 1;
+         }
+         out.append(code, i, end);
+         i = end;
+      }
+      return out.toString();
+   }
+
+   /**
+    * Like {@link #decompile(String, ByteBuffer, DecompilerOptions)} for an unnamed script.
+    */
+   public DecompileResult decompile(ByteBuffer ncs, DecompilerOptions options) throws DecompilerException {
+      return this.decompile(IN_MEMORY_NAME, ncs, options);
+   }
+
+   /**
+    * Like {@link #decompile(String, ByteBuffer, DecompilerOptions)}, reading the script
+    * from {@code in} up to its end. The stream is not closed.
+    */
+   public DecompileResult decompile(String name, InputStream in, DecompilerOptions options)
+         throws DecompilerException, IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+         bytes.write(buffer, 0, n);
+      }
+      return this.decompile(name, ByteBuffer.wrap(bytes.toByteArray()), options);
+   }
+
+   /**
+    * Shared implementation of the public entry points: consults the result cache, runs
+    * the pipeline, generates code and fills in {@code stats}.
+    *
+    * @param name name the caller knows the script by, returned in the result
+    * @param file file the script was read from, or null for in-memory scripts
+    * @param ncs  the bytecode, or null to read {@code file}
+    */
+   private DecompileResult decompile(String name, File file, byte[] ncs, DecompilerOptions opts, DecompileStats stats)
+         throws DecompilerException {
+      StageTimings timings = stats.timings();
+      stats.setByteSize(ncs != null ? ncs.length : file.length());
+      ActionsData actions = this.actionsFor(opts);
+      ResultCache cache = this.services.resultCache();
+      String cacheKey = null;
+      // Exported signatures come from the analysis itself, so they bypass the cache
+      if (cache != null && this.services.signatureExport() == null && actions != null
+            && actions.getSourceHash() != null) {
+         timings.begin(StageTimings.CACHE);
+         try {
+            cacheKey = cache.key(ncs != null ? ncs : Files.readAllBytes(file.toPath()), actions.getSourceHash(), opts);
+         } catch (IOException e) {
+            throw new DecompilerException("Failed to read " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+         }
+         ResultCache.Entry hit = cache.get(cacheKey);
+         timings.end();
+         if (hit != null) {
+            stats.setCached(true);
+            stats.setOutcome(DecompileStats.SUCCESS, null);
+            this.recordProfile(stats);
+            return new DecompileResult(name, hit.code(), stats);
+         }
+      }
+
+      FileDecompiler.FileScriptData data = new FileContext(name, file, ncs, opts, actions, stats).decompile();
       if (data == null) {
-         throw new DecompilerException("Decompile failed for " + file.getAbsolutePath());
+         timings.end();
+         throw new DecompilerException("Decompile failed for " + (file != null ? file.getAbsolutePath() : name));
       }
 
+      // Incomplete data stopped in the stage that ran last
+      String stoppedIn = timings.lastStage();
+      timings.begin(StageTimings.GENERATE);
       data.generateCode();
-      return data.getCode();
+      timings.end();
+      if (data.isComplete()) {
+         stats.setOutcome(DecompileStats.SUCCESS, null);
+      } else {
+         stats.setOutcome(data.fixedCode || data.subs.isEmpty() ? DecompileStats.STUB : DecompileStats.PARTIAL,
+               stoppedIn);
+      }
+      // Fallback stubs and recovered partial output embed file details and are not final
+      Map<String, List<String>> decls = cacheKey != null && data.isComplete() ? data.getVariableDecls() : null;
+      String code = data.getCode();
+      if (opts.lean()) {
+         data.release();
+      }
+      this.recordProfile(stats);
+      if (decls != null) {
+         cache.put(cacheKey, code, decls);
+      }
+      return new DecompileResult(name, code, stats);
+   }
+
+   private void recordProfile(DecompileStats stats) {
+      if (this.services.profile() != null) {
+         this.services.profile().record(stats);
+      }
    }
 
    /**
@@ -604,20 +845,21 @@ public class FileDecompiler {
       File parent = output.getParentFile();
       if (parent != null) {
          if (!parent.exists()) {
-            System.out.println("[INFO] decompileToFile: CREATING directory: " + parent.getAbsolutePath());
+            Logger.info("decompileToFile: CREATING directory: " + parent.getAbsolutePath());
             if (!parent.mkdirs()) {
                throw new IOException("Failed to create output directory: " + parent.getAbsolutePath());
             }
-            System.out.println("[INFO] decompileToFile: Created directory: " + parent.getAbsolutePath());
+            Logger.info("decompileToFile: Created directory: " + parent.getAbsolutePath());
          }
       }
 
-      System.out.println("[INFO] decompileToFile: WRITING file: " + output.getAbsolutePath() + " (encoding: " + charset.name() + ", length: " + code.length() + " chars)");
+      Logger.info(() -> "decompileToFile: WRITING file: " + output.getAbsolutePath() + " (encoding: " + charset.name()
+            + ", length: " + code.length() + " chars)");
       try (BufferedWriter bw = new BufferedWriter(
             new java.io.OutputStreamWriter(new java.io.FileOutputStream(output), charset))) {
          bw.write(code);
       }
-      System.out.println("[INFO] decompileToFile: Wrote file: " + output.getAbsolutePath());
+      Logger.info(() -> "decompileToFile: Wrote file: " + output.getAbsolutePath());
    }
 
    /**
@@ -647,7 +889,7 @@ public class FileDecompiler {
          Logger.ncsdecomp("Decompiling original NCS file to capture bytecode...");
          Logger.startCompilerSection();
          // Use temp directory to avoid creating files outside temp without user consent
-         olddecompiled = this.externalDecompile(file, isK2Selected, null);
+         olddecompiled = this.externalDecompile(file, this.getOptions().isK2(), null);
          Logger.endSection();
          if (olddecompiled == null || !olddecompiled.exists()) {
             Logger.startErrorSection();
@@ -664,7 +906,7 @@ public class FileDecompiler {
          Logger.startCompilerSection();
          // Use same directory as input NSS file for output NCS (user has already chosen
          // this location via save dialog)
-         newcompiled = this.externalCompile(newfile, isK2Selected, newfile.getParentFile());
+         newcompiled = this.externalCompile(newfile, this.getOptions().isK2(), newfile.getParentFile());
          Logger.endSection();
          if (newcompiled == null || !newcompiled.exists()) {
             Logger.startErrorSection();
@@ -679,7 +921,7 @@ public class FileDecompiler {
          Logger.ncsdecomp("Decompiling newly compiled NCS file to capture bytecode...");
          Logger.startCompilerSection();
          // Use temp directory for pcode files (intermediate files, cleaned up after use)
-         newdecompiled = this.externalDecompile(newcompiled, isK2Selected, null);
+         newdecompiled = this.externalDecompile(newcompiled, this.getOptions().isK2(), null);
          Logger.endSection();
          if (newdecompiled == null || !newdecompiled.exists()) {
             Logger.startErrorSection();
@@ -786,13 +1028,13 @@ public class FileDecompiler {
             tempDir.mkdirs();
             System.out.println("[INFO] compileNss: Created directory: " + tempDir.getAbsolutePath());
          }
-         newcompiled = this.externalCompile(nssFile, isK2Selected, tempDir);
+         newcompiled = this.externalCompile(nssFile, this.getOptions().isK2(), tempDir);
          if (newcompiled == null) {
             return FAILURE;
          }
 
          // Use temp directory to avoid creating files outside temp without user consent
-         newdecompiled = this.externalDecompile(newcompiled, isK2Selected, null);
+         newdecompiled = this.externalDecompile(newcompiled, this.getOptions().isK2(), null);
          if (newdecompiled != null) {
             data.setNewByteCode(this.readFile(newdecompiled));
             return SUCCESS;
@@ -1141,6 +1383,7 @@ public class FileDecompiler {
     */
    private File getCompilerFile() {
       // Priority 1: Check if ncsdis.exe is preferred and available
+      boolean preferNcsdis = this.getOptions().preferNcsdis();
       if (preferNcsdis) {
          File ncsdisFile = getNcsdisFile();
          if (ncsdisFile != null && ncsdisFile.exists() && ncsdisFile.isFile()) {
@@ -1153,6 +1396,7 @@ public class FileDecompiler {
 
       // Fall back to nwnnsscomp.exe resolution
       // 1. CLI MODE: Use nwnnsscompPath if explicitly set via command-line argument
+      String nwnnsscompPath = this.getOptions().nwnnsscompPath();
       if (nwnnsscompPath != null && !nwnnsscompPath.trim().isEmpty()) {
          File cliCompiler = new File(nwnnsscompPath);
          if (cliCompiler.exists() && cliCompiler.isFile()) {
@@ -1211,6 +1455,7 @@ public class FileDecompiler {
     */
    private File getNcsdisFile() {
       // 1. Check explicit path
+      String ncsdisPath = this.getOptions().ncsdisPath();
       if (ncsdisPath != null && !ncsdisPath.trim().isEmpty()) {
          File ncsdisFile = new File(ncsdisPath);
          if (ncsdisFile.exists() && ncsdisFile.isFile()) {
@@ -1624,7 +1869,8 @@ public class FileDecompiler {
          File result = new File(actualOutputDir, baseName + ".ncs");
 
          // Use unified compiler execution wrapper - abstracts ALL compiler quirks
-         CompilerExecutionWrapper wrapper = new CompilerExecutionWrapper(compiler, file, result, k2);
+         CompilerExecutionWrapper wrapper = new CompilerExecutionWrapper(compiler, file, result, k2,
+               this.services.sandboxPool());
 
          try {
             // Prepare execution environment (handles include files, nwscript.nss, etc.)
@@ -1673,6 +1919,9 @@ public class FileDecompiler {
                   Logger.endSection();
                   return null;
                }
+            } catch (InterruptedIOException timedOut) {
+               // A hung compiler is not a registry problem; retrying would only hang again
+               throw timedOut;
             } catch (IOException ioEx) {
                System.out.println("[NCSDecomp] IOException during first compilation attempt: " + ioEx.getMessage());
                // Continue to try with registry spoofing if we have a spoofer available
@@ -1748,51 +1997,100 @@ public class FileDecompiler {
 
    /**
     * Executes the compiler and captures its output.
+    * <p>
+    * The process runs on the services' {@link CompilerProcessRunner}, which bounds how many
+    * compilers run at once and kills a compiler (with its children) that outlives the timeout.
+    * The wait for the result is bounded too, in case the runner's queue is backed up, and a
+    * compiler that timed out counts as a failed compile even if it left an output file.
     *
     * @param args Command-line arguments (first element is the executable)
     * @param workingDir Working directory for the process
     * @param envOverrides Environment variable overrides
-    * @return The captured compiler output (stdout + stderr combined)
+    * @return The captured compiler output, stdout and stderr interleaved as written
+    * @throws InterruptedIOException If the compiler timed out or the wait for it did
     * @throws IOException If process execution fails
     */
    private String executeCompilerAndCaptureOutput(String[] args, File workingDir, java.util.Map<String, String> envOverrides) throws IOException {
-      ProcessBuilder pb = new ProcessBuilder(args);
-      if (workingDir != null && workingDir.exists()) {
-         pb.directory(workingDir);
-      }
-      if (envOverrides != null && !envOverrides.isEmpty()) {
-         pb.environment().putAll(envOverrides);
+      CompilerProcessRunner runner = this.services.processRunner();
+      java.util.concurrent.CompletableFuture<CompilerProcessRunner.Result> pending = runner.submit(args, workingDir, envOverrides);
+      CompilerProcessRunner.Result result;
+      try {
+         long timeout = runner.getTimeoutMillis();
+         if (timeout > 0) {
+            // Queue time counts against the wait as well; allow for a full queue ahead of us
+            long wait = timeout * (1L + runner.getMaxConcurrent()) + 5000L;
+            result = pending.get(wait, java.util.concurrent.TimeUnit.MILLISECONDS);
+         } else {
+            result = pending.get();
+         }
+      } catch (java.util.concurrent.TimeoutException e) {
+         pending.cancel(false);
+         throw new InterruptedIOException("Gave up waiting for the compiler to be scheduled and finish");
+      } catch (InterruptedException e) {
+         pending.cancel(false);
+         Thread.currentThread().interrupt();
+         throw new IOException("Compiler process interrupted", e);
+      } catch (java.util.concurrent.ExecutionException e) {
+         Throwable cause = e.getCause() != null ? e.getCause() : e;
+         if (cause instanceof IOException) {
+            throw (IOException) cause;
+         }
+         throw new IOException("Compiler process failed: " + cause.getMessage(), cause);
       }
-      pb.redirectErrorStream(true);
-
-      Process proc = pb.start();
 
       // Capture output
       StringBuilder output = new StringBuilder();
-      try (java.io.BufferedReader reader = new java.io.BufferedReader(
-            new java.io.InputStreamReader(proc.getInputStream()))) {
-         String line;
-         while ((line = reader.readLine()) != null) {
+      String captured = result.output();
+      if (!captured.isEmpty()) {
+         for (String line : captured.split("\r?\n")) {
             output.append(line).append("\n");
             // Also print to console for user visibility with proper formatting
             Logger.compiler(line);
          }
       }
 
-      try {
-         int exitCode = proc.waitFor();
-         Logger.ncsdecomp("Compiler exit code: " + exitCode);
-      } catch (InterruptedException e) {
-         Thread.currentThread().interrupt();
-         throw new IOException("Compiler process interrupted", e);
+      if (result.timedOut()) {
+         throw new InterruptedIOException("Compiler timed out after " + runner.getTimeoutMillis() + " ms and was killed");
       }
-
+      Logger.ncsdecomp("Compiler exit code: " + result.exitCode());
       return output.toString();
    }
 
    private void ensureActionsLoaded() throws DecompilerException {
       if (this.actions == null) {
-         this.actions = loadActionsDataInternal(isK2Selected);
+         boolean k2 = this.getOptions().isK2();
+         this.actions = loadActionsDataInternal(k2);
+         this.actionsK2 = k2;
+      }
+   }
+
+   /**
+    * The actions table for the game {@code opts} selects: this decompiler's own table when it
+    * belongs to that game, otherwise the other game's table from the usual nwscript lookup.
+    * Returns null if no table can be found, which the pipeline turns into a fallback stub.
+    */
+   private ActionsData actionsFor(DecompilerOptions opts) {
+      ActionsData own = this.actions;
+      if (own != null && this.actionsK2 == opts.isK2()) {
+         return own;
+      }
+      try {
+         if (own == null) {
+            this.ensureActionsLoaded();
+            if (this.actionsK2 == opts.isK2()) {
+               return this.actions;
+            }
+         }
+         ActionsData other = this.otherActions;
+         if (other == null) {
+            // ActionsData.load shares tables by content hash, so this parses each nwscript once per process
+            other = loadActionsDataInternal(opts.isK2());
+            this.otherActions = other;
+         }
+         return other;
+      } catch (DecompilerException e) {
+         Logger.debug(() -> "actionsFor: no actions table for " + (opts.isK2() ? "TSL" : "K1") + ": " + e.getMessage());
+         return null;
       }
    }
 
@@ -1820,13 +2118,28 @@ public class FileDecompiler {
     * complete as possible.
     *
     * @param file           The file being decompiled
+    * @param opts           Options the file was being decompiled with
+    * @param actionsLoaded  Whether an actions table was available for the file
     * @param errorStage     Description of the stage where the error occurred
     * @param exception      The exception that occurred (may be null)
     * @param additionalInfo Additional context information (may be null)
     * @return A comprehensive fallback stub string
     */
-   private String generateComprehensiveFallbackStub(File file, String errorStage, Exception exception,
-         String additionalInfo) {
+   private String generateComprehensiveFallbackStub(File file, DecompilerOptions opts, boolean actionsLoaded,
+         String errorStage, Exception exception, String additionalInfo) {
+      return this.generateComprehensiveFallbackStub(file != null ? file.getName() : null, file, null, opts,
+            actionsLoaded, errorStage, exception, additionalInfo);
+   }
+
+   /**
+    * Like {@link #generateComprehensiveFallbackStub(File, DecompilerOptions, boolean, String, Exception, String)},
+    * describing {@code ncs} when the bytecode was supplied by the caller rather than read from
+    * {@code file}, which is then null for in-memory scripts.
+    *
+    * @param name name the caller knows the script by
+    */
+   private String generateComprehensiveFallbackStub(String name, File file, byte[] ncs, DecompilerOptions opts,
+         boolean actionsLoaded, String errorStage, Exception exception, String additionalInfo) {
       StringBuilder stub = new StringBuilder();
       String newline = System.getProperty("line.separator");
 
@@ -1838,7 +2151,11 @@ public class FileDecompiler {
 
       // File information
       stub.append("// File Information:").append(newline);
-      if (file != null) {
+      if (ncs != null) {
+         stub.append("//   Name: ").append(name).append(newline);
+         stub.append("//   Path: ").append(file != null ? file.getAbsolutePath() : "(in memory)").append(newline);
+         stub.append("//   Size: ").append(ncs.length).append(" bytes").append(newline);
+      } else if (file != null) {
          stub.append("//   Name: ").append(file.getName()).append(newline);
          stub.append("//   Path: ").append(file.getAbsolutePath()).append(newline);
          if (file.exists()) {
@@ -1900,10 +2217,10 @@ public class FileDecompiler {
 
       // Decompiler configuration
       stub.append("// Decompiler Configuration:").append(newline);
-      stub.append("//   Game Mode: ").append(isK2Selected ? "KotOR 2 (TSL)" : "KotOR 1").append(newline);
-      stub.append("//   Prefer Switches: ").append(preferSwitches).append(newline);
-      stub.append("//   Strict Signatures: ").append(strictSignatures).append(newline);
-      stub.append("//   Actions Data Loaded: ").append(this.actions != null).append(newline);
+      stub.append("//   Game Mode: ").append(opts.isK2() ? "KotOR 2 (TSL)" : "KotOR 1").append(newline);
+      stub.append("//   Prefer Switches: ").append(opts.preferSwitches()).append(newline);
+      stub.append("//   Strict Signatures: ").append(opts.strictSignatures()).append(newline);
+      stub.append("//   Actions Data Loaded: ").append(actionsLoaded).append(newline);
       stub.append(newline);
 
       // System information
@@ -1920,12 +2237,12 @@ public class FileDecompiler {
 
       // Recommendations
       stub.append("// Recommendations:").append(newline);
-      if (file != null && file.exists() && file.length() == 0) {
+      if (ncs != null ? ncs.length == 0 : file != null && file.exists() && file.length() == 0) {
          stub.append("//   - File is empty (0 bytes). This may indicate a corrupted or incomplete file.")
                .append(newline);
-      } else if (file != null && !file.exists()) {
+      } else if (ncs == null && file != null && !file.exists()) {
          stub.append("//   - File does not exist. Verify the file path is correct.").append(newline);
-      } else if (this.actions == null) {
+      } else if (!actionsLoaded) {
          stub.append("//   - Actions data not loaded. Ensure k1_nwscript.nss or tsl_nwscript.nss is available.")
                .append(newline);
       } else {
@@ -1965,716 +2282,926 @@ public class FileDecompiler {
     *         null on fatal error
     */
    private FileDecompiler.FileScriptData decompileNcs(File file) {
-      FileDecompiler.FileScriptData data = null;
-      String commands = null;
-      SetDestinations setdest = null;
-      DoTypes dotypes = null;
-      Start ast = null;
-      NodeAnalysisData nodedata = null;
-      SubroutineAnalysisData subdata = null;
-      Iterator<ASubroutine> subs = null;
-      ASubroutine sub = null;
-      ASubroutine mainsub = null;
-      FlattenSub flatten = null;
-      DoGlobalVars doglobs = null;
-      CleanupPass cleanpass = null;
-      MainPass mainpass = null;
-      DestroyParseTree destroytree = null;
-      if (this.actions == null) {
-         System.out.println("null action! Creating fallback stub.");
-         // Return comprehensive stub instead of null
-         FileDecompiler.FileScriptData stub = new FileDecompiler.FileScriptData();
-         String expectedFile = isK2Selected ? "tsl_nwscript.nss" : "k1_nwscript.nss";
-         String stubCode = this.generateComprehensiveFallbackStub(file, "Actions data loading", null,
-               "The actions data table (nwscript.nss) is required to decompile NCS files.\n" + "Expected file: "
-                     + expectedFile + "\n"
-                     + "Please ensure the appropriate nwscript.nss file is available in tools/ directory, working directory, or configured path.");
-         stub.setCode(stubCode);
-         return stub;
+      DecompileStats stats = new DecompileStats(new StageTimings(file.getName()));
+      this.lastStats = stats;
+      this.lastTimings = stats.timings();
+      stats.setByteSize(file.length());
+      DecompilerOptions opts = this.getOptions();
+      return new FileContext(file.getName(), file, null, opts, this.actionsFor(opts), stats).decompile();
+   }
+
+   /**
+    * Provides a type-safe view over subdata.getSubroutines(), validating elements
+    * at runtime.
+    */
+   private Iterable<ASubroutine> subIterable(SubroutineAnalysisData subdata) {
+      List<ASubroutine> list = new ArrayList<>();
+      Iterator<ASubroutine> raw = subdata.getSubroutines();
+
+      while (raw.hasNext()) {
+         ASubroutine sub = raw.next();
+         if (sub == null) {
+            throw new IllegalStateException("Unexpected null element in subroutine list");
+         }
+         list.add(sub);
       }
 
-      try {
-         // Verify file exists before reading
-         if (!file.exists() || !file.isFile()) {
-            System.err.println("[ERROR] decompileNcs: File does not exist or is not a file: " + file.getAbsolutePath());
-            return null;
+      return list;
+   }
+
+   private void enforceStrictSignatures(SubroutineAnalysisData subdata, NodeAnalysisData nodedata, DecompilerOptions opts) {
+      if (!opts.strictSignatures()) {
+         return;
+      }
+
+      for (ASubroutine iterSub : this.subIterable(subdata)) {
+         SubroutineState state = subdata.getState(iterSub);
+         if (!state.isTotallyPrototyped()) {
+            Logger.info("Strict signatures: unresolved signature for subroutine at "
+                  + Integer.toString(nodedata.getPos(iterSub)) + " (continuing)");
+         }
+      }
+   }
+
+   /**
+    * Everything one decompilation owns. The analysis state of a file (decoded listing,
+    * parse tree, node and subroutine tables, passes) is reachable only from this object
+    * while it runs, so it is released by simply dropping the context; what outlives it is
+    * the returned {@link FileScriptData}. Tearing the parse tree apart node by node and
+    * forcing a garbage collection are left to {@link DecompilerOptions#destroyParseTrees()}
+    * and {@link DecompilerOptions#gcPerFile()}.
+    */
+   private final class FileContext {
+      private final String name;
+      /** File the script is read from, or null when {@link #ncs} came from memory. */
+      private final File file;
+      private final byte[] ncs;
+      private final DecompilerOptions opts;
+      private final DecompileStats stats;
+      private final StageTimings timings;
+      private final DecompileBudget budget;
+      /** Actions table of the game {@link #opts} selects, or null if none could be loaded. */
+      private final ActionsData actions;
+      private final SubroutineCache subroutineCache;
+      private FileDecompiler.FileScriptData data;
+      private String commands;
+      private Start ast;
+      private NodeAnalysisData nodedata;
+      private SubroutineAnalysisData subdata;
+      private ASubroutine mainsub;
+      private DoGlobalVars doglobs;
+
+      FileContext(String name, File file, byte[] ncs, DecompilerOptions opts, ActionsData actions,
+            DecompileStats stats) {
+         this.name = name;
+         this.file = file;
+         this.ncs = ncs;
+         this.opts = opts;
+         this.stats = stats;
+         this.timings = stats.timings();
+         this.budget = new DecompileBudget(opts.timeBudgetMillis(), opts.stepBudget());
+         this.actions = actions;
+         // The shared prototype cache only holds for the decompiler's own table
+         this.subroutineCache = actions == FileDecompiler.this.actions ? FileDecompiler.this.subroutineCache
+               : new SubroutineCache();
+      }
+
+      /** The file path for diagnostics, or the script name for in-memory scripts. */
+      private String where() {
+         return this.file != null ? this.file.getAbsolutePath() : this.name;
+      }
+
+      /**
+       * Runs the pipeline. Returns the script data, a fallback stub, or null if the file
+       * does not exist.
+       */
+      FileDecompiler.FileScriptData decompile() {
+         SetDestinations setdest = null;
+         DoTypes dotypes = null;
+         Iterator<ASubroutine> subs = null;
+         ASubroutine sub = null;
+         FlattenSub flatten = null;
+         CleanupPass cleanpass = null;
+         MainPass mainpass = null;
+         if (this.actions == null) {
+            Logger.info("null action! Creating fallback stub.");
+            // Return comprehensive stub instead of null
+            FileDecompiler.FileScriptData stub = new FileDecompiler.FileScriptData();
+            String expectedFile = this.opts.isK2() ? "tsl_nwscript.nss" : "k1_nwscript.nss";
+            String stubCode = FileDecompiler.this.generateComprehensiveFallbackStub(this.name, file, ncs, this.opts, this.actions != null,
+                  "Actions data loading", null,
+                  "The actions data table (nwscript.nss) is required to decompile NCS files.\n" + "Expected file: "
+                        + expectedFile + "\n"
+                        + "Please ensure the appropriate nwscript.nss file is available in tools/ directory, working directory, or configured path.");
+            stub.setCode(stubCode);
+            return stub;
          }
-         data = new FileDecompiler.FileScriptData();
 
-         // Decode bytecode - wrap in try-catch to handle corrupted files
          try {
-            Logger.debug("decompileNcs: starting decode for " + file.getName());
-            System.out.println("[INFO] decompileNcs: READING NCS file for decompilation: " + file.getAbsolutePath());
-            commands = new Decoder(new BufferedInputStream(new FileInputStream(file)), this.actions).decode();
-            System.out.println("[INFO] decompileNcs: Read NCS file: " + file.getAbsolutePath());
-            Logger.debug("decompileNcs: decode successful, commands length="
-                  + (commands != null ? commands.length() : 0));
-         } catch (Exception decodeEx) {
-            Logger.debug("decompileNcs: decode FAILED - " + decodeEx.getMessage());
-            System.out.println("Error during bytecode decoding: " + decodeEx.getMessage());
-            // Create comprehensive fallback stub for decoding errors
-            long fileSize = file.exists() ? file.length() : -1;
-            String fileInfo = "File size: " + fileSize + " bytes";
-            if (fileSize > 0 && file.exists() && file.isFile()) {
-               System.out.println("[INFO] decompileNcs: READING file header: " + file.getAbsolutePath());
-               try (FileInputStream fis = new FileInputStream(file)) {
-                  byte[] header = new byte[Math.min(16, (int) fileSize)];
-                  int read = fis.read(header);
-                  if (read > 0) {
-                     fileInfo += "\nFile header (hex): " + bytesToHex(header, read);
+            // Verify file exists before reading
+            if (ncs == null && (!file.exists() || !file.isFile())) {
+               Logger.error("decompileNcs: File does not exist or is not a file: " + file.getAbsolutePath());
+               return null;
+            }
+            data = new FileDecompiler.FileScriptData();
+
+            // Decode bytecode - wrap in try-catch to handle corrupted files
+            timings.begin(StageTimings.DECODE);
+            try {
+               Logger.debug(() -> "decompileNcs: starting decode for " + this.name);
+               Decoder decoder;
+               if (ncs != null) {
+                  decoder = new Decoder(new BufferedInputStream(new ByteArrayInputStream(ncs)), this.actions);
+                  commands = decoder.decode();
+               } else {
+                  Logger.info(() -> "decompileNcs: READING NCS file for decompilation: " + file.getAbsolutePath());
+                  decoder = new Decoder(new BufferedInputStream(new FileInputStream(file)), this.actions);
+                  commands = decoder.decode();
+                  Logger.info(() -> "decompileNcs: Read NCS file: " + file.getAbsolutePath());
+               }
+               stats.setInstructions(decoder.getCommandCount());
+               if (Logger.isDebugEnabled()) {
+                  Logger.debug("decompileNcs: decode successful, commands length="
+                        + (commands != null ? commands.length() : 0));
+               }
+            } catch (Exception decodeEx) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.debug(() -> "decompileNcs: decode FAILED - " + decodeEx.getMessage());
+               Logger.info("Error during bytecode decoding: " + decodeEx.getMessage());
+               // Create comprehensive fallback stub for decoding errors
+               long fileSize = ncs != null ? ncs.length : file.exists() ? file.length() : -1;
+               String fileInfo = "File size: " + fileSize + " bytes";
+               if (ncs != null && ncs.length > 0) {
+                  fileInfo += "\nFile header (hex): " + bytesToHex(ncs, Math.min(16, ncs.length));
+               } else if (fileSize > 0 && file.exists() && file.isFile()) {
+                  Logger.info(() -> "decompileNcs: READING file header: " + file.getAbsolutePath());
+                  try (FileInputStream fis = new FileInputStream(file)) {
+                     byte[] header = new byte[Math.min(16, (int) fileSize)];
+                     int read = fis.read(header);
+                     if (read > 0) {
+                        fileInfo += "\nFile header (hex): " + bytesToHex(header, read);
+                     }
+                  } catch (Exception ignored) {
                   }
-               } catch (Exception ignored) {
                }
+               String stub = FileDecompiler.this.generateComprehensiveFallbackStub(this.name, file, ncs, this.opts, this.actions != null,
+                     "Bytecode decoding", decodeEx, fileInfo);
+               data.setCode(stub);
+               return data;
             }
-            String stub = this.generateComprehensiveFallbackStub(file, "Bytecode decoding", decodeEx, fileInfo);
-            data.setCode(stub);
-            return data;
-         }
 
-         // Parse commands - wrap in try-catch to handle parse errors, but try to recover
-         try {
-            System.err.println(
-                  "DEBUG decompileNcs: starting parse, commands length=" + (commands != null ? commands.length() : 0));
-            ast = new Parser(new Lexer(new PushbackReader(new StringReader(commands), 1024))).parse();
-            Logger.debug("decompileNcs: parse successful");
-         } catch (Exception parseEx) {
-            Logger.debug("decompileNcs: parse FAILED - " + parseEx.getMessage());
-            System.out.println("Error during parsing: " + parseEx.getMessage());
-            System.out.println("Attempting to recover by trying partial parsing strategies...");
-
-            // Try to recover: attempt to parse in chunks or with relaxed rules
-            ast = null;
+            // Parse commands - wrap in try-catch to handle parse errors, but try to recover
+            timings.begin(StageTimings.PARSE);
+            budget.check(StageTimings.PARSE);
             try {
-               // Strategy 1: Try parsing with a larger buffer
-               System.out.println("Trying parse with larger buffer...");
-               ast = new Parser(new Lexer(new PushbackReader(new StringReader(commands), 2048))).parse();
-               System.out.println("Successfully recovered parse with larger buffer.");
-            } catch (Exception e1) {
-               System.out.println("Larger buffer parse also failed: " + e1.getMessage());
-               // Strategy 2: Try to extract what we can and create minimal structure
-               // If we have decoded commands, we can at least create a basic structure
-               if (commands != null && commands.length() > 0) {
-                  System.out.println("Attempting to create minimal structure from decoded commands...");
-                  try {
-                     // Try to find subroutine boundaries in the commands string
-                     // This is a heuristic recovery - look for common patterns
-                     String[] lines = commands.split("\n");
-                     int subCount = 0;
-                     for (String line : lines) {
-                        if (line.trim().startsWith("sub") || line.trim().startsWith("function")) {
-                           subCount++;
+               if (Logger.isDebugEnabled()) {
+                  Logger.debug(() -> "decompileNcs: starting parse, commands length=" + (commands != null ? commands.length() : 0));
+               }
+               ast = new Parser(new Lexer(new PushbackReader(new StringReader(commands), 1024)), !opts.lean()).parse();
+               Logger.debug("decompileNcs: parse successful");
+            } catch (Exception parseEx) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.debug(() -> "decompileNcs: parse FAILED - " + parseEx.getMessage());
+               Logger.info("Error during parsing: " + parseEx.getMessage());
+               Logger.debug("Attempting to recover by trying partial parsing strategies...");
+
+               // Try to recover: attempt to parse in chunks or with relaxed rules
+               ast = null;
+               try {
+                  // Strategy 1: Try parsing with a larger buffer
+                  Logger.debug("Trying parse with larger buffer...");
+                  ast = new Parser(new Lexer(new PushbackReader(new StringReader(commands), 2048)), !opts.lean()).parse();
+                  Logger.debug("Successfully recovered parse with larger buffer.");
+               } catch (Exception e1) {
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Larger buffer parse also failed: " + e1.getMessage());
+                  // Strategy 2: Try to extract what we can and create minimal structure
+                  // If we have decoded commands, we can at least create a basic structure
+                  if (commands != null && commands.length() > 0) {
+                     Logger.debug("Attempting to create minimal structure from decoded commands...");
+                     try {
+                        // Try to find subroutine boundaries in the commands string
+                        // This is a heuristic recovery - look for common patterns
+                        String[] lines = commands.split("\n");
+                        int subCount = 0;
+                        for (String line : lines) {
+                           if (line.trim().startsWith("sub") || line.trim().startsWith("function")) {
+                              subCount++;
+                           }
                         }
-                     }
 
-                     // If we found some structure, try to continue with minimal setup
-                     if (subCount > 0) {
-                        System.out.println("Detected " + subCount
-                              + " potential subroutines in decoded commands, but full parse failed.");
-                        // We'll fall through to create a stub, but with better information
+                        // If we found some structure, try to continue with minimal setup
+                        if (subCount > 0) {
+                           Logger.debug("Detected " + subCount
+                                 + " potential subroutines in decoded commands, but full parse failed.");
+                           // We'll fall through to create a stub, but with better information
+                        }
+                     } catch (Exception e2) {
+                        stats.count(DecompileStats.RECOVERIES);
+                        Logger.info("Recovery attempt failed: " + e2.getMessage());
                      }
-                  } catch (Exception e2) {
-                     System.out.println("Recovery attempt failed: " + e2.getMessage());
                   }
                }
-            }
 
-            // If we still don't have an AST, create comprehensive stub but preserve
-            // commands for potential manual recovery
-            if (ast == null) {
-               String commandsPreview = "none";
-               if (commands != null && commands.length() > 0) {
-                  int previewLength = Math.min(1000, commands.length());
-                  commandsPreview = commands.substring(0, previewLength);
-                  if (commands.length() > previewLength) {
-                     commandsPreview += "\n... (truncated, total length: " + commands.length() + " characters)";
+               // If we still don't have an AST, create comprehensive stub but preserve
+               // commands for potential manual recovery
+               if (ast == null) {
+                  String commandsPreview = "none";
+                  if (commands != null && commands.length() > 0) {
+                     int previewLength = Math.min(1000, commands.length());
+                     commandsPreview = commands.substring(0, previewLength);
+                     if (commands.length() > previewLength) {
+                        commandsPreview += "\n... (truncated, total length: " + commands.length() + " characters)";
+                     }
                   }
+                  String additionalInfo = "Bytecode was successfully decoded but parsing failed.\n"
+                        + "Decoded commands length: " + (commands != null ? commands.length() : 0) + " characters\n"
+                        + "Decoded commands preview:\n" + commandsPreview + "\n\n"
+                        + "RECOVERY NOTE: The decoded commands are available but could not be parsed into an AST.\n"
+                        + "This may indicate malformed bytecode or an unsupported format variant.";
+                  String stub = FileDecompiler.this.generateComprehensiveFallbackStub(this.name, file, ncs, this.opts, this.actions != null,
+                        "Parsing decoded bytecode", parseEx,
+                        additionalInfo);
+                  data.setCode(stub);
+                  return data;
                }
-               String additionalInfo = "Bytecode was successfully decoded but parsing failed.\n"
-                     + "Decoded commands length: " + (commands != null ? commands.length() : 0) + " characters\n"
-                     + "Decoded commands preview:\n" + commandsPreview + "\n\n"
-                     + "RECOVERY NOTE: The decoded commands are available but could not be parsed into an AST.\n"
-                     + "This may indicate malformed bytecode or an unsupported format variant.";
-               String stub = this.generateComprehensiveFallbackStub(file, "Parsing decoded bytecode", parseEx,
-                     additionalInfo);
-               data.setCode(stub);
-               return data;
+               // If we recovered an AST, continue with decompilation
+               Logger.debug("Continuing decompilation with recovered parse tree.");
             }
-            // If we recovered an AST, continue with decompilation
-            System.out.println("Continuing decompilation with recovered parse tree.");
-         }
-
-         // Analysis passes - wrap in try-catch to allow partial recovery
-         nodedata = new NodeAnalysisData();
-         subdata = new SubroutineAnalysisData(nodedata);
-
-         try {
-            ast.apply(new SetPositions(nodedata));
-         } catch (Exception e) {
-            System.out.println("Error in SetPositions, continuing with partial positions: " + e.getMessage());
-         }
 
-         try {
-            setdest = new SetDestinations(ast, nodedata, subdata);
-            ast.apply(setdest);
-         } catch (Exception e) {
-            System.out
-                  .println("Error in SetDestinations, continuing without destination resolution: " + e.getMessage());
-            setdest = null;
-         }
+            // Analysis passes - wrap in try-catch to allow partial recovery
+            timings.begin(StageTimings.ANALYSIS);
+            budget.check(StageTimings.ANALYSIS);
+            nodedata = new NodeAnalysisData();
+            subdata = new SubroutineAnalysisData(nodedata);
 
-         try {
-            if (setdest != null) {
-               ast.apply(new SetDeadCode(nodedata, subdata, setdest.getOrigins()));
-            } else {
-               // Try without origins if setdest failed
-               ast.apply(new SetDeadCode(nodedata, subdata, null));
+            try {
+               ast.apply(new SetPositions(nodedata));
+               stats.add(DecompileStats.NODES, nodedata.size());
+               timings.setNodes(nodedata.size());
+            } catch (Exception e) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error in SetPositions, continuing with partial positions: " + e.getMessage());
             }
-         } catch (Exception e) {
-            System.out.println("Error in SetDeadCode, continuing without dead code analysis: " + e.getMessage());
-         }
 
-         if (setdest != null) {
+            timings.begin(StageTimings.DESTINATIONS);
             try {
-               setdest.done();
+               setdest = new SetDestinations(ast, nodedata, subdata);
+               ast.apply(setdest);
             } catch (Exception e) {
-               System.out.println("Error finalizing SetDestinations: " + e.getMessage());
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error in SetDestinations, continuing without destination resolution: " + e.getMessage());
+               setdest = null;
             }
-            setdest = null;
-         }
 
-         try {
-            subdata.splitOffSubroutines(ast);
-            Logger.debug("splitOffSubroutines: success, numSubs=" + subdata.numSubs());
-         } catch (Exception e) {
-            Logger.debug("splitOffSubroutines: ERROR - " + e.getMessage());
-            e.printStackTrace(System.err);
-            System.out.println("Error splitting subroutines, attempting to continue: " + e.getMessage());
-            // Try to get main sub at least
+            timings.begin(StageTimings.DEADCODE);
             try {
-               mainsub = subdata.getMainSub();
-               System.err
-                     .println("DEBUG splitOffSubroutines: recovered mainsub=" + (mainsub != null ? "found" : "null"));
-            } catch (Exception e2) {
-               Logger.debug("splitOffSubroutines: could not recover mainsub - " + e2.getMessage());
-               System.out.println("Could not recover main subroutine: " + e2.getMessage());
-            }
-         }
-         ast = null;
-         // Flattening - try to recover if main sub is missing
-         try {
-            mainsub = subdata.getMainSub();
-         } catch (Exception e) {
-            System.out.println("Error getting main subroutine: " + e.getMessage());
-            mainsub = null;
-         }
-
-         if (mainsub != null) {
-            try {
-               flatten = new FlattenSub(mainsub, nodedata);
-               mainsub.apply(flatten);
+               if (setdest != null) {
+                  ast.apply(new SetDeadCode(nodedata, subdata, setdest.getOrigins()));
+               } else {
+                  // Try without origins if setdest failed
+                  ast.apply(new SetDeadCode(nodedata, subdata, null));
+               }
             } catch (Exception e) {
-               System.out.println("Error flattening main subroutine: " + e.getMessage());
-               flatten = null;
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error in SetDeadCode, continuing without dead code analysis: " + e.getMessage());
             }
 
-            if (flatten != null) {
+            if (setdest != null) {
                try {
-                  for (ASubroutine iterSub : this.subIterable(subdata)) {
-                     try {
-                        flatten.setSub(iterSub);
-                        iterSub.apply(flatten);
-                     } catch (Exception e) {
-                        System.out.println("Error flattening subroutine, skipping: " + e.getMessage());
-                        // Continue with other subroutines
-                     }
-                  }
+                  setdest.done();
                } catch (Exception e) {
-                  System.out.println("Error iterating subroutines during flattening: " + e.getMessage());
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error finalizing SetDestinations: " + e.getMessage());
                }
+               setdest = null;
+            }
 
+            timings.begin(StageTimings.ANALYSIS);
+            try {
+               subdata.splitOffSubroutines(ast);
+               if (Logger.isDebugEnabled()) {
+                  Logger.debug(() -> "splitOffSubroutines: success, numSubs=" + subdata.numSubs());
+               }
+            } catch (Exception e) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.debug(() -> "splitOffSubroutines: ERROR - " + e.getMessage());
+               if (Logger.isDebugEnabled()) {
+                  e.printStackTrace();
+               }
+               Logger.info("Error splitting subroutines, attempting to continue: " + e.getMessage());
+               // Try to get main sub at least
                try {
-                  flatten.done();
-               } catch (Exception e) {
-                  System.out.println("Error finalizing flatten: " + e.getMessage());
+                  mainsub = subdata.getMainSub();
+                  final boolean recovered = mainsub != null;
+                  Logger.debug(() -> "splitOffSubroutines: recovered mainsub=" + (recovered ? "found" : "null"));
+               } catch (Exception e2) {
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.debug(() -> "splitOffSubroutines: could not recover mainsub - " + e2.getMessage());
+                  Logger.info("Could not recover main subroutine: " + e2.getMessage());
                }
-               flatten = null;
             }
-         } else {
-            System.out.println("Warning: No main subroutine available, continuing with partial decompilation.");
-         }
+            ast = null;
+            // Flattening - try to recover if main sub is missing
+            try {
+               mainsub = subdata.getMainSub();
+            } catch (Exception e) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error getting main subroutine: " + e.getMessage());
+               mainsub = null;
+            }
 
-         // Process globals - recover if this fails
-         try {
-            sub = subdata.getGlobalsSub();
-            if (sub != null) {
+            if (mainsub != null) {
                try {
-                  doglobs = new DoGlobalVars(nodedata, subdata);
-                  sub.apply(doglobs);
-                  cleanpass = new CleanupPass(doglobs.getScriptRoot(), nodedata, subdata, doglobs.getState());
-                  cleanpass.apply();
-                  subdata.setGlobalStack(doglobs.getStack());
-                  subdata.globalState(doglobs.getState());
-                  cleanpass.done();
+                  flatten = new FlattenSub(mainsub, nodedata);
+                  mainsub.apply(flatten);
                } catch (Exception e) {
-                  System.out.println("Error processing globals, continuing without globals: " + e.getMessage());
-                  if (doglobs != null) {
-                     try {
-                        doglobs.done();
-                     } catch (Exception e2) {
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error flattening main subroutine: " + e.getMessage());
+                  flatten = null;
+               }
+
+               if (flatten != null) {
+                  try {
+                     for (ASubroutine iterSub : FileDecompiler.this.subIterable(subdata)) {
+                        try {
+                           flatten.setSub(iterSub);
+                           iterSub.apply(flatten);
+                        } catch (Exception e) {
+                           stats.count(DecompileStats.RECOVERIES);
+                           Logger.info("Error flattening subroutine, skipping: " + e.getMessage());
+                           // Continue with other subroutines
+                        }
                      }
+                  } catch (Exception e) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Error iterating subroutines during flattening: " + e.getMessage());
                   }
-                  doglobs = null;
+
+                  try {
+                     flatten.done();
+                  } catch (Exception e) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Error finalizing flatten: " + e.getMessage());
+                  }
+                  flatten = null;
                }
+            } else {
+               Logger.warn("No main subroutine available, continuing with partial decompilation.");
             }
-         } catch (Exception e) {
-            System.out.println("Error getting globals subroutine: " + e.getMessage());
-         }
-
-         // Prototype engine - recover if this fails
-         try {
-            PrototypeEngine proto = new PrototypeEngine(nodedata, subdata, this.actions,
-                  FileDecompiler.strictSignatures);
-            proto.run();
-         } catch (Exception e) {
-            System.out.println("Error in prototype engine, continuing with partial prototypes: " + e.getMessage());
-         }
 
-         // Type analysis - recover if main sub typing fails
-         if (mainsub != null) {
+            // Process globals - recover if this fails
+            timings.begin(StageTimings.GLOBALS);
+            budget.check(StageTimings.GLOBALS);
             try {
-               dotypes = new DoTypes(subdata.getState(mainsub), nodedata, subdata, this.actions, false);
-               mainsub.apply(dotypes);
+               sub = subdata.getGlobalsSub();
+               if (sub != null) {
+                  try {
+                     doglobs = new DoGlobalVars(nodedata, subdata, opts);
+                     sub.apply(doglobs);
+                     cleanpass = new CleanupPass(doglobs.getScriptRoot(), nodedata, subdata, doglobs.getState());
+                     cleanpass.apply();
+                     subdata.setGlobalStack(doglobs.getStack());
+                     subdata.globalState(doglobs.getState());
+                     cleanpass.done();
+                  } catch (Exception e) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Error processing globals, continuing without globals: " + e.getMessage());
+                     if (doglobs != null) {
+                        try {
+                           doglobs.done();
+                        } catch (Exception e2) {
+                        }
+                     }
+                     doglobs = null;
+                  }
+               }
+            } catch (Exception e) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error getting globals subroutine: " + e.getMessage());
+            }
 
+            timings.begin(StageTimings.PROTOTYPE);
+            budget.check(StageTimings.PROTOTYPE);
+            if (opts.subroutineCache() || opts.signatureDatabase() != null) {
                try {
-                  dotypes.assertStack();
+                  final SignatureDatabase library = opts.signatureDatabase();
+                  final boolean useCache = opts.subroutineCache();
+                  Map<Byte, SubroutineSignature> known = SubroutineFingerprint.applyKnown(commands, nodedata, subdata,
+                        fingerprint -> {
+                           SubroutineSignature sig = library != null ? library.find(fingerprint) : null;
+                           return sig == null && useCache ? this.subroutineCache.find(fingerprint) : sig;
+                        });
+                  for (Map.Entry<Byte, SubroutineSignature> e : known.entrySet()) {
+                     if (e.getValue().name() != null) {
+                        data.libraryName(e.getKey(), e.getValue().name());
+                     }
+                  }
+                  if (Logger.isDebugEnabled()) {
+                     Logger.debug(() -> "decompileNcs: known signatures prototyped " + known.size() + " of " + subdata.numSubs() + " subs");
+                  }
                } catch (Exception e) {
-                  System.out.println("Could not assert stack, continuing anyway.");
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error applying known subroutine prototypes, continuing: " + e.getMessage());
                }
-
-               dotypes.done();
-            } catch (Exception e) {
-               System.out.println("Error typing main subroutine, continuing with partial types: " + e.getMessage());
-               dotypes = null;
             }
-         }
-
-         // Type all subroutines - continue even if some fail
-         boolean alldone = false;
-         boolean onedone = true;
-         int donecount = 0;
-
-         try {
-            alldone = subdata.countSubsDone() == subdata.numSubs();
-            onedone = true;
-            donecount = subdata.countSubsDone();
-         } catch (Exception e) {
-            System.out.println("Error checking subroutine completion status: " + e.getMessage());
-         }
 
-         for (int loopcount = 0; !alldone && onedone && loopcount < 1000; ++loopcount) {
-            onedone = false;
+            // Prototype engine - recover if this fails
             try {
-               subs = subdata.getSubroutines();
+               PrototypeEngine proto = new PrototypeEngine(nodedata, subdata, this.actions, opts, budget);
+               proto.run();
             } catch (Exception e) {
-               System.out.println("Error getting subroutines iterator: " + e.getMessage());
-               break;
-            }
-
-            if (subs != null) {
-               while (subs.hasNext()) {
-                  try {
-                     sub = subs.next();
-                     if (sub == null)
-                        continue;
-
-                     dotypes = new DoTypes(subdata.getState(sub), nodedata, subdata, this.actions, false);
-                     sub.apply(dotypes);
-                     dotypes.done();
-                  } catch (Exception e) {
-                     System.out.println("Error typing subroutine, skipping: " + e.getMessage());
-                     // Continue with next subroutine
-                  }
-               }
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error in prototype engine, continuing with partial prototypes: " + e.getMessage());
             }
 
+            // Type analysis - recover if main sub typing fails
+            timings.begin(StageTimings.TYPES);
+            budget.check(StageTimings.TYPES);
             if (mainsub != null) {
                try {
                   dotypes = new DoTypes(subdata.getState(mainsub), nodedata, subdata, this.actions, false);
                   mainsub.apply(dotypes);
+
+                  try {
+                     dotypes.assertStack();
+                  } catch (Exception e) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Could not assert stack, continuing anyway.");
+                  }
+
                   dotypes.done();
                } catch (Exception e) {
-                  System.out.println("Error re-typing main subroutine: " + e.getMessage());
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error typing main subroutine, continuing with partial types: " + e.getMessage());
+                  dotypes = null;
                }
             }
 
+            // Type all subroutines - continue even if some fail
+            boolean alldone = false;
+            boolean onedone = true;
+            int donecount = 0;
+
             try {
                alldone = subdata.countSubsDone() == subdata.numSubs();
-               int newDoneCount = subdata.countSubsDone();
-               onedone = newDoneCount > donecount;
-               donecount = newDoneCount;
+               onedone = true;
+               donecount = subdata.countSubsDone();
             } catch (Exception e) {
-               System.out.println("Error checking completion status: " + e.getMessage());
-               break;
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error checking subroutine completion status: " + e.getMessage());
             }
-         }
 
-         if (!alldone) {
-            System.out.println("Unable to do final prototype of all subroutines. Continuing with partial results.");
-         }
+            for (int loopcount = 0; !alldone && onedone && loopcount < 1000; ++loopcount) {
+               stats.count(DecompileStats.TYPE_ITERATIONS);
+               onedone = false;
+               try {
+                  subs = subdata.getSubroutines();
+               } catch (Exception e) {
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error getting subroutines iterator: " + e.getMessage());
+                  break;
+               }
 
-         this.enforceStrictSignatures(subdata, nodedata);
+               if (subs != null) {
+                  while (subs.hasNext()) {
+                     try {
+                        sub = subs.next();
+                        if (sub == null)
+                           continue;
+                        budget.step(StageTimings.TYPES);
+
+                        dotypes = new DoTypes(subdata.getState(sub), nodedata, subdata, this.actions, false);
+                        sub.apply(dotypes);
+                        dotypes.done();
+                     } catch (Exception e) {
+                        stats.count(DecompileStats.RECOVERIES);
+                        Logger.info("Error typing subroutine, skipping: " + e.getMessage());
+                        // Continue with next subroutine
+                     }
+                  }
+               }
 
-         dotypes = null;
-         nodedata.clearProtoData();
+               if (mainsub != null) {
+                  budget.step(StageTimings.TYPES);
+                  try {
+                     dotypes = new DoTypes(subdata.getState(mainsub), nodedata, subdata, this.actions, false);
+                     mainsub.apply(dotypes);
+                     dotypes.done();
+                  } catch (Exception e) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Error re-typing main subroutine: " + e.getMessage());
+                  }
+               }
 
-         Logger.debug("decompileNcs: iterating subroutines, numSubs=" + subdata.numSubs());
-         int subCount = 0;
-         for (ASubroutine iterSub : this.subIterable(subdata)) {
-            subCount++;
-            System.err.println(
-                  "DEBUG decompileNcs: processing subroutine " + subCount + " at pos=" + nodedata.getPos(iterSub));
-            try {
-               mainpass = new MainPass(subdata.getState(iterSub), nodedata, subdata, this.actions);
-               iterSub.apply(mainpass);
-               cleanpass = new CleanupPass(mainpass.getScriptRoot(), nodedata, subdata, mainpass.getState());
-               cleanpass.apply();
-               data.addSub(mainpass.getState());
-               Logger.debug("decompileNcs: successfully added subroutine " + subCount);
-               mainpass.done();
-               cleanpass.done();
-            } catch (Exception e) {
-               System.err
-                     .println("DEBUG decompileNcs: ERROR processing subroutine " + subCount + " - " + e.getMessage());
-               System.out.println("Error while processing subroutine: " + e);
-               e.printStackTrace(System.out);
-               // Try to add partial subroutine state even if processing failed
                try {
-                  SubroutineState state = subdata.getState(iterSub);
-                  if (state != null) {
-                     MainPass recoveryPass = new MainPass(state, nodedata, subdata, this.actions);
-                     // Try to get state even if apply failed
-                     SubScriptState recoveryState = recoveryPass.getState();
-                     if (recoveryState != null) {
-                        data.addSub(recoveryState);
-                        System.out.println("Added partial subroutine state after error recovery.");
-                     }
-                  }
-               } catch (Exception e2) {
-                  System.out.println("Could not recover partial subroutine state: " + e2.getMessage());
+                  alldone = subdata.countSubsDone() == subdata.numSubs();
+                  int newDoneCount = subdata.countSubsDone();
+                  onedone = newDoneCount > donecount;
+                  donecount = newDoneCount;
+               } catch (Exception e) {
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error checking completion status: " + e.getMessage());
+                  break;
                }
             }
-         }
 
-         // Generate code for main subroutine - recover if this fails
-         Logger.debug("decompileNcs: mainsub="
-               + (mainsub != null ? "found at pos=" + nodedata.getPos(mainsub) : "null"));
-         if (mainsub != null) {
-            try {
-               Logger.debug("decompileNcs: creating MainPass for mainsub");
-               mainpass = new MainPass(subdata.getState(mainsub), nodedata, subdata, this.actions);
-               Logger.debug("decompileNcs: applying mainpass to mainsub");
-               mainsub.apply(mainpass);
+            if (!alldone) {
+               Logger.info("Unable to do final prototype of all subroutines. Continuing with partial results.");
+            }
+
+            FileDecompiler.this.enforceStrictSignatures(subdata, nodedata, opts);
 
+            if ((opts.subroutineCache() || FileDecompiler.this.services.signatureExport() != null) && alldone) {
                try {
-                  mainpass.assertStack();
+                  Map<Byte, Map.Entry<String, SubroutineSignature>> fingerprints =
+                        SubroutineFingerprint.fingerprintTyped(commands, nodedata, subdata);
+                  if (opts.subroutineCache()) {
+                     this.subroutineCache.store(fingerprints);
+                  }
+                  data.fingerprints(fingerprints, FileDecompiler.this.services.signatureExport());
                } catch (Exception e) {
-                  System.out.println("Could not assert stack, continuing anyway.");
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error fingerprinting subroutine prototypes: " + e.getMessage());
                }
+            }
 
-               cleanpass = new CleanupPass(mainpass.getScriptRoot(), nodedata, subdata, mainpass.getState());
-               cleanpass.apply();
-               mainpass.getState().isMain(true);
-               data.addSub(mainpass.getState());
-               mainpass.done();
-               cleanpass.done();
-            } catch (Exception e) {
-               System.out.println("Error generating code for main subroutine: " + e.getMessage());
-               // Try to create a minimal main function stub using MainPass
+            if (opts.lean()) {
+               // The decoded listing was only needed for fingerprinting
+               commands = null;
+            }
+            dotypes = null;
+            nodedata.clearProtoData();
+
+            timings.begin(StageTimings.MAINPASS);
+            budget.check(StageTimings.MAINPASS);
+            stats.setSubroutines(subdata.numSubs(), subdata.countSubsDone());
+            Logger.debug(() -> "decompileNcs: iterating subroutines, numSubs=" + subdata.numSubs());
+            int subCount = 0;
+            for (ASubroutine iterSub : FileDecompiler.this.subIterable(subdata)) {
+               final int subIndex = ++subCount;
+               budget.step(StageTimings.MAINPASS);
+               Logger.debug(() -> "decompileNcs: processing subroutine " + subIndex + " at pos=" + nodedata.getPos(iterSub));
                try {
-                  mainpass = new MainPass(subdata.getState(mainsub), nodedata, subdata, this.actions);
-                  // Even if apply fails, try to get the state
-                  try {
-                     mainsub.apply(mainpass);
-                  } catch (Exception e2) {
-                     System.out.println(
-                           "Could not apply mainpass, but attempting to use partial state: " + e2.getMessage());
+                  StageEvents.Span event = StageEvents.start();
+                  mainpass = new MainPass(subdata.getState(iterSub), nodedata, subdata, this.actions, opts);
+                  iterSub.apply(mainpass);
+                  if (event != null) {
+                     event.commit(this.name, StageTimings.MAINPASS, nodedata.getPos(iterSub), timings.nodes());
                   }
-                  SubScriptState minimalMain = mainpass.getState();
-                  if (minimalMain != null) {
-                     minimalMain.isMain(true);
-                     data.addSub(minimalMain);
-                     System.out.println("Created minimal main subroutine stub.");
+                  event = StageEvents.start();
+                  cleanpass = new CleanupPass(mainpass.getScriptRoot(), nodedata, subdata, mainpass.getState());
+                  cleanpass.apply();
+                  if (event != null) {
+                     event.commit(this.name, StageEvents.CLEANUP_PASS, nodedata.getPos(iterSub), timings.nodes());
                   }
+                  data.addSub(mainpass.getState());
+                  Logger.debug(() -> "decompileNcs: successfully added subroutine " + subIndex);
                   mainpass.done();
-               } catch (Exception e2) {
-                  System.out.println("Could not create minimal main stub: " + e2.getMessage());
+                  cleanpass.done();
+               } catch (Exception e) {
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.debug(() -> "decompileNcs: ERROR processing subroutine " + subIndex + " - " + e.getMessage());
+                  Logger.info("Error while processing subroutine: " + e);
+                  if (Logger.isDebugEnabled()) {
+                     e.printStackTrace();
+                  }
+                  // Try to add partial subroutine state even if processing failed
+                  try {
+                     SubroutineState state = subdata.getState(iterSub);
+                     if (state != null) {
+                        MainPass recoveryPass = new MainPass(state, nodedata, subdata, this.actions, opts);
+                        // Try to get state even if apply failed
+                        SubScriptState recoveryState = recoveryPass.getState();
+                        if (recoveryState != null) {
+                           data.addSub(recoveryState);
+                           Logger.debug("Added partial subroutine state after error recovery.");
+                        }
+                     }
+                  } catch (Exception e2) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Could not recover partial subroutine state: " + e2.getMessage());
+                  }
                }
             }
-         } else {
-            System.out.println("Warning: No main subroutine available for code generation.");
-         }
-         // Store analysis data and globals - recover if this fails
-         try {
-            data.subdata(subdata);
-         } catch (Exception e) {
-            System.out.println("Error storing subroutine analysis data: " + e.getMessage());
-         }
 
-         if (doglobs != null) {
-            try {
-               cleanpass = new CleanupPass(doglobs.getScriptRoot(), nodedata, subdata, doglobs.getState());
-               cleanpass.apply();
-               data.globals(doglobs.getState());
-               doglobs.done();
-               cleanpass.done();
-            } catch (Exception e) {
-               System.out.println("Error finalizing globals: " + e.getMessage());
+            // Generate code for main subroutine - recover if this fails
+            if (Logger.isDebugEnabled()) {
+               Logger.debug("decompileNcs: mainsub="
+                     + (mainsub != null ? "found at pos=" + nodedata.getPos(mainsub) : "null"));
+            }
+            if (mainsub != null) {
                try {
-                  if (doglobs.getState() != null) {
-                     data.globals(doglobs.getState());
+                  Logger.debug("decompileNcs: creating MainPass for mainsub");
+                  StageEvents.Span event = StageEvents.start();
+                  mainpass = new MainPass(subdata.getState(mainsub), nodedata, subdata, this.actions, opts);
+                  Logger.debug("decompileNcs: applying mainpass to mainsub");
+                  mainsub.apply(mainpass);
+                  if (event != null) {
+                     event.commit(this.name, StageTimings.MAINPASS, nodedata.getPos(mainsub), timings.nodes());
                   }
-                  doglobs.done();
-               } catch (Exception e2) {
-                  System.out.println("Could not recover globals state: " + e2.getMessage());
-               }
-            }
-         }
 
-         // Cleanup parse tree - this is safe to skip if it fails
-         try {
-            destroytree = new DestroyParseTree();
+                  try {
+                     mainpass.assertStack();
+                  } catch (Exception e) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Could not assert stack, continuing anyway.");
+                  }
 
-            for (ASubroutine iterSub : this.subIterable(subdata)) {
-               try {
-                  iterSub.apply(destroytree);
+                  event = StageEvents.start();
+                  cleanpass = new CleanupPass(mainpass.getScriptRoot(), nodedata, subdata, mainpass.getState());
+                  cleanpass.apply();
+                  if (event != null) {
+                     event.commit(this.name, StageEvents.CLEANUP_PASS, nodedata.getPos(mainsub), timings.nodes());
+                  }
+                  mainpass.getState().isMain(true);
+                  data.addSub(mainpass.getState());
+                  mainpass.done();
+                  cleanpass.done();
                } catch (Exception e) {
-                  System.out.println("Error destroying parse tree for subroutine: " + e.getMessage());
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error generating code for main subroutine: " + e.getMessage());
+                  // Try to create a minimal main function stub using MainPass
+                  try {
+                     mainpass = new MainPass(subdata.getState(mainsub), nodedata, subdata, this.actions, opts);
+                     // Even if apply fails, try to get the state
+                     try {
+                        mainsub.apply(mainpass);
+                     } catch (Exception e2) {
+                        stats.count(DecompileStats.RECOVERIES);
+                        Logger.info(
+                              "Could not apply mainpass, but attempting to use partial state: " + e2.getMessage());
+                     }
+                     SubScriptState minimalMain = mainpass.getState();
+                     if (minimalMain != null) {
+                        minimalMain.isMain(true);
+                        data.addSub(minimalMain);
+                        Logger.debug("Created minimal main subroutine stub.");
+                     }
+                     mainpass.done();
+                  } catch (Exception e2) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Could not create minimal main stub: " + e2.getMessage());
+                  }
                }
+            } else {
+               Logger.warn("No main subroutine available for code generation.");
+            }
+            // Store analysis data and globals - recover if this fails
+            try {
+               data.subdata(subdata);
+            } catch (Exception e) {
+               stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error storing subroutine analysis data: " + e.getMessage());
             }
 
-            if (mainsub != null) {
+            if (doglobs != null) {
                try {
-                  mainsub.apply(destroytree);
+                  cleanpass = new CleanupPass(doglobs.getScriptRoot(), nodedata, subdata, doglobs.getState());
+                  cleanpass.apply();
+                  data.globals(doglobs.getState());
+                  doglobs.done();
+                  cleanpass.done();
                } catch (Exception e) {
-                  System.out.println("Error destroying main parse tree: " + e.getMessage());
+                  stats.count(DecompileStats.RECOVERIES);
+                  Logger.info("Error finalizing globals: " + e.getMessage());
+                  try {
+                     if (doglobs.getState() != null) {
+                        data.globals(doglobs.getState());
+                     }
+                     doglobs.done();
+                  } catch (Exception e2) {
+                     stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Could not recover globals state: " + e2.getMessage());
+                  }
                }
             }
-         } catch (Exception e) {
-            System.out.println("Error during parse tree cleanup: " + e.getMessage());
-            // Continue anyway - cleanup is not critical
-         }
 
-         return data;
-      } catch (Exception e) {
-         // Try to salvage partial results before giving up
-         System.out.println("Error during decompilation: " + e.getMessage());
-         e.printStackTrace(System.out);
+            data.complete = true;
+            return data;
+         } catch (DecompileBudget.Exceeded e) {
+            // Partial analysis state is abandoned; only the stub is returned
+            stats.setBudgetExceeded(e.getMessage());
+            Logger.info("decompileNcs: " + e.getMessage() + " for " + this.where());
+            FileDecompiler.FileScriptData stub = new FileDecompiler.FileScriptData();
+            stub.setCode(FileDecompiler.this.generateComprehensiveFallbackStub(this.name, file, ncs, this.opts, this.actions != null,
+                  "Budget exceeded (" + e.getStage() + ")", null,
+                  e.getMessage() + "\nAnalysis steps used: " + budget.steps()));
+            stub.fixedCode = true;
+            return stub;
+         } catch (Exception e) {
+            // Try to salvage partial results before giving up
+            Logger.info("Error during decompilation: " + e.getMessage());
+            if (Logger.isDebugEnabled()) {
+               e.printStackTrace();
+            }
 
-         // Always return a FileScriptData, even if it's just a minimal stub
-         if (data == null) {
-            data = new FileDecompiler.FileScriptData();
-         }
+            // Always return a FileScriptData, even if it's just a minimal stub
+            if (data == null) {
+               data = new FileDecompiler.FileScriptData();
+            }
 
-         // Aggressive recovery: try to salvage whatever state we have
-         System.out.println("Attempting aggressive state recovery...");
+            // Aggressive recovery: try to salvage whatever state we have
+            Logger.debug("Attempting aggressive state recovery...");
 
-         // Try to add any subroutines that were partially processed
-         if (subdata != null && mainsub != null) {
-            try {
-               // Try to get main sub state even if it's incomplete
-               SubroutineState mainState = subdata.getState(mainsub);
-               if (mainState != null) {
-                  try {
-                     // Try to create a minimal main pass
-                     mainpass = new MainPass(mainState, nodedata, subdata, this.actions);
+            // Try to add any subroutines that were partially processed
+            if (subdata != null && mainsub != null) {
+               try {
+                  // Try to get main sub state even if it's incomplete
+                  SubroutineState mainState = subdata.getState(mainsub);
+                  if (mainState != null) {
                      try {
-                        mainsub.apply(mainpass);
-                     } catch (Exception e3) {
-                        System.out.println("Could not apply mainpass to main sub, but continuing: " + e3.getMessage());
-                     }
-                     SubScriptState scriptState = mainpass.getState();
-                     if (scriptState != null) {
-                        scriptState.isMain(true);
-                        data.addSub(scriptState);
-                        mainpass.done();
-                        System.out.println("Recovered main subroutine state.");
+                        // Try to create a minimal main pass
+                        mainpass = new MainPass(mainState, nodedata, subdata, this.actions, opts);
+                        try {
+                           mainsub.apply(mainpass);
+                        } catch (Exception e3) {
+                           Logger.info("Could not apply mainpass to main sub, but continuing: " + e3.getMessage());
+                        }
+                        SubScriptState scriptState = mainpass.getState();
+                        if (scriptState != null) {
+                           scriptState.isMain(true);
+                           data.addSub(scriptState);
+                           mainpass.done();
+                           Logger.debug("Recovered main subroutine state.");
+                        }
+                     } catch (Exception e2) {
+                        Logger.info("Could not create main pass: " + e2.getMessage());
                      }
-                  } catch (Exception e2) {
-                     System.out.println("Could not create main pass: " + e2.getMessage());
                   }
+               } catch (Exception e2) {
+                  Logger.info("Error recovering main subroutine: " + e2.getMessage());
                }
-            } catch (Exception e2) {
-               System.out.println("Error recovering main subroutine: " + e2.getMessage());
-            }
 
-            // Try to recover other subroutines
-            try {
-               for (ASubroutine iterSub : this.subIterable(subdata)) {
-                  if (iterSub == mainsub)
-                     continue; // Already handled
-                  try {
-                     SubroutineState state = subdata.getState(iterSub);
-                     if (state != null) {
-                        try {
-                           mainpass = new MainPass(state, nodedata, subdata, this.actions);
+               // Try to recover other subroutines
+               try {
+                  for (ASubroutine iterSub : FileDecompiler.this.subIterable(subdata)) {
+                     if (iterSub == mainsub)
+                        continue; // Already handled
+                     try {
+                        SubroutineState state = subdata.getState(iterSub);
+                        if (state != null) {
                            try {
-                              iterSub.apply(mainpass);
-                           } catch (Exception e3) {
-                              System.out.println(
-                                    "Could not apply mainpass to subroutine, but continuing: " + e3.getMessage());
-                           }
-                           SubScriptState scriptState = mainpass.getState();
-                           if (scriptState != null) {
-                              data.addSub(scriptState);
-                              mainpass.done();
+                              mainpass = new MainPass(state, nodedata, subdata, this.actions, opts);
+                              try {
+                                 iterSub.apply(mainpass);
+                              } catch (Exception e3) {
+                                 Logger.info(
+                                       "Could not apply mainpass to subroutine, but continuing: " + e3.getMessage());
+                              }
+                              SubScriptState scriptState = mainpass.getState();
+                              if (scriptState != null) {
+                                 data.addSub(scriptState);
+                                 mainpass.done();
+                              }
+                           } catch (Exception e2) {
+                              Logger.info("Could not create mainpass for subroutine: " + e2.getMessage());
                            }
-                        } catch (Exception e2) {
-                           System.out.println("Could not create mainpass for subroutine: " + e2.getMessage());
                         }
+                     } catch (Exception e2) {
+                        Logger.info("Error recovering subroutine: " + e2.getMessage());
                      }
-                  } catch (Exception e2) {
-                     System.out.println("Error recovering subroutine: " + e2.getMessage());
                   }
+               } catch (Exception e2) {
+                  Logger.info("Error iterating subroutines during recovery: " + e2.getMessage());
+               }
+
+               // Try to store subdata
+               try {
+                  data.subdata(subdata);
+               } catch (Exception e2) {
+                  Logger.info("Error storing subdata: " + e2.getMessage());
                }
-            } catch (Exception e2) {
-               System.out.println("Error iterating subroutines during recovery: " + e2.getMessage());
             }
 
-            // Try to store subdata
-            try {
-               data.subdata(subdata);
-            } catch (Exception e2) {
-               System.out.println("Error storing subdata: " + e2.getMessage());
+            // Try to recover globals if available
+            if (doglobs != null) {
+               try {
+                  SubScriptState globState = doglobs.getState();
+                  if (globState != null) {
+                     data.globals(globState);
+                     Logger.debug("Recovered globals state.");
+                  }
+               } catch (Exception e2) {
+                  Logger.info("Error recovering globals: " + e2.getMessage());
+               }
             }
-         }
 
-         // Try to recover globals if available
-         if (doglobs != null) {
             try {
-               SubScriptState globState = doglobs.getState();
-               if (globState != null) {
-                  data.globals(globState);
-                  System.out.println("Recovered globals state.");
+               // Try to generate code from whatever we have
+               data.generateCode();
+               String partialCode = data.getCode();
+               if (partialCode != null && !partialCode.trim().isEmpty()) {
+                  Logger.debug("Successfully recovered partial decompilation with "
+                        + (data.getVars() != null ? data.getVars().size() : 0) + " subroutines.");
+                  // Add recovery note to the code
+                  String recoveryNote = "// ========================================\n"
+                        + "// PARTIAL DECOMPILATION - RECOVERED STATE\n" + "// ========================================\n"
+                        + "// This decompilation encountered errors but recovered partial results.\n"
+                        + "// Some subroutines or code sections may be incomplete or missing.\n" + "// Original error: "
+                        + e.getClass().getSimpleName() + ": " + (e.getMessage() != null ? e.getMessage() : "(no message)")
+                        + "\n" + "// ========================================\n\n";
+                  data.setCode(recoveryNote + partialCode);
+                  return data;
                }
-            } catch (Exception e2) {
-               System.out.println("Error recovering globals: " + e2.getMessage());
+            } catch (Exception genEx) {
+               Logger.info("Could not generate partial code: " + genEx.getMessage());
             }
-         }
 
-         try {
-            // Try to generate code from whatever we have
-            data.generateCode();
-            String partialCode = data.getCode();
-            if (partialCode != null && !partialCode.trim().isEmpty()) {
-               System.out.println("Successfully recovered partial decompilation with "
-                     + (data.getVars() != null ? data.getVars().size() : 0) + " subroutines.");
-               // Add recovery note to the code
-               String recoveryNote = "// ========================================\n"
-                     + "// PARTIAL DECOMPILATION - RECOVERED STATE\n" + "// ========================================\n"
-                     + "// This decompilation encountered errors but recovered partial results.\n"
-                     + "// Some subroutines or code sections may be incomplete or missing.\n" + "// Original error: "
-                     + e.getClass().getSimpleName() + ": " + (e.getMessage() != null ? e.getMessage() : "(no message)")
-                     + "\n" + "// ========================================\n\n";
-               data.setCode(recoveryNote + partialCode);
-               return data;
+            // Last resort: create comprehensive stub with any available partial information
+            String partialInfo = "Partial decompilation state:\n";
+            try {
+               if (data != null) {
+                  Hashtable<String, Vector<Variable>> vars = data.getVars();
+                  if (vars != null && vars.size() > 0) {
+                     partialInfo += "  Subroutines with variable data: " + vars.size() + "\n";
+                  }
+               }
+               if (subdata != null) {
+                  try {
+                     partialInfo += "  Total subroutines detected: " + subdata.numSubs() + "\n";
+                     partialInfo += "  Subroutines fully typed: " + subdata.countSubsDone() + "\n";
+                  } catch (Exception ignored) {
+                  }
+               }
+               if (commands != null) {
+                  partialInfo += "  Commands decoded: " + commands.length() + " characters\n";
+               }
+               if (ast != null) {
+                  partialInfo += "  Parse tree created: yes\n";
+               }
+               if (nodedata != null) {
+                  partialInfo += "  Node analysis data available: yes\n";
+               }
+               if (mainsub != null) {
+                  partialInfo += "  Main subroutine identified: yes\n";
+               }
+            } catch (Exception ignored) {
+               partialInfo += "  (Unable to gather partial state information)\n";
             }
-         } catch (Exception genEx) {
-            System.out.println("Could not generate partial code: " + genEx.getMessage());
+            String errorStub = FileDecompiler.this.generateComprehensiveFallbackStub(this.name, file, ncs, this.opts, this.actions != null,
+                  "General decompilation pipeline", e,
+                  partialInfo);
+            data.setCode(errorStub);
+            Logger.debug("Created fallback stub code due to decompilation errors.");
+            return data;
+         } finally {
+            this.release();
          }
+      }
 
-         // Last resort: create comprehensive stub with any available partial information
-         String partialInfo = "Partial decompilation state:\n";
+      /**
+       * Detaches the subroutine table from the parse tree, since the returned script data
+       * keeps it for struct declarations, and runs the opt-in teardown.
+       */
+      private void release() {
          try {
-            if (data != null) {
-               Hashtable<String, Vector<Variable>> vars = data.getVars();
-               if (vars != null && vars.size() > 0) {
-                  partialInfo += "  Subroutines with variable data: " + vars.size() + "\n";
-               }
-            }
-            if (subdata != null) {
-               try {
-                  partialInfo += "  Total subroutines detected: " + subdata.numSubs() + "\n";
-                  partialInfo += "  Subroutines fully typed: " + subdata.countSubsDone() + "\n";
-               } catch (Exception ignored) {
-               }
+            if (this.opts.destroyParseTrees()) {
+               this.destroyParseTrees();
             }
-            if (commands != null) {
-               partialInfo += "  Commands decoded: " + commands.length() + " characters\n";
-            }
-            if (ast != null) {
-               partialInfo += "  Parse tree created: yes\n";
-            }
-            if (nodedata != null) {
-               partialInfo += "  Node analysis data available: yes\n";
+            if (this.subdata != null) {
+               this.subdata.parseDone();
             }
-            if (mainsub != null) {
-               partialInfo += "  Main subroutine identified: yes\n";
+         } finally {
+            if (this.opts.gcPerFile()) {
+               System.gc();
             }
-         } catch (Exception ignored) {
-            partialInfo += "  (Unable to gather partial state information)\n";
+            this.timings.end();
          }
-         String errorStub = this.generateComprehensiveFallbackStub(file, "General decompilation pipeline", e,
-               partialInfo);
-         data.setCode(errorStub);
-         System.out.println("Created fallback stub code due to decompilation errors.");
-         return data;
-      } finally {
-         data = null;
-         commands = null;
-         setdest = null;
-         dotypes = null;
-         ast = null;
-         if (nodedata != null) {
-            nodedata.close();
-         }
-
-         nodedata = null;
-         if (subdata != null) {
-            subdata.parseDone();
-         }
-
-         subdata = null;
-         subs = null;
-         sub = null;
-         mainsub = null;
-         flatten = null;
-         doglobs = null;
-         cleanpass = null;
-         mainpass = null;
-         destroytree = null;
-         System.gc();
       }
-   }
-
-   /**
-    * Provides a type-safe view over subdata.getSubroutines(), validating elements
-    * at runtime.
-    */
-   private Iterable<ASubroutine> subIterable(SubroutineAnalysisData subdata) {
-      List<ASubroutine> list = new ArrayList<>();
-      Iterator<ASubroutine> raw = subdata.getSubroutines();
 
-      while (raw.hasNext()) {
-         ASubroutine sub = raw.next();
-         if (sub == null) {
-            throw new IllegalStateException("Unexpected null element in subroutine list");
-         }
-         list.add(sub);
-      }
-
-      return list;
-   }
+      /** Nulls out every parse tree node and node table entry, for {@link DecompilerOptions#destroyParseTrees()}. */
+      private void destroyParseTrees() {
+         this.timings.begin(StageTimings.CLEANUP);
+         if (this.subdata != null) {
+            try {
+               DestroyParseTree destroytree = new DestroyParseTree();
 
-   private void enforceStrictSignatures(SubroutineAnalysisData subdata, NodeAnalysisData nodedata) {
-      if (!FileDecompiler.strictSignatures) {
-         return;
-      }
+               for (ASubroutine iterSub : FileDecompiler.this.subIterable(this.subdata)) {
+                  try {
+                     iterSub.apply(destroytree);
+                  } catch (Exception e) {
+                     this.stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Error destroying parse tree for subroutine: " + e.getMessage());
+                  }
+               }
 
-      for (ASubroutine iterSub : this.subIterable(subdata)) {
-         SubroutineState state = subdata.getState(iterSub);
-         if (!state.isTotallyPrototyped()) {
-            System.out.println("Strict signatures: unresolved signature for subroutine at "
-                  + Integer.toString(nodedata.getPos(iterSub)) + " (continuing)");
+               if (this.mainsub != null) {
+                  try {
+                     this.mainsub.apply(destroytree);
+                  } catch (Exception e) {
+                     this.stats.count(DecompileStats.RECOVERIES);
+                     Logger.info("Error destroying main parse tree: " + e.getMessage());
+                  }
+               }
+            } catch (Exception e) {
+               this.stats.count(DecompileStats.RECOVERIES);
+               Logger.info("Error during parse tree cleanup: " + e.getMessage());
+               // Continue anyway - cleanup is not critical
+            }
+         }
+         if (this.nodedata != null) {
+            this.nodedata.close();
          }
       }
    }
@@ -2697,6 +3224,16 @@ public class FileDecompiler {
       private String originalbytecode;
       /** Decompiled p-code from the newly compiled NSS. */
       private String generatedbytecode;
+      /** Canonical names of subroutines recognized from the signature database, by sub id. */
+      private Map<Byte, String> libraryNames = new HashMap<>();
+      /** Fingerprint and prototype of each fully typed subroutine, by sub id; null if not collected. */
+      private Map<Byte, Map.Entry<String, SubroutineSignature>> fingerprints;
+      /** Where {@link #fingerprints} are exported during code generation; null if not requested. */
+      private SignatureDatabase signatureExport;
+      /** Set when decompileNcs ran to completion rather than returning a stub. */
+      private boolean complete;
+      /** Set when {@link #code} is a stub that {@link #generateCode()} must not replace. */
+      private boolean fixedCode;
 
       public FileScriptData() {
          this.originalbytecode = null;
@@ -2729,6 +3266,19 @@ public class FileDecompiler {
          this.generatedbytecode = null;
       }
 
+      /**
+       * Drops all analysis state, keeping only the generated code. Unlike {@link #close()}
+       * nothing is torn down; the structures are simply left to the collector.
+       */
+      public void release() {
+         this.subs = new ArrayList<>();
+         this.globals = null;
+         this.subdata = null;
+         this.libraryNames = new HashMap<>();
+         this.fingerprints = null;
+         this.signatureExport = null;
+      }
+
       /**
        * Records the globals block captured during decompilation.
        */
@@ -2750,6 +3300,15 @@ public class FileDecompiler {
          this.subdata = subdata;
       }
 
+      public void libraryName(byte id, String name) {
+         this.libraryNames.put(id, name);
+      }
+
+      public void fingerprints(Map<Byte, Map.Entry<String, SubroutineSignature>> fingerprints, SignatureDatabase export) {
+         this.fingerprints = fingerprints;
+         this.signatureExport = export;
+      }
+
       private SubScriptState findSub(String name) {
          for (SubScriptState state : this.subs) {
             if (state.getName().equals(name)) {
@@ -2786,6 +3345,32 @@ public class FileDecompiler {
       /**
        * Returns a map of subroutine/global names to their variable tables.
        */
+      /**
+       * Whether the full pipeline ran, as opposed to a fallback stub or recovered partial state.
+       */
+      public boolean isComplete() {
+         return this.complete && this.subs.size() > 0;
+      }
+
+      /**
+       * Variable declarations ({@code "type name"}) keyed by subroutine name, for
+       * {@link ResultCache}.
+       */
+      public Map<String, List<String>> getVariableDecls() {
+         Map<String, List<String>> decls = new LinkedHashMap<>();
+         Hashtable<String, Vector<Variable>> vars = this.getVars();
+         if (vars != null) {
+            for (Map.Entry<String, Vector<Variable>> e : vars.entrySet()) {
+               List<String> list = new ArrayList<>();
+               for (Variable var : e.getValue()) {
+                  list.add(var.toDeclString());
+               }
+               decls.put(e.getKey(), list);
+            }
+         }
+         return decls;
+      }
+
       public Hashtable<String, Vector<Variable>> getVars() {
          if (this.subs.size() == 0) {
             return null;
@@ -2836,8 +3421,14 @@ public class FileDecompiler {
        * Always generates at least a minimal stub if no subroutines are available.
        */
       public void generateCode() {
+         if (this.fixedCode) {
+            return;
+         }
          String newline = System.getProperty("line.separator");
 
+         // Names from the signature database win over body-pattern heuristics.
+         this.applyLibraryNames();
+
          // Heuristic renaming for common library helpers when symbol data is missing.
          // Only applies to generic subX names and matches on body patterns.
          this.heuristicRenameSubs();
@@ -2889,7 +3480,7 @@ public class FileDecompiler {
                }
             } catch (Exception e) {
                // If a subroutine fails to generate, add a comment instead
-               System.out.println("Error generating code for subroutine, adding placeholder: " + e.getMessage());
+               Logger.info("Error generating code for subroutine, adding placeholder: " + e.getMessage());
                fcnbuff.append("// Error: Could not decompile subroutine\n");
             }
          }
@@ -2899,7 +3490,7 @@ public class FileDecompiler {
             try {
                globs = "// Globals" + newline + this.globals.toStringGlobals() + newline;
             } catch (Exception e) {
-               System.out.println("Error generating globals code: " + e.getMessage());
+               Logger.info("Error generating globals code: " + e.getMessage());
                globs = "// Error: Could not decompile globals\n";
             }
          }
@@ -2916,7 +3507,7 @@ public class FileDecompiler {
                structDecls = this.subdata.getStructDeclarations();
             }
          } catch (Exception e) {
-            System.out.println("Error generating struct declarations: " + e.getMessage());
+            Logger.info("Error generating struct declarations: " + e.getMessage());
          }
 
          String generated = structDecls + globs + protohdr + protobuff.toString() + fcnbuff.toString();
@@ -2945,6 +3536,10 @@ public class FileDecompiler {
             generated = stub;
          }
 
+         // Call sites always render as subX(...); point them at renamed subroutines.
+         generated = this.renameCallSites(generated);
+         this.exportSignatures();
+
          // Rewrite well-known helper prototypes/bodies when they were emitted as generic
          // subX
          generated = this.rewriteKnownHelpers(generated, newline);
@@ -3027,6 +3622,43 @@ public class FileDecompiler {
          return canonical;
       }
 
+      private void applyLibraryNames() {
+         for (SubScriptState state : this.subs) {
+            String name = state != null && !state.isMain() ? this.libraryNames.get(state.getId()) : null;
+            if (name != null && state.getName().equals("sub" + state.getId()) && this.findSub(name) == null) {
+               state.setName(name);
+            }
+         }
+      }
+
+      private String renameCallSites(String code) {
+         Map<String, String> renames = new HashMap<>();
+         for (SubScriptState state : this.subs) {
+            if (state == null || state.isMain()) {
+               continue;
+            }
+            String generic = "sub" + state.getId();
+            if (!generic.equals(state.getName())) {
+               renames.put(generic, state.getName());
+            }
+         }
+         return renames.isEmpty() ? code : renameCalls(code, renames);
+      }
+
+      private void exportSignatures() {
+         SignatureDatabase export = this.signatureExport;
+         if (export == null || this.fingerprints == null) {
+            return;
+         }
+         for (SubScriptState state : this.subs) {
+            Map.Entry<String, SubroutineSignature> fp = state != null && !state.isMain() ? this.fingerprints.get(state.getId()) : null;
+            if (fp != null) {
+               String name = state.getName().equals("sub" + state.getId()) ? null : state.getName();
+               export.put(fp.getKey(), fp.getValue().withName(name));
+            }
+         }
+      }
+
       /**
        * Attempt to recover function names for well-known helpers when symbol tables
        * are absent. This is intentionally conservative and only triggers on generic
@@ -7,6 +7,7 @@ package com.kotor.resource.formats.ncs;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -43,6 +44,38 @@ public class HashUtil {
       }
    }
 
+   /**
+    * Calculates the SHA256 hash of an in-memory buffer.
+    *
+    * @param data The bytes to hash
+    * @return The SHA256 hash as an uppercase hexadecimal string
+    */
+   public static String calculateSHA256(byte[] data) {
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         return bytesToHex(digest.digest(data)).toUpperCase();
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 algorithm not available", e);
+      }
+   }
+
+   /**
+    * Calculates the SHA256 hash of the remaining bytes of a buffer, such as a mapped
+    * archive entry, without copying them. The buffer itself is not modified.
+    *
+    * @param data The bytes to hash
+    * @return The SHA256 hash as an uppercase hexadecimal string
+    */
+   public static String calculateSHA256(ByteBuffer data) {
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         digest.update(data.duplicate());
+         return bytesToHex(digest.digest()).toUpperCase();
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 algorithm not available", e);
+      }
+   }
+
    /**
     * Converts a byte array to a hexadecimal string without delimiters.
     * <p>
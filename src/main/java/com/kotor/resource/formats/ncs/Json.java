@@ -0,0 +1,287 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader/writer for the line-oriented machine interfaces (daemon requests,
+ * reports), so the project stays free of third-party dependencies.
+ * <p>
+ * Values map to {@link Map} (insertion ordered), {@link List}, {@link String}, {@link Double}
+ * or {@link Long}, {@link Boolean} and {@code null}.
+ */
+public final class Json {
+   private final String text;
+   private int pos;
+
+   private Json(String text) {
+      this.text = text;
+   }
+
+   /**
+    * Parses one JSON value.
+    *
+    * @throws IllegalArgumentException if the text is not valid JSON
+    */
+   public static Object parse(String text) {
+      Json p = new Json(text);
+      p.skipWhitespace();
+      Object value = p.readValue();
+      p.skipWhitespace();
+      if (p.pos != text.length()) {
+         throw p.error("Trailing characters");
+      }
+      return value;
+   }
+
+   /** Serializes a value built from the types listed in the class comment. */
+   public static String write(Object value) {
+      StringBuilder sb = new StringBuilder();
+      write(value, sb);
+      return sb.toString();
+   }
+
+   public static void write(Object value, StringBuilder sb) {
+      if (value == null) {
+         sb.append("null");
+      } else if (value instanceof String) {
+         quote((String) value, sb);
+      } else if (value instanceof Number || value instanceof Boolean) {
+         sb.append(value);
+      } else if (value instanceof Map) {
+         sb.append('{');
+         boolean first = true;
+         for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+            if (!first) {
+               sb.append(',');
+            }
+            first = false;
+            quote(String.valueOf(e.getKey()), sb);
+            sb.append(':');
+            write(e.getValue(), sb);
+         }
+         sb.append('}');
+      } else if (value instanceof Iterable) {
+         sb.append('[');
+         boolean first = true;
+         for (Object item : (Iterable<?>) value) {
+            if (!first) {
+               sb.append(',');
+            }
+            first = false;
+            write(item, sb);
+         }
+         sb.append(']');
+      } else {
+         quote(value.toString(), sb);
+      }
+   }
+
+   public static void quote(String s, StringBuilder sb) {
+      sb.append('"');
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         switch (c) {
+            case '"':
+               sb.append("\\\"");
+               break;
+            case '\\':
+               sb.append("\\\\");
+               break;
+            case '\n':
+               sb.append("\\n");
+               break;
+            case '\r':
+               sb.append("\\r");
+               break;
+            case '\t':
+               sb.append("\\t");
+               break;
+            default:
+               if (c < 0x20) {
+                  sb.append(String.format("\\u%04x", (int) c));
+               } else {
+                  sb.append(c);
+               }
+               break;
+         }
+      }
+      sb.append('"');
+   }
+
+   private Object readValue() {
+      if (this.pos >= this.text.length()) {
+         throw this.error("Unexpected end of input");
+      }
+      char c = this.text.charAt(this.pos);
+      switch (c) {
+         case '{':
+            return this.readObject();
+         case '[':
+            return this.readArray();
+         case '"':
+            return this.readString();
+         case 't':
+            this.expect("true");
+            return Boolean.TRUE;
+         case 'f':
+            this.expect("false");
+            return Boolean.FALSE;
+         case 'n':
+            this.expect("null");
+            return null;
+         default:
+            return this.readNumber();
+      }
+   }
+
+   private Map<String, Object> readObject() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      this.pos++;
+      this.skipWhitespace();
+      if (this.peek() == '}') {
+         this.pos++;
+         return map;
+      }
+      while (true) {
+         this.skipWhitespace();
+         if (this.peek() != '"') {
+            throw this.error("Expected object key");
+         }
+         String key = this.readString();
+         this.skipWhitespace();
+         this.consume(':');
+         this.skipWhitespace();
+         map.put(key, this.readValue());
+         this.skipWhitespace();
+         if (this.peek() == ',') {
+            this.pos++;
+         } else {
+            this.consume('}');
+            return map;
+         }
+      }
+   }
+
+   private List<Object> readArray() {
+      List<Object> list = new ArrayList<>();
+      this.pos++;
+      this.skipWhitespace();
+      if (this.peek() == ']') {
+         this.pos++;
+         return list;
+      }
+      while (true) {
+         this.skipWhitespace();
+         list.add(this.readValue());
+         this.skipWhitespace();
+         if (this.peek() == ',') {
+            this.pos++;
+         } else {
+            this.consume(']');
+            return list;
+         }
+      }
+   }
+
+   private String readString() {
+      StringBuilder sb = new StringBuilder();
+      this.pos++;
+      while (this.pos < this.text.length()) {
+         char c = this.text.charAt(this.pos++);
+         if (c == '"') {
+            return sb.toString();
+         }
+         if (c != '\\') {
+            sb.append(c);
+            continue;
+         }
+         if (this.pos >= this.text.length()) {
+            break;
+         }
+         char esc = this.text.charAt(this.pos++);
+         switch (esc) {
+            case 'n':
+               sb.append('\n');
+               break;
+            case 'r':
+               sb.append('\r');
+               break;
+            case 't':
+               sb.append('\t');
+               break;
+            case 'b':
+               sb.append('\b');
+               break;
+            case 'f':
+               sb.append('\f');
+               break;
+            case 'u':
+               if (this.pos + 4 > this.text.length()) {
+                  throw this.error("Truncated unicode escape");
+               }
+               try {
+                  sb.append((char) Integer.parseInt(this.text.substring(this.pos, this.pos + 4), 16));
+               } catch (NumberFormatException e) {
+                  throw this.error("Invalid unicode escape");
+               }
+               this.pos += 4;
+               break;
+            default:
+               sb.append(esc);
+               break;
+         }
+      }
+      throw this.error("Unterminated string");
+   }
+
+   private Object readNumber() {
+      int start = this.pos;
+      while (this.pos < this.text.length() && "+-0123456789.eE".indexOf(this.text.charAt(this.pos)) >= 0) {
+         this.pos++;
+      }
+      String num = this.text.substring(start, this.pos);
+      try {
+         if (num.indexOf('.') < 0 && num.indexOf('e') < 0 && num.indexOf('E') < 0) {
+            return Long.parseLong(num);
+         }
+         return Double.parseDouble(num);
+      } catch (NumberFormatException e) {
+         throw this.error("Invalid value");
+      }
+   }
+
+   private void expect(String word) {
+      if (!this.text.startsWith(word, this.pos)) {
+         throw this.error("Invalid value");
+      }
+      this.pos += word.length();
+   }
+
+   private void consume(char c) {
+      if (this.peek() != c) {
+         throw this.error("Expected '" + c + "'");
+      }
+      this.pos++;
+   }
+
+   private char peek() {
+      return this.pos < this.text.length() ? this.text.charAt(this.pos) : '\0';
+   }
+
+   private void skipWhitespace() {
+      while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos))) {
+         this.pos++;
+      }
+   }
+
+   private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at offset " + this.pos);
+   }
+}
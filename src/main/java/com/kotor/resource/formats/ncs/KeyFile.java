@@ -0,0 +1,215 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reader for the game's {@code chitin.key} and the BIF archives it indexes.
+ * <p>
+ * The KEY table is read once and indexed by resource type and resref. BIF files are
+ * memory-mapped read-only the first time one of their resources is requested, and
+ * resources are handed out as {@link ResourceEntry} views of that mapping, so scripts
+ * reach the decompiler without being extracted to temp files. Mappings stay valid after
+ * the file channel is closed and are released when the last entry is collected; there is
+ * nothing to close.
+ * <p>
+ * BIF paths in the KEY are relative to its directory and use backslashes; they are
+ * resolved ignoring case, since installs copied from Windows rarely keep the exact case.
+ * All multi-byte values are little-endian.
+ */
+public final class KeyFile {
+   private static final int FILE_ENTRY_SIZE = 12;
+   private static final int KEY_ENTRY_SIZE = 22;
+   private static final int BIF_HEADER_SIZE = 20;
+   private static final int BIF_VAR_ENTRY_SIZE = 16;
+   private final File key;
+   private final String[] bifNames;
+   private final Map<Integer, TreeMap<String, Integer>> ids = new HashMap<>();  // restype -> resref -> resource id
+   private final File[] bifFiles;
+   private final MappedByteBuffer[] mapped;
+   private int resourceCount;
+
+   private KeyFile(File key, String[] bifNames) {
+      this.key = key;
+      this.bifNames = bifNames;
+      this.bifFiles = new File[bifNames.length];
+      this.mapped = new MappedByteBuffer[bifNames.length];
+   }
+
+   /**
+    * Reads the file table and key table of a KEY file. The BIFs are not touched yet.
+    *
+    * @throws IOException if the file cannot be read or is not a KEY V1 file
+    */
+   public static KeyFile read(File key) throws IOException {
+      ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(key.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+      // The 32 reserved bytes that end the documented header are missing in some tools' output
+      if (buf.limit() < 24 || !"KEY ".equals(ArchiveIO.ascii(buf, 0, 4))
+            || !ArchiveIO.ascii(buf, 4, 4).startsWith("V1")) {
+         throw new IOException("not a KEY V1 file: " + key.getAbsolutePath());
+      }
+      int bifCount = buf.getInt(8);
+      int keyCount = buf.getInt(12);
+      int fileTable = buf.getInt(16);
+      int keyTable = buf.getInt(20);
+      ArchiveIO.check(key, buf, fileTable, (long) bifCount * FILE_ENTRY_SIZE);
+      ArchiveIO.check(key, buf, keyTable, (long) keyCount * KEY_ENTRY_SIZE);
+
+      String[] names = new String[bifCount];
+      for (int i = 0; i < bifCount; i++) {
+         int entry = fileTable + i * FILE_ENTRY_SIZE;
+         int nameOffset = buf.getInt(entry + 4);
+         int nameSize = buf.getShort(entry + 8) & 0xFFFF;
+         ArchiveIO.check(key, buf, nameOffset, nameSize);
+         names[i] = ArchiveIO.ascii(buf, nameOffset, nameSize);
+      }
+
+      KeyFile kf = new KeyFile(key, names);
+      for (int i = 0; i < keyCount; i++) {
+         int entry = keyTable + i * KEY_ENTRY_SIZE;
+         String resref = ArchiveIO.ascii(buf, entry, 16).toLowerCase(Locale.ROOT);
+         int restype = buf.getShort(entry + 16) & 0xFFFF;
+         int id = buf.getInt(entry + 18);
+         TreeMap<String, Integer> byName = kf.ids.get(restype);
+         if (byName == null) {
+            byName = new TreeMap<>();
+            kf.ids.put(restype, byName);
+         }
+         // Later keys override earlier ones, as in the game
+         if (byName.put(resref, id) == null) {
+            kf.resourceCount++;
+         }
+      }
+      return kf;
+   }
+
+   public File getFile() {
+      return this.key;
+   }
+
+   /** Number of distinct resources listed, of all types. */
+   public int size() {
+      return this.resourceCount;
+   }
+
+   /** Number of resources of one type. */
+   public int size(int restype) {
+      TreeMap<String, Integer> byName = this.ids.get(restype);
+      return byName != null ? byName.size() : 0;
+   }
+
+   /**
+    * Resources of one type whose resref passes {@code filter}, sorted by resref. Only the
+    * BIFs holding them are mapped.
+    *
+    * @throws IOException if a BIF is missing, unreadable or does not hold the resource
+    */
+   public List<ResourceEntry> entries(int restype, ResrefFilter filter) throws IOException {
+      List<ResourceEntry> entries = new ArrayList<>();
+      TreeMap<String, Integer> byName = this.ids.get(restype);
+      if (byName == null) {
+         return entries;
+      }
+      for (Map.Entry<String, Integer> e : byName.entrySet()) {
+         if (filter.matches(e.getKey())) {
+            entries.add(this.entry(e.getKey(), restype, e.getValue()));
+         }
+      }
+      return entries;
+   }
+
+   /**
+    * Looks up one resource, or returns null if the KEY does not list it.
+    *
+    * @throws IOException if its BIF is missing, unreadable or does not hold the resource
+    */
+   public ResourceEntry find(String resref, int restype) throws IOException {
+      TreeMap<String, Integer> byName = this.ids.get(restype);
+      String name = resref.toLowerCase(Locale.ROOT);
+      Integer id = byName != null ? byName.get(name) : null;
+      return id != null ? this.entry(name, restype, id) : null;
+   }
+
+   private ResourceEntry entry(String resref, int restype, int id) throws IOException {
+      int bif = id >>> 20;
+      int index = id & 0xFFFFF;
+      if (bif >= this.bifNames.length) {
+         throw new IOException(resref + " refers to BIF #" + bif + ", but " + this.key.getName() + " lists "
+               + this.bifNames.length);
+      }
+      ByteBuffer buf = this.map(bif);
+      File file = this.bifFiles[bif];
+      int varCount = buf.getInt(8);
+      int varTable = buf.getInt(16);
+      if (index >= varCount) {
+         throw new IOException(resref + " is resource #" + index + ", but " + file.getAbsolutePath() + " holds "
+               + varCount);
+      }
+      int entry = varTable + index * BIF_VAR_ENTRY_SIZE;
+      long offset = ArchiveIO.u32(buf, entry + 4);
+      int length = buf.getInt(entry + 8);
+      return new ResourceEntry(resref, restype, file, offset, length, ArchiveIO.slice(file, buf, offset, length));
+   }
+
+   private synchronized ByteBuffer map(int bif) throws IOException {
+      if (this.mapped[bif] == null) {
+         File file = this.bifFile(bif);
+         this.bifFiles[bif] = file;
+         if (!file.isFile()) {
+            throw new IOException("BIF not found: " + file.getAbsolutePath());
+         }
+         MappedByteBuffer buf = ArchiveIO.map(file);
+         if (buf.capacity() < BIF_HEADER_SIZE || !"BIFF".equals(ArchiveIO.ascii(buf, 0, 4))
+               || !ArchiveIO.ascii(buf, 4, 4).startsWith("V1")) {
+            throw new IOException("not a BIF V1 file: " + file.getAbsolutePath());
+         }
+         ArchiveIO.check(file, buf, buf.getInt(16), (long) buf.getInt(8) * BIF_VAR_ENTRY_SIZE);
+         this.mapped[bif] = buf;
+      }
+      return this.mapped[bif];
+   }
+
+   /** The BIF with the given index, resolved against the KEY's directory. */
+   private File bifFile(int bif) {
+      File dir = this.key.getAbsoluteFile().getParentFile();
+      for (String part : this.bifNames[bif].replace('\\', '/').split("/")) {
+         if (part.isEmpty()) {
+            continue;
+         }
+         File exact = new File(dir, part);
+         dir = exact.exists() ? exact : ignoringCase(dir, part, exact);
+      }
+      return dir;
+   }
+
+   private static File ignoringCase(File dir, String name, File fallback) {
+      String[] names = dir.list();
+      if (names != null) {
+         for (String candidate : names) {
+            if (candidate.equalsIgnoreCase(name)) {
+               return new File(dir, candidate);
+            }
+         }
+      }
+      return fallback;
+   }
+
+   @Override
+   public String toString() {
+      return this.key.getAbsolutePath();
+   }
+}
@@ -4,6 +4,9 @@
 
 package com.kotor.resource.formats.ncs;
 
+import java.util.Locale;
+import java.util.function.Supplier;
+
 /**
  * Centralized logging utility with color support and section separation.
  * <p>
@@ -13,12 +16,71 @@ package com.kotor.resource.formats.ncs;
  *   <li>Section separation with visual dividers</li>
  *   <li>Indented compiler output</li>
  *   <li>Consistent formatting across all log types</li>
+ *   <li>A global {@link Level} below which messages are dropped</li>
  * </ul>
+ * <p>
+ * Hot paths should pass a {@link Supplier} (or test {@link #isEnabled(Level)}) so that
+ * messages below the level are never formatted. The initial level comes from the
+ * {@code ncsdecomp.log} system property and defaults to {@link Level#TRACE}.
  */
 public final class Logger {
    private Logger() {
    }
 
+   /**
+    * Message severities, lowest first. {@link #OFF} silences every levelled message; the
+    * unlevelled helpers such as {@link #success(String)} and the section headers still print.
+    */
+   public enum Level {
+      TRACE,
+      DEBUG,
+      INFO,
+      WARN,
+      ERROR,
+      OFF;
+
+      /** Parses a level name, ignoring case. */
+      public static Level parse(String name) {
+         return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+      }
+   }
+
+   private static volatile Level level = initialLevel();
+
+   private static Level initialLevel() {
+      String configured = System.getProperty("ncsdecomp.log");
+      if (configured != null) {
+         try {
+            return Level.parse(configured);
+         } catch (IllegalArgumentException e) {
+            System.err.println("Unknown ncsdecomp.log level '" + configured + "', using TRACE");
+         }
+      }
+      return Level.TRACE;
+   }
+
+   /** Sets the lowest level that is still logged. */
+   public static void setLevel(Level newLevel) {
+      level = newLevel;
+   }
+
+   public static Level getLevel() {
+      return level;
+   }
+
+   /** Whether messages at {@code messageLevel} are currently logged. */
+   public static boolean isEnabled(Level messageLevel) {
+      return messageLevel.compareTo(level) >= 0 && messageLevel != Level.OFF;
+   }
+
+   public static boolean isTraceEnabled() {
+      return isEnabled(Level.TRACE);
+   }
+
+   public static boolean isDebugEnabled() {
+      return isEnabled(Level.DEBUG);
+   }
+
    // ANSI color codes
    private static final String RESET = "\033[0m";
    private static final String BOLD = "\033[1m";
@@ -125,35 +187,72 @@ public final class Logger {
     * Logs a TRACE message (control flow, state transitions, etc.).
     */
    public static void trace(String message) {
-      System.err.println(colorize("TRACE", DIM + CYAN) + " " + dim(message));
+      if (isEnabled(Level.TRACE)) {
+         System.err.println(colorize("TRACE", DIM + CYAN) + " " + dim(message));
+      }
+   }
+
+   /**
+    * Logs a TRACE message built only if the level is enabled.
+    */
+   public static void trace(Supplier<String> message) {
+      if (isEnabled(Level.TRACE)) {
+         trace(message.get());
+      }
    }
 
    /**
     * Logs a DEBUG message (control flow, state transitions, etc.).
     */
    public static void debug(String message) {
-      System.err.println(colorize("DEBUG", CYAN) + " " + dim(message));
+      if (isEnabled(Level.DEBUG)) {
+         System.err.println(colorize("DEBUG", CYAN) + " " + dim(message));
+      }
+   }
+
+   /**
+    * Logs a DEBUG message built only if the level is enabled.
+    */
+   public static void debug(Supplier<String> message) {
+      if (isEnabled(Level.DEBUG)) {
+         debug(message.get());
+      }
    }
 
    /**
     * Logs an INFO message.
     */
    public static void info(String message) {
-      System.err.println(colorize("INFO", BLUE) + "  " + message);
+      if (isEnabled(Level.INFO)) {
+         System.err.println(colorize("INFO", BLUE) + "  " + message);
+      }
+   }
+
+   /**
+    * Logs a INFO message built only if the level is enabled.
+    */
+   public static void info(Supplier<String> message) {
+      if (isEnabled(Level.INFO)) {
+         info(message.get());
+      }
    }
 
    /**
     * Logs a WARNING message.
     */
    public static void warn(String message) {
-      System.err.println(colorize("WARN", YELLOW) + " " + message);
+      if (isEnabled(Level.WARN)) {
+         System.err.println(colorize("WARN", YELLOW) + " " + message);
+      }
    }
 
    /**
     * Logs an ERROR message.
     */
    public static void error(String message) {
-      System.err.println(colorize("ERROR", RED) + " " + bold(message));
+      if (isEnabled(Level.ERROR)) {
+         System.err.println(colorize("ERROR", RED) + " " + bold(message));
+      }
    }
 
    /**
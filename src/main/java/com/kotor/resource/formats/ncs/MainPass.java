@@ -63,23 +63,24 @@ public class MainPass extends PrunedDepthFirstAdapter {
    /** Declared return type of the current subroutine. */
    protected Type type;
 
-   public MainPass(SubroutineState state, NodeAnalysisData nodedata, SubroutineAnalysisData subdata, ActionsData actions) {
+   public MainPass(SubroutineState state, NodeAnalysisData nodedata, SubroutineAnalysisData subdata, ActionsData actions,
+         DecompilerOptions options) {
       this.nodedata = nodedata;
       this.subdata = subdata;
       this.actions = actions;
       state.initStack(this.stack);
       this.skipdeadcode = false;
-      this.state = new SubScriptState(nodedata, subdata, this.stack, state, actions, FileDecompiler.preferSwitches);
+      this.state = new SubScriptState(nodedata, subdata, this.stack, state, actions, options);
       this.globals = false;
       this.backupstack = null;
       this.type = state.type();
    }
 
-   protected MainPass(NodeAnalysisData nodedata, SubroutineAnalysisData subdata) {
+   protected MainPass(NodeAnalysisData nodedata, SubroutineAnalysisData subdata, DecompilerOptions options) {
       this.nodedata = nodedata;
       this.subdata = subdata;
       this.skipdeadcode = false;
-      this.state = new SubScriptState(nodedata, subdata, this.stack, FileDecompiler.preferSwitches);
+      this.state = new SubScriptState(nodedata, subdata, this.stack, options);
       this.globals = true;
       this.backupstack = null;
       this.type = new Type((byte)-1);
@@ -544,8 +545,10 @@ public class MainPass extends PrunedDepthFirstAdapter {
          action.run();
       } catch (RuntimeException e) {
          // Log the exception details for debugging while allowing decompiler to continue
-         System.err.println("Decompiler recovery triggered at position " + this.nodedata.getPos(node) + ": " + e.getMessage());
-         e.printStackTrace();
+         Logger.info("Decompiler recovery triggered at position " + this.nodedata.getPos(node) + ": " + e.getMessage());
+         if (Logger.isDebugEnabled()) {
+            e.printStackTrace();
+         }
          this.stack = stackSnapshot;
          this.state.setStack(this.stack);
          this.backupstack = backupSnapshot;
@@ -4,12 +4,51 @@
 
 package com.kotor.resource.formats.ncs;
 
+import com.kotor.resource.formats.ncs.analysis.SignatureDatabase;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Headless CLI entrypoint for NCSDecomp.
@@ -41,12 +80,36 @@ public final class NCSDecompCLI {
          return;
       }
 
+      // Quiet runs skip formatting and printing of per-file and per-subroutine diagnostics
+      if (cfg.logLevel != null) {
+         Logger.setLevel(cfg.logLevel);
+      } else if (cfg.quiet) {
+         Logger.setLevel(Logger.Level.WARN);
+      }
+
       if (cfg.version) {
          printVersion();
          return;
       }
 
-      if (cfg.inputs.isEmpty()) {
+      if (cfg.daemon && cfg.daemonPort < 0) {
+         // Daemon responses own stdout; divert all logging to stderr
+         System.setOut(System.err);
+      }
+
+      DecompilerOptions options = buildOptions(cfg);
+      if (options == null) {
+         System.exit(1);
+         return;
+      }
+      DecompilerServices services = buildServices(cfg);
+
+      if (cfg.daemon || cfg.daemonPort >= 0) {
+         runDaemon(cfg, options, services);
+         return;
+      }
+
+      if (cfg.inputs.isEmpty() && cfg.installDir == null) {
          System.err.println("Error: at least one input .ncs file or directory is required.");
          printUsage();
          System.exit(1);
@@ -86,40 +149,7 @@ public final class NCSDecompCLI {
             // Game flag was explicitly set, try game-specific files
             String nssName = cfg.isK2 ? "tsl_nwscript.nss" : "k1_nwscript.nss";
 
-            // Try tools/ directory first
-            nwscriptFile = new File(new File(cwd, "tools"), nssName);
-
-            // Fall back to current working directory (legacy support)
-            if (!nwscriptFile.isFile()) {
-               nwscriptFile = new File(cwd, nssName);
-            }
-
-            if (!nwscriptFile.isFile()) {
-               // Try executable directory (jpackage puts nss files in app directory)
-               String exePath = System.getProperty("java.launcher.path");
-               if (exePath != null) {
-                  File exeDir = new File(exePath).getParentFile();
-                  if (exeDir != null) {
-                     File appDir = new File(exeDir, "app");
-                     if (appDir.exists()) {
-                        nwscriptFile = new File(appDir, nssName);
-                     }
-                  }
-               }
-            }
-
-            if (!nwscriptFile.isFile()) {
-               // Try JAR directory
-               try {
-                  String jarPath = NCSDecompCLI.class.getProtectionDomain().getCodeSource().getLocation().toURI().getPath();
-                  File jarDir = new File(jarPath).getParentFile();
-                  if (jarDir != null) {
-                     nwscriptFile = new File(jarDir, nssName);
-                  }
-               } catch (Exception e) {
-                  // Ignore
-               }
-            }
+            nwscriptFile = findGameNwscript(nssName);
 
             if (!nwscriptFile.isFile()) {
                System.err.println("Error: nwscript file not found: " + nssName);
@@ -136,15 +166,14 @@ public final class NCSDecompCLI {
          }
       }
 
-      FileDecompiler.isK2Selected = cfg.isK2;
-      FileDecompiler.preferSwitches = cfg.preferSwitches;
-      FileDecompiler.strictSignatures = cfg.strictSignatures;
       Charset charset = cfg.encoding;
 
       // Collect files with their base directories for hierarchy preservation
       List<InputFile> worklist = new ArrayList<>();
       List<File> inputFiles = new ArrayList<>();
       List<File> inputDirs = new ArrayList<>();
+      List<File> keyFiles = new ArrayList<>();
+      List<InputFile> capsules = new ArrayList<>();
 
       for (String input : cfg.inputs) {
          File f = new File(input);
@@ -152,7 +181,11 @@ public final class NCSDecompCLI {
             System.err.println("Warning: input does not exist, skipping: " + f.getAbsolutePath());
             continue;
          }
-         if (f.isFile()) {
+         if (f.isFile() && f.getName().toLowerCase().endsWith(".key")) {
+            keyFiles.add(f);
+         } else if (f.isFile() && Capsule.isCapsule(f.getName())) {
+            capsules.add(new InputFile(f, f.getParentFile()));
+         } else if (f.isFile()) {
             inputFiles.add(f);
          } else if (f.isDirectory()) {
             inputDirs.add(f);
@@ -167,23 +200,46 @@ public final class NCSDecompCLI {
       }
 
       for (File inputDir : inputDirs) {
-         collect(inputDir, cfg.recursive, worklist, inputDir);
+         collect(inputDir, cfg.recursive, worklist, capsules, inputDir);
+      }
+
+      ResrefFilter resrefs = ResrefFilter.of(cfg.resrefs);
+      for (File keyFile : keyFiles) {
+         collectKey(keyFile, resrefs, worklist);
+      }
+      for (InputFile capsule : capsules) {
+         collectCapsule(capsule, resrefs, worklist);
+      }
+      if (cfg.installDir != null) {
+         collectIndexed(cfg, resrefs, worklist);
       }
 
-      if (worklist.isEmpty()) {
+      if (worklist.isEmpty() && !cfg.watch) {
          System.err.println("No .ncs files found to decompile.");
          System.exit(1);
          return;
       }
 
+      if (cfg.zipPath != null && (cfg.stdout || cfg.watch || cfg.output != null || cfg.outDir != null)) {
+         System.err.println("Error: --zip cannot be combined with --stdout, --watch, -o or -O.");
+         System.exit(1);
+         return;
+      }
+      if (cfg.zipPath != null && new File(cfg.zipPath).exists() && !cfg.overwrite) {
+         System.err.println("Error: archive already exists (use --overwrite): " + new File(cfg.zipPath).getAbsolutePath());
+         System.exit(1);
+         return;
+      }
+
       // Validate output configuration
+      boolean watchDirs = cfg.watch && !inputDirs.isEmpty();
       File outputFileOrDir = null;
       if (cfg.output != null) {
          outputFileOrDir = new File(cfg.output);
          // If output exists and is a directory, or if we have multiple inputs, treat as directory
          if (outputFileOrDir.exists() && outputFileOrDir.isDirectory()) {
             // Valid: directory output
-         } else if (worklist.size() == 1 && !outputFileOrDir.exists()) {
+         } else if (worklist.size() == 1 && !outputFileOrDir.exists() && !watchDirs) {
             // Single file output - check if parent directory exists
             File parent = outputFileOrDir.getParentFile();
             if (parent != null && !parent.exists()) {
@@ -191,8 +247,8 @@ public final class NCSDecompCLI {
                System.exit(1);
                return;
             }
-         } else if (worklist.size() > 1) {
-            // Multiple inputs - output must be a directory
+         } else if (worklist.size() > 1 || watchDirs) {
+            // Multiple inputs (or directories that may gain files) - output must be a directory
             if (!outputFileOrDir.exists()) {
                // Create directory if it doesn't exist
                if (!outputFileOrDir.mkdirs()) {
@@ -211,45 +267,653 @@ public final class NCSDecompCLI {
          outputFileOrDir = new File(System.getProperty("user.dir"));
       }
 
+      int exitCode = 0;
+      try {
+         // Use CLI-specific constructor with explicit nwscript path (no config files needed).
+         // Workers each get their own decompiler; the parsed actions table is shared.
+         int jobs = Math.max(1, cfg.watch ? cfg.jobs : Math.min(cfg.jobs, worklist.size()));
+         BlockingQueue<FileDecompiler> decompilers = new ArrayBlockingQueue<>(jobs);
+         for (int i = 0; i < jobs; i++) {
+            decompilers.add(new FileDecompiler(nwscriptFile, options, services));
+         }
+         try (RunContext run = RunContext.open(cfg, nwscriptFile)) {
+            decompileAll(worklist, decompilers, outputFileOrDir, charset, run);
+            if (run.stopped) {
+               exitCode = 1;
+            } else {
+               if (services.signatureExport() != null) {
+                  services.signatureExport().save(new File(cfg.exportSignaturesPath));
+                  System.out.println("[INFO] NCSDecompCLI: Wrote " + services.signatureExport().size()
+                        + " subroutine signatures to " + cfg.exportSignaturesPath);
+               }
+               if (services.resultCache() != null) {
+                  System.out.println("[INFO] NCSDecompCLI: Result cache " + cfg.cacheDir + ": "
+                        + services.resultCache().hits() + " hits, " + services.resultCache().misses() + " misses");
+               }
+               if (services.profile() != null) {
+                  System.err.print(services.profile().summary());
+               }
+               if (cfg.verify) {
+                  System.out.println("[INFO] NCSDecompCLI: Round-trip: " + run.identical.get() + " identical, "
+                        + run.differing.get() + " differ, " + run.uncompilable.get() + " failed to compile, "
+                        + run.unsupported.get() + " unsupported");
+               }
+               if (cfg.watch) {
+                  watch(inputDirs, inputFiles, decompilers, outputFileOrDir, charset, run);
+                  exitCode = run.stopped ? 1 : 0;
+               }
+            }
+         }
+      } catch (Exception ex) {
+         System.err.println("Fatal: " + ex.getMessage());
+         exitCode = 1;
+      } finally {
+         services.sandboxPool().close();
+      }
+      // Only exit once the zip and report are closed, so a failed run still leaves them readable
+      if (exitCode != 0) {
+         System.exit(exitCode);
+      }
+   }
+
+   /**
+    * Decompiles a worklist with the pooled decompilers, in parallel when more than one is
+    * available.
+    */
+   private static void decompileAll(List<InputFile> worklist, BlockingQueue<FileDecompiler> decompilers,
+         File outputFileOrDir, Charset charset, RunContext run) throws InterruptedException {
+      if (worklist.size() > 1) {
+         runPipeline(worklist, decompilers, Math.min(decompilers.size(), worklist.size()), outputFileOrDir, charset, run);
+         return;
+      }
+      FileDecompiler fd = decompilers.take();
       try {
-         // Use CLI-specific constructor with explicit nwscript path (no config files needed)
-         FileDecompiler fd = new FileDecompiler(nwscriptFile);
          for (InputFile input : worklist) {
-            try {
-               if (cfg.stdout) {
-                  String code = fd.decompileToString(input.file);
-                  System.out.println("// " + input.file.getName());
-                  System.out.println(code);
+            if (run.stopped) {
+               break;
+            }
+            report(write(decompileOne(fd, input, null, outputFileOrDir, run), charset, run), run);
+         }
+      } finally {
+         decompilers.put(fd);
+      }
+   }
+
+   /**
+    * Watches the inputs and keeps the outputs in sync until the process is stopped.
+    * <p>
+    * Events are collected until the inputs have been quiet for the debounce interval (or
+    * events keep arriving for ten intervals), then created or modified scripts are
+    * decompiled again and outputs of deleted scripts are removed. New subdirectories are
+    * picked up in recursive mode.
+    */
+   private static void watch(List<File> inputDirs, List<File> inputFiles, BlockingQueue<FileDecompiler> decompilers,
+         File outputFileOrDir, Charset charset, RunContext run) throws IOException, InterruptedException {
+      // Changed scripts replace the outputs written by the initial pass
+      run.overwrite = true;
+      WatchService service = FileSystems.getDefault().newWatchService();
+      Map<WatchKey, Path> keys = new HashMap<>();
+      Map<Path, File> baseDirs = new HashMap<>();
+      Set<Path> singleFiles = new HashSet<>();
+      for (File dir : inputDirs) {
+         registerTree(service, dir.toPath().toAbsolutePath().normalize(), dir, run.cfg.recursive, keys, baseDirs);
+      }
+      for (File file : inputFiles) {
+         Path path = file.toPath().toAbsolutePath().normalize();
+         singleFiles.add(path);
+         if (!baseDirs.containsKey(path.getParent())) {
+            registerTree(service, path.getParent(), path.getParent().toFile(), false, keys, baseDirs);
+         }
+      }
+      Logger.info("NCSDecompCLI: Watching " + keys.size() + " director" + (keys.size() == 1 ? "y" : "ies")
+            + " for changes (Ctrl+C to stop)");
+
+      Map<Path, Boolean> pending = new LinkedHashMap<>();  // script -> deleted
+      long firstPending = 0L;
+      while (!keys.isEmpty() && !run.stopped) {
+         WatchKey key;
+         if (pending.isEmpty()) {
+            key = service.take();
+            firstPending = System.currentTimeMillis();
+         } else if (System.currentTimeMillis() - firstPending >= 10L * run.cfg.watchDebounceMs) {
+            key = null;
+         } else {
+            key = service.poll(run.cfg.watchDebounceMs, TimeUnit.MILLISECONDS);
+         }
+         if (key == null) {
+            applyChanges(pending, baseDirs, decompilers, outputFileOrDir, charset, run);
+            pending.clear();
+            continue;
+         }
+
+         Path dir = keys.get(key);
+         for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+               break;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+               // Events were lost; treat every script in the directory as modified
+               for (File f : listScripts(dir.toFile(), false)) {
+                  pending.put(f.toPath().toAbsolutePath().normalize(), Boolean.FALSE);
+               }
+               continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && run.cfg.recursive && Files.isDirectory(child)
+                  && !singleFiles.contains(child)) {
+               registerTree(service, child, baseDirs.get(dir), true, keys, baseDirs);
+               for (File f : listScripts(child.toFile(), true)) {
+                  pending.put(f.toPath().toAbsolutePath().normalize(), Boolean.FALSE);
+               }
+               continue;
+            }
+            if (!child.getFileName().toString().toLowerCase().endsWith(".ncs")) {
+               continue;
+            }
+            if (!isUnderInputDir(child, inputDirs) && !singleFiles.contains(child)) {
+               continue;
+            }
+            // Keep the latest event per script, ordered by when it last changed
+            pending.remove(child);
+            pending.put(child, event.kind() == StandardWatchEventKinds.ENTRY_DELETE);
+         }
+         if (!key.reset()) {
+            keys.remove(key);
+         }
+      }
+   }
+
+   private static void applyChanges(Map<Path, Boolean> pending, Map<Path, File> baseDirs,
+         BlockingQueue<FileDecompiler> decompilers, File outputFileOrDir, Charset charset, RunContext run)
+         throws InterruptedException {
+      List<InputFile> changed = new ArrayList<>();
+      for (Map.Entry<Path, Boolean> e : pending.entrySet()) {
+         Path script = e.getKey();
+         File baseDir = baseDirs.get(script.getParent());
+         InputFile input = new InputFile(script.toFile(), baseDir != null ? baseDir : script.getParent().toFile());
+         if (!e.getValue() && Files.isRegularFile(script)) {
+            changed.add(input);
+         } else if (e.getValue() && !run.cfg.stdout) {
+            File outFile = resolveOutput(input, outputFileOrDir, run.cfg);
+            if (outFile.isFile()) {
+               if (outFile.delete()) {
+                  System.out.println("Removed " + outFile.getAbsolutePath());
                } else {
-                  File outFile = resolveOutput(input, outputFileOrDir, cfg);
-                  File parentDir = outFile.getParentFile();
-                  if (parentDir != null && !parentDir.exists()) {
-                     System.out.println("[INFO] NCSDecompCLI: CREATING parent directory: " + parentDir.getAbsolutePath());
-                     if (!parentDir.mkdirs()) {
-                        System.err.println("[ERROR] NCSDecompCLI: Failed to create parent directory: " + parentDir.getAbsolutePath());
-                        continue;
-                     }
-                     System.out.println("[INFO] NCSDecompCLI: Created parent directory: " + parentDir.getAbsolutePath());
-                  }
-                  fd.decompileToFile(input.file, outFile, charset, cfg.overwrite);
-                  if (!cfg.quiet) {
-                     System.out.println("Decompiled " + input.file.getAbsolutePath() + " -> " + outFile.getAbsolutePath());
-                  }
+                  System.err.println("[ERROR] NCSDecompCLI: Failed to remove " + outFile.getAbsolutePath());
                }
-            } catch (Exception ex) {
-               System.err.println("Failed to decompile " + input.file.getAbsolutePath() + ": " + ex.getMessage());
-               if (cfg.failFast) {
-                  System.exit(1);
+            }
+         }
+      }
+      decompileAll(changed, decompilers, outputFileOrDir, charset, run);
+   }
+
+   private static void registerTree(WatchService service, Path dir, File baseDir, boolean recursive,
+         Map<WatchKey, Path> keys, Map<Path, File> baseDirs) throws IOException {
+      WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+      keys.put(key, dir);
+      baseDirs.put(dir, baseDir);
+      if (recursive) {
+         File[] kids = dir.toFile().listFiles();
+         if (kids != null) {
+            for (File kid : kids) {
+               if (kid.isDirectory()) {
+                  registerTree(service, kid.toPath(), baseDir, true, keys, baseDirs);
                }
             }
          }
+      }
+   }
+
+   private static List<File> listScripts(File dir, boolean recursive) {
+      List<InputFile> found = new ArrayList<>();
+      collect(dir, recursive, found, dir);
+      List<File> files = new ArrayList<>();
+      for (InputFile input : found) {
+         files.add(input.file);
+      }
+      return files;
+   }
+
+   private static boolean isUnderInputDir(Path script, List<File> inputDirs) {
+      for (File dir : inputDirs) {
+         if (script.startsWith(dir.toPath().toAbsolutePath().normalize())) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Decompiles the worklist as a three-stage pipeline: a reader thread prefetches the NCS
+    * bytes, {@code jobs} workers decompile them and the calling thread writes the outputs.
+    * Disk reads and writes overlap with decompilation instead of adding to it.
+    * <p>
+    * Results are written and reported in worklist order, so console output matches a
+    * sequential run. At most {@code --queue-depth} files are between reading and writing at
+    * any time, which bounds memory. With {@code --fail-fast} the first failure in that order
+    * stops the pipeline; later files are cancelled and nothing more is written.
+    */
+   private static void runPipeline(final List<InputFile> worklist, final BlockingQueue<FileDecompiler> decompilers,
+         int jobs, final File outputFileOrDir, Charset charset, final RunContext run) throws InterruptedException {
+      int depth = Math.max(jobs, run.cfg.queueDepth > 0 ? run.cfg.queueDepth : jobs * 4);
+      final Semaphore window = new Semaphore(depth);
+      final BlockingQueue<Future<FileResult>> pending = new ArrayBlockingQueue<>(depth);
+      final ExecutorService workers = Executors.newFixedThreadPool(jobs, daemonThreads("ncsdecomp-worker-"));
+      Thread reader = daemonThreads("ncsdecomp-reader-").newThread(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               for (final InputFile input : worklist) {
+                  window.acquire();
+                  // Archive entries are already mapped
+                  final byte[] ncs = input.entry == null ? prefetch(input.file) : null;
+                  pending.put(workers.submit(new Callable<FileResult>() {
+                     @Override
+                     public FileResult call() throws Exception {
+                        FileDecompiler fd = decompilers.take();
+                        try {
+                           return decompileOne(fd, input, ncs, outputFileOrDir, run);
+                        } finally {
+                           decompilers.put(fd);
+                        }
+                     }
+                  }));
+               }
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+      });
+      reader.start();
+      try {
+         for (int i = 0; i < worklist.size() && !run.stopped; i++) {
+            report(write(awaitResult(pending.take()), charset, run), run);
+            window.release();
+         }
+      } finally {
+         // Files still queued or in flight after a --fail-fast stop are abandoned unwritten
+         reader.interrupt();
+         workers.shutdownNow();
+         for (Future<FileResult> f : pending) {
+            f.cancel(true);
+         }
+      }
+   }
+
+   /**
+    * Reads a script ahead of decompilation. Returns null if it cannot be read, leaving the
+    * decompiler to read the file itself and report the problem.
+    */
+   private static byte[] prefetch(File file) {
+      try {
+         return Files.readAllBytes(file.toPath());
+      } catch (IOException e) {
+         return null;
+      }
+   }
+
+   private static ThreadFactory daemonThreads(final String prefix) {
+      return new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         @Override
+         public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + this.count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+         }
+      };
+   }
+
+   private static FileResult awaitResult(Future<FileResult> future) throws InterruptedException {
+      try {
+         return future.get();
+      } catch (ExecutionException ex) {
+         Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+         return new FileResult("", "Failed to decompile: " + cause.getMessage(), true);
+      }
+   }
+
+   /**
+    * Decompiles one input. Console text is collected in the result instead of being printed,
+    * and the output file is left to {@link #write}, so pipelined runs can emit both in
+    * worklist order.
+    *
+    * @param ncs prefetched contents of the input, or null to read it here
+    */
+   private static FileResult decompileOne(FileDecompiler fd, InputFile input, byte[] ncs, File outputFileOrDir,
+         RunContext run) {
+      StringBuilder out = new StringBuilder();
+      String nl = System.lineSeparator();
+      try {
+         if (run.cfg.stdout) {
+            String code = decompile(fd, input, ncs);
+            out.append("// ").append(input.file.getName()).append(nl);
+            out.append(code).append(nl);
+            return budgetResult(fd, input, out, null, null, verify(input, ncs, code, out, run));
+         }
+         if (run.zip != null) {
+            String code = decompile(fd, input, ncs);
+            return budgetResult(fd, input, out, null, code, verify(input, ncs, code, out, run));
+         }
+         File outFile = resolveOutput(input, outputFileOrDir, run.cfg);
+         if (outFile.exists() && !run.overwrite) {
+            throw new IOException("Output file already exists: " + outFile.getAbsolutePath());
+         }
+         File parentDir = outFile.getParentFile();
+         if (parentDir != null && !parentDir.exists()) {
+            boolean info = Logger.isEnabled(Logger.Level.INFO);
+            if (info) {
+               out.append("[INFO] NCSDecompCLI: CREATING parent directory: ").append(parentDir.getAbsolutePath()).append(nl);
+            }
+            // Another worker may create the same directory concurrently
+            if (!parentDir.mkdirs() && !parentDir.isDirectory()) {
+               return new FileResult(out.toString(),
+                     "[ERROR] NCSDecompCLI: Failed to create parent directory: " + parentDir.getAbsolutePath(), false);
+            }
+            if (info) {
+               out.append("[INFO] NCSDecompCLI: Created parent directory: ").append(parentDir.getAbsolutePath()).append(nl);
+            }
+         }
+         String code = decompile(fd, input, ncs);
+         return budgetResult(fd, input, out, outFile, code, verify(input, ncs, code, out, run));
       } catch (Exception ex) {
-         System.err.println("Fatal: " + ex.getMessage());
+         return new FileResult(out.toString(), "Failed to decompile " + input.path() + ": " + ex.getMessage(),
+               true, input, null, null, null);
+      }
+   }
+
+   private static String decompile(FileDecompiler fd, InputFile input, byte[] ncs) throws DecompilerException {
+      if (input.entry != null) {
+         return fd.decompileToString(input.entry.fileName(), input.entry.data());
+      }
+      return fd.decompileToString(input.file, ncs);
+   }
+
+   private static FileResult budgetResult(FileDecompiler fd, InputFile input, StringBuilder out, File outFile,
+         String code, String roundTrip) {
+      String budget = fd.getLastBudgetExceeded();
+      String warning = budget != null
+            ? "Warning: " + budget + " for " + input.path() + " (fallback stub written)"
+            : null;
+      return new FileResult(out.toString(), warning, false, input, outFile, code, fd.getLastStats(), null,
+            roundTrip);
+   }
+
+   /**
+    * The {@code --verify} check of one file: recompiles the decompiled code in-process and
+    * compares it with the input bytes. Mismatches are noted in {@code out}; returns
+    * "identical", "differs", "error", or "unsupported" when the code uses a construct the
+    * built-in compiler does not implement (these are counted apart from real errors), or
+    * null when not verifying.
+    */
+   private static String verify(InputFile input, byte[] ncs, String code, StringBuilder out, RunContext run)
+         throws IOException {
+      if (run.compiler == null) {
+         return null;
+      }
+      byte[] original;
+      if (input.entry != null) {
+         ByteBuffer data = input.entry.data();
+         original = new byte[data.remaining()];
+         data.get(original);
+      } else {
+         original = ncs != null ? ncs : Files.readAllBytes(input.file.toPath());
+      }
+      String nl = System.lineSeparator();
+      try {
+         int diff = RoundTripUtil.compareRecompiled(run.compiler, input.file.getName(), code, original);
+         if (diff < 0) {
+            run.identical.incrementAndGet();
+            return "identical";
+         }
+         run.differing.incrementAndGet();
+         out.append("Warning: round-trip of ").append(input.path()).append(" differs at byte ").append(diff)
+               .append(nl);
+         return "differs";
+      } catch (NssCompiler.UnsupportedConstructException e) {
+         run.unsupported.incrementAndGet();
+         out.append("Note: round-trip of ").append(input.path()).append(" not checked: ").append(e.getMessage())
+               .append(nl);
+         return "unsupported";
+      } catch (DecompilerException e) {
+         run.uncompilable.incrementAndGet();
+         out.append("Warning: round-trip of ").append(input.path()).append(" does not compile: ")
+               .append(e.getMessage()).append(nl);
+         return "error";
+      }
+   }
+
+   /**
+    * Writes the decompiled source of a result, if it has one: as the next entry of the
+    * {@code --zip} archive, or through a file channel in a single encoded buffer. Returns
+    * the result to report, which carries the write error if writing failed.
+    */
+   private static FileResult write(FileResult result, Charset charset, RunContext run) {
+      if (result.code == null || (result.outFile == null && run.zip == null)) {
+         return result;
+      }
+      String target;
+      try {
+         if (run.zip != null) {
+            String entry = zipEntryName(result.input, run.cfg);
+            run.zip.put(entry, result.code.getBytes(charset));
+            target = run.zip.getArchive().getAbsolutePath() + "!/" + entry;
+         } else {
+            try (FileChannel channel = FileChannel.open(result.outFile.toPath(), StandardOpenOption.CREATE,
+                  StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+               ByteBuffer buffer = charset.encode(result.code);
+               while (buffer.hasRemaining()) {
+                  channel.write(buffer);
+               }
+            }
+            target = result.outFile.getAbsolutePath();
+         }
+      } catch (IOException ex) {
+         return new FileResult(result.out,
+               "Failed to decompile " + result.input.path() + ": " + ex.getMessage(), true, result.input,
+               null, null, result.stats, null, result.roundTrip);
+      }
+      String out = run.cfg.quiet ? result.out
+            : result.out + "Decompiled " + result.input.path() + " -> " + target + System.lineSeparator();
+      return new FileResult(out, result.error, result.failed, result.input, null, null, result.stats, target,
+            result.roundTrip);
+   }
+
+   private static void report(FileResult result, RunContext run) {
+      System.out.print(result.out);
+      if (result.error != null) {
+         System.err.println(result.error);
+      }
+      if (run.report != null && result.input != null) {
+         try {
+            run.report.write(Json.write(reportRecord(result)));
+            run.report.write('\n');
+            run.report.flush();
+         } catch (IOException e) {
+            System.err.println("[ERROR] NCSDecompCLI: Failed to write report " + run.cfg.reportPath + ": " + e.getMessage());
+            run.report = null;
+         }
+      }
+      if (result.failed && run.cfg.failFast) {
+         // Stop taking new results; the caller winds down the run and closes the outputs
+         run.stopped = true;
+      }
+   }
+
+   /**
+    * The {@code --report} record of one file: outcome, sizes and per-stage time and
+    * allocations.
+    */
+   private static Map<String, Object> reportRecord(FileResult result) {
+      Map<String, Object> record = new LinkedHashMap<>();
+      DecompileStats stats = result.stats;
+      record.put("file", result.input.path());
+      record.put("output", result.target);
+      record.put("status", result.failed || stats == null ? "failed" : stats.status());
+      if (result.error != null) {
+         record.put("message", result.error);
+      }
+      if (result.roundTrip != null) {
+         record.put("roundTrip", result.roundTrip);
+      }
+      if (stats == null) {
+         record.put("bytes", result.input.length());
+         return record;
+      }
+      record.put("failedStage", stats.failedStage());
+      record.put("cached", stats.cached());
+      record.put("bytes", stats.byteSize());
+      record.put("instructions", stats.instructions());
+      record.put("subroutines", stats.subroutines());
+      record.put("typedSubroutines", stats.typedSubroutines());
+      record.put("counters", new LinkedHashMap<String, Object>(stats.counters()));
+      StageTimings timings = stats.timings();
+      Map<String, Object> stages = new LinkedHashMap<>();
+      for (Map.Entry<String, Long> e : timings.nanos().entrySet()) {
+         Map<String, Object> stage = new LinkedHashMap<>();
+         stage.put("ms", e.getValue() / 1000000.0);
+         Long allocated = timings.allocatedBytes().get(e.getKey());
+         if (allocated != null) {
+            stage.put("allocatedBytes", allocated);
+         }
+         stages.put(e.getKey(), stage);
+      }
+      record.put("totalMs", timings.totalNanos() / 1000000.0);
+      record.put("stages", stages);
+      return record;
+   }
+
+   /**
+    * Builds decompiler options from the command line, loading the signature database if
+    * requested. Returns null after reporting an error.
+    */
+   private static DecompilerOptions buildOptions(CliConfig cfg) {
+      DecompilerOptions.Builder options = DecompilerOptions.builder()
+            .k2(cfg.isK2)
+            .preferSwitches(cfg.preferSwitches)
+            .strictSignatures(cfg.strictSignatures)
+            .subroutineCache(cfg.subroutineCache)
+            .timeBudgetMillis(cfg.timeBudgetMs)
+            .stepBudget(cfg.stepBudget)
+            .lean(cfg.lean)
+            .destroyParseTrees(cfg.destroyTrees)
+            .gcPerFile(cfg.gcPerFile);
+      if (cfg.signatureDbPath != null) {
+         try {
+            SignatureDatabase db = SignatureDatabase.load(new File(cfg.signatureDbPath));
+            System.out.println("[INFO] NCSDecompCLI: Loaded " + db.size()
+                  + " known signatures from " + cfg.signatureDbPath);
+            options.signatureDatabase(db);
+         } catch (IOException e) {
+            System.err.println("Error: could not read signature database " + cfg.signatureDbPath + ": " + e.getMessage());
+            return null;
+         }
+      }
+      return options.build();
+   }
+
+   /**
+    * Creates the caches, sinks and compiler sandbox pool shared by every decompiler of the run. The
+    * pool only creates its directory once a compile needs it; the caller closes it when the run ends.
+    */
+   private static DecompilerServices buildServices(CliConfig cfg) {
+      return DecompilerServices.builder()
+            .signatureExport(cfg.exportSignaturesPath != null ? new SignatureDatabase() : null)
+            .resultCache(cfg.cacheDir != null ? new ResultCache(new File(cfg.cacheDir)) : null)
+            .profile(cfg.profile ? new DecompileProfile() : null)
+            .sandboxPool(new CompilerSandboxPool())
+            .build();
+   }
+
+   /**
+    * Runs the JSON-lines daemon on stdin/stdout or a loopback socket until shutdown.
+    */
+   private static void runDaemon(CliConfig cfg, DecompilerOptions options, DecompilerServices services) {
+      File k1 = cfg.nwscriptPath != null && !cfg.isK2 ? new File(cfg.nwscriptPath) : findGameNwscript("k1_nwscript.nss");
+      File k2 = cfg.nwscriptPath != null && cfg.isK2 ? new File(cfg.nwscriptPath) : findGameNwscript("tsl_nwscript.nss");
+      k1 = k1.isFile() ? k1 : null;
+      k2 = k2.isFile() ? k2 : null;
+      if (k1 == null && k2 == null) {
+         System.err.println("Error: no k1_nwscript.nss or tsl_nwscript.nss found; use --nwscript <path> with -g.");
+         System.exit(1);
+         return;
+      }
+
+      NCSDecompDaemon daemon = new NCSDecompDaemon(options, services, k1, k2);
+      try {
+         if (cfg.daemonPort >= 0) {
+            daemon.listen(cfg.daemonPort);
+         } else {
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8));
+            daemon.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+         }
+         if (services.signatureExport() != null) {
+            services.signatureExport().save(new File(cfg.exportSignaturesPath));
+         }
+      } catch (IOException e) {
+         System.err.println("Fatal: " + e.getMessage());
+         services.sandboxPool().close();
          System.exit(1);
       }
+      services.sandboxPool().close();
+   }
+
+   /**
+    * Looks for a game-specific nwscript file in tools/, the working directory, the
+    * jpackage app directory and the JAR directory. The result may not exist.
+    */
+   private static File findGameNwscript(String nssName) {
+      File cwd = new File(System.getProperty("user.dir"));
+      // Try tools/ directory first
+      File file = new File(new File(cwd, "tools"), nssName);
+
+      // Fall back to current working directory (legacy support)
+      if (!file.isFile()) {
+         file = new File(cwd, nssName);
+      }
+
+      if (!file.isFile()) {
+         // Try executable directory (jpackage puts nss files in app directory)
+         String exePath = System.getProperty("java.launcher.path");
+         if (exePath != null) {
+            File exeDir = new File(exePath).getParentFile();
+            if (exeDir != null) {
+               File appDir = new File(exeDir, "app");
+               if (appDir.exists()) {
+                  file = new File(appDir, nssName);
+               }
+            }
+         }
+      }
+
+      if (!file.isFile()) {
+         // Try JAR directory
+         try {
+            String jarPath = NCSDecompCLI.class.getProtectionDomain().getCodeSource().getLocation().toURI().getPath();
+            File jarDir = new File(jarPath).getParentFile();
+            if (jarDir != null) {
+               file = new File(jarDir, nssName);
+            }
+         } catch (Exception e) {
+            // Ignore
+         }
+      }
+
+      return file;
    }
 
    private static void collect(File f, boolean recursive, List<InputFile> out, File baseDir) {
+      collect(f, recursive, out, null, baseDir);
+   }
+
+   /**
+    * Collects the scripts below {@code f}, and the capsules too if {@code capsules} is not
+    * null.
+    */
+   private static void collect(File f, boolean recursive, List<InputFile> out, List<InputFile> capsules,
+         File baseDir) {
       if (f.isFile() && f.getName().toLowerCase().endsWith(".ncs")) {
          out.add(new InputFile(f, baseDir));
       } else if (f.isDirectory()) {
@@ -260,13 +924,74 @@ public final class NCSDecompCLI {
          for (File kid : kids) {
             if (kid.isFile() && kid.getName().toLowerCase().endsWith(".ncs")) {
                out.add(new InputFile(kid, baseDir));
+            } else if (capsules != null && kid.isFile() && Capsule.isCapsule(kid.getName())) {
+               capsules.add(new InputFile(kid, baseDir));
             } else if (recursive && kid.isDirectory()) {
-               collect(kid, true, out, baseDir);
+               collect(kid, true, out, capsules, baseDir);
             }
          }
       }
    }
 
+   /**
+    * Adds the scripts of a capsule that match {@code resrefs}. Each capsule acts as a
+    * directory named like it, so outputs land in {@code <capsule>/<resref>.nss}.
+    */
+   private static void collectCapsule(InputFile capsule, ResrefFilter resrefs, List<InputFile> out) {
+      try {
+         Capsule c = Capsule.read(capsule.file);
+         for (ResourceEntry entry : c.entries(ResourceEntry.TYPE_NCS, resrefs)) {
+            out.add(new InputFile(new File(capsule.file, entry.fileName()), capsule.baseDir, entry));
+         }
+      } catch (IOException e) {
+         System.err.println("Warning: could not read " + capsule.file.getAbsolutePath() + ", skipping: " + e.getMessage());
+      }
+   }
+
+   /**
+    * Adds the scripts of a KEY file's BIFs that match {@code resrefs}. Their outputs go where
+    * those of extracted scripts next to the KEY would.
+    */
+   private static void collectKey(File keyFile, ResrefFilter resrefs, List<InputFile> out) {
+      try {
+         KeyFile key = KeyFile.read(keyFile);
+         List<ResourceEntry> entries = key.entries(ResourceEntry.TYPE_NCS, resrefs);
+         File dir = keyFile.getAbsoluteFile().getParentFile();
+         for (ResourceEntry entry : entries) {
+            out.add(new InputFile(new File(dir, entry.fileName()), dir, entry));
+         }
+         Logger.info("NCSDecompCLI: " + keyFile.getName() + ": " + entries.size() + " of "
+               + key.size(ResourceEntry.TYPE_NCS) + " scripts selected");
+      } catch (IOException e) {
+         System.err.println("Warning: could not read " + keyFile.getAbsolutePath() + ", skipping: " + e.getMessage());
+      }
+   }
+
+   /**
+    * Adds the scripts of a game install that match {@code resrefs}, looked up in its resref
+    * index after bringing the index up to date. Scripts from the BIFs are placed as if they
+    * sat in the install directory, those of capsules as for capsule inputs.
+    */
+   private static void collectIndexed(CliConfig cfg, ResrefFilter resrefs, List<InputFile> out) {
+      File install = new File(cfg.installDir);
+      File indexFile = cfg.indexPath != null ? new File(cfg.indexPath) : ResrefIndex.defaultFile(install);
+      try {
+         ResrefIndex index = ResrefIndex.update(install, indexFile);
+         List<ResrefIndex.Row> rows = index.find(resrefs, ResourceEntry.TYPE_NCS);
+         Logger.info("NCSDecompCLI: Index " + indexFile.getPath() + ": " + index.size() + " scripts in "
+               + index.containerCount() + " containers, " + index.rebuiltCount() + " reindexed; " + rows.size()
+               + " selected");
+         for (ResrefIndex.Row row : rows) {
+            ResourceEntry entry = index.open(row);
+            File container = index.container(row);
+            File dir = Capsule.isCapsule(container.getName()) ? container : index.getRoot();
+            out.add(new InputFile(new File(dir, entry.fileName()), index.getRoot(), entry));
+         }
+      } catch (IOException e) {
+         System.err.println("Warning: could not index " + install.getAbsolutePath() + ", skipping: " + e.getMessage());
+      }
+   }
+
    private static File resolveOutput(InputFile input, File outputFileOrDir, CliConfig cfg) {
       File inputFile = input.file;
       File baseDir = input.baseDir;
@@ -285,18 +1010,19 @@ public final class NCSDecompCLI {
          // Output is a directory - preserve hierarchy
          outDir = outputFileOrDir;
 
-         // Compute relative path from base directory to input file
-         Path basePath = baseDir.toPath().toAbsolutePath().normalize();
-         Path inputPath = inputFile.toPath().toAbsolutePath().normalize();
-         Path relativePath = basePath.relativize(inputPath);
-
-         // If there's a relative path (file is in a subdirectory), preserve it
-         if (relativePath.getParent() != null) {
-            outDir = new File(outDir, relativePath.getParent().toString());
+         // If the file is in a subdirectory of its base directory, preserve it
+         Path relativeDir = relativeDir(input);
+         if (relativeDir != null) {
+            outDir = new File(outDir, relativeDir.toString());
          }
       } else if (cfg.outDir != null) {
-         // Explicit output directory specified via --out-dir
+         // Explicit output directory specified via --out-dir; the hierarchy is flattened, but
+         // capsule entries keep their <capsule>/<resref>.nss subdirectory so resrefs cannot collide
          outDir = new File(cfg.outDir);
+         File container = inputFile.getParentFile();
+         if (input.entry != null && container != null && Capsule.isCapsule(container.getName())) {
+            outDir = new File(outDir, container.getName());
+         }
       } else {
          // Default: use outputFileOrDir (which defaults to cwd if output not specified)
          outDir = outputFileOrDir;
@@ -305,12 +1031,9 @@ public final class NCSDecompCLI {
          // by computing relative path from the original input directory
          if (baseDir != null && !baseDir.equals(inputFile.getParentFile())) {
             // This file came from a directory input, preserve its relative path
-            Path basePath = baseDir.toPath().toAbsolutePath().normalize();
-            Path inputPath = inputFile.toPath().toAbsolutePath().normalize();
-            Path relativePath = basePath.relativize(inputPath);
-
-            if (relativePath.getParent() != null) {
-               outDir = new File(outDir, relativePath.getParent().toString());
+            Path relativeDir = relativeDir(input);
+            if (relativeDir != null) {
+               outDir = new File(outDir, relativeDir.toString());
             }
          }
       }
@@ -318,6 +1041,29 @@ public final class NCSDecompCLI {
       return new File(outDir, name);
    }
 
+   /**
+    * Name of the archive entry for an input with {@code --zip}: the same relative hierarchy
+    * and file name a directory output would get, with '/' separators.
+    */
+   private static String zipEntryName(InputFile input, CliConfig cfg) {
+      String name = cfg.prefix + stripExtension(input.file.getName()) + cfg.suffix + cfg.extension;
+      Path relativeDir = relativeDir(input);
+      if (relativeDir == null) {
+         return name;
+      }
+      return relativeDir.toString().replace(File.separatorChar, '/') + "/" + name;
+   }
+
+   /** Subdirectory of the input below its base directory, or null if it sits directly in it. */
+   private static Path relativeDir(InputFile input) {
+      if (input.baseDir == null) {
+         return null;
+      }
+      Path basePath = input.baseDir.toPath().toAbsolutePath().normalize();
+      Path inputPath = input.file.toPath().toAbsolutePath().normalize();
+      return basePath.relativize(inputPath).getParent();
+   }
+
    private static String stripExtension(String name) {
       int dot = name.lastIndexOf('.');
       return dot == -1 ? name : name.substring(0, dot);
@@ -385,9 +1131,23 @@ public final class NCSDecompCLI {
             case "--quiet":
                cfg.quiet = true;
                break;
+            case "--log-level":
+               requireValue(args, i, a);
+               try {
+                  cfg.logLevel = Logger.Level.parse(args[++i]);
+               } catch (IllegalArgumentException e) {
+                  throw new IllegalArgumentException("Invalid value for --log-level: " + args[i]
+                        + " (expected trace, debug, info, warn, error or off)");
+               }
+               break;
             case "--fail-fast":
                cfg.failFast = true;
                break;
+            case "-j":
+            case "--jobs":
+               requireValue(args, i, a);
+               cfg.jobs = parseJobs(args[++i]);
+               break;
             case "-g":
                requireValue(args, i, a);
                cfg.isK2 = parseGame(args[++i]);
@@ -416,6 +1176,105 @@ public final class NCSDecompCLI {
             case "--strict-signatures":
                cfg.strictSignatures = true;
                break;
+            case "--subroutine-cache":
+               cfg.subroutineCache = true;
+               break;
+            case "--signature-db":
+               requireValue(args, i, a);
+               cfg.signatureDbPath = args[++i];
+               break;
+            case "--export-signatures":
+               requireValue(args, i, a);
+               cfg.exportSignaturesPath = args[++i];
+               break;
+            case "--cache-dir":
+               requireValue(args, i, a);
+               cfg.cacheDir = args[++i];
+               break;
+            case "--profile":
+               cfg.profile = true;
+               break;
+            case "--lean":
+               cfg.lean = true;
+               break;
+            case "--verify":
+               cfg.verify = true;
+               break;
+            case "--resref":
+               requireValue(args, i, a);
+               cfg.resrefs.add(args[++i]);
+               break;
+            case "--install":
+               requireValue(args, i, a);
+               cfg.installDir = args[++i];
+               break;
+            case "--index":
+               requireValue(args, i, a);
+               cfg.indexPath = args[++i];
+               break;
+            case "--destroy-trees":
+               cfg.destroyTrees = true;
+               break;
+            case "--gc-per-file":
+               cfg.gcPerFile = true;
+               break;
+            case "--report":
+               requireValue(args, i, a);
+               cfg.reportPath = args[++i];
+               break;
+            case "--zip":
+               requireValue(args, i, a);
+               cfg.zipPath = args[++i];
+               break;
+            case "--zip-store":
+               cfg.zipStore = true;
+               break;
+            case "--queue-depth":
+               requireValue(args, i, a);
+               try {
+                  cfg.queueDepth = Integer.parseInt(args[++i]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid value for --queue-depth: " + args[i]);
+               }
+               break;
+            case "--time-budget":
+               requireValue(args, i, a);
+               try {
+                  cfg.timeBudgetMs = Long.parseLong(args[++i]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid value for --time-budget: " + args[i]);
+               }
+               break;
+            case "--step-budget":
+               requireValue(args, i, a);
+               try {
+                  cfg.stepBudget = Long.parseLong(args[++i]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid value for --step-budget: " + args[i]);
+               }
+               break;
+            case "--watch":
+               cfg.watch = true;
+               break;
+            case "--watch-debounce":
+               requireValue(args, i, a);
+               try {
+                  cfg.watchDebounceMs = Long.parseLong(args[++i]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid value for --watch-debounce: " + args[i]);
+               }
+               break;
+            case "--daemon":
+               cfg.daemon = true;
+               break;
+            case "--daemon-port":
+               requireValue(args, i, a);
+               try {
+                  cfg.daemonPort = Integer.parseInt(args[++i]);
+               } catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("Invalid value for --daemon-port: " + args[i]);
+               }
+               break;
             default:
                if (a.startsWith("-")) {
                   throw new IllegalArgumentException("Unknown option: " + a);
@@ -435,6 +1294,20 @@ public final class NCSDecompCLI {
       return v.equals("k2") || v.equals("tsl") || v.equals("2") || v.contains("kotor2");
    }
 
+   private static int parseJobs(String value) {
+      int jobs;
+      try {
+         jobs = Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid value for --jobs: " + value);
+      }
+      if (jobs < 0) {
+         throw new IllegalArgumentException("Invalid value for --jobs: " + value);
+      }
+      // 0 means one worker per available processor
+      return jobs == 0 ? Runtime.getRuntime().availableProcessors() : jobs;
+   }
+
    private static void requireValue(String[] args, int i, String opt) {
       if (i + 1 >= args.length) {
          throw new IllegalArgumentException("Option requires a value: " + opt);
@@ -480,7 +1353,8 @@ public final class NCSDecompCLI {
       System.out.println("Options:");
       System.out.println("  -h, --help                 Show help");
       System.out.println("  -v, --version              Show version info");
-      System.out.println("  -i, --input <path>         Input .ncs file or directory (can repeat or pass positional)");
+      System.out.println("  -i, --input <path>         Input .ncs file, directory, chitin.key or capsule");
+      System.out.println("                            (.erf/.mod/.rim/.sav; can repeat or pass positional)");
       System.out.println("  -o, --output <path>        Output file or directory (defaults to current directory)");
       System.out.println("                            If input is a directory, output must be a directory.");
       System.out.println("                            Directory hierarchy is preserved when both are directories.");
@@ -493,17 +1367,61 @@ public final class NCSDecompCLI {
       System.out.println("      --stdout               Write decompiled source to stdout");
       System.out.println("      --overwrite            Overwrite existing files");
       System.out.println("  -r, --recursive            Recurse into directories when inputs are dirs");
+      System.out.println("      --resref <glob>        Only decompile archive scripts matching the glob,");
+      System.out.println("                            e.g. k_act_* (can repeat; default all)");
+      System.out.println("      --install <dir>        Decompile the scripts of a game install matching");
+      System.out.println("                            --resref, found through a persistent resref index");
+      System.out.println("      --index <file>         Resref index to use and keep up to date");
+      System.out.println("                            (default one file per install under " + UserCache.root() + ")");
       System.out.println("  -g, --game <value>         Select game: k1, k2, tsl, 1, or 2 (default: k1)");
       System.out.println("      --k1 | --k2 | --tsl    Select game (default k1). Looks for k1_nwscript.nss or");
       System.out.println("                            tsl_nwscript.nss in current directory. Use --nwscript");
       System.out.println("                            to specify a different location. If no game flag is");
       System.out.println("                            set and --nwscript is not provided, defaults to");
       System.out.println("                            nwscript.nss in current directory.");
-      System.out.println("      --quiet                Suppress success logs");
+      System.out.println("      --quiet                Suppress success logs and diagnostics below warn");
+      System.out.println("      --log-level <level>    Diagnostics to print: trace, debug, info, warn,");
+      System.out.println("                            error or off (default trace)");
       System.out.println("      --fail-fast            Stop on first decompile failure");
+      System.out.println("  -j, --jobs <n>             Decompile n files in parallel (0 = one per CPU,");
+      System.out.println("                            default 1); output order is unchanged");
+      System.out.println("      --profile              Print time, allocation and counter percentiles per");
+      System.out.println("                            pipeline stage after the run (to stderr)");
+      System.out.println("      --lean                 Drop analysis state right after each file is");
+      System.out.println("                            generated (lower peak heap, same output)");
+      System.out.println("      --destroy-trees        Take each parse tree apart after decompiling it");
+      System.out.println("      --gc-per-file          Force a full garbage collection after every file");
+      System.out.println("      --verify               Recompile every output with the built-in compiler");
+      System.out.println("                            and report whether it matches the input byte for byte");
+      System.out.println("      --report <file>        Write one JSON record per file (status, sizes,");
+      System.out.println("                            time and allocations per stage)");
+      System.out.println("      --zip <archive>        Write all outputs into one zip archive, keeping");
+      System.out.println("                            the directory hierarchy (replaces -o/-O)");
+      System.out.println("      --zip-store            Store --zip entries uncompressed (faster)");
+      System.out.println("      --queue-depth <n>      Files read ahead and awaiting write in batch runs");
+      System.out.println("                            (caps memory; default four per job)");
       System.out.println("      --prefer-switches      Prefer generating switch structures instead");
       System.out.println("                            of if-elseif chains when possible");
       System.out.println("      --strict-signatures    Fail if any subroutine signature remains unknown");
+      System.out.println("      --subroutine-cache     Reuse prototypes of identical subroutines (shared");
+      System.out.println("                            include helpers) across files in one run");
+      System.out.println("      --signature-db <file>  Name and prototype known library subroutines from");
+      System.out.println("                            a signature database");
+      System.out.println("      --export-signatures <file>");
+      System.out.println("                            Write fingerprints and prototypes of all decompiled");
+      System.out.println("                            subroutines (input for --signature-db)");
+      System.out.println("      --cache-dir <dir>      Reuse results of unchanged scripts across runs");
+      System.out.println("                            (keyed by NCS, nwscript, options and build)");
+      System.out.println("      --time-budget <ms>     Give up on a script after <ms> of analysis and");
+      System.out.println("                            write a fallback stub naming the stage (0 = no limit)");
+      System.out.println("      --step-budget <n>      Like --time-budget, but counts analysis steps");
+      System.out.println("                            (deterministic across machines; 0 = no limit)");
+      System.out.println("      --watch                After decompiling, keep watching the inputs and");
+      System.out.println("                            update outputs when scripts change or are deleted");
+      System.out.println("      --watch-debounce <ms>  Quiet period before changes are processed (default 300)");
+      System.out.println("      --daemon               Keep running and decompile JSON-lines requests from");
+      System.out.println("                            stdin (see docs/README-CLI.md)");
+      System.out.println("      --daemon-port <n>      Like --daemon, but listen on 127.0.0.1:<n>");
       System.out.println();
       System.out.println("Examples:");
 
@@ -546,15 +1464,180 @@ public final class NCSDecompCLI {
    private static final class InputFile {
       final File file;
       final File baseDir;  // The base directory this file was collected from
+      final ResourceEntry entry;  // Script inside a game archive, or null for a file on disk
 
       InputFile(File file, File baseDir) {
+         this(file, baseDir, null);
+      }
+
+      /**
+       * An archive entry. {@code file} is where it would sit if extracted, which places its
+       * output like that of a script next to the archive.
+       */
+      InputFile(File file, File baseDir, ResourceEntry entry) {
          this.file = file;
          this.baseDir = baseDir;
+         this.entry = entry;
+      }
+
+      /** Path shown in messages and reports. */
+      String path() {
+         return this.entry != null ? this.entry.path() : this.file.getAbsolutePath();
+      }
+
+      long length() {
+         return this.entry != null ? this.entry.length() : this.file.length();
+      }
+   }
+
+   /**
+    * Console output of one decompiled file.
+    */
+   private static final class FileResult {
+      final String out;
+      final String error;  // Printed to stderr, or null
+      final boolean failed;  // Counts as a decompile failure for --fail-fast
+      final InputFile input;
+      final File outFile;  // Where code still has to be written, or null
+      final String code;
+      final DecompileStats stats;  // Null if decompilation did not run to the end
+      final String target;  // Where the code was written, once it has been
+      final String roundTrip;  // Outcome of --verify, or null
+
+      FileResult(String out, String error, boolean failed) {
+         this(out, error, failed, null, null, null, null);
+      }
+
+      FileResult(String out, String error, boolean failed, InputFile input, File outFile, String code,
+            DecompileStats stats) {
+         this(out, error, failed, input, outFile, code, stats, null, null);
+      }
+
+      FileResult(String out, String error, boolean failed, InputFile input, File outFile, String code,
+            DecompileStats stats, String target, String roundTrip) {
+         this.out = out;
+         this.error = error;
+         this.failed = failed;
+         this.input = input;
+         this.outFile = outFile;
+         this.code = code;
+         this.stats = stats;
+         this.target = target;
+         this.roundTrip = roundTrip;
+      }
+   }
+
+   /**
+    * The {@code --zip} archive. Entries are written one after another by the thread that
+    * writes outputs, so the archive is a single sequential stream.
+    */
+   private static final class ZipSink implements Closeable {
+      private final File archive;
+      private final boolean store;
+      private final ZipOutputStream zip;
+      private final CRC32 crc = new CRC32();
+
+      ZipSink(File archive, boolean store) throws IOException {
+         this.archive = archive;
+         this.store = store;
+         this.zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), 1 << 16));
+         if (store) {
+            this.zip.setMethod(ZipOutputStream.STORED);
+         }
+      }
+
+      File getArchive() {
+         return this.archive;
+      }
+
+      void put(String name, byte[] data) throws IOException {
+         ZipEntry entry = new ZipEntry(name);
+         if (this.store) {
+            // Stored entries need their size and checksum up front
+            this.crc.reset();
+            this.crc.update(data, 0, data.length);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(this.crc.getValue());
+         }
+         this.zip.putNextEntry(entry);
+         this.zip.write(data);
+         this.zip.closeEntry();
+      }
+
+      @Override
+      public void close() throws IOException {
+         this.zip.close();
+      }
+   }
+
+   /**
+    * State of one batch run: the open output sinks, the {@code --verify} compiler and its
+    * tallies, and the flags the run changes as it goes. Closing it closes the sinks.
+    */
+   private static final class RunContext implements Closeable {
+      final CliConfig cfg;
+      final NssCompiler compiler;  // Compiler used by --verify, shared by the workers; null otherwise
+      final ZipSink zip;  // The open --zip archive, or null
+      volatile Writer report;  // The open --report file; dropped after a write error
+      final AtomicInteger identical = new AtomicInteger();  // --verify outcomes
+      final AtomicInteger differing = new AtomicInteger();
+      final AtomicInteger uncompilable = new AtomicInteger();
+      final AtomicInteger unsupported = new AtomicInteger();
+      volatile boolean overwrite;  // Replace existing outputs; always on once --watch takes over
+      volatile boolean stopped;  // Set by --fail-fast on the first failure
+
+      private RunContext(CliConfig cfg, NssCompiler compiler, ZipSink zip, Writer report) {
+         this.cfg = cfg;
+         this.compiler = compiler;
+         this.zip = zip;
+         this.report = report;
+         this.overwrite = cfg.overwrite;
+      }
+
+      static RunContext open(CliConfig cfg, File nwscriptFile) throws IOException {
+         NssCompiler compiler = cfg.verify ? NssCompiler.load(nwscriptFile) : null;
+         Writer report = null;
+         if (cfg.reportPath != null) {
+            // Records are flushed one by one, so the report is usable while --watch runs
+            report = new BufferedWriter(
+                  new OutputStreamWriter(new FileOutputStream(cfg.reportPath), StandardCharsets.UTF_8));
+         }
+         ZipSink zip = null;
+         if (cfg.zipPath != null) {
+            try {
+               zip = new ZipSink(new File(cfg.zipPath), cfg.zipStore);
+            } catch (IOException e) {
+               if (report != null) {
+                  report.close();
+               }
+               throw e;
+            }
+         }
+         return new RunContext(cfg, compiler, zip, report);
+      }
+
+      @Override
+      public void close() throws IOException {
+         Writer r = this.report;
+         try {
+            if (this.zip != null) {
+               this.zip.close();
+            }
+         } finally {
+            if (r != null) {
+               r.close();
+            }
+         }
       }
    }
 
+   /** The parsed command line. Nothing changes it once {@link #parseArgs} returns; see {@link RunContext}. */
    private static final class CliConfig {
       final List<String> inputs = new ArrayList<>();
+      final List<String> resrefs = new ArrayList<>();  // Globs selecting archive entries, empty = all
+      String installDir = null;  // Game install whose scripts are looked up in the resref index
+      String indexPath = null;  // Resref index file, default in the user cache
       String output;  // Can be a file or directory
       String outDir;
       String prefix = "";
@@ -575,12 +1658,33 @@ public final class NCSDecompCLI {
       boolean help = false;
       boolean version = false;
       boolean quiet = false;
+      Logger.Level logLevel = null;  // Explicit diagnostic level, overrides --quiet
       boolean failFast = false;
+      int jobs = 1;  // Worker threads decompiling in parallel
+      int queueDepth = 0;  // Files between prefetch and write, 0 = four per worker
+      String zipPath = null;  // Write all outputs into this archive instead of files
+      boolean zipStore = false;  // Store archive entries uncompressed
+      boolean profile = false;  // Print per-stage percentiles after the batch
+      boolean lean = false;  // Release analysis state per file as soon as it is rendered
+      boolean verify = false;  // Recompile each output in-process and compare with the input
+      boolean destroyTrees = false;  // Null out every parse tree node after each file
+      boolean gcPerFile = false;  // System.gc() after each file
+      String reportPath = null;  // JSON-lines report with one record per file
       boolean isK2 = false;
       boolean gameExplicitlySet = false;  // Track if user explicitly set a game flag
       boolean preferSwitches = false;  // Prefer switch structures over if-elseif chains
       boolean strictSignatures = false;  // Abort if signatures stay partially inferred
+      boolean subroutineCache = false;  // Reuse prototypes of fingerprinted subroutines across files
+      String signatureDbPath = null;  // Signature database of known library helpers
+      String exportSignaturesPath = null;  // Where to write collected subroutine signatures
       String nwscriptPath = null;  // Explicit nwscript file path (CLI-only)
+      String cacheDir = null;  // Content-addressed cache of finished decompilations
+      long timeBudgetMs = 0L;  // Per-file wall-clock limit, 0 = unlimited
+      long stepBudget = 0L;  // Per-file analysis step limit, 0 = unlimited
+      boolean watch = false;  // Keep running and re-decompile changed inputs
+      long watchDebounceMs = 300L;  // Quiet period before changes are processed
+      boolean daemon = false;  // Serve JSON-lines requests on stdin/stdout
+      int daemonPort = -1;  // Serve JSON-lines requests on a loopback port instead
    }
 }
 
@@ -0,0 +1,230 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Long-running decompile server speaking JSON lines.
+ * <p>
+ * Each request is one JSON object on its own line:
+ *
+ * <pre>
+ * {"id": 1, "path": "scripts/k_foo.ncs", "game": "k2", "preferSwitches": true}
+ * {"id": 2, "bytes": "TkNTIFYxLjA...", "game": "k1"}
+ * {"op": "shutdown"}
+ * </pre>
+ *
+ * and is answered by one line carrying {@code id}, {@code ok}, the generated {@code code}
+ * (or {@code error}) and per-stage {@code timingsMs}. A warm {@link FileDecompiler} is kept
+ * per game and option set, so repeated requests skip JVM start-up, nwscript parsing and
+ * the cold JIT.
+ * <p>
+ * Requests on the stdin transport are processed in order. The socket transport binds to the
+ * loopback interface only and serves each connection on its own thread; requests for the
+ * same decompiler are serialized.
+ */
+public final class NCSDecompDaemon {
+   private final DecompilerOptions baseOptions;
+   private final DecompilerServices services;
+   private final File k1Nwscript;
+   private final File k2Nwscript;
+   private final Map<String, FileDecompiler> decompilers = new HashMap<>();
+   private volatile boolean shutdown;
+
+   /**
+    * @param baseOptions options applied to every request before per-request overrides
+    * @param services    collaborators shared by the decompilers of every game and option set
+    * @param k1Nwscript  KotOR 1 nwscript.nss, or null if K1 requests are not supported
+    * @param k2Nwscript  TSL nwscript.nss, or null if TSL requests are not supported
+    */
+   public NCSDecompDaemon(DecompilerOptions baseOptions, DecompilerServices services, File k1Nwscript,
+         File k2Nwscript) {
+      this.baseOptions = baseOptions;
+      this.services = services;
+      this.k1Nwscript = k1Nwscript;
+      this.k2Nwscript = k2Nwscript;
+   }
+
+   /**
+    * Serves requests from {@code in} until end of input or a shutdown request.
+    */
+   public void serve(BufferedReader in, Writer out) throws IOException {
+      String line;
+      while (!this.shutdown && (line = in.readLine()) != null) {
+         if (line.trim().isEmpty()) {
+            continue;
+         }
+         out.write(this.handle(line));
+         out.write('\n');
+         out.flush();
+      }
+   }
+
+   /**
+    * Accepts connections on {@code 127.0.0.1:port} until a shutdown request arrives.
+    */
+   public void listen(int port) throws IOException {
+      try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+         Logger.info("NCSDecompDaemon: Listening on " + server.getLocalSocketAddress());
+         server.setSoTimeout(500);
+         while (!this.shutdown) {
+            final Socket socket;
+            try {
+               socket = server.accept();
+            } catch (java.net.SocketTimeoutException e) {
+               continue;
+            }
+            Thread t = new Thread(() -> {
+               try (Socket s = socket;
+                     BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                     PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+                  this.serve(in, out);
+               } catch (IOException e) {
+                  Logger.error("NCSDecompDaemon: Connection failed: " + e.getMessage());
+               }
+            }, "ncsdecomp-daemon-" + socket.getPort());
+            t.setDaemon(true);
+            t.start();
+         }
+      }
+   }
+
+   /**
+    * Handles one request line and returns the response line (without terminator).
+    */
+   public String handle(String line) {
+      Map<String, Object> response = new LinkedHashMap<>();
+      Object id = null;
+      try {
+         Object parsed = Json.parse(line);
+         if (!(parsed instanceof Map)) {
+            throw new IllegalArgumentException("Request must be a JSON object");
+         }
+         Map<?, ?> request = (Map<?, ?>) parsed;
+         id = request.get("id");
+         response.put("id", id);
+         String op = request.get("op") != null ? request.get("op").toString() : "decompile";
+         switch (op) {
+            case "decompile":
+               this.decompile(request, response);
+               break;
+            case "ping":
+               response.put("ok", Boolean.TRUE);
+               break;
+            case "shutdown":
+               this.shutdown = true;
+               response.put("ok", Boolean.TRUE);
+               break;
+            default:
+               throw new IllegalArgumentException("Unknown op: " + op);
+         }
+      } catch (Exception e) {
+         response.clear();
+         response.put("id", id);
+         response.put("ok", Boolean.FALSE);
+         response.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+      }
+      return Json.write(response);
+   }
+
+   private void decompile(Map<?, ?> request, Map<String, Object> response) throws Exception {
+      long start = System.nanoTime();
+      DecompilerOptions options = this.baseOptions;
+      if (request.get("game") != null) {
+         options = options.withK2(isK2(request.get("game").toString()));
+      }
+      if (request.get("preferSwitches") != null) {
+         options = options.withPreferSwitches(Boolean.TRUE.equals(request.get("preferSwitches")));
+      }
+      if (request.get("strictSignatures") != null) {
+         options = options.withStrictSignatures(Boolean.TRUE.equals(request.get("strictSignatures")));
+      }
+
+      // Both kinds of input are decompiled from memory, so nothing is written to disk
+      String name;
+      byte[] bytes;
+      if (request.get("path") != null) {
+         File input = new File(request.get("path").toString());
+         if (!input.isFile()) {
+            throw new IOException("File not found: " + input.getAbsolutePath());
+         }
+         name = input.getPath();
+         bytes = Files.readAllBytes(input.toPath());
+      } else if (request.get("bytes") != null) {
+         bytes = Base64.getDecoder().decode(request.get("bytes").toString());
+         name = request.get("name") != null ? new File(request.get("name").toString()).getName() : "request.ncs";
+      } else {
+         throw new IllegalArgumentException("Request needs \"path\" or \"bytes\"");
+      }
+
+      boolean[] warm = new boolean[1];
+      FileDecompiler fd = this.decompiler(options, warm);
+      DecompileResult result;
+      synchronized (fd) {
+         result = fd.decompile(name, ByteBuffer.wrap(bytes), options);
+      }
+      Map<String, Object> stages = new LinkedHashMap<>();
+      for (Map.Entry<String, Long> e : result.stats().timings().nanos().entrySet()) {
+         stages.put(e.getKey(), millis(e.getValue()));
+      }
+      response.put("ok", Boolean.TRUE);
+      response.put("code", result.code());
+      response.put("warm", warm[0]);
+      if (result.budgetExceeded() != null) {
+         response.put("budgetExceeded", result.budgetExceeded());
+      }
+      response.put("timingsMs", stages);
+      response.put("totalMs", millis(System.nanoTime() - start));
+   }
+
+   private FileDecompiler decompiler(DecompilerOptions options, boolean[] warm) throws DecompilerException {
+      String key = options.isK2() + "|" + options.preferSwitches() + "|" + options.strictSignatures();
+      synchronized (this.decompilers) {
+         FileDecompiler fd = this.decompilers.get(key);
+         warm[0] = fd != null;
+         if (fd == null) {
+            File nwscript = options.isK2() ? this.k2Nwscript : this.k1Nwscript;
+            if (nwscript == null) {
+               throw new DecompilerException("No nwscript.nss available for " + (options.isK2() ? "TSL" : "K1"));
+            }
+            fd = new FileDecompiler(nwscript, options, this.services);
+            this.decompilers.put(key, fd);
+         }
+         return fd;
+      }
+   }
+
+   private static boolean isK2(String game) {
+      String g = game.toLowerCase();
+      if (g.equals("k1") || g.equals("1")) {
+         return false;
+      }
+      if (g.equals("k2") || g.equals("tsl") || g.equals("2")) {
+         return true;
+      }
+      throw new IllegalArgumentException("Unknown game: " + game);
+   }
+
+   private static double millis(long nanos) {
+      return Math.round(nanos / 1000.0) / 1000.0;
+   }
+}
@@ -0,0 +1,1996 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import com.kotor.resource.formats.ncs.utils.Type;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process NSS to NCS compiler, so round-trip checks do not need an external nwnnsscomp.
+ * <p>
+ * Actions come from the same {@link ActionsData} table the decompiler uses and constants
+ * from the declarations ahead of it in nwscript.nss. Code is laid out the way nwnnsscomp
+ * lays it out and the decompiler reads it back: an {@code [RSADDI] JSR; RETN} entry stub,
+ * globals in a subroutine that ends with {@code SAVEBP; JSR main; RESTOREBP}, {@code main}
+ * first and the other reachable functions in source order, arguments pushed last to first,
+ * locals reserved with {@code RSADD} and initialized through {@code CPDOWNSP}, returns as
+ * jumps to a shared epilogue, and the {@code CPTOPSP; JZ} sequences of {@code &&},
+ * {@code ||}, {@code switch} and loops.
+ * <p>
+ * The language covered is what the decompiler writes plus the usual hand-written forms:
+ * globals, functions with default arguments, all statements and operators of NWScript,
+ * vectors and the engine types. User-defined structs, which the decompiler writes for
+ * scripts that keep structures on the stack, and preprocessor directives ({@code #include})
+ * are not: they fail with an {@link UnsupportedConstructException}, so callers can tell a
+ * script this compiler cannot handle from one that is wrong. A compiler is immutable once
+ * loaded and may be shared by threads.
+ */
+public final class NssCompiler {
+   private static final byte VOID = Type.VT_NONE;
+   private static final byte INT = Type.VT_INTEGER;
+   private static final byte FLOAT = Type.VT_FLOAT;
+   private static final byte STRING = Type.VT_STRING;
+   private static final byte OBJECT = Type.VT_OBJECT;
+   private static final byte VECTOR = Type.VT_VECTOR;
+   /** Parameter type of deferred statements such as DelayCommand's; never a value. */
+   private static final byte ACTION = -2;
+   private static final Pattern CONSTANT =
+         Pattern.compile("^\\s*(int|float|string)\\s+(\\w+)\\s*=\\s*(.+?)\\s*;.*$");
+   private static final Pattern ENGINE_STRUCTURE =
+         Pattern.compile("^\\s*#define\\s+ENGINE_STRUCTURE_(\\d+)\\s+(\\w+).*$");
+   private static final Charset SCRIPT_CHARSET = StandardCharsets.ISO_8859_1;
+
+   private final ActionsData actions;
+   private final Map<String, Integer> actionIds = new HashMap<>();
+   private final Map<String, Constant> constants = new HashMap<>();
+   private final Map<String, Byte> typeNames = new HashMap<>();
+
+   private NssCompiler(ActionsData actions) {
+      this.actions = actions;
+      for (int i = 0; i < actions.size(); i++) {
+         try {
+            this.actionIds.put(actions.getName(i), i);
+         } catch (RuntimeException e) {
+            // Gap in the numbering of the actions list
+         }
+      }
+      this.constants.put("OBJECT_SELF", new Constant(OBJECT, 0));
+      this.constants.put("OBJECT_INVALID", new Constant(OBJECT, 1));
+      this.typeNames.put("void", VOID);
+      this.typeNames.put("int", INT);
+      this.typeNames.put("float", FLOAT);
+      this.typeNames.put("string", STRING);
+      this.typeNames.put("object", OBJECT);
+      this.typeNames.put("vector", VECTOR);
+      this.typeNames.put("action", ACTION);
+      this.typeNames.put("effect", Type.VT_EFFECT);
+      this.typeNames.put("event", Type.VT_EVENT);
+      this.typeNames.put("location", Type.VT_LOCATION);
+      this.typeNames.put("talent", Type.VT_TALENT);
+   }
+
+   /**
+    * Builds a compiler for the game described by an nwscript.nss file. The actions table
+    * is shared with decompilers loading the same file.
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public static NssCompiler load(File nwscript) throws IOException {
+      NssCompiler compiler = new NssCompiler(ActionsData.load(nwscript));
+      for (String line : Files.readAllLines(nwscript.toPath(), SCRIPT_CHARSET)) {
+         Matcher m = ENGINE_STRUCTURE.matcher(line);
+         if (m.matches()) {
+            compiler.typeNames.put(m.group(2), (byte) (Type.VT_EFFECT + Integer.parseInt(m.group(1))));
+            continue;
+         }
+         m = CONSTANT.matcher(line);
+         if (m.matches()) {
+            Constant c = compiler.parseConstant(m.group(3), compiler.typeNames.get(m.group(1)));
+            if (c != null) {
+               compiler.constants.put(m.group(2), c);
+            }
+         }
+      }
+      return compiler;
+   }
+
+   /**
+    * Compiles one script to NCS bytes.
+    *
+    * @param name file name used in error messages
+    * @param source the script text
+    * @throws UnsupportedConstructException if the script uses a construct this compiler
+    *            does not support
+    * @throws DecompilerException if the script has a syntax or type error
+    */
+   public byte[] compile(String name, String source) throws DecompilerException {
+      try {
+         return new Compilation(name, new Lexer(name, source).tokens()).compile();
+      } catch (CompileError e) {
+         throw e.unsupported ? new UnsupportedConstructException(e.getMessage())
+               : new DecompilerException(e.getMessage());
+      }
+   }
+
+   /**
+    * Thrown for valid NWScript this compiler does not implement, such as structs.
+    */
+   public static final class UnsupportedConstructException extends DecompilerException {
+      private static final long serialVersionUID = 1L;
+
+      public UnsupportedConstructException(String msg) {
+         super(msg);
+      }
+   }
+
+   /**
+    * Value of a constant or default argument as written in nwscript.nss: a literal, a
+    * negated literal or another constant. Returns null for anything else.
+    */
+   private Constant parseConstant(String text, Byte type) {
+      String s = text.trim();
+      if (s.startsWith("[")) {
+         // ActionsData splits parameters at commas, which leaves "[0.0" of "[0.0,0.0,0.0]"
+         return new Constant(VECTOR, new float[3]);
+      }
+      Constant named = this.constants.get(s);
+      if (named != null) {
+         return named;
+      }
+      try {
+         if (s.startsWith("\"") && s.endsWith("\"") && s.length() >= 2) {
+            return new Constant(STRING, s.substring(1, s.length() - 1));
+         }
+         String number = s.endsWith("f") || s.endsWith("F") ? s.substring(0, s.length() - 1) : s;
+         boolean isFloat = number.contains(".") || (type != null && type == FLOAT);
+         if (isFloat) {
+            return new Constant(FLOAT, Float.parseFloat(number));
+         }
+         boolean negative = number.startsWith("-");
+         String digits = negative ? number.substring(1) : number;
+         long value = digits.startsWith("0x") || digits.startsWith("0X")
+               ? Long.parseLong(digits.substring(2), 16)
+               : Long.parseLong(digits);
+         return new Constant(INT, (int) (negative ? -value : value));
+      } catch (NumberFormatException e) {
+         return null;
+      }
+   }
+
+   private static int sizeOf(byte type) {
+      switch (type) {
+         case VOID:
+         case ACTION:
+            return 0;
+         case VECTOR:
+            return 12;
+         default:
+            return 4;
+      }
+   }
+
+   private String typeName(byte type) {
+      if (type == ACTION) {
+         return "action";
+      }
+      for (Map.Entry<String, Byte> e : this.typeNames.entrySet()) {
+         if (e.getValue() == type && !"action".equals(e.getKey())) {
+            return e.getKey();
+         }
+      }
+      return "type " + type;
+   }
+
+   /** A named constant of nwscript.nss, inlined wherever it is used. */
+   private static final class Constant {
+      final byte type;
+      final Object value;  // Integer, Float, String or float[3]
+
+      Constant(byte type, Object value) {
+         this.type = type;
+         this.value = value;
+      }
+   }
+
+   private static final class CompileError extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+      final boolean unsupported;
+
+      CompileError(String message) {
+         this(message, false);
+      }
+
+      CompileError(String message, boolean unsupported) {
+         super(message);
+         this.unsupported = unsupported;
+      }
+   }
+
+   private enum Kind {
+      IDENT, INT, FLOAT, STRING, OP, EOF
+   }
+
+   private static final class Token {
+      final Kind kind;
+      final String text;
+      final int line;
+      final Object value;
+
+      Token(Kind kind, String text, int line, Object value) {
+         this.kind = kind;
+         this.text = text;
+         this.line = line;
+         this.value = value;
+      }
+
+      boolean is(String op) {
+         return (this.kind == Kind.OP || this.kind == Kind.IDENT) && this.text.equals(op);
+      }
+
+      @Override
+      public String toString() {
+         return this.kind == Kind.EOF ? "end of file" : "'" + this.text + "'";
+      }
+   }
+
+   private static final class Lexer {
+      private static final String[] OPERATORS = {
+         ">>>=", ">>>", "<<=", ">>=", "==", "!=", "<=", ">=", "&&", "||", "++", "--", "+=", "-=", "*=", "/=",
+         "%=", "&=", "|=", "^=", "<<", ">>", "+", "-", "*", "/", "%", "=", "<", ">", "!", "~", "&", "|", "^",
+         "(", ")", "{", "}", "[", "]", ";", ",", ".", ":", "?"
+      };
+      private final String name;
+      private final String src;
+      private int pos;
+      private int line = 1;
+
+      Lexer(String name, String src) {
+         this.name = name;
+         this.src = src;
+      }
+
+      List<Token> tokens() {
+         List<Token> tokens = new ArrayList<>();
+         while (true) {
+            this.skipSpace();
+            if (this.pos >= this.src.length()) {
+               tokens.add(new Token(Kind.EOF, "", this.line, null));
+               return tokens;
+            }
+            tokens.add(this.next());
+         }
+      }
+
+      private void skipSpace() {
+         while (this.pos < this.src.length()) {
+            char c = this.src.charAt(this.pos);
+            if (c == '\n') {
+               this.line++;
+               this.pos++;
+            } else if (Character.isWhitespace(c)) {
+               this.pos++;
+            } else if (this.src.startsWith("//", this.pos)) {
+               while (this.pos < this.src.length() && this.src.charAt(this.pos) != '\n') {
+                  this.pos++;
+               }
+            } else if (this.src.startsWith("/*", this.pos)) {
+               int end = this.src.indexOf("*/", this.pos + 2);
+               if (end < 0) {
+                  throw new CompileError(this.name + ":" + this.line + ": unterminated comment");
+               }
+               for (int i = this.pos; i < end; i++) {
+                  if (this.src.charAt(i) == '\n') {
+                     this.line++;
+                  }
+               }
+               this.pos = end + 2;
+            } else {
+               return;
+            }
+         }
+      }
+
+      private Token next() {
+         char c = this.src.charAt(this.pos);
+         int start = this.pos;
+         if (c == '#') {
+            throw new CompileError(this.name + ":" + this.line + ": preprocessor directives such as #include are "
+                  + "not supported", true);
+         }
+         if (Character.isLetter(c) || c == '_') {
+            while (this.pos < this.src.length()
+                  && (Character.isLetterOrDigit(this.src.charAt(this.pos)) || this.src.charAt(this.pos) == '_')) {
+               this.pos++;
+            }
+            return new Token(Kind.IDENT, this.src.substring(start, this.pos), this.line, null);
+         }
+         if (Character.isDigit(c) || (c == '.' && this.pos + 1 < this.src.length()
+               && Character.isDigit(this.src.charAt(this.pos + 1)))) {
+            return this.number();
+         }
+         if (c == '"') {
+            return this.string();
+         }
+         for (String op : OPERATORS) {
+            if (this.src.startsWith(op, this.pos)) {
+               this.pos += op.length();
+               return new Token(Kind.OP, op, this.line, null);
+            }
+         }
+         throw new CompileError(this.name + ":" + this.line + ": unexpected character '" + c + "'");
+      }
+
+      private Token number() {
+         int start = this.pos;
+         if (this.src.startsWith("0x", this.pos) || this.src.startsWith("0X", this.pos)) {
+            this.pos += 2;
+            while (this.pos < this.src.length() && Character.digit(this.src.charAt(this.pos), 16) >= 0) {
+               this.pos++;
+            }
+            String text = this.src.substring(start, this.pos);
+            return new Token(Kind.INT, text, this.line, (int) Long.parseLong(text.substring(2), 16));
+         }
+         boolean isFloat = false;
+         while (this.pos < this.src.length()) {
+            char c = this.src.charAt(this.pos);
+            if (Character.isDigit(c)) {
+               this.pos++;
+            } else if (c == '.' && !isFloat) {
+               isFloat = true;
+               this.pos++;
+            } else if ((c == 'e' || c == 'E') && this.pos + 1 < this.src.length()
+                  && (Character.isDigit(this.src.charAt(this.pos + 1)) || this.src.charAt(this.pos + 1) == '-'
+                        || this.src.charAt(this.pos + 1) == '+')) {
+               isFloat = true;
+               this.pos += 2;
+            } else {
+               break;
+            }
+         }
+         String text = this.src.substring(start, this.pos);
+         if (this.pos < this.src.length() && (this.src.charAt(this.pos) == 'f' || this.src.charAt(this.pos) == 'F')) {
+            isFloat = true;
+            this.pos++;
+         }
+         try {
+            if (isFloat) {
+               return new Token(Kind.FLOAT, text, this.line, Float.parseFloat(text));
+            }
+            return new Token(Kind.INT, text, this.line, (int) Long.parseLong(text));
+         } catch (NumberFormatException e) {
+            throw new CompileError(this.name + ":" + this.line + ": bad number " + text);
+         }
+      }
+
+      private Token string() {
+         StringBuilder sb = new StringBuilder();
+         this.pos++;
+         while (true) {
+            if (this.pos >= this.src.length() || this.src.charAt(this.pos) == '\n') {
+               throw new CompileError(this.name + ":" + this.line + ": unterminated string");
+            }
+            char c = this.src.charAt(this.pos++);
+            if (c == '"') {
+               return new Token(Kind.STRING, sb.toString(), this.line, sb.toString());
+            }
+            if (c == '\\' && this.pos < this.src.length()) {
+               char e = this.src.charAt(this.pos++);
+               sb.append(e == 'n' ? '\n' : e == 't' ? '\t' : e);
+            } else {
+               sb.append(c);
+            }
+         }
+      }
+   }
+
+   /** Bytecode being assembled, with forward references patched as labels are placed. */
+   private static final class Code {
+      private byte[] buf = new byte[1024];
+      private int size;
+
+      int size() {
+         return this.size;
+      }
+
+      void u8(int v) {
+         if (this.size == this.buf.length) {
+            this.buf = Arrays.copyOf(this.buf, this.size * 2);
+         }
+         this.buf[this.size++] = (byte) v;
+      }
+
+      void u16(int v) {
+         this.u8(v >>> 8);
+         this.u8(v);
+      }
+
+      void i32(int v) {
+         this.u16(v >>> 16);
+         this.u16(v);
+      }
+
+      void patch32(int at, int v) {
+         this.buf[at] = (byte) (v >>> 24);
+         this.buf[at + 1] = (byte) (v >>> 16);
+         this.buf[at + 2] = (byte) (v >>> 8);
+         this.buf[at + 3] = (byte) v;
+      }
+
+      byte[] toNcs() {
+         int total = 13 + this.size;
+         byte[] ncs = new byte[total];
+         byte[] header = "NCS V1.0".getBytes(StandardCharsets.US_ASCII);
+         System.arraycopy(header, 0, ncs, 0, header.length);
+         ncs[8] = 0x42;
+         ncs[9] = (byte) (total >>> 24);
+         ncs[10] = (byte) (total >>> 16);
+         ncs[11] = (byte) (total >>> 8);
+         ncs[12] = (byte) total;
+         System.arraycopy(this.buf, 0, ncs, 13, this.size);
+         return ncs;
+      }
+   }
+
+   private static final class Label {
+      int pos = -1;
+      final List<Integer> refs = new ArrayList<>();  // Starts of the jumps waiting for pos
+   }
+
+   private static final class Var {
+      final String name;
+      final byte type;
+      final int pos;  // Byte offset from the bottom of the frame, or of the globals
+      final boolean global;
+
+      Var(String name, byte type, int pos, boolean global) {
+         this.name = name;
+         this.type = type;
+         this.pos = pos;
+         this.global = global;
+      }
+   }
+
+   private static final class Param {
+      final byte type;
+      final String name;
+      final int defaultStart;  // Token index of the default value, or -1
+      final int defaultEnd;
+
+      Param(byte type, String name, int defaultStart, int defaultEnd) {
+         this.type = type;
+         this.name = name;
+         this.defaultStart = defaultStart;
+         this.defaultEnd = defaultEnd;
+      }
+   }
+
+   private static final class Function {
+      final String name;
+      final byte returnType;
+      final List<Param> params;
+      final Token declared;
+      final Label label = new Label();
+      int bodyStart = -1;  // Token index of the opening brace
+      int bodyEnd = -1;
+
+      Function(String name, byte returnType, List<Param> params, Token declared) {
+         this.name = name;
+         this.returnType = returnType;
+         this.params = params;
+         this.declared = declared;
+      }
+
+      int paramSize() {
+         int size = 0;
+         for (Param p : this.params) {
+            size += sizeOf(p.type);
+         }
+         return size;
+      }
+   }
+
+   /** A loop or switch that break (and, for loops, continue) can leave. */
+   private static final class Breakable {
+      final Label breakLabel;
+      final Label continueLabel;  // Null for switch
+      final int sp;
+
+      Breakable(Label breakLabel, Label continueLabel, int sp) {
+         this.breakLabel = breakLabel;
+         this.continueLabel = continueLabel;
+         this.sp = sp;
+      }
+   }
+
+   /** One global declaration statement, compiled in source order by the globals subroutine. */
+   private static final class GlobalDecl {
+      final int start;
+      final int end;
+
+      GlobalDecl(int start, int end) {
+         this.start = start;
+         this.end = end;
+      }
+   }
+
+   /** The state of compiling one script. */
+   private final class Compilation {
+      private final String name;
+      private final List<Token> tokens;
+      private int pos;
+      private final Code code = new Code();
+      private final Map<String, Function> functions = new LinkedHashMap<>();
+      private final Map<String, Constant> scriptConstants = new HashMap<>();
+      private final List<GlobalDecl> globalDecls = new ArrayList<>();
+      private final Map<String, Var> globals = new HashMap<>();
+      private final Deque<Map<String, Var>> scopes = new ArrayDeque<>();
+      private final Deque<Integer> scopeBase = new ArrayDeque<>();
+      private final Deque<Breakable> breakables = new ArrayDeque<>();
+      /** Stack bytes in use by the code being compiled, counted from the bottom of its frame. */
+      private int sp;
+      private int globalsSize;
+      /** Stack level BP points at once globals are set up; -1 while they are compiled as locals. */
+      private int bpTop = -1;
+      private Function current;
+      private Label epilogue;
+      /** Code size right after the last return, break or continue jump. */
+      private int jumpedAt = -1;
+
+      Compilation(String name, List<Token> tokens) {
+         this.name = name;
+         this.tokens = tokens;
+      }
+
+      byte[] compile() {
+         this.declarations();
+         Function main = this.functions.get("main");
+         Function conditional = this.functions.get("StartingConditional");
+         Function entry = main != null && main.bodyStart >= 0 ? main : conditional;
+         if (entry == null || entry.bodyStart < 0) {
+            throw new CompileError(this.name + ": no main() or StartingConditional() defined");
+         }
+         if (!entry.params.isEmpty() || entry.returnType != (entry == main ? VOID : INT)) {
+            throw this.error(entry.declared, entry == main ? "main must be declared as void main()"
+                  : "StartingConditional must be declared as int StartingConditional()");
+         }
+         boolean isConditional = entry == conditional;
+
+         if (isConditional) {
+            this.rsadd(INT);
+         }
+         Label globalsLabel = new Label();
+         this.jump(0x1E, this.globalDecls.isEmpty() ? entry.label : globalsLabel);
+         this.retn();
+         if (!this.globalDecls.isEmpty()) {
+            this.bind(globalsLabel);
+            this.compileGlobals(entry, isConditional);
+         }
+         List<Function> order = new ArrayList<>();
+         order.add(entry);
+         Set<Function> reachable = this.reachable(entry);
+         for (Function f : this.functions.values()) {
+            if (f != entry && reachable.contains(f)) {
+               if (f.bodyStart < 0) {
+                  throw this.error(f.declared, "function " + f.name + " is used but never defined");
+               }
+               order.add(f);
+            }
+         }
+         for (Function f : order) {
+            this.compileFunction(f);
+         }
+         return this.code.toNcs();
+      }
+
+      /** First pass: collects functions, global declarations and script constants. */
+      private void declarations() {
+         while (this.peek().kind != Kind.EOF) {
+            int start = this.pos;
+            boolean isConst = this.accept("const");
+            Token typeTok = this.peek();
+            byte type = this.type();
+            Token nameTok = this.ident();
+            if (this.peek().is("(")) {
+               if (isConst) {
+                  throw this.error(typeTok, "functions cannot be const");
+               }
+               this.function(type, nameTok);
+               continue;
+            }
+            if (type == VOID || type == ACTION) {
+               throw this.error(typeTok, "variables cannot have type " + typeName(type));
+            }
+            if (isConst && this.constDeclaration(type, nameTok)) {
+               continue;
+            }
+            this.pos = start;
+            this.skipTo(";");
+            this.pos++;
+            this.globalDecls.add(new GlobalDecl(start, this.pos));
+         }
+      }
+
+      /** Records a const global with a literal value as a constant. False leaves it a variable. */
+      private boolean constDeclaration(byte type, Token nameTok) {
+         int save = this.pos;
+         if (this.accept("=")) {
+            boolean negative = this.accept("-");
+            Token v = this.next();
+            if (this.peek().is(";")) {
+               Constant c = this.literal(v, negative);
+               if (c != null && c.type == type) {
+                  this.pos++;
+                  this.scriptConstants.put(nameTok.text, c);
+                  return true;
+               }
+            }
+         }
+         this.pos = save;
+         return false;
+      }
+
+      private Constant literal(Token v, boolean negative) {
+         switch (v.kind) {
+            case INT:
+               return new Constant(INT, negative ? -(Integer) v.value : (Integer) v.value);
+            case FLOAT:
+               return new Constant(FLOAT, negative ? -(Float) v.value : (Float) v.value);
+            case STRING:
+               return negative ? null : new Constant(STRING, v.value);
+            case IDENT:
+               Constant c = this.constant(v.text);
+               return negative || c == null ? null : c;
+            default:
+               return null;
+         }
+      }
+
+      private void function(byte returnType, Token nameTok) {
+         if (returnType == ACTION) {
+            throw this.error(nameTok, "functions cannot return action");
+         }
+         this.expect("(");
+         List<Param> params = new ArrayList<>();
+         if (!this.peek().is(")")) {
+            do {
+               Token typeTok = this.peek();
+               byte type = this.type();
+               if (type == VOID || type == ACTION) {
+                  throw this.error(typeTok, "parameters cannot have type " + typeName(type));
+               }
+               Token pname = this.ident();
+               int defaultStart = -1;
+               int defaultEnd = -1;
+               if (this.accept("=")) {
+                  defaultStart = this.pos;
+                  this.skipArgument();
+                  defaultEnd = this.pos;
+               }
+               params.add(new Param(type, pname.text, defaultStart, defaultEnd));
+            } while (this.accept(","));
+         }
+         this.expect(")");
+         if (NssCompiler.this.actionIds.containsKey(nameTok.text)) {
+            throw this.error(nameTok, nameTok.text + " is already an engine function");
+         }
+         Function f = this.functions.get(nameTok.text);
+         if (f == null) {
+            f = new Function(nameTok.text, returnType, params, nameTok);
+            this.functions.put(f.name, f);
+         } else if (f.returnType != returnType || f.params.size() != params.size()) {
+            throw this.error(nameTok, "declaration of " + f.name + " does not match line " + f.declared.line);
+         } else {
+            for (int i = 0; i < params.size(); i++) {
+               if (params.get(i).type != f.params.get(i).type) {
+                  throw this.error(nameTok, "declaration of " + f.name + " does not match line " + f.declared.line);
+               }
+            }
+         }
+         if (this.accept(";")) {
+            return;
+         }
+         if (f.bodyStart >= 0) {
+            throw this.error(nameTok, "function " + f.name + " is defined twice");
+         }
+         if (!params.equals(f.params)) {
+            // The definition's parameter names are the ones the body uses
+            Function defined = new Function(f.name, returnType, this.mergeDefaults(f.params, params), f.declared);
+            this.functions.put(f.name, defined);
+            f = defined;
+         }
+         Token open = this.peek();
+         if (!open.is("{")) {
+            throw this.error(open, "expected '{' or ';' after the declaration of " + f.name);
+         }
+         f.bodyStart = this.pos;
+         this.skipBlock();
+         f.bodyEnd = this.pos;
+      }
+
+      /** Parameters of a definition, keeping defaults that only its prototype gives. */
+      private List<Param> mergeDefaults(List<Param> prototype, List<Param> definition) {
+         List<Param> merged = new ArrayList<>();
+         for (int i = 0; i < definition.size(); i++) {
+            Param d = definition.get(i);
+            Param p = prototype.get(i);
+            merged.add(d.defaultStart >= 0 || p.defaultStart < 0 ? d
+                  : new Param(d.type, d.name, p.defaultStart, p.defaultEnd));
+         }
+         return merged;
+      }
+
+      /** Functions called, directly or not, from {@code entry} and the global initializers. */
+      private Set<Function> reachable(Function entry) {
+         Set<Function> seen = new HashSet<>();
+         Deque<int[]> ranges = new ArrayDeque<>();
+         seen.add(entry);
+         ranges.add(new int[] {entry.bodyStart, entry.bodyEnd});
+         for (GlobalDecl g : this.globalDecls) {
+            ranges.add(new int[] {g.start, g.end});
+         }
+         while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            for (int i = range[0]; i < range[1]; i++) {
+               Token t = this.tokens.get(i);
+               Function f = t.kind == Kind.IDENT ? this.functions.get(t.text) : null;
+               if (f != null && seen.add(f)) {
+                  if (f.bodyStart >= 0) {
+                     ranges.add(new int[] {f.bodyStart, f.bodyEnd});
+                  }
+                  for (Param p : f.params) {
+                     if (p.defaultStart >= 0) {
+                        ranges.add(new int[] {p.defaultStart, p.defaultEnd});
+                     }
+                  }
+               }
+            }
+         }
+         return seen;
+      }
+
+      private void compileGlobals(Function entry, boolean isConditional) {
+         this.sp = isConditional ? 4 : 0;
+         int base = this.sp;
+         this.scopes.push(this.globals);
+         this.scopeBase.push(base);
+         for (GlobalDecl g : this.globalDecls) {
+            this.pos = g.start;
+            this.accept("const");
+            this.declaration(true);
+         }
+         this.scopes.pop();
+         this.scopeBase.pop();
+         this.globalsSize = this.sp - base;
+         this.bpTop = this.sp;
+         this.simple(0x2A, 0x00);  // SAVEBP
+         if (isConditional) {
+            this.rsadd(INT);
+         }
+         this.jump(0x1E, entry.label);
+         if (isConditional) {
+            this.copyDownSp(-this.sp, 4);
+            this.movsp(4);
+         }
+         this.simple(0x2B, 0x00);  // RESTOREBP
+         this.movsp(this.globalsSize);
+         this.retn();
+      }
+
+      private void compileFunction(Function f) {
+         this.bind(f.label);
+         this.current = f;
+         this.epilogue = new Label();
+         this.sp = 0;
+         int retSize = sizeOf(f.returnType);
+         Map<String, Var> params = new HashMap<>();
+         int at = retSize;
+         for (int i = f.params.size() - 1; i >= 0; i--) {
+            Param p = f.params.get(i);
+            if (params.containsKey(p.name)) {
+               throw this.error(f.declared, "parameter " + p.name + " is declared twice");
+            }
+            params.put(p.name, new Var(p.name, p.type, at, false));
+            at += sizeOf(p.type);
+         }
+         this.sp = at;
+         this.scopes.push(params);
+         this.scopeBase.push(this.sp);
+         this.pos = f.bodyStart;
+         this.block();
+         this.scopes.pop();
+         this.scopeBase.pop();
+         this.bind(this.epilogue);
+         if (f.paramSize() > 0) {
+            this.movsp(f.paramSize());
+         }
+         this.retn();
+         this.current = null;
+      }
+
+      private void block() {
+         this.expect("{");
+         this.openScope();
+         while (!this.peek().is("}")) {
+            if (this.peek().kind == Kind.EOF) {
+               throw this.error(this.peek(), "missing '}'");
+            }
+            this.statement();
+         }
+         this.pos++;
+         this.closeScope();
+      }
+
+      private void openScope() {
+         this.scopes.push(new HashMap<String, Var>());
+         this.scopeBase.push(this.sp);
+      }
+
+      private void closeScope() {
+         this.scopes.pop();
+         int base = this.scopeBase.pop();
+         if (this.sp > base) {
+            this.movsp(this.sp - base);
+         }
+      }
+
+      private void statement() {
+         Token t = this.peek();
+         if (t.is("{")) {
+            this.block();
+         } else if (t.is(";")) {
+            this.pos++;
+         } else if (t.is("if")) {
+            this.ifStatement();
+         } else if (t.is("while")) {
+            this.whileStatement();
+         } else if (t.is("do")) {
+            this.doStatement();
+         } else if (t.is("for")) {
+            this.forStatement();
+         } else if (t.is("switch")) {
+            this.switchStatement();
+         } else if (t.is("break")) {
+            this.pos++;
+            this.expect(";");
+            Breakable b = this.breakables.peek();
+            if (b == null) {
+               throw this.error(t, "break outside of a loop or switch");
+            }
+            this.jumpOut(b.sp, b.breakLabel);
+         } else if (t.is("continue")) {
+            this.pos++;
+            this.expect(";");
+            Breakable loop = null;
+            for (Breakable b : this.breakables) {
+               if (b.continueLabel != null) {
+                  loop = b;
+                  break;
+               }
+            }
+            if (loop == null) {
+               throw this.error(t, "continue outside of a loop");
+            }
+            this.jumpOut(loop.sp, loop.continueLabel);
+         } else if (t.is("return")) {
+            this.returnStatement();
+         } else if (t.is("case") || t.is("default")) {
+            throw this.error(t, t.text + " outside of a switch");
+         } else if (t.is("const") || this.isTypeName(t)) {
+            this.accept("const");
+            this.declaration(false);
+         } else {
+            this.expressionStatement();
+            this.expect(";");
+         }
+      }
+
+      /** {@code T a, b = e;}: each variable is reserved and then assigned its initializer. */
+      private void declaration(boolean global) {
+         Token typeTok = this.peek();
+         byte type = this.type();
+         if (type == VOID || type == ACTION) {
+            throw this.error(typeTok, "variables cannot have type " + typeName(type));
+         }
+         do {
+            Token nameTok = this.ident();
+            Map<String, Var> scope = this.scopes.peek();
+            if (scope.containsKey(nameTok.text)) {
+               throw this.error(nameTok, nameTok.text + " is already declared in this scope");
+            }
+            Var v = new Var(nameTok.text, type, this.sp - (global ? this.scopeBase.peek() : 0), global);
+            this.rsadd(type);
+            scope.put(v.name, v);
+            if (this.accept("=")) {
+               Token at = this.peek();
+               this.coerce(at, this.expression(), type);
+               this.storeVar(v, 0, sizeOf(type));
+               this.movsp(sizeOf(type));
+            }
+         } while (this.accept(","));
+         this.expect(";");
+      }
+
+      private void expressionStatement() {
+         Token t = this.peek();
+         Var v = this.peekAt(1).kind == Kind.IDENT ? this.lookup(this.peekAt(1).text) : null;
+         if ((t.is("++") || t.is("--")) && v != null && v.global && this.bpTop >= 0
+               && (this.peekAt(2).is(";") || this.peekAt(2).is(")"))) {
+            // A prefix step of a global reads back as its value copied with CPTOPSP, so the
+            // statement form, where the value is unused, is compiled as the postfix one
+            this.pos += 2;
+            this.intVar(this.tokens.get(this.pos - 1));
+            this.loadVar(v, 0, 4);
+            this.increment(v, t.is("++"));
+            this.movsp(4);
+            return;
+         }
+         byte type = this.expression();
+         if (sizeOf(type) > 0) {
+            this.movsp(sizeOf(type));
+         }
+      }
+
+      private void ifStatement() {
+         this.pos++;
+         this.condition();
+         Label elseLabel = new Label();
+         this.jump(0x1F, elseLabel);
+         this.statement();
+         if (this.accept("else")) {
+            // The decompiler writes "if (c) { return; } rest" with rest as the else branch,
+            // so no jump over it is emitted after a branch that already left
+            boolean left = this.jumpedAt == this.code.size();
+            Label end = new Label();
+            if (!left) {
+               this.jump(0x1D, end);
+            }
+            this.bind(elseLabel);
+            this.statement();
+            this.bind(end);
+         } else {
+            this.bind(elseLabel);
+         }
+      }
+
+      /** {@code ( int-expression )}, leaving the value on the stack. */
+      private void condition() {
+         this.expect("(");
+         Token at = this.peek();
+         this.requireInt(at, this.expression());
+         this.expect(")");
+      }
+
+      private void whileStatement() {
+         this.pos++;
+         Label top = new Label();
+         Label cont = new Label();
+         Label end = new Label();
+         this.bind(top);
+         this.condition();
+         this.jump(0x1F, end);
+         this.loopBody(end, cont);
+         this.bind(cont);
+         this.jump(0x1D, top);
+         this.bind(end);
+      }
+
+      private void doStatement() {
+         this.pos++;
+         Label top = new Label();
+         Label cont = new Label();
+         Label end = new Label();
+         this.bind(top);
+         this.loopBody(end, cont);
+         this.bind(cont);
+         this.expect("while");
+         this.condition();
+         this.expect(";");
+         this.jump(0x1F, end);
+         this.jump(0x1D, top);
+         this.bind(end);
+      }
+
+      private void forStatement() {
+         Token forTok = this.next();
+         this.expect("(");
+         if (!this.peek().is(";")) {
+            this.expressionStatement();
+         }
+         this.expect(";");
+         Label top = new Label();
+         Label cont = new Label();
+         Label end = new Label();
+         this.bind(top);
+         if (!this.peek().is(";")) {
+            this.requireInt(this.peek(), this.expression());
+            this.jump(0x1F, end);
+         }
+         this.expect(";");
+         // The increment is compiled after the body, so come back for it
+         int increment = this.pos;
+         this.skipArgument();
+         int afterIncrement = this.pos;
+         if (!this.accept(")")) {
+            throw this.error(forTok, "expected ')' in for statement");
+         }
+         this.loopBody(end, cont);
+         int afterBody = this.pos;
+         this.bind(cont);
+         if (afterIncrement > increment) {
+            this.pos = increment;
+            this.expressionStatement();
+            if (this.pos != afterIncrement) {
+               throw this.error(this.peek(), "expected ')' in for statement");
+            }
+         }
+         this.pos = afterBody;
+         this.jump(0x1D, top);
+         this.bind(end);
+      }
+
+      private void loopBody(Label breakLabel, Label continueLabel) {
+         this.breakables.push(new Breakable(breakLabel, continueLabel, this.sp));
+         this.statement();
+         this.breakables.pop();
+      }
+
+      /**
+       * The value is kept on the stack while the cases are tested one by one with
+       * {@code CPTOPSP; CONSTI; EQUALII; JNZ}, and dropped where the switch ends.
+       */
+      private void switchStatement() {
+         this.pos++;
+         this.condition();
+         Token open = this.peek();
+         this.expect("{");
+         Map<Integer, Label> caseLabels = new HashMap<>();
+         List<Integer> values = new ArrayList<>();
+         Label defaultLabel = null;
+         int save = this.pos;
+         int depth = 0;
+         while (depth > 0 || !this.peek().is("}")) {
+            Token t = this.next();
+            if (t.kind == Kind.EOF) {
+               throw this.error(open, "missing '}'");
+            } else if (t.is("{")) {
+               depth++;
+            } else if (t.is("}")) {
+               depth--;
+            } else if (t.is("switch")) {
+               // Labels of nested switches belong to them
+               this.skipTo("{");
+               this.skipBlock();
+            } else if (t.is("case")) {
+               int value = this.caseValue();
+               if (caseLabels.containsKey(value)) {
+                  throw this.error(t, "duplicate case " + value);
+               }
+               caseLabels.put(value, new Label());
+               values.add(value);
+            } else if (t.is("default")) {
+               if (defaultLabel != null) {
+                  throw this.error(t, "duplicate default");
+               }
+               defaultLabel = new Label();
+            }
+         }
+         this.pos = save;
+         for (int value : values) {
+            this.copyTopSp(-4, 4);
+            this.constInt(value);
+            this.simple(0x0B, 0x20);  // EQUALII
+            this.sp -= 4;
+            this.jump(0x25, caseLabels.get(value));
+         }
+         Label end = new Label();
+         this.jump(0x1D, defaultLabel != null ? defaultLabel : end);
+         this.breakables.push(new Breakable(end, null, this.sp));
+         while (!this.accept("}")) {
+            Token t = this.peek();
+            if (t.is("case")) {
+               this.pos++;
+               this.bind(caseLabels.get(this.caseValue()));
+            } else if (t.is("default")) {
+               this.pos++;
+               this.expect(":");
+               this.bind(defaultLabel);
+            } else if (t.is("const") || this.isTypeName(t)) {
+               throw this.error(t, "declarations in a switch must be inside braces");
+            } else {
+               this.statement();
+            }
+         }
+         this.breakables.pop();
+         this.bind(end);
+         this.movsp(4);
+      }
+
+      /** Reads {@code value :} after a case keyword. */
+      private int caseValue() {
+         boolean negative = this.accept("-");
+         Token v = this.next();
+         Constant c = this.literal(v, negative);
+         if (c == null || c.type != INT) {
+            throw this.error(v, "case labels must be integer constants");
+         }
+         this.expect(":");
+         return (Integer) c.value;
+      }
+
+      private void returnStatement() {
+         Token t = this.next();
+         Function f = this.current;
+         if (f == null) {
+            throw this.error(t, "return outside of a function");
+         }
+         int retSize = sizeOf(f.returnType);
+         int saved = this.sp;
+         if (!this.peek().is(";")) {
+            if (f.returnType == VOID) {
+               throw this.error(t, f.name + " returns void");
+            }
+            Token at = this.peek();
+            this.coerce(at, this.expression(), f.returnType);
+            this.copyDownSp(-this.sp, retSize);
+         } else if (f.returnType != VOID) {
+            throw this.error(t, f.name + " must return a value");
+         }
+         this.expect(";");
+         int keep = retSize + f.paramSize();
+         if (this.sp > keep) {
+            this.movsp(this.sp - keep);
+         }
+         this.jump(0x1D, this.epilogue);
+         this.jumpedAt = this.code.size();
+         this.sp = saved;
+      }
+
+      /** Drops what the enclosing statements pushed above {@code level} and jumps. */
+      private void jumpOut(int level, Label target) {
+         int saved = this.sp;
+         if (this.sp > level) {
+            this.movsp(this.sp - level);
+         }
+         this.jump(0x1D, target);
+         this.jumpedAt = this.code.size();
+         this.sp = saved;
+      }
+
+      private byte expression() {
+         Token t = this.peek();
+         if (t.kind == Kind.IDENT && this.lookup(t.text) != null) {
+            int save = this.pos;
+            this.pos++;
+            int component = -1;
+            if (this.peek().is(".")) {
+               this.pos++;
+               component = this.component(this.lookup(t.text), this.ident());
+            }
+            Token op = this.peek();
+            if (op.kind == Kind.OP && op.text.endsWith("=") && !op.is("==") && !op.is("!=") && !op.is("<=")
+                  && !op.is(">=")) {
+               this.pos++;
+               return this.assignment(this.lookup(t.text), component, op);
+            }
+            this.pos = save;
+         }
+         return this.logicalOr();
+      }
+
+      private byte assignment(Var v, int component, Token op) {
+         byte type = component >= 0 ? FLOAT : v.type;
+         int offset = component >= 0 ? component * 4 : 0;
+         int size = sizeOf(type);
+         if (op.is("=")) {
+            Token at = this.peek();
+            this.coerce(at, this.expression(), type);
+         } else {
+            this.loadVar(v, offset, size);
+            byte rhs = this.expression();
+            byte result = this.binary(op, op.text.substring(0, op.text.length() - 1), type, rhs);
+            this.coerce(op, result, type);
+         }
+         this.storeVar(v, offset, size);
+         return type;
+      }
+
+      private byte logicalOr() {
+         byte left = this.logicalAnd();
+         while (this.peek().is("||")) {
+            Token op = this.next();
+            this.requireInt(op, left);
+            Label rhs = new Label();
+            Label end = new Label();
+            this.copyTopSp(-4, 4);
+            this.jump(0x1F, rhs);
+            this.copyTopSp(-4, 4);
+            this.jump(0x1F, end);
+            this.bind(rhs);
+            this.requireInt(op, this.logicalAnd());
+            this.simple(0x07, 0x20);  // LOGORII
+            this.sp -= 4;
+            this.bind(end);
+            left = INT;
+         }
+         return left;
+      }
+
+      private byte logicalAnd() {
+         byte left = this.bitOr();
+         while (this.peek().is("&&")) {
+            Token op = this.next();
+            this.requireInt(op, left);
+            Label end = new Label();
+            this.copyTopSp(-4, 4);
+            this.jump(0x1F, end);
+            this.requireInt(op, this.bitOr());
+            this.simple(0x06, 0x20);  // LOGANDII
+            this.sp -= 4;
+            this.bind(end);
+            left = INT;
+         }
+         return left;
+      }
+
+      private byte bitOr() {
+         byte left = this.bitXor();
+         while (this.peek().is("|")) {
+            Token op = this.next();
+            left = this.binary(op, "|", left, this.bitXor());
+         }
+         return left;
+      }
+
+      private byte bitXor() {
+         byte left = this.bitAnd();
+         while (this.peek().is("^")) {
+            Token op = this.next();
+            left = this.binary(op, "^", left, this.bitAnd());
+         }
+         return left;
+      }
+
+      private byte bitAnd() {
+         byte left = this.equality();
+         while (this.peek().is("&")) {
+            Token op = this.next();
+            left = this.binary(op, "&", left, this.equality());
+         }
+         return left;
+      }
+
+      private byte equality() {
+         byte left = this.relational();
+         while (this.peek().is("==") || this.peek().is("!=")) {
+            Token op = this.next();
+            left = this.binary(op, op.text, left, this.relational());
+         }
+         return left;
+      }
+
+      private byte relational() {
+         byte left = this.shift();
+         while (this.peek().is("<") || this.peek().is("<=") || this.peek().is(">") || this.peek().is(">=")) {
+            Token op = this.next();
+            left = this.binary(op, op.text, left, this.shift());
+         }
+         return left;
+      }
+
+      private byte shift() {
+         byte left = this.additive();
+         while (this.peek().is("<<") || this.peek().is(">>") || this.peek().is(">>>")) {
+            Token op = this.next();
+            left = this.binary(op, op.text, left, this.additive());
+         }
+         return left;
+      }
+
+      private byte additive() {
+         byte left = this.multiplicative();
+         while (this.peek().is("+") || this.peek().is("-")) {
+            Token op = this.next();
+            left = this.binary(op, op.text, left, this.multiplicative());
+         }
+         return left;
+      }
+
+      private byte multiplicative() {
+         byte left = this.unary();
+         while (this.peek().is("*") || this.peek().is("/") || this.peek().is("%")) {
+            Token op = this.next();
+            left = this.binary(op, op.text, left, this.unary());
+         }
+         return left;
+      }
+
+      /**
+       * Emits the instruction of a binary operator whose operands are on the stack and
+       * returns the type of the result.
+       */
+      private byte binary(Token at, String op, byte left, byte right) {
+         int opcode;
+         switch (op) {
+            case "==":
+               opcode = 0x0B;
+               break;
+            case "!=":
+               opcode = 0x0C;
+               break;
+            case ">=":
+               opcode = 0x0D;
+               break;
+            case ">":
+               opcode = 0x0E;
+               break;
+            case "<":
+               opcode = 0x0F;
+               break;
+            case "<=":
+               opcode = 0x10;
+               break;
+            case "<<":
+               opcode = 0x11;
+               break;
+            case ">>":
+               opcode = 0x12;
+               break;
+            case ">>>":
+               opcode = 0x13;
+               break;
+            case "+":
+               opcode = 0x14;
+               break;
+            case "-":
+               opcode = 0x15;
+               break;
+            case "*":
+               opcode = 0x16;
+               break;
+            case "/":
+               opcode = 0x17;
+               break;
+            case "%":
+               opcode = 0x18;
+               break;
+            case "|":
+               opcode = 0x08;
+               break;
+            case "^":
+               opcode = 0x09;
+               break;
+            case "&":
+               opcode = 0x0A;
+               break;
+            default:
+               throw this.error(at, "unknown operator " + op);
+         }
+         int operands = -1;
+         byte result = VOID;
+         boolean arithmetic = opcode >= 0x14 && opcode <= 0x17;
+         if (left == INT && right == INT) {
+            operands = Type.VT_INTINT;
+            result = INT;
+         } else if (opcode == 0x0B || opcode == 0x0C) {
+            if (left == right) {
+               result = INT;
+               if (left == FLOAT) {
+                  operands = Type.VT_FLOATFLOAT;
+               } else if (left == OBJECT) {
+                  operands = Type.VT_OBJECTOBJECT;
+               } else if (left == STRING) {
+                  operands = Type.VT_STRINGSTRING;
+               } else if (left == VECTOR) {
+                  operands = Type.VT_STRUCTSTRUCT;
+               } else if (left >= Type.VT_EFFECT && left <= Type.VT_TALENT) {
+                  operands = Type.VT_EFFECTEFFECT + (left - Type.VT_EFFECT);
+               }
+            }
+         } else if (opcode >= 0x0D && opcode <= 0x10) {
+            if (left == FLOAT && right == FLOAT) {
+               operands = Type.VT_FLOATFLOAT;
+               result = INT;
+            }
+         } else if (arithmetic) {
+            if (left == FLOAT && right == FLOAT) {
+               operands = Type.VT_FLOATFLOAT;
+               result = FLOAT;
+            } else if (left == INT && right == FLOAT) {
+               operands = Type.VT_INTFLOAT;
+               result = FLOAT;
+            } else if (left == FLOAT && right == INT) {
+               operands = Type.VT_FLOATINT;
+               result = FLOAT;
+            } else if (left == STRING && right == STRING && opcode == 0x14) {
+               operands = Type.VT_STRINGSTRING;
+               result = STRING;
+            } else if (left == VECTOR && right == VECTOR && opcode <= 0x15) {
+               operands = Type.VT_VECTORVECTOR;
+               result = VECTOR;
+            } else if (left == VECTOR && right == FLOAT && opcode >= 0x16) {
+               operands = Type.VT_VECTORFLOAT;
+               result = VECTOR;
+            } else if (left == FLOAT && right == VECTOR && opcode == 0x16) {
+               operands = Type.VT_FLOATVECTOR;
+               result = VECTOR;
+            }
+         }
+         if (result == VOID) {
+            throw this.error(at, "operator " + op + " cannot be applied to " + typeName(left) + " and "
+                  + typeName(right));
+         }
+         if (opcode >= 0x0B && opcode <= 0x10) {
+            result = INT;
+         }
+         this.code.u8(opcode);
+         this.code.u8(operands);
+         if (operands == Type.VT_STRUCTSTRUCT) {
+            this.code.u16(sizeOf(left));
+         }
+         this.sp -= sizeOf(left) + sizeOf(right) - sizeOf(result);
+         return result;
+      }
+
+      private byte unary() {
+         Token t = this.peek();
+         if (t.is("-")) {
+            this.pos++;
+            Token lit = this.peek();
+            if ((lit.kind == Kind.INT || lit.kind == Kind.FLOAT) && !this.peekAt(1).is(".")) {
+               // Negative literals are single constants
+               this.pos++;
+               return this.pushConstant(this.literal(lit, true));
+            }
+            byte type = this.unary();
+            if (type != INT && type != FLOAT) {
+               throw this.error(t, "operator - cannot be applied to " + typeName(type));
+            }
+            this.simple(0x19, type);  // NEG
+            return type;
+         }
+         if (t.is("+")) {
+            this.pos++;
+            return this.unary();
+         }
+         if (t.is("!") || t.is("~")) {
+            this.pos++;
+            this.requireInt(t, this.unary());
+            this.simple(t.is("!") ? 0x22 : 0x1A, INT);  // NOT, COMP
+            return INT;
+         }
+         if (t.is("++") || t.is("--")) {
+            this.pos++;
+            Var v = this.intVar(this.ident());
+            this.increment(v, t.is("++"));
+            this.loadVar(v, 0, 4);
+            return INT;
+         }
+         return this.postfix();
+      }
+
+      private byte postfix() {
+         Token t = this.peek();
+         if (t.kind == Kind.IDENT && (this.peekAt(1).is("++") || this.peekAt(1).is("--"))
+               && this.lookup(t.text) != null) {
+            this.pos++;
+            Var v = this.intVar(t);
+            Token op = this.next();
+            this.loadVar(v, 0, 4);
+            this.increment(v, op.is("++"));
+            return INT;
+         }
+         byte type = this.primary();
+         while (this.peek().is(".")) {
+            Token dot = this.next();
+            if (type != VECTOR) {
+               throw this.error(dot, "only vectors have members");
+            }
+            int component = this.component(null, this.ident());
+            // DESTRUCT keeps one float of the vector on top of the stack
+            this.code.u8(0x21);
+            this.code.u8(0x01);
+            this.code.u16(12);
+            this.code.u16(component * 4);
+            this.code.u16(4);
+            this.sp -= 8;
+            type = FLOAT;
+         }
+         return type;
+      }
+
+      private byte primary() {
+         Token t = this.next();
+         switch (t.kind) {
+            case INT:
+            case FLOAT:
+            case STRING:
+               return this.pushConstant(this.literal(t, false));
+            case OP:
+               if (t.is("(")) {
+                  byte type = this.expression();
+                  this.expect(")");
+                  return type;
+               }
+               if (t.is("[")) {
+                  for (int i = 0; i < 3; i++) {
+                     if (i > 0) {
+                        this.expect(",");
+                     }
+                     Token at = this.peek();
+                     this.coerce(at, this.expression(), FLOAT);
+                  }
+                  this.expect("]");
+                  return VECTOR;
+               }
+               throw this.error(t, "expected an expression but found " + t);
+            case IDENT:
+               if (this.peek().is("(")) {
+                  return this.call(t);
+               }
+               Var v = this.lookup(t.text);
+               if (v != null) {
+                  if (this.peek().is(".") && v.type == VECTOR) {
+                     this.pos++;
+                     int component = this.component(v, this.ident());
+                     this.loadVar(v, component * 4, 4);
+                     return FLOAT;
+                  }
+                  this.loadVar(v, 0, sizeOf(v.type));
+                  return v.type;
+               }
+               Constant c = this.constant(t.text);
+               if (c != null) {
+                  return this.pushConstant(c);
+               }
+               throw this.error(t, "undefined identifier " + t.text);
+            default:
+               throw this.error(t, "expected an expression but found " + t);
+         }
+      }
+
+      private int component(Var v, Token member) {
+         if (v != null && v.type != VECTOR) {
+            throw this.error(member, v.name + " is not a vector");
+         }
+         switch (member.text) {
+            case "x":
+               return 0;
+            case "y":
+               return 1;
+            case "z":
+               return 2;
+            default:
+               throw this.error(member, "vectors have no member " + member.text);
+         }
+      }
+
+      private Var intVar(Token nameTok) {
+         Var v = this.lookup(nameTok.text);
+         if (v == null) {
+            throw this.error(nameTok, "undefined variable " + nameTok.text);
+         }
+         if (v.type != INT) {
+            throw this.error(nameTok, "++ and -- need an int variable");
+         }
+         return v;
+      }
+
+      /**
+       * Calls a script function ({@code RSADD} for the result, arguments, {@code JSR}) or an
+       * engine action (arguments, {@code ACTION}). Arguments are pushed last to first, so
+       * they are found by token ranges first and compiled in reverse.
+       */
+      private byte call(Token nameTok) {
+         this.expect("(");
+         List<int[]> args = new ArrayList<>();
+         if (!this.peek().is(")")) {
+            do {
+               int start = this.pos;
+               this.skipArgument();
+               args.add(new int[] {start, this.pos});
+            } while (this.accept(","));
+         }
+         this.expect(")");
+         int after = this.pos;
+         Function f = this.functions.get(nameTok.text);
+         Integer action = NssCompiler.this.actionIds.get(nameTok.text);
+         if (f == null && action == null) {
+            throw this.error(nameTok, "undefined function " + nameTok.text);
+         }
+         byte returnType;
+         if (f != null) {
+            returnType = f.returnType;
+            this.checkArgCount(nameTok, args.size(), f.params.size(), this.required(f));
+            this.rsadd(returnType);
+            for (int i = f.params.size() - 1; i >= 0; i--) {
+               Param p = f.params.get(i);
+               if (i < args.size()) {
+                  this.argument(args.get(i), p.type);
+               } else {
+                  this.argument(new int[] {p.defaultStart, p.defaultEnd}, p.type);
+               }
+            }
+            this.jump(0x1E, f.label);
+            this.sp -= f.paramSize();
+         } else {
+            returnType = NssCompiler.this.actions.getReturnType(action).byteValue();
+            List<Type> types = NssCompiler.this.actions.getParamTypes(action);
+            List<String> defaults = NssCompiler.this.actions.getDefaultValues(action);
+            this.checkArgCount(nameTok, args.size(), types.size(),
+                  NssCompiler.this.actions.getRequiredParamCount(action));
+            int argBytes = 0;
+            for (int i = types.size() - 1; i >= 0; i--) {
+               byte type = this.paramType(types.get(i));
+               if (i < args.size()) {
+                  this.argument(args.get(i), type);
+               } else {
+                  Constant c = NssCompiler.this.parseConstant(defaults.get(i), type);
+                  if (c == null) {
+                     throw this.error(nameTok, "cannot use the default value " + defaults.get(i) + " of "
+                           + nameTok.text);
+                  }
+                  this.coerce(nameTok, this.pushConstant(c), type);
+               }
+               argBytes += sizeOf(type);
+            }
+            this.code.u8(0x05);
+            this.code.u8(0x00);
+            this.code.u16(action);
+            this.code.u8(types.size());
+            this.sp += sizeOf(returnType) - argBytes;
+         }
+         this.pos = after;
+         return returnType;
+      }
+
+      /** Action parameter type; {@code action} decodes to void in {@link Type}. */
+      private byte paramType(Type type) {
+         return type.byteValue() == Type.VT_NONE ? ACTION : type.byteValue();
+      }
+
+      private int required(Function f) {
+         int required = 0;
+         for (int i = 0; i < f.params.size(); i++) {
+            if (f.params.get(i).defaultStart < 0) {
+               required = i + 1;
+            }
+         }
+         return required;
+      }
+
+      private void checkArgCount(Token nameTok, int given, int max, int required) {
+         if (given > max || given < required) {
+            throw this.error(nameTok, nameTok.text + " takes " + (required == max ? "" : required + " to ") + max
+                  + " arguments, " + given + " given");
+         }
+      }
+
+      /**
+       * Compiles the argument in a token range. Action arguments become a saved state and a
+       * jump over the deferred code, which ends in {@code RETN}.
+       */
+      private void argument(int[] range, byte type) {
+         int save = this.pos;
+         this.pos = range[0];
+         Token at = this.peek();
+         if (type == ACTION) {
+            this.code.u8(0x2C);
+            this.code.u8(0x10);
+            this.code.i32(this.globalsSize);
+            this.code.i32(this.sp);
+            Label after = new Label();
+            this.jump(0x1D, after);
+            int saved = this.sp;
+            this.expressionStatement();
+            this.retn();
+            this.sp = saved;
+            this.bind(after);
+         } else {
+            this.coerce(at, this.expression(), type);
+         }
+         if (this.pos != range[1]) {
+            throw this.error(this.peek(), "unexpected " + this.peek() + " in argument");
+         }
+         this.pos = save;
+      }
+
+      private Constant constant(String name) {
+         Constant c = this.scriptConstants.get(name);
+         return c != null ? c : NssCompiler.this.constants.get(name);
+      }
+
+      private byte pushConstant(Constant c) {
+         switch (c.type) {
+            case INT:
+               this.constInt((Integer) c.value);
+               break;
+            case FLOAT:
+               this.constFloat((Float) c.value);
+               break;
+            case STRING:
+               byte[] bytes = ((String) c.value).getBytes(SCRIPT_CHARSET);
+               this.code.u8(0x04);
+               this.code.u8(STRING);
+               this.code.u16(bytes.length);
+               for (byte b : bytes) {
+                  this.code.u8(b);
+               }
+               this.sp += 4;
+               break;
+            case OBJECT:
+               this.code.u8(0x04);
+               this.code.u8(OBJECT);
+               this.code.i32((Integer) c.value);
+               this.sp += 4;
+               break;
+            case VECTOR:
+               for (float f : (float[]) c.value) {
+                  this.constFloat(f);
+               }
+               break;
+            default:
+               throw new CompileError(this.name + ": bad constant type " + c.type);
+         }
+         return c.type;
+      }
+
+      private void coerce(Token at, byte actual, byte expected) {
+         if (actual != expected) {
+            throw this.error(at, "expected " + typeName(expected) + " but found " + typeName(actual));
+         }
+      }
+
+      private void requireInt(Token at, byte type) {
+         this.coerce(at, type, INT);
+      }
+
+      private Var lookup(String name) {
+         for (Map<String, Var> scope : this.scopes) {
+            Var v = scope.get(name);
+            if (v != null) {
+               return v;
+            }
+         }
+         return this.bpTop >= 0 ? this.globals.get(name) : null;
+      }
+
+      private void loadVar(Var v, int offset, int size) {
+         if (v.global && this.bpTop >= 0) {
+            this.copy(0x27, v.pos + offset - this.globalsSize, size);  // CPTOPBP
+            this.sp += size;
+         } else {
+            this.copyTopSp(this.varPos(v) + offset - this.sp, size);
+         }
+      }
+
+      private void storeVar(Var v, int offset, int size) {
+         if (v.global && this.bpTop >= 0) {
+            this.copy(0x26, v.pos + offset - this.globalsSize, size);  // CPDOWNBP
+         } else {
+            this.copyDownSp(this.varPos(v) + offset - this.sp, size);
+         }
+      }
+
+      private int varPos(Var v) {
+         // Globals compiled before SAVEBP are locals of the globals subroutine
+         return v.global ? v.pos + this.scopeBase.peekLast() : v.pos;
+      }
+
+      private void increment(Var v, boolean up) {
+         if (v.global && this.bpTop >= 0) {
+            // Unlike CPTOPBP, these count one slot further from BP, as the decompiler reads them
+            this.code.u8(up ? 0x29 : 0x28);  // INCIBP, DECIBP
+            this.code.u8(INT);
+            this.code.i32(v.pos - this.globalsSize - 4);
+         } else {
+            this.code.u8(up ? 0x24 : 0x23);  // INCISP, DECISP
+            this.code.u8(INT);
+            this.code.i32(this.varPos(v) - this.sp);
+         }
+      }
+
+      private void simple(int opcode, int type) {
+         this.code.u8(opcode);
+         this.code.u8(type);
+      }
+
+      private void rsadd(byte type) {
+         if (type == VECTOR) {
+            for (int i = 0; i < 3; i++) {
+               this.simple(0x02, FLOAT);
+            }
+         } else if (type != VOID) {
+            this.simple(0x02, type);
+         }
+         this.sp += sizeOf(type);
+      }
+
+      private void constInt(int value) {
+         this.code.u8(0x04);
+         this.code.u8(INT);
+         this.code.i32(value);
+         this.sp += 4;
+      }
+
+      private void constFloat(float value) {
+         this.code.u8(0x04);
+         this.code.u8(FLOAT);
+         this.code.i32(Float.floatToIntBits(value));
+         this.sp += 4;
+      }
+
+      private void copyTopSp(int offset, int size) {
+         this.copy(0x03, offset, size);
+         this.sp += size;
+      }
+
+      private void copyDownSp(int offset, int size) {
+         this.copy(0x01, offset, size);
+      }
+
+      private void copy(int opcode, int offset, int size) {
+         this.code.u8(opcode);
+         this.code.u8(0x01);
+         this.code.i32(offset);
+         this.code.u16(size);
+      }
+
+      private void movsp(int bytes) {
+         this.code.u8(0x1B);
+         this.code.u8(0x00);
+         this.code.i32(-bytes);
+         this.sp -= bytes;
+      }
+
+      private void retn() {
+         this.simple(0x20, 0x00);
+      }
+
+      /** JMP, JSR, JZ or JNZ to a label; conditional jumps pop their operand. */
+      private void jump(int opcode, Label target) {
+         int at = this.code.size();
+         this.code.u8(opcode);
+         this.code.u8(0x00);
+         if (target.pos >= 0) {
+            this.code.i32(target.pos - at);
+         } else {
+            target.refs.add(at);
+            this.code.i32(0);
+         }
+         if (opcode == 0x1F || opcode == 0x25) {
+            this.sp -= 4;
+         }
+      }
+
+      private void bind(Label label) {
+         label.pos = this.code.size();
+         for (int at : label.refs) {
+            this.code.patch32(at + 2, label.pos - at);
+         }
+         label.refs.clear();
+      }
+
+      private Token peek() {
+         return this.tokens.get(this.pos);
+      }
+
+      private Token peekAt(int ahead) {
+         return this.tokens.get(Math.min(this.pos + ahead, this.tokens.size() - 1));
+      }
+
+      private Token next() {
+         Token t = this.tokens.get(this.pos);
+         if (t.kind != Kind.EOF) {
+            this.pos++;
+         }
+         return t;
+      }
+
+      private boolean accept(String text) {
+         if (this.peek().is(text)) {
+            this.pos++;
+            return true;
+         }
+         return false;
+      }
+
+      private void expect(String text) {
+         Token t = this.peek();
+         if (!t.is(text)) {
+            throw this.error(t, "expected '" + text + "' but found " + t);
+         }
+         this.pos++;
+      }
+
+      private Token ident() {
+         Token t = this.next();
+         if (t.kind != Kind.IDENT) {
+            throw this.error(t, "expected a name but found " + t);
+         }
+         return t;
+      }
+
+      private boolean isTypeName(Token t) {
+         return t.kind == Kind.IDENT && (NssCompiler.this.typeNames.containsKey(t.text) || t.is("struct"));
+      }
+
+      private byte type() {
+         Token t = this.next();
+         if (t.is("struct")) {
+            throw new CompileError(this.name + ":" + t.line + ": struct types are not supported", true);
+         }
+         Byte type = t.kind == Kind.IDENT ? NssCompiler.this.typeNames.get(t.text) : null;
+         if (type == null) {
+            throw this.error(t, "expected a type but found " + t);
+         }
+         return type;
+      }
+
+      /** Moves past one argument or expression, stopping at a top-level ',' or ')'. */
+      private void skipArgument() {
+         int depth = 0;
+         while (true) {
+            Token t = this.peek();
+            if (t.kind == Kind.EOF) {
+               throw this.error(t, "unexpected end of file");
+            }
+            if (depth == 0 && (t.is(",") || t.is(")") || t.is(";"))) {
+               return;
+            }
+            if (t.is("(") || t.is("[") || t.is("{")) {
+               depth++;
+            } else if (t.is(")") || t.is("]") || t.is("}")) {
+               depth--;
+            }
+            this.pos++;
+         }
+      }
+
+      /** Moves past a brace-enclosed block starting at the current token. */
+      private void skipBlock() {
+         int depth = 0;
+         do {
+            Token t = this.next();
+            if (t.kind == Kind.EOF) {
+               throw this.error(t, "missing '}'");
+            }
+            if (t.is("{")) {
+               depth++;
+            } else if (t.is("}")) {
+               depth--;
+            }
+         } while (depth > 0);
+      }
+
+      private void skipTo(String text) {
+         while (!this.peek().is(text)) {
+            if (this.peek().kind == Kind.EOF) {
+               throw this.error(this.peek(), "expected '" + text + "'");
+            }
+            this.pos++;
+         }
+      }
+
+      private CompileError error(Token at, String message) {
+         return new CompileError(this.name + ":" + at.line + ": " + message);
+      }
+   }
+}
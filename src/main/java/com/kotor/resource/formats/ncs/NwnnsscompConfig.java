@@ -63,6 +63,24 @@ public class NwnnsscompConfig {
       }
    }
 
+   private NwnnsscompConfig(NwnnsscompConfig base, File sourceFile) {
+      this.sha256Hash = base.sha256Hash;
+      this.sourceFile = sourceFile;
+      this.outputFile = base.outputFile;
+      this.outputDir = base.outputDir;
+      this.outputName = base.outputName;
+      this.isK2 = base.isK2;
+      this.chosenCompiler = base.chosenCompiler;
+   }
+
+   /**
+    * The same configuration for another source file, without hashing the compiler again.
+    * Used when the source is copied next to a relocated compiler.
+    */
+   NwnnsscompConfig forSource(File sourceFile) {
+      return new NwnnsscompConfig(this, sourceFile);
+   }
+
    /**
     * Gets the formatted compile command-line arguments.
     *
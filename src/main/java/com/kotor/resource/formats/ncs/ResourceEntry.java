@@ -0,0 +1,84 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * One resource stored inside a game archive, with its bytes as a read-only view of the
+ * mapped archive file.
+ */
+public final class ResourceEntry {
+   /** Resource type of script sources. */
+   public static final int TYPE_NSS = 2009;
+   /** Resource type of compiled scripts. */
+   public static final int TYPE_NCS = 2010;
+   private final String resref;
+   private final int restype;
+   private final File container;
+   private final long offset;
+   private final int length;
+   private final ByteBuffer data;
+
+   ResourceEntry(String resref, int restype, File container, long offset, int length, ByteBuffer data) {
+      this.resref = resref;
+      this.restype = restype;
+      this.container = container;
+      this.offset = offset;
+      this.length = length;
+      this.data = data;
+   }
+
+   /** Resource name in lower case, without extension. */
+   public String resref() {
+      return this.resref;
+   }
+
+   public int restype() {
+      return this.restype;
+   }
+
+   /** The archive file holding the bytes, e.g. the BIF a KEY entry points into. */
+   public File container() {
+      return this.container;
+   }
+
+   /** Position of the bytes in {@link #container()}. */
+   public long offset() {
+      return this.offset;
+   }
+
+   public int length() {
+      return this.length;
+   }
+
+   /** A fresh read-only buffer over the bytes, positioned at the first one. */
+   public ByteBuffer data() {
+      return this.data.duplicate();
+   }
+
+   /** File name the resource would have if extracted, e.g. "k_act_com.ncs". */
+   public String fileName() {
+      switch (this.restype) {
+         case TYPE_NCS:
+            return this.resref + ".ncs";
+         case TYPE_NSS:
+            return this.resref + ".nss";
+         default:
+            return this.resref + "." + this.restype;
+      }
+   }
+
+   /** Where the entry lives, as {@code <container>!/<file name>}. */
+   public String path() {
+      return this.container.getAbsolutePath() + "!/" + this.fileName();
+   }
+
+   @Override
+   public String toString() {
+      return this.path();
+   }
+}
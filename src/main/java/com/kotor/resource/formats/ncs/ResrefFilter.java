@@ -0,0 +1,81 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Selects resources by resref with shell-style globs: {@code *} matches any run of
+ * characters and {@code ?} a single one. Matching ignores case, like the games do. A filter
+ * without globs selects everything.
+ */
+public final class ResrefFilter {
+   /** The filter that selects every resref. */
+   public static final ResrefFilter ALL = new ResrefFilter(new ArrayList<String>(), new ArrayList<Pattern>());
+   private final List<String> globs;
+   private final List<Pattern> patterns;
+
+   private ResrefFilter(List<String> globs, List<Pattern> patterns) {
+      this.globs = globs;
+      this.patterns = patterns;
+   }
+
+   /**
+    * Filter selecting resrefs that match any of {@code globs}; everything if there are none.
+    */
+   public static ResrefFilter of(Collection<String> globs) {
+      List<Pattern> patterns = new ArrayList<>();
+      for (String glob : globs) {
+         patterns.add(compile(glob));
+      }
+      return patterns.isEmpty() ? ALL : new ResrefFilter(new ArrayList<>(globs), patterns);
+   }
+
+   /** Whether the filter selects everything. */
+   public boolean isAll() {
+      return this.patterns.isEmpty();
+   }
+
+   public boolean matches(String resref) {
+      if (this.patterns.isEmpty()) {
+         return true;
+      }
+      String name = resref.toLowerCase(Locale.ROOT);
+      for (Pattern p : this.patterns) {
+         if (p.matcher(name).matches()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static Pattern compile(String glob) {
+      String g = glob.toLowerCase(Locale.ROOT);
+      // A trailing extension is accepted for convenience: "k_act_*.ncs" selects scripts
+      if (g.endsWith(".ncs")) {
+         g = g.substring(0, g.length() - 4);
+      }
+      StringBuilder regex = new StringBuilder();
+      int literal = 0;
+      for (int i = 0; i < g.length(); i++) {
+         char c = g.charAt(i);
+         if (c == '*' || c == '?') {
+            regex.append(Pattern.quote(g.substring(literal, i))).append(c == '*' ? ".*" : ".");
+            literal = i + 1;
+         }
+      }
+      regex.append(Pattern.quote(g.substring(literal)));
+      return Pattern.compile(regex.toString());
+   }
+
+   @Override
+   public String toString() {
+      return this.globs.isEmpty() ? "*" : String.join(" ", this.globs);
+   }
+}
@@ -0,0 +1,485 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistent index of every script in a game install, so one script can be found without
+ * scanning the KEY, the BIFs and every module capsule.
+ * <p>
+ * The index is a tab-separated text file sorted by resref. Script lines give the
+ * location of the bytes; {@code @} lines stamp each container with the modification time
+ * and size it had when it was indexed:
+ *
+ * <pre>
+ * # NCSDecomp resref index v1: resref<TAB>restype<TAB>container<TAB>offset<TAB>length<TAB>sha256
+ * &#64;   bif       data/scripts.bif      1118563200000   2406122
+ * k_ptar_onenter   2010   modules/tar_m02aa.rim   48113   1540   9C1F...
+ * </pre>
+ *
+ * Containers are paths relative to the install directory with '/' separators, so an index
+ * stays valid when the install moves. {@link #update} re-reads only containers whose
+ * stamp changed: a capsule is skipped when it is unchanged, and the KEY with its BIFs is
+ * skipped when neither the KEY nor any BIF holding scripts changed. Hashes of entries in
+ * unchanged BIFs are reused when the KEY itself changed.
+ * <p>
+ * Unless told otherwise, indexes live in the {@code index} directory of the
+ * {@link UserCache}, one per install ({@link #defaultFile}), so installs are only read.
+ */
+public final class ResrefIndex {
+   private static final String HEADER =
+         "# NCSDecomp resref index v1: resref<TAB>restype<TAB>container<TAB>offset<TAB>length<TAB>sha256";
+   private static final String STAMP = "@";
+   private static final String KIND_KEY = "key";
+   private static final String KIND_BIF = "bif";
+   private static final String KIND_CAPSULE = "capsule";
+   private static final Comparator<Row> ORDER = new Comparator<Row>() {
+      @Override
+      public int compare(Row a, Row b) {
+         int c = a.resref.compareTo(b.resref);
+         if (c == 0) {
+            c = Integer.compare(a.restype, b.restype);
+         }
+         if (c == 0) {
+            c = a.container.compareTo(b.container);
+         }
+         return c != 0 ? c : Long.compare(a.offset, b.offset);
+      }
+   };
+   private final File root;
+   private final List<Row> rows = new ArrayList<>();
+   private final Map<String, Stamp> stamps = new TreeMap<>();  // container -> stamp
+   private final Map<String, ByteBuffer> mapped = new HashMap<>();
+   private Map<String, List<Row>> byContainer;
+   private int rebuilt;
+
+   private ResrefIndex(File root) {
+      this.root = root.getAbsoluteFile();
+   }
+
+   /**
+    * One indexed script.
+    */
+   public static final class Row {
+      final String resref;
+      final int restype;
+      final String container;
+      final long offset;
+      final int length;
+      final String sha256;
+
+      Row(String resref, int restype, String container, long offset, int length, String sha256) {
+         this.resref = resref;
+         this.restype = restype;
+         this.container = container;
+         this.offset = offset;
+         this.length = length;
+         this.sha256 = sha256;
+      }
+
+      public String resref() {
+         return this.resref;
+      }
+
+      public int restype() {
+         return this.restype;
+      }
+
+      /** Container path relative to the install directory, with '/' separators. */
+      public String container() {
+         return this.container;
+      }
+
+      public long offset() {
+         return this.offset;
+      }
+
+      public int length() {
+         return this.length;
+      }
+
+      /** SHA-256 of the script bytes, upper-case hex. */
+      public String sha256() {
+         return this.sha256;
+      }
+
+      @Override
+      public String toString() {
+         return this.container + "!/" + this.resref + "." + this.restype;
+      }
+   }
+
+   /**
+    * Modification time and size of a container when it was indexed.
+    */
+   private static final class Stamp {
+      final String kind;
+      final long modified;
+      final long size;
+
+      Stamp(String kind, long modified, long size) {
+         this.kind = kind;
+         this.modified = modified;
+         this.size = size;
+      }
+
+      static Stamp of(String kind, File file) {
+         return new Stamp(kind, file.lastModified(), file.length());
+      }
+
+      boolean matches(File file) {
+         return file.isFile() && file.lastModified() == this.modified && file.length() == this.size;
+      }
+   }
+
+   /**
+    * Where the index of an install is kept when no file is given: a file in the user cache
+    * named after the install directory and a hash of its absolute path, so two installs
+    * never share one.
+    */
+   public static File defaultFile(File install) {
+      Path dir = install.getAbsoluteFile().toPath().normalize();
+      String hash = HashUtil.calculateSHA256(dir.toString().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+      String name = dir.getFileName() != null ? dir.getFileName().toString().replaceAll("[^A-Za-z0-9._-]", "_") : "";
+      return new File(UserCache.directory("index"),
+            (name.isEmpty() ? "install" : name) + "-" + hash.toLowerCase(Locale.ROOT) + ".tsv");
+   }
+
+   /**
+    * Brings the index of an install up to date and returns it. An existing index file is
+    * loaded and only changed containers are read again; the file is rewritten if anything
+    * changed. A missing or unreadable index file is rebuilt from scratch.
+    *
+    * @param install   game directory holding {@code chitin.key} and the capsule folders
+    * @param indexFile where the index is kept
+    * @throws IOException if the KEY or a BIF it needs cannot be read, or the index cannot
+    *                     be written
+    */
+   public static ResrefIndex update(File install, File indexFile) throws IOException {
+      ResrefIndex old = new ResrefIndex(install);
+      if (indexFile.isFile()) {
+         try {
+            old = load(install, indexFile);
+         } catch (IOException | RuntimeException e) {
+            Logger.info("ResrefIndex: Rebuilding " + indexFile.getName() + " (" + e.getMessage() + ")");
+            old = new ResrefIndex(install);
+         }
+      }
+      ResrefIndex index = new ResrefIndex(install);
+      File key = findKey(index.root);
+      if (key != null) {
+         index.indexKey(key, old);
+      }
+      for (File capsule : findCapsules(index.root)) {
+         index.indexCapsule(capsule, old);
+      }
+      Collections.sort(index.rows, ORDER);
+      if (index.rebuilt > 0 || !index.stamps.keySet().equals(old.stamps.keySet()) || !indexFile.isFile()) {
+         index.save(indexFile);
+      }
+      return index;
+   }
+
+   /**
+    * Loads an index file as it is, without checking it against the install.
+    */
+   public static ResrefIndex load(File install, File indexFile) throws IOException {
+      ResrefIndex index = new ResrefIndex(install);
+      try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+         String line = reader.readLine();
+         if (!HEADER.equals(line)) {
+            throw new IOException("not a v1 resref index");
+         }
+         while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+               continue;
+            }
+            String[] cols = line.split("\t");
+            if (STAMP.equals(cols[0]) && cols.length == 5) {
+               index.stamps.put(cols[2], new Stamp(cols[1], Long.parseLong(cols[3]), Long.parseLong(cols[4])));
+            } else if (cols.length == 6) {
+               index.rows.add(new Row(cols[0], Integer.parseInt(cols[1]), cols[2], Long.parseLong(cols[3]),
+                     Integer.parseInt(cols[4]), cols[5]));
+            } else {
+               throw new IOException("malformed line: " + line);
+            }
+         }
+      }
+      Collections.sort(index.rows, ORDER);
+      return index;
+   }
+
+   /**
+    * Writes the index through a temp file and an atomic rename, so concurrent readers see
+    * either the old or the new index.
+    */
+   private void save(File indexFile) throws IOException {
+      File parent = indexFile.getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.exists()) {
+         parent.mkdirs();
+      }
+      Path tmp = Files.createTempFile(parent.toPath(), indexFile.getName(), ".tmp");
+      try {
+         try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Stamp> e : this.stamps.entrySet()) {
+               Stamp s = e.getValue();
+               writer.write(STAMP + "\t" + s.kind + "\t" + e.getKey() + "\t" + s.modified + "\t" + s.size);
+               writer.newLine();
+            }
+            for (Row r : this.rows) {
+               writer.write(r.resref + "\t" + r.restype + "\t" + r.container + "\t" + r.offset + "\t" + r.length + "\t"
+                     + r.sha256);
+               writer.newLine();
+            }
+         }
+         try {
+            Files.move(tmp, indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+         } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         }
+      } finally {
+         Files.deleteIfExists(tmp);
+      }
+   }
+
+   private void indexKey(File key, ResrefIndex old) throws IOException {
+      String keyPath = this.relative(key);
+      Stamp keyStamp = old.stamps.get(keyPath);
+      boolean unchanged = keyStamp != null && keyStamp.matches(key);
+      List<String> bifs = old.containers(KIND_BIF);
+      for (String bif : bifs) {
+         unchanged &= old.stamps.get(bif).matches(this.resolve(bif));
+      }
+      if (unchanged) {
+         this.stamps.put(keyPath, keyStamp);
+         for (String bif : bifs) {
+            this.copy(bif, old);
+         }
+         return;
+      }
+
+      this.rebuilt++;
+      this.stamps.put(keyPath, Stamp.of(KIND_KEY, key));
+      Map<String, String> hashes = old.reusableHashes(KIND_BIF);
+      KeyFile kf = KeyFile.read(key);
+      for (int restype : new int[] {ResourceEntry.TYPE_NCS, ResourceEntry.TYPE_NSS}) {
+         for (ResourceEntry e : kf.entries(restype, ResrefFilter.ALL)) {
+            String bif = this.relative(e.container());
+            if (!this.stamps.containsKey(bif)) {
+               this.stamps.put(bif, Stamp.of(KIND_BIF, e.container()));
+            }
+            String sha = hashes.get(bif + "\t" + e.offset() + "\t" + e.length());
+            this.add(e, bif, sha != null ? sha : HashUtil.calculateSHA256(e.data()));
+         }
+      }
+   }
+
+   private void indexCapsule(File file, ResrefIndex old) {
+      String path = this.relative(file);
+      Stamp stamp = old.stamps.get(path);
+      if (stamp != null && stamp.matches(file)) {
+         this.copy(path, old);
+         return;
+      }
+      this.rebuilt++;
+      try {
+         Capsule capsule = Capsule.read(file);
+         this.stamps.put(path, Stamp.of(KIND_CAPSULE, file));
+         for (int restype : new int[] {ResourceEntry.TYPE_NCS, ResourceEntry.TYPE_NSS}) {
+            for (ResourceEntry e : capsule.entries(restype, ResrefFilter.ALL)) {
+               this.add(e, path, HashUtil.calculateSHA256(e.data()));
+            }
+         }
+      } catch (IOException e) {
+         // Left without a stamp, so it is tried again next time
+         Logger.warn("ResrefIndex: skipping " + path + " (" + e.getMessage() + ")");
+      }
+   }
+
+   private void add(ResourceEntry e, String container, String sha) {
+      this.rows.add(new Row(e.resref(), e.restype(), container, e.offset(), e.length(), sha));
+   }
+
+   /** Takes over the stamp and rows of an unchanged container. */
+   private void copy(String container, ResrefIndex old) {
+      this.stamps.put(container, old.stamps.get(container));
+      this.rows.addAll(old.rowsIn(container));
+   }
+
+   private List<Row> rowsIn(String container) {
+      if (this.byContainer == null) {
+         this.byContainer = new HashMap<>();
+         for (Row r : this.rows) {
+            List<Row> list = this.byContainer.get(r.container);
+            if (list == null) {
+               list = new ArrayList<>();
+               this.byContainer.put(r.container, list);
+            }
+            list.add(r);
+         }
+      }
+      List<Row> list = this.byContainer.get(container);
+      return list != null ? list : Collections.<Row>emptyList();
+   }
+
+   private List<String> containers(String kind) {
+      List<String> found = new ArrayList<>();
+      for (Map.Entry<String, Stamp> e : this.stamps.entrySet()) {
+         if (e.getValue().kind.equals(kind)) {
+            found.add(e.getKey());
+         }
+      }
+      return found;
+   }
+
+   /** Hashes of entries in containers of one kind that are still unchanged, by location. */
+   private Map<String, String> reusableHashes(String kind) {
+      Map<String, String> hashes = new HashMap<>();
+      for (String container : this.containers(kind)) {
+         if (this.stamps.get(container).matches(this.resolve(container))) {
+            for (Row r : this.rowsIn(container)) {
+               hashes.put(container + "\t" + r.offset + "\t" + r.length, r.sha256);
+            }
+         }
+      }
+      return hashes;
+   }
+
+   /** The install directory. */
+   public File getRoot() {
+      return this.root;
+   }
+
+   /** Number of indexed scripts. */
+   public int size() {
+      return this.rows.size();
+   }
+
+   /** Number of containers holding indexed scripts, plus the KEY. */
+   public int containerCount() {
+      return this.stamps.size();
+   }
+
+   /** Number of containers read by the last {@link #update}; 0 if the index was current. */
+   public int rebuiltCount() {
+      return this.rebuilt;
+   }
+
+   /** Scripts of one type named {@code resref}, found by binary search. */
+   public List<Row> find(String resref, int restype) {
+      String name = resref.toLowerCase(Locale.ROOT);
+      int i = Collections.binarySearch(this.rows, new Row(name, restype, "", Long.MIN_VALUE, 0, ""), ORDER);
+      List<Row> found = new ArrayList<>();
+      for (i = i < 0 ? -i - 1 : i; i < this.rows.size(); i++) {
+         Row r = this.rows.get(i);
+         if (!r.resref.equals(name) || r.restype != restype) {
+            break;
+         }
+         found.add(r);
+      }
+      return found;
+   }
+
+   /** Scripts of one type whose resref passes {@code filter}, in index order. */
+   public List<Row> find(ResrefFilter filter, int restype) {
+      List<Row> found = new ArrayList<>();
+      for (Row r : this.rows) {
+         if (r.restype == restype && filter.matches(r.resref)) {
+            found.add(r);
+         }
+      }
+      return found;
+   }
+
+   /** The container of a row as a file of this install. */
+   public File container(Row row) {
+      return this.resolve(row.container);
+   }
+
+   /**
+    * Maps the container of a row (once per container) and returns its bytes.
+    *
+    * @throws IOException if the container cannot be mapped or no longer holds the range
+    */
+   public ResourceEntry open(Row row) throws IOException {
+      File file = this.resolve(row.container);
+      ByteBuffer buf;
+      synchronized (this.mapped) {
+         buf = this.mapped.get(row.container);
+         if (buf == null) {
+            buf = ArchiveIO.map(file);
+            this.mapped.put(row.container, buf);
+         }
+      }
+      return new ResourceEntry(row.resref, row.restype, file, row.offset, row.length,
+            ArchiveIO.slice(file, buf, row.offset, row.length));
+   }
+
+   private String relative(File file) {
+      Path rel = this.root.toPath().normalize().relativize(file.getAbsoluteFile().toPath().normalize());
+      return rel.toString().replace(File.separatorChar, '/');
+   }
+
+   private File resolve(String container) {
+      return new File(this.root, container.replace('/', File.separatorChar));
+   }
+
+   /** The install's {@code chitin.key}, matched ignoring case, or null. */
+   private static File findKey(File root) {
+      String[] names = root.list();
+      if (names != null) {
+         for (String name : names) {
+            if (name.equalsIgnoreCase("chitin.key")) {
+               return new File(root, name);
+            }
+         }
+      }
+      return null;
+   }
+
+   /** Every capsule below the install directory, in a stable order. */
+   private static List<File> findCapsules(File dir) {
+      List<File> found = new ArrayList<>();
+      File[] kids = dir.listFiles();
+      if (kids == null) {
+         return found;
+      }
+      Arrays.sort(kids);
+      for (File kid : kids) {
+         if (kid.isDirectory()) {
+            found.addAll(findCapsules(kid));
+         } else if (Capsule.isCapsule(kid.getName())) {
+            found.add(kid);
+         }
+      }
+      return found;
+   }
+
+   @Override
+   public String toString() {
+      return this.root.getAbsolutePath() + " (" + this.rows.size() + " scripts)";
+   }
+}
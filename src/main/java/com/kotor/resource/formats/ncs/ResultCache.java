@@ -0,0 +1,207 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed on-disk cache of finished decompilations.
+ * <p>
+ * Entries are keyed by the SHA-256 of the NCS bytes, the nwscript table, every option that
+ * changes the output and a stamp of the decompiler build, so an unchanged script is never
+ * decompiled twice and a new build or different options never see stale output. Each entry
+ * stores the generated source ({@code <key>.nss}) and the variable declarations per
+ * subroutine ({@code <key>.vars}) under a two-character fan-out directory.
+ * <p>
+ * Writes go through a temp file and an atomic rename, so concurrent workers or processes
+ * sharing one directory only ever see complete entries. I/O problems are logged and treated
+ * as misses.
+ */
+public final class ResultCache {
+   /** Bump when entries written by older builds must no longer be reused. */
+   private static final int FORMAT_VERSION = 1;
+   private final File root;
+   private final AtomicInteger hits = new AtomicInteger();
+   private final AtomicInteger misses = new AtomicInteger();
+
+   public ResultCache(File root) {
+      this.root = root;
+   }
+
+   public File getRoot() {
+      return this.root;
+   }
+
+   /**
+    * Computes the cache key of one input.
+    *
+    * @param ncs          raw NCS bytes
+    * @param nwscriptHash {@link ActionsData#getSourceHash()} of the table used
+    * @param options      options the file is decompiled with
+    */
+   public String key(byte[] ncs, String nwscriptHash, DecompilerOptions options) {
+      StringBuilder text = new StringBuilder();
+      text.append("v").append(FORMAT_VERSION).append(' ').append(BuildStamp.VALUE).append('\n');
+      text.append(HashUtil.calculateSHA256(ncs)).append('\n');
+      text.append(nwscriptHash).append('\n');
+      text.append("k2=").append(options.isK2());
+      text.append(" switches=").append(options.preferSwitches());
+      text.append(" strict=").append(options.strictSignatures());
+      text.append(" subcache=").append(options.subroutineCache());
+      text.append(" sigdb=").append(options.signatureDatabase() != null ? options.signatureDatabase().digest() : "-");
+      return HashUtil.calculateSHA256(text.toString().getBytes(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Returns the cached entry for {@code key}, or {@code null} on a miss.
+    */
+   public Entry get(String key) {
+      File nss = this.file(key, ".nss");
+      if (!nss.isFile()) {
+         this.misses.incrementAndGet();
+         return null;
+      }
+      try {
+         String code = new String(Files.readAllBytes(nss.toPath()), StandardCharsets.UTF_8);
+         Map<String, List<String>> variables = new LinkedHashMap<>();
+         File vars = this.file(key, ".vars");
+         if (vars.isFile()) {
+            for (String line : Files.readAllLines(vars.toPath(), StandardCharsets.UTF_8)) {
+               int tab = line.indexOf('\t');
+               if (tab > 0) {
+                  String sub = line.substring(0, tab);
+                  List<String> decls = variables.get(sub);
+                  if (decls == null) {
+                     decls = new ArrayList<>();
+                     variables.put(sub, decls);
+                  }
+                  decls.add(line.substring(tab + 1));
+               }
+            }
+         }
+         this.hits.incrementAndGet();
+         return new Entry(code, variables);
+      } catch (IOException e) {
+         Logger.info("ResultCache: Ignoring unreadable entry " + nss.getAbsolutePath() + ": " + e.getMessage());
+         this.misses.incrementAndGet();
+         return null;
+      }
+   }
+
+   /**
+    * Stores a finished decompilation. Failures are logged and otherwise ignored.
+    *
+    * @param variables variable declarations ({@code "type name"}) keyed by subroutine name
+    */
+   public void put(String key, String code, Map<String, List<String>> variables) {
+      StringBuilder vars = new StringBuilder();
+      if (variables != null) {
+         for (Map.Entry<String, List<String>> e : variables.entrySet()) {
+            for (String decl : e.getValue()) {
+               vars.append(e.getKey()).append('\t').append(decl).append('\n');
+            }
+         }
+      }
+      try {
+         // The source is written last: its presence marks a complete entry
+         this.write(this.file(key, ".vars"), vars.toString());
+         this.write(this.file(key, ".nss"), code);
+      } catch (IOException e) {
+         Logger.warn("ResultCache: Could not store entry " + key + ": " + e.getMessage());
+      }
+   }
+
+   public int hits() {
+      return this.hits.get();
+   }
+
+   public int misses() {
+      return this.misses.get();
+   }
+
+   private File file(String key, String suffix) {
+      return new File(new File(this.root, key.substring(0, 2)), key + suffix);
+   }
+
+   private void write(File target, String content) throws IOException {
+      File dir = target.getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+         throw new IOException("Failed to create directory: " + dir.getAbsolutePath());
+      }
+      Path tmp = Files.createTempFile(dir.toPath(), target.getName(), ".tmp");
+      try {
+         Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+         try {
+            Files.move(tmp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+         } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         }
+      } finally {
+         Files.deleteIfExists(tmp);
+      }
+   }
+
+   /**
+    * A cached decompilation.
+    */
+   public static final class Entry {
+      private final String code;
+      private final Map<String, List<String>> variables;
+
+      Entry(String code, Map<String, List<String>> variables) {
+         this.code = code;
+         this.variables = Collections.unmodifiableMap(variables);
+      }
+
+      public String code() {
+         return this.code;
+      }
+
+      /** Variable declarations ({@code "type name"}) keyed by subroutine name. */
+      public Map<String, List<String>> variables() {
+         return this.variables;
+      }
+   }
+
+   /**
+    * Identifies the decompiler build: the SHA-256 of the running JAR, or the newest class
+    * timestamp when running from a classes directory. Computed once, on first use.
+    */
+   private static final class BuildStamp {
+      static final String VALUE = compute();
+
+      private static String compute() {
+         try {
+            File source = new File(ResultCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (source.isFile()) {
+               return HashUtil.calculateSHA256(source);
+            }
+            if (source.isDirectory()) {
+               try (Stream<Path> files = Files.walk(source.toPath())) {
+                  long newest = files.filter(p -> p.toString().endsWith(".class")).mapToLong(p -> p.toFile().lastModified())
+                        .max().orElse(0L);
+                  return "classes-" + newest;
+               }
+            }
+         } catch (Exception e) {
+            Logger.warn("ResultCache: Could not determine build stamp: " + e.getMessage());
+         }
+         return "unknown";
+      }
+   }
+}
@@ -16,7 +16,7 @@ import java.nio.charset.StandardCharsets;
  * allowing both the GUI and CLI to perform consistent NSS->NCS->NSS round-trips.
  * <p>
  * The round-trip process:
- * 1. Compile NSS to NCS (done externally via nwnnsscomp)
+ * 1. Compile NSS to NCS (externally via nwnnsscomp, or in-process with {@link NssCompiler})
  * 2. Decompile NCS back to NSS (using FileDecompiler)
  * <p>
  * This matches the exact logic in NCSDecompCLIRoundTripTest.runDecompile().
@@ -33,63 +33,66 @@ public class RoundTripUtil {
     * @throws DecompilerException If decompilation fails
     */
    public static String decompileNcsToNss(File ncsFile, String gameFlag) throws DecompilerException {
+      return decompileNcsToNss(ncsFile, new DecompilerOptions().withK2("k2".equals(gameFlag)));
+   }
+
+   /**
+    * Decompiles an NCS file to NSS with the given options, which also select the game.
+    *
+    * @param ncsFile The NCS file to decompile
+    * @param options Options to decompile with
+    * @return The decompiled NSS code as a string, or null if decompilation fails
+    * @throws DecompilerException If decompilation fails
+    */
+   public static String decompileNcsToNss(File ncsFile, DecompilerOptions options) throws DecompilerException {
       if (ncsFile == null || !ncsFile.exists()) {
          return null;
       }
 
-      // Set game flag (matches test behavior)
-      boolean wasK2 = FileDecompiler.isK2Selected;
+      // Create a temporary output file (matches test pattern)
+      File tempNssFile;
       try {
-         FileDecompiler.isK2Selected = "k2".equals(gameFlag);
+         tempNssFile = File.createTempFile("roundtrip_", ".nss");
+         tempNssFile.deleteOnExit();
+      } catch (java.io.IOException e) {
+         throw new DecompilerException("Failed to create temp file: " + e.getMessage(), e);
+      }
 
-         // Create a temporary output file (matches test pattern)
-         File tempNssFile;
+      try {
+         // Use the same decompile method as the test
+         FileDecompiler decompiler = new FileDecompiler(options);
+         // Ensure actions are loaded before decompiling (required for decompilation)
          try {
-            tempNssFile = File.createTempFile("roundtrip_", ".nss");
-            tempNssFile.deleteOnExit();
+            decompiler.loadActionsData(options.isK2());
+         } catch (DecompilerException e) {
+            throw new DecompilerException("Failed to load actions data: " + e.getMessage(), e);
+         }
+         try {
+            decompiler.decompileToFile(ncsFile, tempNssFile, StandardCharsets.UTF_8, true);
          } catch (java.io.IOException e) {
-            throw new DecompilerException("Failed to create temp file: " + e.getMessage(), e);
+            throw new DecompilerException("Failed to decompile file: " + e.getMessage(), e);
          }
 
-         try {
-            // Use the same decompile method as the test
-            FileDecompiler decompiler = new FileDecompiler();
-            // Ensure actions are loaded before decompiling (required for decompilation)
+         // Read the decompiled code
+         if (tempNssFile.exists() && tempNssFile.isFile() && tempNssFile.length() > 0) {
             try {
-               decompiler.loadActionsData("k2".equals(gameFlag));
-            } catch (DecompilerException e) {
-               throw new DecompilerException("Failed to load actions data: " + e.getMessage(), e);
-            }
-            try {
-               decompiler.decompileToFile(ncsFile, tempNssFile, StandardCharsets.UTF_8, true);
+               return new String(java.nio.file.Files.readAllBytes(tempNssFile.toPath()), StandardCharsets.UTF_8);
             } catch (java.io.IOException e) {
-               throw new DecompilerException("Failed to decompile file: " + e.getMessage(), e);
-            }
-
-            // Read the decompiled code
-            if (tempNssFile.exists() && tempNssFile.isFile() && tempNssFile.length() > 0) {
-               try {
-                  return new String(java.nio.file.Files.readAllBytes(tempNssFile.toPath()), StandardCharsets.UTF_8);
-               } catch (java.io.IOException e) {
-                  throw new DecompilerException("Failed to read decompiled file: " + e.getMessage(), e);
-               }
-            }
-         } finally {
-            // Clean up temp file
-            try {
-               if (tempNssFile.exists()) {
-                  tempNssFile.delete();
-               }
-            } catch (Exception e) {
-               // Ignore cleanup errors
+               throw new DecompilerException("Failed to read decompiled file: " + e.getMessage(), e);
             }
          }
-
-         return null;
       } finally {
-         // Restore original game flag
-         FileDecompiler.isK2Selected = wasK2;
+         // Clean up temp file
+         try {
+            if (tempNssFile.exists()) {
+               tempNssFile.delete();
+            }
+         } catch (Exception e) {
+            // Ignore cleanup errors
+         }
       }
+
+      return null;
    }
 
    /**
@@ -112,35 +115,53 @@ public class RoundTripUtil {
          charset = StandardCharsets.UTF_8;
       }
 
-      // Set game flag (matches test behavior)
-      boolean wasK2 = FileDecompiler.isK2Selected;
-      try {
-         FileDecompiler.isK2Selected = "k2".equals(gameFlag);
-
-         // Ensure output directory exists
-         File parentDir = nssOutputFile.getParentFile();
-         if (parentDir != null && !parentDir.exists()) {
-            System.out.println("[INFO] RoundTripUtil: CREATING parent directory: " + parentDir.getAbsolutePath());
-            if (!parentDir.mkdirs()) {
-               System.err.println("[ERROR] RoundTripUtil: Failed to create parent directory: " + parentDir.getAbsolutePath());
-               throw new IOException("Failed to create parent directory: " + parentDir.getAbsolutePath());
-            }
-            System.out.println("[INFO] RoundTripUtil: Created parent directory: " + parentDir.getAbsolutePath());
+      // Pin the game for this call instead of toggling process-wide state
+      DecompilerOptions options = new DecompilerOptions().withK2("k2".equals(gameFlag));
+
+      // Ensure output directory exists
+      File parentDir = nssOutputFile.getParentFile();
+      if (parentDir != null && !parentDir.exists()) {
+         System.out.println("[INFO] RoundTripUtil: CREATING parent directory: " + parentDir.getAbsolutePath());
+         if (!parentDir.mkdirs()) {
+            System.err.println("[ERROR] RoundTripUtil: Failed to create parent directory: " + parentDir.getAbsolutePath());
+            throw new IOException("Failed to create parent directory: " + parentDir.getAbsolutePath());
          }
+         System.out.println("[INFO] RoundTripUtil: Created parent directory: " + parentDir.getAbsolutePath());
+      }
 
-         // Use the same decompile method as the test
-         FileDecompiler decompiler = new FileDecompiler();
-         // Ensure actions are loaded before decompiling (required for decompilation)
-         decompiler.loadActionsData("k2".equals(gameFlag));
-         decompiler.decompileToFile(ncsFile, nssOutputFile, charset, true);
+      // Use the same decompile method as the test
+      FileDecompiler decompiler = new FileDecompiler(options);
+      // Ensure actions are loaded before decompiling (required for decompilation)
+      decompiler.loadActionsData(options.isK2());
+      decompiler.decompileToFile(ncsFile, nssOutputFile, charset, true);
+
+      if (!nssOutputFile.exists()) {
+         throw new DecompilerException("Decompile did not produce output file: " + nssOutputFile.getAbsolutePath());
+      }
+   }
 
-         if (!nssOutputFile.exists()) {
-            throw new DecompilerException("Decompile did not produce output file: " + nssOutputFile.getAbsolutePath());
+   /**
+    * Recompiles decompiled source with the in-process compiler and compares the result with
+    * the NCS it was decompiled from. Unlike {@code compileAndCompare}, no external compiler
+    * or working directory is involved.
+    *
+    * @param compiler compiler for the game the script belongs to
+    * @param name file name used in compile errors
+    * @param nss the decompiled source
+    * @param original the NCS bytes that were decompiled
+    * @return offset of the first byte that differs, or -1 if the recompiled script is identical
+    * @throws DecompilerException if the source does not compile
+    */
+   public static int compareRecompiled(NssCompiler compiler, String name, String nss, byte[] original)
+         throws DecompilerException {
+      byte[] recompiled = compiler.compile(name, nss);
+      int common = Math.min(original.length, recompiled.length);
+      for (int i = 0; i < common; i++) {
+         if (original[i] != recompiled[i]) {
+            return i;
          }
-      } finally {
-         // Restore original game flag
-         FileDecompiler.isK2Selected = wasK2;
       }
+      return original.length == recompiled.length ? -1 : common;
    }
 
    /**
@@ -152,6 +173,17 @@ public class RoundTripUtil {
     * @return Round-trip decompiled NSS code, or null if not available
     */
    public static String getRoundTripDecompiledCode(File savedNssFile, String gameFlag) {
+      return getRoundTripDecompiledCode(savedNssFile, new DecompilerOptions().withK2("k2".equals(gameFlag)));
+   }
+
+   /**
+    * Gets the round-trip decompiled code for a saved NSS file, decompiling with the given options.
+    *
+    * @param savedNssFile The saved NSS file (after compilation, this should have a corresponding .ncs file)
+    * @param options Options to decompile with, including the game
+    * @return Round-trip decompiled NSS code, or null if not available
+    */
+   public static String getRoundTripDecompiledCode(File savedNssFile, DecompilerOptions options) {
       try {
          if (savedNssFile == null || !savedNssFile.exists()) {
             return null;
@@ -172,7 +204,7 @@ public class RoundTripUtil {
          }
 
          // Decompile the recompiled NCS file using the same method as the test
-         return decompileNcsToNss(recompiledNcsFile, gameFlag);
+         return decompileNcsToNss(recompiledNcsFile, options);
       } catch (DecompilerException e) {
          System.err.println("Error getting round-trip decompiled code: " + e.getMessage());
          e.printStackTrace();
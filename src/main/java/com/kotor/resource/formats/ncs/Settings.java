@@ -218,12 +218,12 @@ public class Settings extends Properties implements ActionListener {
       String ncsdisPath = this.ncsdisPathField.getText().trim();
       if (!ncsdisPath.isEmpty()) {
          this.setProperty("ncsdis Path", ncsdisPath);
-         FileDecompiler.ncsdisPath = ncsdisPath;
+         Decompiler.setOptions(Decompiler.getOptions().withNcsdisPath(ncsdisPath));
       } else {
          this.remove("ncsdis Path");
-         FileDecompiler.ncsdisPath = null;
+         Decompiler.setOptions(Decompiler.getOptions().withNcsdisPath(null));
       }
-      FileDecompiler.preferNcsdis = this.preferNcsdisCheckBox.isSelected();
+      Decompiler.setOptions(Decompiler.getOptions().withPreferNcsdis(this.preferNcsdisCheckBox.isSelected()));
 
       // Save folder path and filename separately (EXCLUSIVELY from Settings UI)
       String selectedCompiler = (String) this.nwnnsscompComboBox.getSelectedItem();
@@ -257,12 +257,12 @@ public class Settings extends Properties implements ActionListener {
          this.remove("nwnnsscomp Filename");
       }
 
-      // Update FileDecompiler.nwnnsscompPath for backward compatibility (full path)
+      // Update the default nwnnsscomp path for backward compatibility (full path)
       if (!folderPath.isEmpty() && selectedCompiler != null && !selectedCompiler.isEmpty()) {
          File compilerFile = new File(folderPath, selectedCompiler);
-         FileDecompiler.nwnnsscompPath = compilerFile.getAbsolutePath();
+         Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(compilerFile.getAbsolutePath()));
       } else {
-         FileDecompiler.nwnnsscompPath = null;
+         Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(null));
       }
       String k1NwscriptPath = this.k1NwscriptPathField.getText().trim();
       if (k1NwscriptPath.isEmpty()) {
@@ -280,19 +280,19 @@ public class Settings extends Properties implements ActionListener {
       // Game Settings
       if (this.gameK1Radio.isSelected()) {
          this.setProperty("Game Variant", "k1");
-         FileDecompiler.isK2Selected = false;
+         Decompiler.setOptions(Decompiler.getOptions().withK2(false));
       } else if (this.gameK2Radio.isSelected()) {
          this.setProperty("Game Variant", "k2");
-         FileDecompiler.isK2Selected = true;
+         Decompiler.setOptions(Decompiler.getOptions().withK2(true));
       }
 
       // nwnnsscomp path is already set above from combobox selection
 
       // Decompilation Options
       this.setProperty("Prefer Switches", String.valueOf(this.preferSwitchesCheckBox.isSelected()));
-      FileDecompiler.preferSwitches = this.preferSwitchesCheckBox.isSelected();
+      Decompiler.setOptions(Decompiler.getOptions().withPreferSwitches(this.preferSwitchesCheckBox.isSelected()));
       this.setProperty("Strict Signatures", String.valueOf(this.strictSignaturesCheckBox.isSelected()));
-      FileDecompiler.strictSignatures = this.strictSignaturesCheckBox.isSelected();
+      Decompiler.setOptions(Decompiler.getOptions().withStrictSignatures(this.strictSignaturesCheckBox.isSelected()));
       this.setProperty("Overwrite Files", String.valueOf(this.overwriteFilesCheckBox.isSelected()));
 
       // Output Settings
@@ -319,20 +319,20 @@ public class Settings extends Properties implements ActionListener {
 
       // Load ncsdis preference
       String defaultNcsdisPath = new File(toolsDir, "ncsdis.exe").getAbsolutePath();
-      String ncsdisPath = FileDecompiler.ncsdisPath != null ? FileDecompiler.ncsdisPath : this.getProperty("ncsdis Path", defaultNcsdisPath);
+      String ncsdisPath = Decompiler.getOptions().ncsdisPath() != null ? Decompiler.getOptions().ncsdisPath() : this.getProperty("ncsdis Path", defaultNcsdisPath);
       this.ncsdisPathField.setText(ncsdisPath);
       boolean preferNcsdis = Boolean.parseBoolean(this.getProperty("Prefer ncsdis", "true")); // Default to true
       this.preferNcsdisCheckBox.setSelected(preferNcsdis);
-      FileDecompiler.preferNcsdis = preferNcsdis;
-      FileDecompiler.ncsdisPath = ncsdisPath;
+      Decompiler.setOptions(Decompiler.getOptions().withPreferNcsdis(preferNcsdis));
+      Decompiler.setOptions(Decompiler.getOptions().withNcsdisPath(ncsdisPath));
 
       // Update checkbox state based on whether ncsdis.exe exists
       updateNcsdisCheckboxState();
 
       // Default nwnnsscomp path: tools/ directory (relative to app)
       String defaultNwnnsscompPath = toolsDir.getAbsolutePath();
-      // Check FileDecompiler.nwnnsscompPath first to ensure synchronization with actual runtime state
-      String nwnnsscompPath = FileDecompiler.nwnnsscompPath != null ? FileDecompiler.nwnnsscompPath : this.getProperty("nwnnsscomp Path", defaultNwnnsscompPath);
+      // Check the default nwnnsscomp path first to ensure synchronization with actual runtime state
+      String nwnnsscompPath = Decompiler.getOptions().nwnnsscompPath() != null ? Decompiler.getOptions().nwnnsscompPath() : this.getProperty("nwnnsscomp Path", defaultNwnnsscompPath);
 
       // If path looks like a file (ends with .exe), extract parent directory and filename
       String selectedCompilerNameTemp = null;
@@ -388,7 +388,7 @@ public class Settings extends Properties implements ActionListener {
                      this.nwnnsscompComboBox.setSelectedIndex(i);
                      // Update FileDecompiler with the restored path
                      File compilerFile = new File(actualFolder, selectedCompilerName);
-                     FileDecompiler.nwnnsscompPath = compilerFile.getAbsolutePath();
+                     Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(compilerFile.getAbsolutePath()));
                      break;
                   }
                }
@@ -409,17 +409,17 @@ public class Settings extends Properties implements ActionListener {
       String gameVariant = this.getProperty("Game Variant", "k1").toLowerCase();
       if (gameVariant.equals("k2") || gameVariant.equals("tsl") || gameVariant.equals("2")) {
          this.gameK2Radio.setSelected(true);
-         FileDecompiler.isK2Selected = true;
+         Decompiler.setOptions(Decompiler.getOptions().withK2(true));
       } else {
          this.gameK1Radio.setSelected(true);
-         FileDecompiler.isK2Selected = false;
+         Decompiler.setOptions(Decompiler.getOptions().withK2(false));
       }
 
       // Decompilation Options
       this.preferSwitchesCheckBox.setSelected(Boolean.parseBoolean(this.getProperty("Prefer Switches", "false")));
-      FileDecompiler.preferSwitches = this.preferSwitchesCheckBox.isSelected();
+      Decompiler.setOptions(Decompiler.getOptions().withPreferSwitches(this.preferSwitchesCheckBox.isSelected()));
       this.strictSignaturesCheckBox.setSelected(Boolean.parseBoolean(this.getProperty("Strict Signatures", "false")));
-      FileDecompiler.strictSignatures = this.strictSignaturesCheckBox.isSelected();
+      Decompiler.setOptions(Decompiler.getOptions().withStrictSignatures(this.strictSignaturesCheckBox.isSelected()));
       this.overwriteFilesCheckBox.setSelected(Boolean.parseBoolean(this.getProperty("Overwrite Files", "false")));
 
       // Output Settings
@@ -509,20 +509,20 @@ public class Settings extends Properties implements ActionListener {
 
       // Apply loaded settings to static flags
       String gameVariant = this.getProperty("Game Variant", "k1").toLowerCase();
-      FileDecompiler.isK2Selected = gameVariant.equals("k2") || gameVariant.equals("tsl") || gameVariant.equals("2");
-      FileDecompiler.preferSwitches = Boolean.parseBoolean(this.getProperty("Prefer Switches", "false"));
-      FileDecompiler.strictSignatures = Boolean.parseBoolean(this.getProperty("Strict Signatures", "false"));
+      Decompiler.setOptions(Decompiler.getOptions().withK2(gameVariant.equals("k2") || gameVariant.equals("tsl") || gameVariant.equals("2")));
+      Decompiler.setOptions(Decompiler.getOptions().withPreferSwitches(Boolean.parseBoolean(this.getProperty("Prefer Switches", "false"))));
+      Decompiler.setOptions(Decompiler.getOptions().withStrictSignatures(Boolean.parseBoolean(this.getProperty("Strict Signatures", "false"))));
 
       // Load ncsdis preference (defaults to true)
-      FileDecompiler.preferNcsdis = Boolean.parseBoolean(this.getProperty("Prefer ncsdis", "true"));
+      Decompiler.setOptions(Decompiler.getOptions().withPreferNcsdis(Boolean.parseBoolean(this.getProperty("Prefer ncsdis", "true"))));
       String ncsdisPathProp = this.getProperty("ncsdis Path", "");
       if (!ncsdisPathProp.isEmpty()) {
          File ncsdisFile = new File(ncsdisPathProp);
          if (!ncsdisFile.isAbsolute()) {
             ncsdisFile = new File(CompilerUtil.getNCSDecompDirectory(), ncsdisPathProp);
          }
-         FileDecompiler.ncsdisPath = ncsdisFile.getAbsolutePath();
-         System.out.println("[INFO] Settings.load: ncsdis path: " + FileDecompiler.ncsdisPath);
+         Decompiler.setOptions(Decompiler.getOptions().withNcsdisPath(ncsdisFile.getAbsolutePath()));
+         System.out.println("[INFO] Settings.load: ncsdis path: " + Decompiler.getOptions().ncsdisPath());
       }
 
       // Handle both old "nwnnsscomp Path" and new split "nwnnsscomp Folder Path" + "nwnnsscomp Filename" properties
@@ -538,8 +538,8 @@ public class Settings extends Properties implements ActionListener {
             folder = new File(CompilerUtil.getNCSDecompDirectory(), folderPath);
          }
          File compilerFile = new File(folder, filename);
-         FileDecompiler.nwnnsscompPath = compilerFile.getAbsolutePath();
-         System.out.println("[INFO] Settings.load: Compiler path from split properties: " + FileDecompiler.nwnnsscompPath);
+         Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(compilerFile.getAbsolutePath()));
+         System.out.println("[INFO] Settings.load: Compiler path from split properties: " + Decompiler.getOptions().nwnnsscompPath());
       } else {
          // Fall back to old single "nwnnsscomp Path" property (for backward compatibility)
          String nwnnsscompPath = this.getProperty("nwnnsscomp Path", "");
@@ -549,10 +549,10 @@ public class Settings extends Properties implements ActionListener {
             if (!compilerFile.isAbsolute()) {
                compilerFile = new File(CompilerUtil.getNCSDecompDirectory(), nwnnsscompPath);
             }
-            FileDecompiler.nwnnsscompPath = compilerFile.getAbsolutePath();
-            System.out.println("[INFO] Settings.load: Compiler path from old property: " + FileDecompiler.nwnnsscompPath);
+            Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(compilerFile.getAbsolutePath()));
+            System.out.println("[INFO] Settings.load: Compiler path from old property: " + Decompiler.getOptions().nwnnsscompPath());
          } else {
-            FileDecompiler.nwnnsscompPath = null;
+            Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(null));
          }
       }
    }
@@ -785,7 +785,7 @@ public class Settings extends Properties implements ActionListener {
                   // Save the full path to the compiler file
                   String fullPath = compilerFile.getAbsolutePath();
                   // Update FileDecompiler to use this specific compiler immediately
-                  FileDecompiler.nwnnsscompPath = fullPath;
+                  Decompiler.setOptions(Decompiler.getOptions().withNwnnsscompPath(fullPath));
                   // Save to settings immediately so it persists
                   this.setProperty("nwnnsscomp Path", fullPath);
                   // Save to disk immediately
@@ -0,0 +1,146 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for decompiler pipeline stages.
+ * <p>
+ * The {@code com.kotor.ncsdecomp.Stage} event type is defined at runtime through
+ * {@code jdk.jfr.EventFactory}, looked up reflectively so the decompiler still builds and
+ * runs on Java 8 runtimes without the JFR API; there {@link #start()} returns null and
+ * nothing is recorded. Each event carries the script file name, the stage, the subroutine
+ * position (-1 for whole-file stages) and the number of parse tree nodes known so far, so
+ * recordings of batch jobs can be tied back to the input script.
+ */
+public final class StageEvents {
+   /** Stage name of per-subroutine {@code CleanupPass} events. */
+   public static final String CLEANUP_PASS = "cleanuppass";
+   private static final Api API = Api.load();
+
+   private StageEvents() {
+   }
+
+   /** Whether this runtime can record the events at all. */
+   public static boolean isAvailable() {
+      return API != null;
+   }
+
+   /**
+    * Starts timing one event, or returns null if JFR is unavailable or no recording has
+    * the event enabled.
+    */
+   public static Span start() {
+      if (API == null) {
+         return null;
+      }
+      try {
+         Object event = API.newEvent.invoke(API.factory);
+         if (!(Boolean) API.isEnabled.invoke(event)) {
+            return null;
+         }
+         API.begin.invoke(event);
+         return new Span(event);
+      } catch (Exception e) {
+         return null;
+      }
+   }
+
+   /**
+    * One event in progress.
+    */
+   public static final class Span {
+      private final Object event;
+
+      private Span(Object event) {
+         this.event = event;
+      }
+
+      /** Ends the event and commits it with its fields. */
+      public void commit(String file, String stage, int subroutine, int nodes) {
+         try {
+            API.end.invoke(this.event);
+            if ((Boolean) API.shouldCommit.invoke(this.event)) {
+               API.set.invoke(this.event, 0, file);
+               API.set.invoke(this.event, 1, stage);
+               API.set.invoke(this.event, 2, subroutine);
+               API.set.invoke(this.event, 3, nodes);
+               API.commit.invoke(this.event);
+            }
+         } catch (Exception e) {
+            // Recording problems must never affect decompilation
+         }
+      }
+   }
+
+   /**
+    * Reflective handles on the JFR API.
+    */
+   private static final class Api {
+      Object factory;
+      Method newEvent;
+      Method isEnabled;
+      Method begin;
+      Method end;
+      Method shouldCommit;
+      Method set;
+      Method commit;
+
+      @SuppressWarnings("unchecked")
+      static Api load() {
+         try {
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Constructor<?> element = elementClass.getConstructor(Class.class, Object.class);
+            Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+            Class<? extends Annotation> name = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name");
+            Class<? extends Annotation> label = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label");
+            Class<? extends Annotation> category = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category");
+            Class<? extends Annotation> description = (Class<? extends Annotation>) Class.forName("jdk.jfr.Description");
+            Class<? extends Annotation> stackTrace = (Class<? extends Annotation>) Class.forName("jdk.jfr.StackTrace");
+
+            List<Object> annotations = Arrays.asList(
+                  element.newInstance(name, "com.kotor.ncsdecomp.Stage"),
+                  element.newInstance(label, "Decompiler Stage"),
+                  element.newInstance(category, new String[] {"NCSDecomp"}),
+                  element.newInstance(description, "One stage of decompiling an NCS script"),
+                  // Traces would only show the reflective commit call
+                  element.newInstance(stackTrace, Boolean.FALSE));
+            List<Object> fields = new ArrayList<>();
+            fields.add(descriptor.newInstance(String.class, "file",
+                  Collections.singletonList(element.newInstance(label, "File"))));
+            fields.add(descriptor.newInstance(String.class, "stage",
+                  Collections.singletonList(element.newInstance(label, "Stage"))));
+            fields.add(descriptor.newInstance(int.class, "subroutine",
+                  Collections.singletonList(element.newInstance(label, "Subroutine Position"))));
+            fields.add(descriptor.newInstance(int.class, "nodes",
+                  Collections.singletonList(element.newInstance(label, "Parse Tree Nodes"))));
+
+            Api api = new Api();
+            api.factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            api.newEvent = factoryClass.getMethod("newEvent");
+            api.isEnabled = eventClass.getMethod("isEnabled");
+            api.begin = eventClass.getMethod("begin");
+            api.end = eventClass.getMethod("end");
+            api.shouldCommit = eventClass.getMethod("shouldCommit");
+            api.set = eventClass.getMethod("set", int.class, Object.class);
+            api.commit = eventClass.getMethod("commit");
+            return api;
+         } catch (Throwable e) {
+            // No JFR API on this runtime (Java 8 without the backport) or it is not accessible
+            return null;
+         }
+      }
+   }
+}
@@ -0,0 +1,168 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall-clock time and allocated heap spent in each stage of one decompilation.
+ * <p>
+ * Stages are entered with {@link #begin(String)}, which closes the previous one; a stage
+ * entered twice accumulates. Allocations are read from the JVM's per-thread counters where
+ * the JVM supports them. When constructed with a source name, each finished stage is also
+ * recorded as a {@link StageEvents} flight recorder event. Instances are confined to the
+ * thread decompiling the file.
+ */
+public final class StageTimings {
+   public static final String DECODE = "decode";
+   public static final String PARSE = "parse";
+   public static final String ANALYSIS = "analysis";
+   public static final String DESTINATIONS = "destinations";
+   public static final String DEADCODE = "deadcode";
+   public static final String GLOBALS = "globals";
+   public static final String PROTOTYPE = "prototype";
+   public static final String TYPES = "types";
+   public static final String MAINPASS = "mainpass";
+   public static final String CLEANUP = "cleanup";
+   public static final String GENERATE = "generate";
+   public static final String CACHE = "cache";
+
+   /** Per-thread allocation counters, or null if this JVM does not provide them. */
+   private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationCounters();
+
+   private final Map<String, Long> nanos = new LinkedHashMap<>();
+   private final Map<String, Long> allocated = new LinkedHashMap<>();
+   private final String source;
+   private String current;
+   private String last;
+   private long started;
+   private long startedAllocated;
+   private int nodes = -1;
+   private StageEvents.Span event;
+
+   public StageTimings() {
+      this(null);
+   }
+
+   /** Timings that also emit {@link StageEvents} naming {@code source}, if non-null. */
+   public StageTimings(String source) {
+      this.source = source;
+   }
+
+   /** The source name given to flight recorder events, or null. */
+   public String source() {
+      return this.source;
+   }
+
+   /** Parse tree node count reported by events from now on; -1 while unknown. */
+   public int nodes() {
+      return this.nodes;
+   }
+
+   public void setNodes(int nodes) {
+      this.nodes = nodes;
+   }
+
+   /** Ends the running stage, if any, and starts timing {@code stage}. */
+   public void begin(String stage) {
+      long now = System.nanoTime();
+      long allocatedNow = threadAllocatedBytes();
+      this.close(now, allocatedNow);
+      this.current = stage;
+      this.last = stage;
+      this.started = now;
+      this.startedAllocated = allocatedNow;
+      this.event = this.source != null ? StageEvents.start() : null;
+   }
+
+   /** Ends the running stage, if any. */
+   public void end() {
+      this.close(System.nanoTime(), threadAllocatedBytes());
+   }
+
+   private void close(long now, long allocatedNow) {
+      if (this.current != null) {
+         add(this.nanos, this.current, now - this.started);
+         if (allocatedNow >= 0L && this.startedAllocated >= 0L) {
+            add(this.allocated, this.current, allocatedNow - this.startedAllocated);
+         }
+         if (this.event != null) {
+            this.event.commit(this.source, this.current, -1, this.nodes);
+            this.event = null;
+         }
+         this.current = null;
+      }
+   }
+
+   private static void add(Map<String, Long> totals, String stage, long amount) {
+      Long previous = totals.get(stage);
+      totals.put(stage, (previous != null ? previous : 0L) + amount);
+   }
+
+   /** Nanoseconds per finished stage, in the order the stages first ran. */
+   public Map<String, Long> nanos() {
+      return Collections.unmodifiableMap(this.nanos);
+   }
+
+   /**
+    * Heap bytes allocated per finished stage, in the order the stages first ran. Empty if
+    * the JVM does not count allocations per thread.
+    */
+   public Map<String, Long> allocatedBytes() {
+      return Collections.unmodifiableMap(this.allocated);
+   }
+
+   /** The stage entered most recently, even if it has ended; null before the first. */
+   public String lastStage() {
+      return this.last;
+   }
+
+   public long totalNanos() {
+      long total = 0L;
+      for (long n : this.nanos.values()) {
+         total += n;
+      }
+      return total;
+   }
+
+   private static long threadAllocatedBytes() {
+      if (ALLOCATIONS == null) {
+         return -1L;
+      }
+      return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+
+   private static com.sun.management.ThreadMXBean allocationCounters() {
+      try {
+         ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+         if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+            if (counters.isThreadAllocatedMemorySupported()) {
+               counters.setThreadAllocatedMemoryEnabled(true);
+               return counters;
+            }
+         }
+      } catch (Throwable e) {
+         // Not a HotSpot-style JVM, or management access is denied
+      }
+      return null;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, Long> e : this.nanos.entrySet()) {
+         if (sb.length() > 0) {
+            sb.append(", ");
+         }
+         sb.append(e.getKey()).append('=').append(e.getValue() / 1000L).append("us");
+      }
+      return sb.toString();
+   }
+}
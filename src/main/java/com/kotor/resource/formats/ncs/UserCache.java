@@ -0,0 +1,37 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+
+/**
+ * Per-user directory for the files NCSDecomp keeps between runs without being asked to,
+ * such as precompiled action tables and resref indexes, so nothing is written into game
+ * installs or tool directories.
+ * <p>
+ * The directory is {@code ~/.ncsdecomp/cache} unless the {@code ncsdecomp.cache} system
+ * property names another one. Nothing is created until a cache is first written.
+ */
+public final class UserCache {
+   /** System property that overrides the cache location. */
+   public static final String PROPERTY = "ncsdecomp.cache";
+
+   private UserCache() {
+   }
+
+   /** The cache root. */
+   public static File root() {
+      String configured = System.getProperty(PROPERTY);
+      if (configured != null && !configured.trim().isEmpty()) {
+         return new File(configured.trim());
+      }
+      return new File(new File(System.getProperty("user.home"), ".ncsdecomp"), "cache");
+   }
+
+   /** The subdirectory of the cache root holding one kind of cached file. */
+   public static File directory(String name) {
+      return new File(root(), name);
+   }
+}
@@ -5,7 +5,10 @@
 package com.kotor.resource.formats.ncs.analysis;
 
 import com.kotor.resource.formats.ncs.ActionsData;
+import com.kotor.resource.formats.ncs.DecompileBudget;
+import com.kotor.resource.formats.ncs.DecompilerOptions;
 import com.kotor.resource.formats.ncs.DoTypes;
+import com.kotor.resource.formats.ncs.StageTimings;
 import com.kotor.resource.formats.ncs.node.AMoveSpCommand;
 import com.kotor.resource.formats.ncs.utils.NodeAnalysisData;
 import com.kotor.resource.formats.ncs.utils.NodeUtils;
@@ -29,12 +32,15 @@ public class PrototypeEngine {
    private final SubroutineAnalysisData subdata;
    private final ActionsData actions;
    private final boolean strict;
+   private final DecompileBudget budget;
 
-   public PrototypeEngine(NodeAnalysisData nodedata, SubroutineAnalysisData subdata, ActionsData actions, boolean strict) {
+   public PrototypeEngine(NodeAnalysisData nodedata, SubroutineAnalysisData subdata, ActionsData actions, DecompilerOptions options,
+         DecompileBudget budget) {
       this.nodedata = nodedata;
       this.subdata = subdata;
       this.actions = actions;
-      this.strict = strict;
+      this.strict = options.strictSignatures();
+      this.budget = budget;
    }
 
    public void run() {
@@ -87,7 +93,8 @@ public class PrototypeEngine {
                continue;
             }
 
-            sub.apply(new SubroutinePathFinder(state, this.nodedata, this.subdata, pass));
+            this.budget.step(StageTimings.PROTOTYPE);
+            sub.apply(new SubroutinePathFinder(state, this.nodedata, this.subdata, pass, this.budget));
             if (state.isBeingPrototyped()) {
                DoTypes dotypes = new DoTypes(state, this.nodedata, this.subdata, this.actions, true);
                sub.apply(dotypes);
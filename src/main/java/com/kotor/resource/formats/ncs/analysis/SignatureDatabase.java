@@ -0,0 +1,121 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import com.kotor.resource.formats.ncs.HashUtil;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Persistent table of known library subroutines, keyed by {@link SubroutineFingerprint}.
+ * <p>
+ * The database is a tab-separated text file built offline (see {@code --export-signatures})
+ * and hand-curated with canonical names:
+ *
+ * <pre>
+ * # fingerprint    name                    prototype
+ * 3F2A...          UT_DeterminesItemCost   3(3,3,)
+ * </pre>
+ *
+ * A name of {@code -} records a prototype only. Prototypes use raw type codes, see
+ * {@link SubroutineSignature#encodePrototype()}. Lookups are a single hash probe.
+ */
+public class SignatureDatabase {
+   private static final String HEADER = "# NCSDecomp signature database v1: fingerprint<TAB>name<TAB>prototype";
+   private final Map<String, SubroutineSignature> entries = new HashMap<>();
+   private String digest;
+
+   /**
+    * Loads a database file. Malformed lines are reported and skipped.
+    */
+   public static SignatureDatabase load(File file) throws IOException {
+      SignatureDatabase db = new SignatureDatabase();
+      try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+         String line;
+         int lineNo = 0;
+         while ((line = reader.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+               continue;
+            }
+            String[] cols = line.split("\t");
+            try {
+               if (cols.length < 3) {
+                  throw new IllegalArgumentException("expected 3 columns");
+               }
+               String name = "-".equals(cols[1]) ? null : cols[1];
+               db.put(cols[0].toUpperCase(), SubroutineSignature.decodePrototype(name, cols[2]));
+            } catch (IllegalArgumentException e) {
+               System.out.println("[INFO] SignatureDatabase: skipping " + file.getName() + ":" + lineNo + " (" + e.getMessage() + ")");
+            }
+         }
+      }
+      return db;
+   }
+
+   /**
+    * Writes the database sorted by fingerprint so regenerated files diff cleanly.
+    */
+   public synchronized void save(File file) throws IOException {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.exists()) {
+         parent.mkdirs();
+      }
+      try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+         writer.write(HEADER);
+         writer.newLine();
+         for (Map.Entry<String, SubroutineSignature> e : new TreeMap<>(this.entries).entrySet()) {
+            SubroutineSignature sig = e.getValue();
+            writer.write(e.getKey() + "\t" + (sig.name() != null ? sig.name() : "-") + "\t" + sig.encodePrototype());
+            writer.newLine();
+         }
+      }
+   }
+
+   public synchronized SubroutineSignature find(String fingerprint) {
+      return fingerprint != null ? this.entries.get(fingerprint) : null;
+   }
+
+   /**
+    * Adds or replaces an entry. An existing canonical name is kept when the new entry is unnamed.
+    */
+   public synchronized void put(String fingerprint, SubroutineSignature signature) {
+      SubroutineSignature existing = this.entries.get(fingerprint);
+      if (existing != null && existing.name() != null && signature.name() == null) {
+         signature = signature.withName(existing.name());
+      }
+      this.entries.put(fingerprint, signature);
+      this.digest = null;
+   }
+
+   /**
+    * Returns a SHA-256 over all entries, so results derived from this database can be keyed by
+    * its content.
+    */
+   public synchronized String digest() {
+      if (this.digest == null) {
+         StringBuilder text = new StringBuilder();
+         for (Map.Entry<String, SubroutineSignature> e : new TreeMap<>(this.entries).entrySet()) {
+            SubroutineSignature sig = e.getValue();
+            text.append(e.getKey()).append('\t').append(sig.name() != null ? sig.name() : "-").append('\t')
+                  .append(sig.encodePrototype()).append('\n');
+         }
+         this.digest = HashUtil.calculateSHA256(text.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      return this.digest;
+   }
+
+   public synchronized int size() {
+      return this.entries.size();
+   }
+}
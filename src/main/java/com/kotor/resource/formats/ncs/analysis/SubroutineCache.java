@@ -0,0 +1,78 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cross-file cache of subroutine prototypes keyed by {@link SubroutineFingerprint}.
+ * <p>
+ * Shared helpers (include files compiled into many scripts) produce identical bytecode in
+ * every script. Once one file has prototyped such a helper, later files reuse the result and
+ * {@link PrototypeEngine} skips it because the state is already prototyped. The cache is
+ * bounded (LRU) and tied to one actions table; owners must {@link #clear()} it when the
+ * nwscript definitions change.
+ */
+public class SubroutineCache implements SubroutineFingerprint.Lookup {
+   private static final int DEFAULT_CAPACITY = 4096;
+   private final Map<String, SubroutineSignature> entries;
+   private int hits;
+   private int misses;
+
+   public SubroutineCache() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   public SubroutineCache(final int capacity) {
+      this.entries = new LinkedHashMap<String, SubroutineSignature>(64, 0.75F, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, SubroutineSignature> eldest) {
+            return this.size() > capacity;
+         }
+      };
+   }
+
+   @Override
+   public synchronized SubroutineSignature find(String fingerprint) {
+      SubroutineSignature sig = fingerprint != null ? this.entries.get(fingerprint) : null;
+      if (sig == null) {
+         this.misses++;
+      } else {
+         this.hits++;
+      }
+      return sig;
+   }
+
+   /**
+    * Records the final prototypes of a fully typed file, as produced by
+    * {@link SubroutineFingerprint#fingerprintTyped}.
+    */
+   public synchronized void store(Map<Byte, Map.Entry<String, SubroutineSignature>> fingerprints) {
+      for (Map.Entry<String, SubroutineSignature> e : fingerprints.values()) {
+         this.entries.put(e.getKey(), e.getValue());
+      }
+   }
+
+   public synchronized void clear() {
+      this.entries.clear();
+      this.hits = 0;
+      this.misses = 0;
+   }
+
+   public synchronized int size() {
+      return this.entries.size();
+   }
+
+   public synchronized int hits() {
+      return this.hits;
+   }
+
+   public synchronized int misses() {
+      return this.misses;
+   }
+}
@@ -0,0 +1,263 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import com.kotor.resource.formats.ncs.HashUtil;
+import com.kotor.resource.formats.ncs.node.ASubroutine;
+import com.kotor.resource.formats.ncs.utils.NodeAnalysisData;
+import com.kotor.resource.formats.ncs.utils.SubroutineAnalysisData;
+import com.kotor.resource.formats.ncs.utils.SubroutineState;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes position-independent fingerprints for subroutines from the decoded command text.
+ * <p>
+ * The decoder emits one {@code "OPNAME pos args...; "} entry per instruction. Absolute
+ * positions are dropped; JMP/JZ/JNZ already carry relative offsets and are kept as-is.
+ * JSR targets are replaced with the ordinal of the callee (in order of first call) and the
+ * current signature of every callee is appended, so the same helper compiled into two
+ * different scripts hashes identically as long as the callees it relies on agree.
+ */
+public final class SubroutineFingerprint {
+   private final List<Integer> positions;
+   private final List<String[]> instructions;
+
+   private SubroutineFingerprint(List<Integer> positions, List<String[]> instructions) {
+      this.positions = positions;
+      this.instructions = instructions;
+   }
+
+   /**
+    * Tokenizes the decoder output once so individual subroutines can be fingerprinted cheaply.
+    */
+   public static SubroutineFingerprint index(String commands) {
+      List<Integer> positions = new ArrayList<>();
+      List<String[]> instructions = new ArrayList<>();
+      if (commands == null) {
+         return new SubroutineFingerprint(positions, instructions);
+      }
+
+      List<String> tokens = new ArrayList<>();
+      StringBuilder token = new StringBuilder();
+      boolean quoted = false;
+      for (int i = 0; i < commands.length(); i++) {
+         char c = commands.charAt(i);
+         if (quoted) {
+            token.append(c);
+            if (c == '"') {
+               quoted = false;
+            }
+         } else if (c == '"') {
+            token.append(c);
+            quoted = true;
+         } else if (c == ';') {
+            flushToken(tokens, token);
+            addInstruction(positions, instructions, tokens);
+            tokens.clear();
+         } else if (Character.isWhitespace(c)) {
+            flushToken(tokens, token);
+         } else {
+            token.append(c);
+         }
+      }
+      flushToken(tokens, token);
+      addInstruction(positions, instructions, tokens);
+      return new SubroutineFingerprint(positions, instructions);
+   }
+
+   private static void flushToken(List<String> tokens, StringBuilder token) {
+      if (token.length() > 0) {
+         tokens.add(token.toString());
+         token.setLength(0);
+      }
+   }
+
+   private static void addInstruction(List<Integer> positions, List<String[]> instructions, List<String> tokens) {
+      if (tokens.size() < 2) {
+         return;
+      }
+      try {
+         positions.add(Integer.parseInt(tokens.get(1)));
+         instructions.add(tokens.toArray(new String[0]));
+      } catch (NumberFormatException e) {
+         // Not an instruction entry (e.g. a header token); ignore it.
+      }
+   }
+
+   /**
+    * Returns the absolute JSR targets called from the range, in order of first call.
+    */
+   List<Integer> callees(int start, int end) {
+      Map<Integer, Integer> ordinals = new LinkedHashMap<>();
+      for (int i = 0; i < this.instructions.size(); i++) {
+         int pos = this.positions.get(i);
+         String[] ins = this.instructions.get(i);
+         if (pos >= start && pos <= end && "JSR".equals(ins[0]) && ins.length >= 4) {
+            ordinals.putIfAbsent(pos + Integer.parseInt(ins[3]), ordinals.size());
+         }
+      }
+      return new ArrayList<>(ordinals.keySet());
+   }
+
+   /**
+    * Fingerprints the instructions between {@code start} and {@code end} (inclusive).
+    *
+    * @param calleeStates states of the callees, in the order returned by {@link #callees(int, int)}
+    * @return uppercase SHA-256 hex, or {@code null} when the range touches globals (BP-relative ops)
+    *         or a callee signature is not fully known
+    */
+   public String compute(int start, int end, List<SubroutineState> calleeStates) {
+      Map<Integer, Integer> ordinals = new LinkedHashMap<>();
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < this.instructions.size(); i++) {
+         int pos = this.positions.get(i);
+         if (pos < start || pos > end) {
+            continue;
+         }
+         String[] ins = this.instructions.get(i);
+         if (ins[0].endsWith("BP")) {
+            return null;
+         }
+         text.append(ins[0]);
+         for (int t = 2; t < ins.length; t++) {
+            text.append(' ');
+            if (t == 3 && "JSR".equals(ins[0])) {
+               int target = pos + Integer.parseInt(ins[3]);
+               Integer ordinal = ordinals.get(target);
+               if (ordinal == null) {
+                  ordinal = ordinals.size();
+                  ordinals.put(target, ordinal);
+               }
+               text.append('@').append(ordinal);
+            } else {
+               text.append(ins[t]);
+            }
+         }
+         text.append(";\n");
+      }
+
+      if (calleeStates.size() != ordinals.size()) {
+         return null;
+      }
+      for (SubroutineState callee : calleeStates) {
+         SubroutineSignature sig = SubroutineSignature.of(callee);
+         if (sig == null) {
+            return null;
+         }
+         text.append("callee ").append(sig.encodePrototype()).append('\n');
+      }
+      return HashUtil.calculateSHA256(text.toString().getBytes(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Source of known signatures consulted by {@link #applyKnown}.
+    */
+   public interface Lookup {
+      SubroutineSignature find(String fingerprint);
+   }
+
+   /**
+    * Applies known prototypes to the subroutines of a freshly parsed file.
+    * <p>
+    * Subroutines are resolved callee-first: a subroutine is only looked up once every callee
+    * has a known signature, so recursive cycles and subroutines calling unknown helpers miss.
+    *
+    * @return signatures that were applied, keyed by subroutine id
+    */
+   public static Map<Byte, SubroutineSignature> applyKnown(
+      String commands, NodeAnalysisData nodedata, SubroutineAnalysisData subdata, Lookup lookup
+   ) {
+      SubroutineFingerprint index = index(commands);
+      Map<Integer, SubroutineState> states = statesByPos(nodedata, subdata);
+      List<SubroutineState> pending = new ArrayList<>(states.values());
+      Map<Byte, SubroutineSignature> applied = new LinkedHashMap<>();
+      boolean progress = true;
+      while (progress && !pending.isEmpty()) {
+         progress = false;
+         Iterator<SubroutineState> it = pending.iterator();
+         while (it.hasNext()) {
+            SubroutineState state = it.next();
+            List<SubroutineState> callees = index.calleeStates(state, states);
+            if (callees == null) {
+               it.remove();
+               continue;
+            }
+            if (!allPrototyped(callees)) {
+               continue;
+            }
+            it.remove();
+            SubroutineSignature sig = lookup.find(index.compute(state.getStart(), state.getEnd(), callees));
+            if (sig != null) {
+               state.applyPrototype(sig.returnType(), sig.params());
+               applied.put(state.getId(), sig);
+               progress = true;
+            }
+         }
+      }
+      return applied;
+   }
+
+   /**
+    * Fingerprints every subroutine of a typed file whose own and callee prototypes are complete.
+    *
+    * @return fingerprint and signature keyed by subroutine id
+    */
+   public static Map<Byte, Map.Entry<String, SubroutineSignature>> fingerprintTyped(
+      String commands, NodeAnalysisData nodedata, SubroutineAnalysisData subdata
+   ) {
+      SubroutineFingerprint index = index(commands);
+      Map<Integer, SubroutineState> states = statesByPos(nodedata, subdata);
+      Map<Byte, Map.Entry<String, SubroutineSignature>> result = new LinkedHashMap<>();
+      for (SubroutineState state : states.values()) {
+         SubroutineSignature sig = SubroutineSignature.of(state);
+         List<SubroutineState> callees = sig != null ? index.calleeStates(state, states) : null;
+         String key = callees != null ? index.compute(state.getStart(), state.getEnd(), callees) : null;
+         if (key != null) {
+            result.put(state.getId(), new AbstractMap.SimpleImmutableEntry<>(key, sig));
+         }
+      }
+      return result;
+   }
+
+   private static Map<Integer, SubroutineState> statesByPos(NodeAnalysisData nodedata, SubroutineAnalysisData subdata) {
+      Map<Integer, SubroutineState> states = new LinkedHashMap<>();
+      Iterator<ASubroutine> subs = subdata.getSubroutines();
+      while (subs.hasNext()) {
+         ASubroutine sub = subs.next();
+         SubroutineState state = subdata.getState(sub);
+         if (state != null) {
+            states.put(nodedata.getPos(sub), state);
+         }
+      }
+      return states;
+   }
+
+   private List<SubroutineState> calleeStates(SubroutineState state, Map<Integer, SubroutineState> states) {
+      List<SubroutineState> callees = new ArrayList<>();
+      for (int target : this.callees(state.getStart(), state.getEnd())) {
+         SubroutineState callee = states.get(target);
+         if (callee == null || callee == state) {
+            return null;
+         }
+         callees.add(callee);
+      }
+      return callees;
+   }
+
+   private static boolean allPrototyped(List<SubroutineState> callees) {
+      for (SubroutineState callee : callees) {
+         if (!callee.isPrototyped()) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
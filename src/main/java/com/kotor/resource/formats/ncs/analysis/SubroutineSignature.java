@@ -0,0 +1,97 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import com.kotor.resource.formats.ncs.utils.SubroutineState;
+import com.kotor.resource.formats.ncs.utils.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable prototype of a subroutine (return type, parameter slot types and an optional
+ * canonical name) as stored by {@link SubroutineCache} and {@link SignatureDatabase}.
+ */
+public final class SubroutineSignature {
+   private final String name;
+   private final Type returnType;
+   private final List<Type> params;
+
+   public SubroutineSignature(String name, Type returnType, List<Type> params) {
+      this.name = name;
+      this.returnType = returnType;
+      this.params = Collections.unmodifiableList(new ArrayList<>(params));
+   }
+
+   /**
+    * Captures the prototype of a fully typed subroutine.
+    *
+    * @return the signature, or {@code null} when the prototype is incomplete or uses structs
+    */
+   public static SubroutineSignature of(SubroutineState state) {
+      if (state == null || !state.isTotallyPrototyped() || !isPlain(state.type())) {
+         return null;
+      }
+      for (Type param : state.params()) {
+         if (!isPlain(param)) {
+            return null;
+         }
+      }
+      return new SubroutineSignature(null, state.type(), state.params());
+   }
+
+   static boolean isPlain(Type type) {
+      return type != null && type.getClass() == Type.class && type.isTyped() && !type.equals(Type.VT_STRUCT);
+   }
+
+   public SubroutineSignature withName(String name) {
+      return new SubroutineSignature(name, this.returnType, this.params);
+   }
+
+   /** Canonical name, or {@code null} if only the prototype is known. */
+   public String name() {
+      return this.name;
+   }
+
+   public Type returnType() {
+      return this.returnType;
+   }
+
+   public List<Type> params() {
+      return this.params;
+   }
+
+   /**
+    * Encodes the prototype as {@code ret(p1,p2,)} using raw type codes; the name is not included.
+    */
+   public String encodePrototype() {
+      StringBuilder sig = new StringBuilder();
+      sig.append(this.returnType.toValueString()).append('(');
+      for (Type param : this.params) {
+         sig.append(param.toValueString()).append(',');
+      }
+      return sig.append(')').toString();
+   }
+
+   /**
+    * Parses the output of {@link #encodePrototype()}. Types are sized from their codes, so a
+    * vector takes three stack slots as it does in a prototype computed from the bytecode.
+    */
+   public static SubroutineSignature decodePrototype(String name, String encoded) {
+      int open = encoded.indexOf('(');
+      int close = encoded.lastIndexOf(')');
+      if (open <= 0 || close < open) {
+         throw new IllegalArgumentException("Malformed prototype: " + encoded);
+      }
+      Type ret = Type.declared(Byte.parseByte(encoded.substring(0, open).trim()));
+      List<Type> params = new ArrayList<>();
+      for (String p : encoded.substring(open + 1, close).split(",")) {
+         if (!p.trim().isEmpty()) {
+            params.add(Type.declared(Byte.parseByte(p.trim())));
+         }
+      }
+      return new SubroutineSignature(name, ret, params);
+   }
+}
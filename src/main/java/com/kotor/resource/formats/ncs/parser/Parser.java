@@ -205,64 +205,79 @@ public class Parser {
    private Token last_token;
    private final TokenIndex converter = new TokenIndex();
    private final int[] action = new int[2];
+   private final boolean keepIgnoredTokens;
 
    public Parser(Lexer lexer) {
+      this(lexer, true);
+   }
+
+   /**
+    * @param keepIgnoredTokens false to drop whitespace tokens as they are read instead of
+    *                          recording them in {@link #ignoredTokens}, which holds one list
+    *                          per token of the program until the parser is discarded
+    */
+   public Parser(Lexer lexer, boolean keepIgnoredTokens) {
       this.lexer = lexer;
-      if (actionTable == null) {
-         try {
-            DataInputStream s = new DataInputStream(new BufferedInputStream(Parser.class.getResourceAsStream("parser.dat")));
-            int length = s.readInt();
-            actionTable = new int[length][][];
+      this.keepIgnoredTokens = keepIgnoredTokens;
+      // Tables are shared by all instances; load them once even when parsers are
+      // constructed concurrently, and only treat them as ready once fully read.
+      synchronized (Parser.class) {
+         if (errors == null) {
+            try {
+               DataInputStream s = new DataInputStream(new BufferedInputStream(Parser.class.getResourceAsStream("parser.dat")));
+               int length = s.readInt();
+               actionTable = new int[length][][];
+
+               for (int i = 0; i < actionTable.length; i++) {
+                  length = s.readInt();
+                  actionTable[i] = new int[length][3];
+
+                  for (int j = 0; j < actionTable[i].length; j++) {
+                     for (int k = 0; k < 3; k++) {
+                        actionTable[i][j][k] = s.readInt();
+                     }
+                  }
+               }
 
-            for (int i = 0; i < actionTable.length; i++) {
                length = s.readInt();
-               actionTable[i] = new int[length][3];
+               gotoTable = new int[length][][];
 
-               for (int j = 0; j < actionTable[i].length; j++) {
-                  for (int k = 0; k < 3; k++) {
-                     actionTable[i][j][k] = s.readInt();
+               for (int i = 0; i < gotoTable.length; i++) {
+                  length = s.readInt();
+                  gotoTable[i] = new int[length][2];
+
+                  for (int j = 0; j < gotoTable[i].length; j++) {
+                     for (int k = 0; k < 2; k++) {
+                        gotoTable[i][j][k] = s.readInt();
+                     }
                   }
                }
-            }
 
-            length = s.readInt();
-            gotoTable = new int[length][][];
-
-            for (int i = 0; i < gotoTable.length; i++) {
                length = s.readInt();
-               gotoTable[i] = new int[length][2];
+               errorMessages = new String[length];
+
+               for (int i = 0; i < errorMessages.length; i++) {
+                  length = s.readInt();
+                  StringBuffer buffer = new StringBuffer();
 
-               for (int j = 0; j < gotoTable[i].length; j++) {
-                  for (int k = 0; k < 2; k++) {
-                     gotoTable[i][j][k] = s.readInt();
+                  for (int j = 0; j < length; j++) {
+                     buffer.append(s.readChar());
                   }
-               }
-            }
 
-            length = s.readInt();
-            errorMessages = new String[length];
+                  errorMessages[i] = buffer.toString();
+               }
 
-            for (int i = 0; i < errorMessages.length; i++) {
                length = s.readInt();
-               StringBuffer buffer = new StringBuffer();
+               errors = new int[length];
 
-               for (int j = 0; j < length; j++) {
-                  buffer.append(s.readChar());
+               for (int i = 0; i < errors.length; i++) {
+                  errors[i] = s.readInt();
                }
 
-               errorMessages[i] = buffer.toString();
-            }
-
-            length = s.readInt();
-            errors = new int[length];
-
-            for (int i = 0; i < errors.length; i++) {
-               errors[i] = s.readInt();
+               s.close();
+            } catch (Exception var7) {
+               throw new RuntimeException("The file \"parser.dat\" is either missing or corrupted.");
             }
-
-            s.close();
-         } catch (Exception var7) {
-            throw new RuntimeException("The file \"parser.dat\" is either missing or corrupted.");
          }
       }
    }
@@ -329,9 +344,13 @@ public class Parser {
       List<Token> ign = null;
 
       while (true) {
-         for (; this.index(this.lexer.peek()) == -1; ign.add(this.lexer.next())) {
-            if (ign == null) {
-               ign = new TypedLinkedList<Token>(NoCast.<Token>instance());
+         while (this.index(this.lexer.peek()) == -1) {
+            Token ignored = this.lexer.next();
+            if (this.keepIgnoredTokens) {
+               if (ign == null) {
+                  ign = new TypedLinkedList<Token>(NoCast.<Token>instance());
+               }
+               ign.add(ignored);
             }
          }
 
@@ -95,6 +95,10 @@ public class ASub extends ScriptRootNode {
       return this.type;
    }
 
+   public byte id() {
+      return this.id;
+   }
+
    public void name(String name) {
       this.name = name;
    }
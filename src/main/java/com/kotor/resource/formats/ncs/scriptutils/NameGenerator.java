@@ -5,6 +5,7 @@
 
 package com.kotor.resource.formats.ncs.scriptutils;
 
+import com.kotor.resource.formats.ncs.Logger;
 import com.kotor.resource.formats.ncs.scriptnode.AActionExp;
 import com.kotor.resource.formats.ncs.scriptnode.AConst;
 import com.kotor.resource.formats.ncs.scriptnode.AExpression;
@@ -361,7 +362,7 @@ public class NameGenerator {
       } else if (action.equals("StringToInt")) {
          return null;
       } else {
-         System.out.println("Variable Naming: consider adding " + action);
+         Logger.debug(() -> "Variable Naming: consider adding " + action);
          return null;
       }
    }
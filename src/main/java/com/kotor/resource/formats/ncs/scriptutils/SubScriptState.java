@@ -6,6 +6,7 @@
 package com.kotor.resource.formats.ncs.scriptutils;
 
 import com.kotor.resource.formats.ncs.ActionsData;
+import com.kotor.resource.formats.ncs.DecompilerOptions;
 import com.kotor.resource.formats.ncs.Logger;
 import com.kotor.resource.formats.ncs.node.AActionCommand;
 import com.kotor.resource.formats.ncs.node.ABinaryCommand;
@@ -106,7 +107,7 @@ public class SubScriptState {
    private boolean preferSwitches;
 
    public SubScriptState(NodeAnalysisData nodedata, SubroutineAnalysisData subdata, LocalVarStack stack,
-         SubroutineState protostate, ActionsData actions, boolean preferSwitches) {
+         SubroutineState protostate, ActionsData actions, DecompilerOptions options) {
       this.nodedata = nodedata;
       this.subdata = subdata;
       this.state = 0;
@@ -119,10 +120,10 @@ public class SubScriptState {
       this.current = this.root;
       this.varnames = new Hashtable<>(1);
       this.actions = actions;
-      this.preferSwitches = preferSwitches;
+      this.preferSwitches = options.preferSwitches();
    }
 
-   public SubScriptState(NodeAnalysisData nodedata, SubroutineAnalysisData subdata, LocalVarStack stack, boolean preferSwitches) {
+   public SubScriptState(NodeAnalysisData nodedata, SubroutineAnalysisData subdata, LocalVarStack stack, DecompilerOptions options) {
       this.nodedata = nodedata;
       this.subdata = subdata;
       this.state = 0;
@@ -133,7 +134,7 @@ public class SubScriptState {
       this.varcounts = new Hashtable<>(1);
       this.varprefix = "";
       this.varnames = new Hashtable<>(1);
-      this.preferSwitches = preferSwitches;
+      this.preferSwitches = options.preferSwitches();
    }
 
    public void setVarPrefix(String prefix) {
@@ -216,6 +217,10 @@ public class SubScriptState {
       return this.root.name();
    }
 
+   public byte getId() {
+      return this.root.id();
+   }
+
    public void setName(String name) {
       this.root.name(name);
    }
@@ -262,21 +267,21 @@ public class SubScriptState {
    private void checkStart(Node node) {
       this.assertState(node);
       int nodePos = this.nodedata.getPos(node);
-      Logger.trace("checkStart: pos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() +
+      Logger.trace(() -> "checkStart: pos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() +
             ", hasChildren=" + this.current.hasChildren());
 
       if (this.current.hasChildren()) {
          ScriptNode lastNode = this.current.getLastChild();
-         Logger.trace("checkStart: lastChild=" + (lastNode != null ? lastNode.getClass().getSimpleName() : "null"));
+         Logger.trace(() -> "checkStart: lastChild=" + (lastNode != null ? lastNode.getClass().getSimpleName() : "null"));
 
          if (ASwitch.class.isInstance(lastNode)
                && this.nodedata.getPos(node) == ((ASwitch) lastNode).getFirstCaseStart()) {
             int firstCaseStart = ((ASwitch) lastNode).getFirstCaseStart();
-            Logger.trace("checkStart: entering first switch case (firstCaseStart=" + firstCaseStart + ")");
+            Logger.trace(() -> "checkStart: entering first switch case (firstCaseStart=" + firstCaseStart + ")");
             this.current = ((ASwitch) lastNode).getFirstCase();
          } else if (ASwitch.class.isInstance(lastNode)) {
             int firstCaseStart = ((ASwitch) lastNode).getFirstCaseStart();
-            Logger.trace("checkStart: lastChild is ASwitch but nodePos (" + nodePos + ") != firstCaseStart (" + firstCaseStart + ")");
+            Logger.trace(() -> "checkStart: lastChild is ASwitch but nodePos (" + nodePos + ") != firstCaseStart (" + firstCaseStart + ")");
          }
       }
 
@@ -285,7 +290,7 @@ public class SubScriptState {
 
    private void checkEnd(Node node) {
       int nodePos = this.nodedata.getPos(node);
-      Logger.trace("checkEnd: START pos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() +
+      Logger.trace(() -> "checkEnd: START pos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() +
             ", currentEnd=" + this.current.getEnd() + ", state=" + this.state);
 
       while (this.current != null) {
@@ -294,7 +299,7 @@ public class SubScriptState {
             return;
          }
 
-         Logger.trace("checkEnd: nodePos == currentEnd, processing " + this.current.getClass().getSimpleName());
+         Logger.trace(() -> "checkEnd: nodePos == currentEnd, processing " + this.current.getClass().getSimpleName());
 
          if (ASwitchCase.class.isInstance(this.current)) {
             Logger.trace("checkEnd: current is ASwitchCase");
@@ -304,7 +309,7 @@ public class SubScriptState {
                this.current = nextCase;
             } else {
                ScriptRootNode newCurrent = (ScriptRootNode) this.current.parent().parent();
-               Logger.trace("checkEnd: no next case, moving to " + (newCurrent != null ? newCurrent.getClass().getSimpleName() : "null"));
+               Logger.trace(() -> "checkEnd: no next case, moving to " + (newCurrent != null ? newCurrent.getClass().getSimpleName() : "null"));
                this.current = newCurrent;
             }
 
@@ -323,7 +328,7 @@ public class SubScriptState {
             // Get the destination position and AIf end position
             int destPos = this.nodedata.getPos(dest);
             int aifEnd = this.current.getEnd();
-            Logger.trace("checkEnd: AIf end=" + aifEnd + ", destPos=" + destPos + ", expectedElseStart=" + (aifEnd + 6));
+            Logger.trace(() -> "checkEnd: AIf end=" + aifEnd + ", destPos=" + destPos + ", expectedElseStart=" + (aifEnd + 6));
 
             // If the destination is exactly 6 bytes after the AIf's end, there's no else block
             // If the destination is before the AIf's end, it's a backward jump (e.g., loop back) - no else block
@@ -333,7 +338,7 @@ public class SubScriptState {
                // Check if this AIf is inside an AElse (else-if chain)
                // If so, create the next AElse as a sibling of the parent AElse, not nested
                ScriptRootNode parent = (ScriptRootNode) this.current.parent();
-               Logger.trace("checkEnd: AIf parent=" + (parent != null ? parent.getClass().getSimpleName() : "null"));
+               Logger.trace(() -> "checkEnd: AIf parent=" + (parent != null ? parent.getClass().getSimpleName() : "null"));
 
                // Safety check: don't create AElse if AIf is at root level (shouldn't happen, but protect against it)
                if (parent == null || ASub.class.isInstance(this.current)) {
@@ -351,7 +356,7 @@ public class SubScriptState {
                   Logger.trace("checkEnd: AIf is inside AElse, checking else-if chain");
                   // Check if this AIf is the last child of the AElse
                   boolean isLastChild = parent.hasChildren() && parent.getLastChild() == this.current;
-                  Logger.trace("checkEnd: isLastChild=" + isLastChild + ", parentEnd=" + parent.getEnd());
+                  Logger.trace(() -> "checkEnd: isLastChild=" + isLastChild + ", parentEnd=" + parent.getEnd());
 
                   if (isLastChild) {
                      // Check if this is a pure else-if chain (AIf's else ends at parent AElse's end)
@@ -365,7 +370,7 @@ public class SubScriptState {
                      // this is a continuation of the else-if chain at the same level
                      if (destPos >= parentEnd) {
                         ScriptRootNode grandParent = (ScriptRootNode) parent.parent();
-                        Logger.trace("checkEnd: destPos >= parentEnd, using grandParent=" +
+                        Logger.trace(() -> "checkEnd: destPos >= parentEnd, using grandParent=" +
                               (grandParent != null ? grandParent.getClass().getSimpleName() : "null"));
                         if (grandParent != null) {
                            // Verify that the parent AElse is actually the last child of grandParent
@@ -439,7 +444,7 @@ public class SubScriptState {
                   }
 
                   if (!canAddElse) {
-                     Logger.trace("checkEnd: Cannot add AElse to elseParent - no valid predecessor. lastChild=" +
+                     Logger.trace(() -> "checkEnd: Cannot add AElse to elseParent - no valid predecessor. lastChild=" +
                            (lastChild != null ? lastChild.getClass().getSimpleName() : "null") +
                            ", current=" + this.current.getClass().getSimpleName() +
                            ", parent=" + (parent != null ? parent.getClass().getSimpleName() : "null"));
@@ -468,8 +473,10 @@ public class SubScriptState {
 
                int elseStart = this.current.getEnd() + 6;
                int elseEnd = this.nodedata.getPos(NodeUtils.getPreviousCommand(dest, this.nodedata));
-               Logger.trace("checkEnd: creating AElse start=" + elseStart + ", end=" + elseEnd +
-                     ", elseParent=" + elseParent.getClass().getSimpleName());
+               if (Logger.isTraceEnabled()) {
+                  Logger.trace("checkEnd: creating AElse start=" + elseStart + ", end=" + elseEnd +
+                        ", elseParent=" + elseParent.getClass().getSimpleName());
+               }
 
                AElse aelse = new AElse(elseStart, elseEnd);
                this.current = elseParent;
@@ -489,7 +496,7 @@ public class SubScriptState {
          }
 
          ScriptRootNode newCurrent = (ScriptRootNode) this.current.parent();
-         Logger.trace("checkEnd: moving up to parent=" + (newCurrent != null ? newCurrent.getClass().getSimpleName() : "null"));
+         Logger.trace(() -> "checkEnd: moving up to parent=" + (newCurrent != null ? newCurrent.getClass().getSimpleName() : "null"));
          this.current = newCurrent;
       }
 
@@ -669,7 +676,7 @@ public class SubScriptState {
       } else if (AIf.class.isInstance(this.current) && this.isModifyConditional() && this.state != 4) {
          // Don't modify AIf's end when processing switch cases (state == 4)
          int newEnd = this.nodedata.getPos(this.nodedata.getDestination(node)) - 6;
-         Logger.trace("transformJZ: modifying AIf end (isModifyConditional) from " +
+         Logger.trace(() -> "transformJZ: modifying AIf end (isModifyConditional) from " +
                this.current.getEnd() + " to " + newEnd);
          ((AIf) this.current).end(newEnd);
          if (this.current.hasChildren()) {
@@ -698,10 +705,10 @@ public class SubScriptState {
          if (destNode != null) {
             int expectedEnd = this.nodedata.getPos(destNode) - 6;
             int currentEnd = this.current.getEnd();
-            Logger.trace("transformJZ: AIf end check - currentEnd=" + currentEnd +
+            Logger.trace(() -> "transformJZ: AIf end check - currentEnd=" + currentEnd +
                   ", expectedEnd=" + expectedEnd + ", nodePos=" + this.nodedata.getPos(node));
             if (currentEnd != expectedEnd) {
-               Logger.trace("transformJZ: UPDATING AIf end from " + currentEnd + " to " + expectedEnd);
+               Logger.trace(() -> "transformJZ: UPDATING AIf end from " + currentEnd + " to " + expectedEnd);
                ((AIf) this.current).end(expectedEnd);
             } else {
                Logger.trace("transformJZ: AIf end already correct, not updating");
@@ -732,7 +739,7 @@ public class SubScriptState {
       int nodePos = this.nodedata.getPos(node);
       int destPos = dest != null ? this.nodedata.getPos(dest) : -1;
 
-      Logger.trace("transformJump: pos=" + nodePos + " (0x" + Integer.toHexString(nodePos) + "), destPos=" + destPos +
+      Logger.trace(() -> "transformJump: pos=" + nodePos + " (0x" + Integer.toHexString(nodePos) + "), destPos=" + destPos +
             ", state=" + this.state + ", current=" + this.current.getClass().getSimpleName() +
             ", currentEnd=" + this.current.getEnd() + ", destType=" + (dest != null ? dest.getClass().getSimpleName() : "null"));
 
@@ -744,7 +751,7 @@ public class SubScriptState {
          this.current = aarg;
       } else {
          boolean atIfEnd = this.isAtIfEnd(node);
-         Logger.trace("transformJump: isAtIfEnd=" + atIfEnd);
+         Logger.trace(() -> "transformJump: isAtIfEnd=" + atIfEnd);
 
          if (!atIfEnd) {
             // Only process as return/break/continue if we're NOT at the end of an enclosing AIf
@@ -755,17 +762,17 @@ public class SubScriptState {
                ASwitchCase aprevcase = aswitch.getLastCase();
                if (aprevcase != null) {
                   int prevCaseEnd = this.nodedata.getPos(NodeUtils.getPreviousCommand(dest, this.nodedata));
-                  Logger.trace("transformJump: setting prevCase end to " + prevCaseEnd);
+                  Logger.trace(() -> "transformJump: setting prevCase end to " + prevCaseEnd);
                   aprevcase.end(prevCaseEnd);
                }
 
                if (AMoveSpCommand.class.isInstance(dest)) {
                   int switchEnd = this.nodedata.getPos(this.nodedata.getDestination(node));
-                  Logger.trace("transformJump: dest is MoveSpCommand, setting switch end to " + switchEnd);
+                  Logger.trace(() -> "transformJump: dest is MoveSpCommand, setting switch end to " + switchEnd);
                   aswitch.end(switchEnd);
                } else {
                   int defaultStart = this.nodedata.getPos(dest);
-                  Logger.trace("transformJump: creating default case at " + defaultStart);
+                  Logger.trace(() -> "transformJump: creating default case at " + defaultStart);
                   ASwitchCase adefault = new ASwitchCase(defaultStart);
                   aswitch.addDefaultCase(adefault);
                }
@@ -773,10 +780,10 @@ public class SubScriptState {
                this.state = 0;
             } else {
                boolean isRet = this.isReturn(node);
-               Logger.trace("transformJump: isReturn=" + isRet);
+               Logger.trace(() -> "transformJump: isReturn=" + isRet);
 
                if (isRet) {
-                  Logger.trace("transformJump: treating as RETURN, adding AReturnStatement to " + this.current.getClass().getSimpleName());
+                  Logger.trace(() -> "transformJump: treating as RETURN, adding AReturnStatement to " + this.current.getClass().getSimpleName());
                   AReturnStatement areturn;
                   if (!this.root.type().equals((byte) 0)) {
                      areturn = new AReturnStatement(this.getReturnExp());
@@ -813,7 +820,7 @@ public class SubScriptState {
                      // (the return JMP is typically the last instruction in a case)
                      if (switchCase != null) {
                         int caseEnd = switchCase.getEnd();
-                        Logger.trace("transformJump: switchCase end=" + caseEnd + ", nodePos=" + nodePos);
+                        Logger.trace(() -> "transformJump: switchCase end=" + caseEnd + ", nodePos=" + nodePos);
                         // The return JMP is typically at the end of the case, or the case end might be
                         // set to the position just before the return. Check if nodePos matches caseEnd
                         // or if caseEnd is just before nodePos (within a few bytes).
@@ -833,7 +840,7 @@ public class SubScriptState {
                               ASwitchCase acase = null;
                               while ((acase = aswitch.getNextCase(acase)) != null) {
                                  int caseEnd = acase.getEnd();
-                                 Logger.trace("transformJump: checking case end=" + caseEnd + " vs nodePos=" + nodePos);
+                                 Logger.trace(() -> "transformJump: checking case end=" + caseEnd + " vs nodePos=" + nodePos);
                                  if (nodePos == caseEnd || (caseEnd > 0 && nodePos >= caseEnd - 6 && nodePos <= caseEnd + 6)) {
                                     Logger.trace("transformJump: found case ending at nodePos, adding return to case");
                                     targetNode = acase;
@@ -849,11 +856,15 @@ public class SubScriptState {
                } else if (destPos >= nodePos) {
                   Logger.trace("transformJump: forward jump (destPos >= nodePos), checking for break/continue");
                   ScriptRootNode loop = this.getBreakable();
-                  Logger.trace("transformJump: breakable=" + (loop != null ? loop.getClass().getSimpleName() : "null"));
+                  if (Logger.isTraceEnabled()) {
+                     Logger.trace("transformJump: breakable=" + (loop != null ? loop.getClass().getSimpleName() : "null"));
+                  }
 
                   if (ASwitchCase.class.isInstance(loop)) {
                      loop = this.getEnclosingLoop(loop);
-                     Logger.trace("transformJump: enclosingLoop=" + (loop != null ? loop.getClass().getSimpleName() : "null"));
+                     if (Logger.isTraceEnabled()) {
+                        Logger.trace("transformJump: enclosingLoop=" + (loop != null ? loop.getClass().getSimpleName() : "null"));
+                     }
                      if (loop == null) {
                         Logger.trace("transformJump: adding ABreakStatement (no enclosing loop)");
                         ABreakStatement abreak = new ABreakStatement();
@@ -869,7 +880,9 @@ public class SubScriptState {
                      this.current.addChild(abreak);
                   } else {
                      loop = this.getLoop();
-                     Logger.trace("transformJump: getLoop()=" + (loop != null ? loop.getClass().getSimpleName() : "null"));
+                     if (Logger.isTraceEnabled()) {
+                        Logger.trace("transformJump: getLoop()=" + (loop != null ? loop.getClass().getSimpleName() : "null"));
+                     }
                      if (loop != null && destPos <= loop.getEnd()) {
                         Logger.trace("transformJump: adding AContinueStatement");
                         AContinueStatement acont = new AContinueStatement();
@@ -885,7 +898,7 @@ public class SubScriptState {
          }
       }
 
-      Logger.trace("transformJump: calling checkEnd, current=" + this.current.getClass().getSimpleName());
+      Logger.trace(() -> "transformJump: calling checkEnd, current=" + this.current.getClass().getSimpleName());
       this.checkEnd(node);
    }
 
@@ -975,12 +988,12 @@ public class SubScriptState {
       this.checkStart(node);
       int nodePos = this.nodedata.getPos(node);
       boolean isRet = this.isReturn(node);
-      Logger.trace("transformCopyDownSp: pos=" + nodePos + ", isReturn=" + isRet +
+      Logger.trace(() -> "transformCopyDownSp: pos=" + nodePos + ", isReturn=" + isRet +
             ", current=" + this.current.getClass().getSimpleName() +
             ", hasChildren=" + this.current.hasChildren());
 
       AExpression exp = this.removeLastExp(false);
-      Logger.trace("transformCopyDownSp: extracted exp=" +
+      Logger.trace(() -> "transformCopyDownSp: extracted exp=" +
             (exp != null ? exp.getClass().getSimpleName() : "null") +
             ", current hasChildren=" + this.current.hasChildren());
 
@@ -1018,7 +1031,7 @@ public class SubScriptState {
       } else {
          int loc = NodeUtils.stackOffsetToPos(node.getOffset());
          StackEntry sourceEntry = this.stack.get(loc);
-         Logger.trace("transformCopyTopSp: pos=" + nodePos + ", loc=" + loc +
+         Logger.trace(() -> "transformCopyTopSp: pos=" + nodePos + ", loc=" + loc +
                ", sourceEntry=" + (sourceEntry != null ? sourceEntry.getClass().getSimpleName() : "null") +
                ", state=" + this.state + ", current=" + this.current.getClass().getSimpleName() +
                ", hasChildren=" + this.current.hasChildren());
@@ -1054,7 +1067,7 @@ public class SubScriptState {
                if (lastVarRef.var() == sourceEntry) {
                   // Short-circuit pattern: don't add duplicate to children
                   Variable var = (Variable) sourceEntry;
-                  Logger.trace("transformCopyTopSp: skipping duplicate AVarRef (short-circuit), var=" + var);
+                  Logger.trace(() -> "transformCopyTopSp: skipping duplicate AVarRef (short-circuit), var=" + var);
                   this.checkEnd(node);
                   return;
                }
@@ -1063,7 +1076,7 @@ public class SubScriptState {
 
          AExpression varref = this.getVarToCopy(node);
          String varName = (varref instanceof AVarRef) ? ((AVarRef) varref).var().toString() : "N/A";
-         Logger.trace("transformCopyTopSp: adding " + varref.getClass().getSimpleName() +
+         Logger.trace(() -> "transformCopyTopSp: adding " + varref.getClass().getSimpleName() +
                " to AST, var=" + varName);
          this.current.addChild((ScriptNode) varref);
       }
@@ -1091,12 +1104,12 @@ public class SubScriptState {
    public void transformMoveSp(AMoveSpCommand node) {
       this.checkStart(node);
       int nodePos = this.nodedata.getPos(node);
-      Logger.trace("transformMoveSp: pos=" + nodePos + ", state=" + this.state +
+      Logger.trace(() -> "transformMoveSp: pos=" + nodePos + ", state=" + this.state +
             ", current=" + this.current.getClass().getSimpleName());
 
       if (this.state == 1) {
          ScriptNode last = this.current.hasChildren() ? this.current.getLastChild() : null;
-         Logger.trace("transformMoveSp: state==1, last=" +
+         Logger.trace(() -> "transformMoveSp: state==1, last=" +
                (last != null ? last.getClass().getSimpleName() : "null"));
 
          if (!AReturnStatement.class.isInstance(last)) {
@@ -1133,8 +1146,10 @@ public class SubScriptState {
                // In assignment context, function calls should remain as part of the expression tree
                // until the full expression is built (e.g., by EQUAL, ADD, etc. operations).
                expr = (AExpression) this.removeLastExp(true);
-               Logger.trace("transformMoveSp: removed expression=" +
-                     (expr != null ? expr.getClass().getSimpleName() : "null"));
+               if (Logger.isTraceEnabled()) {
+                  Logger.trace("transformMoveSp: removed expression=" +
+                        (expr != null ? expr.getClass().getSimpleName() : "null"));
+               }
                // Don't extract function calls as statements in assignment context
                // They're almost always part of a larger expression being built.
                // In assignment context (state == 1), function calls should remain as part of the expression tree
@@ -1147,13 +1162,15 @@ public class SubScriptState {
                   expr = null; // Don't extract as statement
                }
             } else {
-               Logger.trace("transformMoveSp: WARNING - unexpected last child type: " +
+               Logger.trace(() -> "transformMoveSp: WARNING - unexpected last child type: " +
                      (last != null ? last.getClass().getSimpleName() : "null") + " at " + nodePos);
                System.out.println("uh-oh... not a modify exp at " + nodePos + ", " + last);
             }
 
             if (expr != null) {
-               Logger.trace("transformMoveSp: creating AExpressionStatement with " + expr.getClass().getSimpleName());
+               if (Logger.isTraceEnabled()) {
+                  Logger.trace("transformMoveSp: creating AExpressionStatement with " + expr.getClass().getSimpleName());
+               }
                AExpressionStatement stmt = new AExpressionStatement(expr);
                this.current.addChild(stmt);
                stmt.parent(this.current);
@@ -1177,7 +1194,7 @@ public class SubScriptState {
             if (AExpression.class.isInstance(last) && !AActionExp.class.isInstance(last)
                   && !AModifyExp.class.isInstance(last) && !AUnaryModExp.class.isInstance(last)
                   && !AReturnStatement.class.isInstance(last)) {
-               Logger.trace("transformMoveSp: converting standalone expression to statement: " +
+               Logger.trace(() -> "transformMoveSp: converting standalone expression to statement: " +
                      last.getClass().getSimpleName());
                AExpression expr = (AExpression) this.removeLastExp(true);
                if (expr != null) {
@@ -1258,15 +1275,15 @@ public class SubScriptState {
    public void transformBinary(ABinaryCommand node) {
       this.checkStart(node);
       int nodePos = this.nodedata.getPos(node);
-      Logger.trace("transformBinary: pos=" + nodePos + ", op=" + NodeUtils.getOp(node) +
+      Logger.trace(() -> "transformBinary: pos=" + nodePos + ", op=" + NodeUtils.getOp(node) +
             ", state=" + this.state + ", current=" + this.current.getClass().getSimpleName() +
             ", hasChildren=" + this.current.hasChildren());
 
       AExpression right = this.removeLastExp(false);
-      Logger.trace("transformBinary: right=" + (right != null ? right.getClass().getSimpleName() : "null"));
+      Logger.trace(() -> "transformBinary: right=" + (right != null ? right.getClass().getSimpleName() : "null"));
 
       AExpression left = this.removeLastExp(this.state == 4);
-      Logger.trace("transformBinary: left=" + (left != null ? left.getClass().getSimpleName() : "null"));
+      Logger.trace(() -> "transformBinary: left=" + (left != null ? left.getClass().getSimpleName() : "null"));
 
       AExpression exp;
       if (NodeUtils.isArithmeticOp(node)) {
@@ -1281,7 +1298,7 @@ public class SubScriptState {
 
       exp.stackentry(this.stack.get(1));
       this.current.addChild((ScriptNode) exp);
-      Logger.trace("transformBinary: created " + exp.getClass().getSimpleName() +
+      Logger.trace(() -> "transformBinary: created " + exp.getClass().getSimpleName() +
             ", current hasChildren=" + this.current.hasChildren());
       this.checkEnd(node);
    }
@@ -1343,7 +1360,7 @@ public class SubScriptState {
       int nodePos = this.nodedata.getPos(node);
 
       // Debug output
-      Logger.trace("isAtIfEnd: nodePos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() + ", currentEnd=" + this.current.getEnd());
+      Logger.trace(() -> "isAtIfEnd: nodePos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() + ", currentEnd=" + this.current.getEnd());
 
       // Check if current is an AIf and we're at its end
       if (AIf.class.isInstance(this.current) && nodePos == this.current.getEnd()) {
@@ -1354,13 +1371,13 @@ public class SubScriptState {
       // Check if we're inside a switch case and the enclosing if ends here
       if (ASwitchCase.class.isInstance(this.current)) {
          ScriptNode switchNode = this.current.parent();
-         Logger.trace("isAtIfEnd: in switch case, switchNode=" + (switchNode != null ? switchNode.getClass().getSimpleName() : "null"));
+         Logger.trace(() -> "isAtIfEnd: in switch case, switchNode=" + (switchNode != null ? switchNode.getClass().getSimpleName() : "null"));
          if (ASwitch.class.isInstance(switchNode)) {
             ScriptNode switchParent = switchNode.parent();
-            Logger.trace("isAtIfEnd: switchParent=" + (switchParent != null ? switchParent.getClass().getSimpleName() : "null"));
+            Logger.trace(() -> "isAtIfEnd: switchParent=" + (switchParent != null ? switchParent.getClass().getSimpleName() : "null"));
             if (AIf.class.isInstance(switchParent) && switchParent instanceof ScriptRootNode) {
                int parentEnd = ((ScriptRootNode) switchParent).getEnd();
-               Logger.trace("isAtIfEnd: parentEnd=" + parentEnd);
+               Logger.trace(() -> "isAtIfEnd: parentEnd=" + parentEnd);
                if (nodePos == parentEnd) {
                   Logger.trace("isAtIfEnd: returning true (switch in AIf)");
                   return true;
@@ -1464,7 +1481,7 @@ public class SubScriptState {
    }
 
    public AExpression getReturnExp() {
-      Logger.trace("getReturnExp: current=" + this.current.getClass().getSimpleName() +
+      Logger.trace(() -> "getReturnExp: current=" + this.current.getClass().getSimpleName() +
             ", hasChildren=" + this.current.hasChildren());
 
       if (!this.current.hasChildren()) {
@@ -1473,14 +1490,14 @@ public class SubScriptState {
       }
 
       ScriptNode last = this.current.removeLastChild();
-      Logger.trace("getReturnExp: removed last child=" + last.getClass().getSimpleName());
+      Logger.trace(() -> "getReturnExp: removed last child=" + last.getClass().getSimpleName());
 
       if (AModifyExp.class.isInstance(last)) {
          Logger.trace("getReturnExp: last is AModifyExp, extracting expression");
          return ((AModifyExp) last).expression();
       } else if (AExpressionStatement.class.isInstance(last)) {
          AExpression exp = ((AExpressionStatement) last).exp();
-         Logger.trace("getReturnExp: last is AExpressionStatement, exp=" +
+         Logger.trace(() -> "getReturnExp: last is AExpressionStatement, exp=" +
                (exp != null ? exp.getClass().getSimpleName() : "null"));
 
          if (AModifyExp.class.isInstance(exp)) {
@@ -1580,7 +1597,7 @@ public class SubScriptState {
    }
 
    private AExpression removeLastExp(boolean forceOneOnly) {
-      Logger.trace("removeLastExp: forceOneOnly=" + forceOneOnly + ", current=" +
+      Logger.trace(() -> "removeLastExp: forceOneOnly=" + forceOneOnly + ", current=" +
             this.current.getClass().getSimpleName() + ", hasChildren=" + this.current.hasChildren());
 
       ArrayList<ScriptNode> trailingErrors = new ArrayList<>();
@@ -1603,7 +1620,9 @@ public class SubScriptState {
                break;
             }
             anode = this.current.removeLastChild();
-            Logger.trace("removeLastExp: removed child=" + anode.getClass().getSimpleName());
+            if (Logger.isTraceEnabled()) {
+               Logger.trace("removeLastExp: removed child=" + anode.getClass().getSimpleName());
+            }
 
             if (AExpression.class.isInstance(anode)) {
                Logger.trace("removeLastExp: found AExpression, returning");
@@ -1649,7 +1668,9 @@ public class SubScriptState {
                continue;
             }
             // Skip non-expression nodes and keep searching.
-            Logger.trace("removeLastExp: skipping " + anode.getClass().getSimpleName() + ", continuing search");
+            if (Logger.isTraceEnabled()) {
+               Logger.trace("removeLastExp: skipping " + anode.getClass().getSimpleName() + ", continuing search");
+            }
             anode = null;
          }
 
@@ -1808,7 +1829,7 @@ public class SubScriptState {
       int nodePos = this.nodedata.getPos(node);
       int destPos = dest != null ? this.nodedata.getPos(dest) : -1;
 
-      Logger.trace("isReturn: pos=" + nodePos + ", destPos=" + destPos +
+      Logger.trace(() -> "isReturn: pos=" + nodePos + ", destPos=" + destPos +
             ", destType=" + (dest != null ? dest.getClass().getSimpleName() : "null") +
             ", destChildType=" + (destChild != null ? destChild.getClass().getSimpleName() : "null"));
 
@@ -1818,7 +1839,7 @@ public class SubScriptState {
       } else if (AMoveSpCommand.class.isInstance(dest)) {
          Node afterdest = NodeUtils.getNextCommand(dest, this.nodedata);
          boolean result = afterdest == null;
-         Logger.trace("isReturn: dest is MoveSpCommand, afterdest=" +
+         Logger.trace(() -> "isReturn: dest is MoveSpCommand, afterdest=" +
                (afterdest != null ? this.nodedata.getPos(afterdest) + " (" + afterdest.getClass().getSimpleName() + ")" : "null") +
                ", returning " + result);
          return result;
@@ -1955,29 +1976,33 @@ public class SubScriptState {
    private List<AExpression> removeActionParams(AActionCommand node) {
       ArrayList<AExpression> params = new ArrayList<>();
       int nodePos = this.nodedata.getPos(node);
-      Logger.trace("removeActionParams: pos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() +
+      Logger.trace(() -> "removeActionParams: pos=" + nodePos + ", current=" + this.current.getClass().getSimpleName() +
             ", hasChildren=" + this.current.hasChildren() + ", childrenCount=" + (this.current.hasChildren() ? this.current.size() : 0));
 
       List<Type> paramtypes;
       try {
          paramtypes = NodeUtils.getActionParamTypes(node, this.actions);
-         Logger.trace("removeActionParams: got paramtypes, count=" + (paramtypes != null ? paramtypes.size() : 0));
+         Logger.trace(() -> "removeActionParams: got paramtypes, count=" + (paramtypes != null ? paramtypes.size() : 0));
       } catch (RuntimeException e) {
          // Action metadata missing or invalid - use placeholder params based on arg count
          int paramcount = NodeUtils.getActionParamCount(node);
-         Logger.trace("removeActionParams: action metadata missing, using paramcount=" + paramcount);
+         Logger.trace(() -> "removeActionParams: action metadata missing, using paramcount=" + paramcount);
          for (int i = 0; i < paramcount; i++) {
             try {
                AExpression exp = this.removeLastExp(false);
-               Logger.trace("removeActionParams: removed param " + (i + 1) + "=" + exp.getClass().getSimpleName());
+               if (Logger.isTraceEnabled()) {
+                  Logger.trace("removeActionParams: removed param " + (i + 1) + "=" + exp.getClass().getSimpleName());
+               }
                params.add(exp);
             } catch (RuntimeException expEx) {
                // Stack doesn't have enough entries - use placeholder
-               Logger.trace("removeActionParams: failed to remove param " + (i + 1) + ", using placeholder");
+               if (Logger.isTraceEnabled()) {
+                  Logger.trace("removeActionParams: failed to remove param " + (i + 1) + ", using placeholder");
+               }
                params.add(this.buildPlaceholderParam(i + 1));
             }
          }
-         Logger.trace("removeActionParams: returning " + params.size() + " params (metadata missing case)");
+         Logger.trace(() -> "removeActionParams: returning " + params.size() + " params (metadata missing case)");
          return params;
       }
       // getActionParamCount returns bytes, not parameter count
@@ -1986,15 +2011,17 @@ public class SubScriptState {
       int argBytes = NodeUtils.getActionParamCount(node);
       int paramcount = paramtypes.size();
 
-      Logger.trace("removeActionParams: argBytes=" + argBytes + ", paramtypes.size()=" + paramtypes.size() +
+      Logger.trace(() -> "removeActionParams: argBytes=" + argBytes + ", paramtypes.size()=" + paramtypes.size() +
             ", using paramcount=" + paramcount);
 
       for (int i = 0; i < paramcount; i++) {
          Type paramtype = paramtypes.get(i);
          AExpression exp;
          try {
-            Logger.trace("removeActionParams: removing param " + (i + 1) + "/" + paramcount + ", type=" + paramtype.typeSize() +
-                  ", current hasChildren=" + this.current.hasChildren());
+            if (Logger.isTraceEnabled()) {
+               Logger.trace("removeActionParams: removing param " + (i + 1) + "/" + paramcount + ", type=" + paramtype.typeSize() +
+                     ", current hasChildren=" + this.current.hasChildren());
+            }
             if (paramtype.equals((byte) -16)) {
                exp = this.getLastExp();
                if (!exp.stackentry().type().equals((byte) -16) && !exp.stackentry().type().equals((byte) -15)) {
@@ -2010,10 +2037,14 @@ public class SubScriptState {
             } else {
                exp = this.removeLastExp(false);
             }
-            Logger.trace("removeActionParams: successfully removed param " + (i + 1) + "=" + exp.getClass().getSimpleName());
+            if (Logger.isTraceEnabled()) {
+               Logger.trace("removeActionParams: successfully removed param " + (i + 1) + "=" + exp.getClass().getSimpleName());
+            }
          } catch (RuntimeException expEx) {
             // Stack doesn't have enough entries - use placeholder
-            Logger.trace("removeActionParams: failed to remove param " + (i + 1) + ", using placeholder: " + expEx.getMessage());
+            if (Logger.isTraceEnabled()) {
+               Logger.trace("removeActionParams: failed to remove param " + (i + 1) + ", using placeholder: " + expEx.getMessage());
+            }
             exp = this.buildPlaceholderParam(i + 1);
          }
 
@@ -2023,7 +2054,7 @@ public class SubScriptState {
       // Parameters are removed from the AST children list using removeLastExp, which removes from the end
       // The order in which they're removed depends on how they were added to the AST
       // Based on testing, they appear to be in the correct order already, so no reversal needed
-      Logger.trace("removeActionParams: returning " + params.size() + " params, remaining children=" + (this.current.hasChildren() ? this.current.size() : 0));
+      Logger.trace(() -> "removeActionParams: returning " + params.size() + " params, remaining children=" + (this.current.hasChildren() ? this.current.size() : 0));
       return params;
    }
 
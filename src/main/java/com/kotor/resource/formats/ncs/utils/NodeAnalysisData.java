@@ -30,6 +30,11 @@ public class NodeAnalysisData {
       }
    }
 
+   /** Number of nodes that have analysis data. */
+   public int size() {
+      return this.nodedatahash != null ? this.nodedatahash.size() : 0;
+   }
+
    public void setPos(Node node, int pos) {
       NodeAnalysisData.NodeData data = this.nodedatahash.get(node);
       if (data == null) {
@@ -395,15 +395,10 @@ public final class NodeUtils {
 
    public static int actionRemoveElementCount(AActionCommand node, ActionsData actions) {
       try {
-         List<Type> types = getActionParamTypes(node, actions);
-         int count = Math.min(getActionParamCount(node), types.size());
-         int remove = 0;
-
-         for (int i = 0; i < count; i++) {
-            remove += types.get(i).typeSize();
+         if (actions == null) {
+            throw new RuntimeException("ActionsData is null when trying to get param types for action ID: " + getActionId(node));
          }
-
-         return stackSizeToPos(remove);
+         return actions.getRemoveSlots(getActionId(node), getActionParamCount(node));
       } catch (RuntimeException e) {
          // Action metadata missing or invalid - fall back to raw arg bytes.
          // ArgCount is stored in bytes; convert to stack slots for consistency.
@@ -5,6 +5,8 @@
 
 package com.kotor.resource.formats.ncs.utils;
 
+import com.kotor.resource.formats.ncs.DecompileBudget;
+import com.kotor.resource.formats.ncs.StageTimings;
 import com.kotor.resource.formats.ncs.analysis.PrunedDepthFirstAdapter;
 import com.kotor.resource.formats.ncs.node.AActionCmd;
 import com.kotor.resource.formats.ncs.node.AAddVarCmd;
@@ -44,8 +46,11 @@ public class SubroutinePathFinder extends PrunedDepthFirstAdapter {
    private boolean limitretries;
    private int maxretry;
    private int retry;
+   private DecompileBudget budget;
 
-   public SubroutinePathFinder(SubroutineState state, NodeAnalysisData nodedata, SubroutineAnalysisData subdata, int pass) {
+   public SubroutinePathFinder(SubroutineState state, NodeAnalysisData nodedata, SubroutineAnalysisData subdata, int pass,
+         DecompileBudget budget) {
+      this.budget = budget;
       this.nodedata = nodedata;
       this.subdata = subdata;
       this.state = state;
@@ -74,6 +79,7 @@ public class SubroutinePathFinder extends PrunedDepthFirstAdapter {
       this.subdata = null;
       this.state = null;
       this.destinationcommands = null;
+      this.budget = null;
    }
 
    @Override
@@ -106,6 +112,7 @@ public class SubroutinePathFinder extends PrunedDepthFirstAdapter {
          }
 
          if (i < commands.size()) {
+            this.budget.step(StageTimings.PROTOTYPE);
             commands.get(i).apply(this);
             i++;
          }
@@ -14,6 +14,7 @@ import com.kotor.resource.formats.ncs.stack.Variable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Tracks prototype/type information for a single subroutine during analysis.
@@ -209,6 +210,19 @@ public class SubroutineState {
       this.returndepth = depth;
    }
 
+   /**
+    * Marks this subroutine as fully prototyped with a signature computed elsewhere
+    * (e.g. the cross-file subroutine cache), bypassing inference.
+    */
+   public void applyPrototype(Type returnType, List<Type> paramTypes) {
+      this.setParamCount(paramTypes.size());
+      this.params.clear();
+      this.params.addAll(paramTypes);
+      this.paramstyped = true;
+      this.setReturnType(returnType, 0);
+      this.stopPrototyping(true);
+   }
+
    public void updateParams(LinkedList<Type> types) {
       new Type((byte)-1);
       this.paramstyped = true;
@@ -50,6 +50,15 @@ public class Type {
       this.size = typeSize(this.type) / 4;
    }
 
+   /**
+    * Builds a declared type from its code, sized like {@link #Type(String)} would size it.
+    */
+   public static Type declared(byte type) {
+      Type declared = new Type(type);
+      declared.size = typeSize(type) / 4;
+      return declared;
+   }
+
    public static Type parseType(String str) {
       return new Type(str);
    }
@@ -0,0 +1,140 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The binary {@code .actcache} action tables and their invalidation when the nwscript source
+ * changes.
+ */
+class ActionsCacheTest {
+   @TempDir
+   File dir;
+
+   /**
+    * Writes a small nwscript; the unique comment keeps its hash away from tables other tests
+    * already loaded, which {@link ActionsData#load(File, File)} shares per hash.
+    */
+   private File nwscript(String name, String secondAction) throws IOException {
+      File file = new File(this.dir, name);
+      Files.write(file.toPath(), Arrays.asList(
+            "// " + UUID.randomUUID(),
+            "int TRUE = 1;",
+            "// 0: Random",
+            "int Random(int nMaxInteger);",
+            "",
+            "// 1: " + secondAction,
+            "void " + secondAction + "(string sString, vector v = [0.0,0.0,0.0]);"), StandardCharsets.ISO_8859_1);
+      return file;
+   }
+
+   private static File cacheFile(File cacheDir, File source) throws IOException {
+      return new File(cacheDir, HashUtil.calculateSHA256(source).toLowerCase(Locale.ROOT) + ActionsData.CACHE_SUFFIX);
+   }
+
+   @Test
+   void loadWritesTableNamedBySourceHash() throws IOException {
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      File cacheDir = new File(this.dir, "actions");
+      ActionsData data = ActionsData.load(source, cacheDir);
+      File cache = cacheFile(cacheDir, source);
+      assertTrue(cache.isFile());
+      assertEquals(HashUtil.calculateSHA256(source), data.getSourceHash());
+      assertEquals(2, data.size());
+      assertEquals("PrintString", data.getName(1));
+   }
+
+   @Test
+   void tableRoundTrips() throws IOException {
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      String sha = HashUtil.calculateSHA256(source);
+      ActionsData data = ActionsData.load(source, null);
+      byte[] written = data.writeCache(sha);
+      ActionsData read = ActionsData.readCache(written, sha);
+      assertNotNull(read);
+      assertEquals(data.size(), read.size());
+      for (int i = 0; i < data.size(); i++) {
+         assertEquals(data.getAction(i), read.getAction(i));
+         assertEquals(data.getParamTypes(i).toString(), read.getParamTypes(i).toString());
+         assertEquals(data.getDefaultValues(i), read.getDefaultValues(i));
+         assertEquals(data.getRequiredParamCount(i), read.getRequiredParamCount(i));
+         assertEquals(data.getParamSlots(i), read.getParamSlots(i));
+      }
+      assertArrayEquals(written, read.writeCache(sha));
+   }
+
+   @Test
+   void tableOfAnotherSourceIsRejected() throws IOException {
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      String sha = HashUtil.calculateSHA256(source);
+      byte[] written = ActionsData.load(source, null).writeCache(sha);
+      assertNotNull(ActionsData.readCache(written, sha.toLowerCase(Locale.ROOT)));
+      assertNull(ActionsData.readCache(written, HashUtil.calculateSHA256(new byte[0])));
+   }
+
+   @Test
+   void tableOfAnotherFormatVersionIsRejected() throws IOException {
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      String sha = HashUtil.calculateSHA256(source);
+      byte[] written = ActionsData.load(source, null).writeCache(sha);
+      // The version is the short after the 4-byte magic
+      written[5]++;
+      assertNull(ActionsData.readCache(written, sha));
+   }
+
+   @Test
+   void changedSourceIsParsedAgain() throws IOException {
+      File cacheDir = new File(this.dir, "actions");
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      ActionsData.load(source, cacheDir);
+      File staleCache = cacheFile(cacheDir, source);
+
+      File edited = this.nwscript("nwscript.nss", "PrintFloat");
+      File freshCache = cacheFile(cacheDir, edited);
+      assertFalse(freshCache.exists());
+      // Even a table stored under the new hash is ignored when it records the old one
+      Files.copy(staleCache.toPath(), freshCache.toPath());
+      ActionsData data = ActionsData.load(edited, cacheDir);
+      assertEquals("PrintFloat", data.getName(1));
+      assertNotNull(ActionsData.readCache(Files.readAllBytes(freshCache.toPath()), data.getSourceHash()));
+   }
+
+   @Test
+   void unreadableTableIsReplaced() throws IOException {
+      File cacheDir = new File(this.dir, "actions");
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      File cache = cacheFile(cacheDir, source);
+      Files.createDirectories(cacheDir.toPath());
+      Files.write(cache.toPath(), new byte[] {1, 2, 3});
+      ActionsData data = ActionsData.load(source, cacheDir);
+      assertEquals("PrintString", data.getName(1));
+      assertNotNull(ActionsData.readCache(Files.readAllBytes(cache.toPath()), data.getSourceHash()));
+   }
+
+   @Test
+   void nullCacheDirectoryWritesNothing() throws IOException {
+      File source = this.nwscript("nwscript.nss", "PrintString");
+      ActionsData.load(source, null);
+      assertEquals(Arrays.asList("nwscript.nss"), Arrays.asList(this.dir.list()));
+   }
+}
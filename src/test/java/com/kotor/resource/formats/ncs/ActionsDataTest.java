@@ -0,0 +1,109 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing of the nwscript action table and the precomputed stack slot counts.
+ */
+class ActionsDataTest {
+   private static ActionsData parse(String... lines) throws IOException {
+      return new ActionsData(new BufferedReader(new StringReader(String.join("\n", lines))));
+   }
+
+   private static ActionsData game(String name) throws IOException {
+      return new ActionsData(Files.newBufferedReader(Paths.get("src/main/resources", name), StandardCharsets.ISO_8859_1));
+   }
+
+   @Test
+   void slotCountsFollowParameterSizes() throws IOException {
+      ActionsData data = parse(
+            "// 0: a",
+            "vector F(int a, vector v, string s = \"\", float f = 1.0);",
+            "// 1: b",
+            "void G();");
+      assertEquals(3, data.getPushSlots(0));
+      assertEquals(6, data.getParamSlots(0));
+      assertEquals(2, data.getRequiredParamCount(0));
+      int[] expected = {0, 1, 4, 5, 6};
+      for (int n = 0; n < expected.length; n++) {
+         assertEquals(expected[n], data.getRemoveSlots(0, n), "args " + n);
+      }
+      // Argument counts outside the prototype are clamped
+      assertEquals(6, data.getRemoveSlots(0, 9));
+      assertEquals(0, data.getRemoveSlots(0, -1));
+      assertEquals(0, data.getPushSlots(1));
+      assertEquals(0, data.getParamSlots(1));
+      assertEquals(0, data.getRemoveSlots(1, 2));
+   }
+
+   @Test
+   void gapsAreReportedAsMissing() throws IOException {
+      ActionsData data = parse(
+            "// 0: a",
+            "void F();",
+            "// 2: c",
+            "int H();");
+      assertEquals(3, data.size());
+      assertEquals("H", data.getName(2));
+      assertThrows(RuntimeException.class, () -> data.getParamSlots(1));
+      assertThrows(RuntimeException.class, () -> data.getPushSlots(3));
+   }
+
+   @Test
+   void declarationsBeforeTheTableAreIgnored() throws IOException {
+      ActionsData data = parse(
+            "int TRUE = 1;",
+            "// 5 constants follow",
+            "void NotAnAction();",
+            "// 0: a",
+            "void F();");
+      assertEquals(1, data.size());
+      assertEquals("F", data.getName(0));
+   }
+
+   @Test
+   void numberedDocumentationLinesDoNotRebindHeaders() throws IOException {
+      ActionsData data = parse(
+            "// 0: Get an integer",
+            "int Random(int nMaxInteger);",
+            "// 1: Get the direction in which oTarget is facing, expressed as a float between",
+            "// 0.0f and 360.0f",
+            "float GetFacing(object oTarget);",
+            "// 2: Advance the time",
+            "// 1) Time can only be advanced forwards",
+            "void SetTime(int nHour);");
+      assertEquals("Random", data.getName(0));
+      assertEquals("GetFacing", data.getName(1));
+      assertEquals("SetTime", data.getName(2));
+   }
+
+   @Test
+   void gameTablesBindEveryDocumentedIndex() throws IOException {
+      for (String name : new String[] {"k1_nwscript.nss", "tsl_nwscript.nss"}) {
+         ActionsData data = game(name);
+         assertEquals("Random", data.getName(0), name);
+         assertEquals("SetTime", data.getName(12), name);
+         assertEquals("GetEnteringObject", data.getName(25), name);
+         assertEquals("GetFacing", data.getName(28), name);
+         assertEquals("GetLastHostileActor", data.getName(556), name);
+         assertEquals(1, data.getPushSlots(28), name);
+         assertEquals(1, data.getParamSlots(28), name);
+      }
+      assertEquals(772, game("k1_nwscript.nss").size());
+   }
+}
@@ -0,0 +1,222 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reading of ERF and RIM capsules, built here byte by byte.
+ */
+class CapsuleTest {
+   private static final int ERF_HEADER = 160;
+   private static final int RIM_HEADER = 120;
+   @TempDir
+   File dir;
+
+   /** One resource of a capsule under construction. */
+   private static final class Resource {
+      final String resref;
+      final int restype;
+      final byte[] data;
+
+      Resource(String resref, int restype, byte... data) {
+         this.resref = resref;
+         this.restype = restype;
+         this.data = data;
+      }
+   }
+
+   private static ByteBuffer buffer(int size) {
+      return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   private static void ascii(ByteBuffer buf, int offset, String text) {
+      byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+      for (int i = 0; i < bytes.length; i++) {
+         buf.put(offset + i, bytes[i]);
+      }
+   }
+
+   private static int dataSize(Resource... resources) {
+      int size = 0;
+      for (Resource r : resources) {
+         size += r.data.length;
+      }
+      return size;
+   }
+
+   private static ByteBuffer erf(String signature, Resource... resources) {
+      int keyList = ERF_HEADER;
+      int resourceList = keyList + resources.length * 24;
+      int data = resourceList + resources.length * 8;
+      ByteBuffer buf = buffer(data + dataSize(resources));
+      ascii(buf, 0, signature + "V1.0");
+      buf.putInt(16, resources.length);
+      buf.putInt(20, keyList);
+      buf.putInt(24, keyList);
+      buf.putInt(28, resourceList);
+      for (int i = 0; i < resources.length; i++) {
+         int key = keyList + i * 24;
+         ascii(buf, key, resources[i].resref);
+         buf.putInt(key + 16, i);
+         buf.putShort(key + 20, (short) resources[i].restype);
+         buf.putInt(resourceList + i * 8, data);
+         buf.putInt(resourceList + i * 8 + 4, resources[i].data.length);
+         for (byte b : resources[i].data) {
+            buf.put(data++, b);
+         }
+      }
+      return buf;
+   }
+
+   private static ByteBuffer rim(boolean explicitKeyList, Resource... resources) {
+      int keyList = RIM_HEADER;
+      int data = keyList + resources.length * 32;
+      ByteBuffer buf = buffer(data + dataSize(resources));
+      ascii(buf, 0, "RIM V1.0");
+      buf.putInt(12, resources.length);
+      buf.putInt(16, explicitKeyList ? keyList : 0);
+      for (int i = 0; i < resources.length; i++) {
+         int key = keyList + i * 32;
+         ascii(buf, key, resources[i].resref);
+         buf.putInt(key + 16, resources[i].restype);
+         buf.putInt(key + 20, i);
+         buf.putInt(key + 24, data);
+         buf.putInt(key + 28, resources[i].data.length);
+         for (byte b : resources[i].data) {
+            buf.put(data++, b);
+         }
+      }
+      return buf;
+   }
+
+   private File write(String name, ByteBuffer buf) throws IOException {
+      File file = new File(this.dir, name);
+      Files.write(file.toPath(), buf.array());
+      return file;
+   }
+
+   private static byte[] bytes(ResourceEntry entry) {
+      ByteBuffer data = entry.data();
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      return bytes;
+   }
+
+   private static void assertScripts(Capsule capsule) {
+      List<ResourceEntry> scripts = capsule.entries(ResourceEntry.TYPE_NCS, ResrefFilter.ALL);
+      assertEquals(2, scripts.size());
+      assertEquals("k_act_com", scripts.get(0).resref());
+      assertEquals("k_ai_master", scripts.get(1).resref());
+      assertArrayEquals(new byte[] {3, 4}, bytes(scripts.get(0)));
+      assertArrayEquals(new byte[] {1, 2}, bytes(scripts.get(1)));
+      assertTrue(scripts.get(0).data().isReadOnly());
+      assertEquals(capsule.getFile().getAbsolutePath() + "!/k_act_com.ncs", scripts.get(0).path());
+   }
+
+   private static Resource[] module() {
+      // Listed out of order; entries come back sorted
+      return new Resource[] {
+            new Resource("K_AI_MASTER", ResourceEntry.TYPE_NCS, (byte) 1, (byte) 2),
+            new Resource("module", 2014, (byte) 9),
+            new Resource("k_act_com", ResourceEntry.TYPE_NCS, (byte) 3, (byte) 4)};
+   }
+
+   @Test
+   void readsErfEntries() throws IOException {
+      Capsule capsule = Capsule.read(this.write("danm13.mod", erf("MOD ", module())));
+      assertEquals("MOD", capsule.getType());
+      assertEquals(3, capsule.size());
+      assertEquals(2, capsule.size(ResourceEntry.TYPE_NCS));
+      assertScripts(capsule);
+   }
+
+   @Test
+   void readsRimEntries() throws IOException {
+      Capsule explicit = Capsule.read(this.write("danm13.rim", rim(true, module())));
+      assertEquals("RIM", explicit.getType());
+      assertScripts(explicit);
+      // A zero key list offset means the list follows the 120-byte header
+      assertScripts(Capsule.read(this.write("danm13_s.rim", rim(false, module()))));
+   }
+
+   @Test
+   void formatComesFromTheSignature() throws IOException {
+      Capsule capsule = Capsule.read(this.write("misnamed.rim", erf("ERF ", module())));
+      assertEquals("ERF", capsule.getType());
+      assertScripts(capsule);
+   }
+
+   @Test
+   void filtersAndFindsByResref() throws IOException {
+      Capsule capsule = Capsule.read(this.write("danm13.mod", erf("MOD ", module())));
+      List<ResourceEntry> selected = capsule.entries(ResourceEntry.TYPE_NCS, ResrefFilter.of(Arrays.asList("k_ai_*")));
+      assertEquals(1, selected.size());
+      assertEquals("k_ai_master", selected.get(0).resref());
+      assertArrayEquals(new byte[] {9}, bytes(capsule.find("MODULE", 2014)));
+      assertNull(capsule.find("module", ResourceEntry.TYPE_NCS));
+   }
+
+   @Test
+   void recognizesCapsuleNames() {
+      for (String name : new String[] {"a.erf", "a.MOD", "a.rim", "a.sav", "a.hak"}) {
+         assertTrue(Capsule.isCapsule(name), name);
+      }
+      assertFalse(Capsule.isCapsule("chitin.key"));
+      assertFalse(Capsule.isCapsule("a.ncs"));
+   }
+
+   @Test
+   void rejectsOtherFiles() throws IOException {
+      ByteBuffer unknown = erf("GFF ", module());
+      assertThrows(IOException.class, () -> Capsule.read(this.write("a.mod", unknown)));
+      ByteBuffer version = erf("ERF ", module());
+      ascii(version, 4, "V2.0");
+      assertThrows(IOException.class, () -> Capsule.read(this.write("b.mod", version)));
+      assertThrows(IOException.class, () -> Capsule.read(this.write("c.mod", buffer(4))));
+   }
+
+   @Test
+   void rejectsErfTablesPastTheEnd() throws IOException {
+      ByteBuffer buf = erf("ERF ", module());
+      buf.putInt(16, 1000);
+      IOException e = assertThrows(IOException.class, () -> Capsule.read(this.write("a.erf", buf)));
+      assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+   }
+
+   @Test
+   void rejectsErfResourcesPastTheEnd() throws IOException {
+      ByteBuffer buf = erf("ERF ", module());
+      buf.putInt(ERF_HEADER + 3 * 24 + 4, 1000);
+      IOException e = assertThrows(IOException.class, () -> Capsule.read(this.write("a.erf", buf)));
+      assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+   }
+
+   @Test
+   void rejectsRimResourcesPastTheEnd() throws IOException {
+      ByteBuffer buf = rim(true, module());
+      buf.putInt(RIM_HEADER + 24, buf.capacity() - 1);
+      IOException e = assertThrows(IOException.class, () -> Capsule.read(this.write("a.rim", buf)));
+      assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+   }
+}
@@ -0,0 +1,60 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link NCSDecompCLI} in a child JVM, so batch runs that end in {@code System.exit} can be
+ * checked, and fails runs that do not finish in time instead of hanging the build.
+ */
+final class CliProcess {
+   private static final long TIMEOUT_SECONDS = 120L;
+   final int exitCode;
+   final List<String> stdout;
+   final String stderr;
+
+   private CliProcess(int exitCode, List<String> stdout, String stderr) {
+      this.exitCode = exitCode;
+      this.stdout = stdout;
+      this.stderr = stderr;
+   }
+
+   /**
+    * @param dir  scratch directory for the captured output and the child's user cache
+    * @param args command line of the CLI
+    */
+   static CliProcess run(File dir, String... args) throws IOException, InterruptedException {
+      List<String> cmd = new ArrayList<>();
+      cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+      cmd.add("-D" + UserCache.PROPERTY + "=" + new File(dir, "cache").getAbsolutePath());
+      cmd.add("-cp");
+      cmd.add(System.getProperty("java.class.path"));
+      cmd.add(NCSDecompCLI.class.getName());
+      cmd.addAll(Arrays.asList(args));
+      File out = new File(dir, "cli.out");
+      File err = new File(dir, "cli.err");
+      Process proc = new ProcessBuilder(cmd).redirectOutput(out).redirectError(err).start();
+      if (!proc.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+         proc.destroyForcibly();
+         throw new AssertionError("CLI did not finish within " + TIMEOUT_SECONDS + "s: " + String.join(" ", args));
+      }
+      return new CliProcess(proc.exitValue(), Files.readAllLines(out.toPath(), StandardCharsets.UTF_8),
+            new String(Files.readAllBytes(err.toPath()), StandardCharsets.UTF_8));
+   }
+
+   @Override
+   public String toString() {
+      return "exit " + this.exitCode + "\n" + String.join("\n", this.stdout) + "\n" + this.stderr;
+   }
+}
@@ -0,0 +1,111 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link CompilerProcessRunner} driven with small shell commands in place of a compiler.
+ */
+class CompilerProcessRunnerTest {
+   @BeforeAll
+   static void requireShell() {
+      assumeTrue(new File("/bin/sh").canExecute(), "needs /bin/sh");
+   }
+
+   private static String[] sh(String script) {
+      return new String[] {"/bin/sh", "-c", script};
+   }
+
+   @Test
+   void capturesExitCodeAndStreams() throws Exception {
+      CompilerProcessRunner runner = new CompilerProcessRunner(1, 10000L);
+      CompilerProcessRunner.Result result = runner.submit(sh("echo out; echo err 1>&2; exit 3"), null, null)
+            .get(10, TimeUnit.SECONDS);
+      assertEquals(3, result.exitCode());
+      assertFalse(result.timedOut());
+      assertEquals("out\n", result.stdout());
+      assertEquals("err\n", result.stderr());
+   }
+
+   @Test
+   void outputKeepsStreamsInterleaved() throws Exception {
+      CompilerProcessRunner runner = new CompilerProcessRunner(1, 10000L);
+      String script = "echo one; sleep 0.2; echo two 1>&2; sleep 0.2; echo three";
+      CompilerProcessRunner.Result result = runner.submit(sh(script), null, null).get(10, TimeUnit.SECONDS);
+      assertEquals("one\ntwo\nthree\n", result.output());
+      assertEquals("one\nthree\n", result.stdout());
+   }
+
+   @Test
+   void timedOutProcessIsKilled() throws Exception {
+      CompilerProcessRunner runner = new CompilerProcessRunner(1, 300L);
+      long start = System.nanoTime();
+      CompilerProcessRunner.Result result = runner.submit(sh("echo started; exec sleep 30"), null, null)
+            .get(10, TimeUnit.SECONDS);
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue(result.timedOut());
+      assertEquals("started\n", result.stdout());
+      assertTrue(elapsed < 10000L, "took " + elapsed + " ms");
+   }
+
+   @Test
+   void submissionsBeyondLimitWaitForASlot() throws Exception {
+      CompilerProcessRunner runner = new CompilerProcessRunner(1, 10000L);
+      long start = System.nanoTime();
+      CompletableFuture<CompilerProcessRunner.Result> first = runner.submit(sh("sleep 0.5"), null, null);
+      CompletableFuture<CompilerProcessRunner.Result> second = runner.submit(sh("sleep 0.5"), null, null);
+      second.get(10, TimeUnit.SECONDS);
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue(first.isDone());
+      assertTrue(elapsed >= 1000L, "second process started before the first finished: " + elapsed + " ms");
+   }
+
+   @Test
+   void cancelledQueuedSubmissionNeverRuns(@TempDir File dir) throws Exception {
+      CompilerProcessRunner runner = new CompilerProcessRunner(1, 10000L);
+      File marker = new File(dir, "ran");
+      CompletableFuture<CompilerProcessRunner.Result> first = runner.submit(sh("sleep 0.3"), null, null);
+      CompletableFuture<CompilerProcessRunner.Result> second =
+            runner.submit(sh("touch '" + marker.getAbsolutePath() + "'"), null, null);
+      second.cancel(false);
+      first.get(10, TimeUnit.SECONDS);
+      // The slot is free again, so a later submission runs straight away
+      runner.submit(sh("true"), null, null).get(10, TimeUnit.SECONDS);
+      assertFalse(marker.exists());
+   }
+
+   @Test
+   void closeFailsQueuedSubmissions() throws Exception {
+      CompilerProcessRunner runner = new CompilerProcessRunner(1, 10000L);
+      CompletableFuture<CompilerProcessRunner.Result> first = runner.submit(sh("sleep 0.3"), null, null);
+      CompletableFuture<CompilerProcessRunner.Result> queued = runner.submit(sh("true"), null, null);
+      runner.close();
+      ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(10, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof IOException);
+      assertEquals(0, first.get(10, TimeUnit.SECONDS).exitCode());
+      assertThrows(ExecutionException.class, () -> runner.submit(sh("true"), null, null).get());
+   }
+
+   @Test
+   void rejectsNonPositiveConcurrency() {
+      assertThrows(IllegalArgumentException.class, () -> new CompilerProcessRunner(0, 1000L));
+   }
+}
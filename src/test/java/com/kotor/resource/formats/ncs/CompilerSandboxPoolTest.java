@@ -0,0 +1,120 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Staging and reuse of {@link CompilerSandboxPool} sandboxes, using stand-in files for the
+ * compiler and nwscript.nss.
+ */
+class CompilerSandboxPoolTest {
+   @TempDir
+   Path tmp;
+
+   private File write(String name, String content) throws IOException {
+      Path path = this.tmp.resolve(name);
+      Files.createDirectories(path.getParent());
+      Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+      return path.toFile();
+   }
+
+   private static String read(File file) throws IOException {
+      return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+   }
+
+   @Test
+   void sourceNamedNwscriptDoesNotReplaceSandboxCopy() throws IOException {
+      File compiler = write("tools/nwnnsscomp.exe", "compiler");
+      File nwscript = write("tools/nwscript.nss", "real nwscript");
+      File source = write("scripts/nwscript.nss", "void main() {}");
+      try (CompilerSandboxPool pool = new CompilerSandboxPool(this.tmp.resolve("pool").toFile())) {
+         CompilerSandboxPool.Sandbox sandbox = pool.acquire(compiler, false, nwscript);
+         File staged = sandbox.stage(source);
+         assertEquals(CompilerSandboxPool.STAGED_SOURCE_NAME, staged.getName());
+         assertEquals("void main() {}", read(staged));
+         File sandboxNwscript = new File(sandbox.directory(), "nwscript.nss");
+         assertEquals("real nwscript", read(sandboxNwscript));
+         pool.release(sandbox);
+         assertFalse(staged.exists());
+         assertEquals("real nwscript", read(sandboxNwscript));
+      }
+   }
+
+   @Test
+   void sourceNamedLikeIncludeKeepsInclude() throws IOException {
+      File compiler = write("tools/nwnnsscomp.exe", "compiler");
+      File include = write("includes/k_inc_utility.nss", "int Util() { return 1; }");
+      File source = write("scripts/k_inc_utility.nss", "void main() {}");
+      try (CompilerSandboxPool pool = new CompilerSandboxPool(this.tmp.resolve("pool").toFile())) {
+         CompilerSandboxPool.Sandbox sandbox = pool.acquire(compiler, false, null);
+         sandbox.provideIncludes(Collections.singletonList("k_inc_utility.nss"),
+               Collections.singletonList(include.getParentFile()));
+         sandbox.stage(source);
+         pool.release(sandbox);
+         File kept = new File(sandbox.directory(), "k_inc_utility.nss");
+         assertTrue(kept.isFile());
+         assertEquals("int Util() { return 1; }", read(kept));
+      }
+   }
+
+   @Test
+   void includeWithReservedNameIsRejected() throws IOException {
+      File compiler = write("tools/nwnnsscomp.exe", "compiler");
+      write("includes/" + CompilerSandboxPool.STAGED_SOURCE_NAME, "");
+      try (CompilerSandboxPool pool = new CompilerSandboxPool(this.tmp.resolve("pool").toFile())) {
+         CompilerSandboxPool.Sandbox sandbox = pool.acquire(compiler, false, null);
+         assertThrows(IOException.class, () -> sandbox.provideIncludes(
+               Collections.singletonList(CompilerSandboxPool.STAGED_SOURCE_NAME),
+               Collections.singletonList(this.tmp.resolve("includes").toFile())));
+      }
+   }
+
+   @Test
+   void releasedSandboxIsReusedForSameKey() throws IOException {
+      File compiler = write("tools/nwnnsscomp.exe", "compiler");
+      File nwscript = write("tools/nwscript.nss", "real nwscript");
+      try (CompilerSandboxPool pool = new CompilerSandboxPool(this.tmp.resolve("pool").toFile())) {
+         CompilerSandboxPool.Sandbox first = pool.acquire(compiler, false, nwscript);
+         pool.release(first);
+         assertSame(first, pool.acquire(compiler, false, nwscript));
+         CompilerSandboxPool.Sandbox other = pool.acquire(compiler, true, nwscript);
+         assertFalse(first == other);
+         assertEquals(2, pool.size());
+      }
+   }
+
+   @Test
+   void tempPoolCreatesItsDirectoryOnFirstUse() throws IOException {
+      File compiler = write("tools/nwnnsscomp.exe", "compiler");
+      CompilerSandboxPool unused = new CompilerSandboxPool();
+      assertNull(unused.getRoot());
+      unused.close();
+
+      CompilerSandboxPool pool = new CompilerSandboxPool();
+      CompilerSandboxPool.Sandbox sandbox = pool.acquire(compiler, false, null);
+      File root = pool.getRoot();
+      assertTrue(root.isDirectory());
+      pool.release(sandbox);
+      pool.close();
+      assertFalse(root.exists());
+   }
+}
@@ -0,0 +1,110 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Step and time limits of {@link DecompileBudget} and the fallback stub a decompile gets
+ * when its budget runs out.
+ */
+class DecompileBudgetTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   @TempDir
+   static Path cacheDir;
+   private static String previousCache;
+   private static File script;
+
+   @BeforeAll
+   static void write() throws Exception {
+      // Keep the action table cache out of the home directory
+      previousCache = System.setProperty(UserCache.PROPERTY, cacheDir.toString());
+      script = cacheDir.resolve("test.ncs").toFile();
+      Files.write(script.toPath(), TestScripts.helpers());
+   }
+
+   @AfterAll
+   static void restore() {
+      if (previousCache != null) {
+         System.setProperty(UserCache.PROPERTY, previousCache);
+      } else {
+         System.clearProperty(UserCache.PROPERTY);
+      }
+   }
+
+   @Test
+   void stepLimitIsInclusive() {
+      DecompileBudget budget = new DecompileBudget(0L, 3L);
+      budget.step("typing");
+      budget.step("typing");
+      budget.step("typing");
+      DecompileBudget.Exceeded e = assertThrows(DecompileBudget.Exceeded.class, () -> budget.step("paths"));
+      assertEquals("paths", e.getStage());
+      assertTrue(e.getMessage().contains("step limit of 3"), e.getMessage());
+      assertEquals(4, budget.steps());
+   }
+
+   @Test
+   void unlimitedBudgetNeverRunsOut() {
+      DecompileBudget budget = DecompileBudget.unlimited();
+      for (int i = 0; i < 100000; i++) {
+         budget.step("typing");
+      }
+      budget.check("typing");
+      assertEquals(100000, budget.steps());
+   }
+
+   @Test
+   void timeLimitIsCheckedBetweenStages() throws InterruptedException {
+      DecompileBudget budget = new DecompileBudget(1L, 0L);
+      Thread.sleep(20L);
+      DecompileBudget.Exceeded e = assertThrows(DecompileBudget.Exceeded.class, () -> budget.check("decode"));
+      assertEquals("decode", e.getStage());
+      assertTrue(e.getMessage().contains("time limit of 1 ms"), e.getMessage());
+   }
+
+   @Test
+   void stepsReadTheClockPeriodically() throws InterruptedException {
+      DecompileBudget budget = new DecompileBudget(1L, 0L);
+      Thread.sleep(20L);
+      // The clock is only read every 64 steps, so the expired deadline is noticed late
+      for (int i = 1; i < 64; i++) {
+         budget.step("typing");
+      }
+      assertThrows(DecompileBudget.Exceeded.class, () -> budget.step("typing"));
+   }
+
+   @Test
+   void exhaustedBudgetGivesFallbackStub() throws Exception {
+      FileDecompiler fd = new FileDecompiler(NWSCRIPT, new DecompilerOptions().withStepBudget(1L));
+      String code = fd.decompileToString(script);
+      assertNotNull(fd.getLastBudgetExceeded());
+      assertTrue(fd.getLastBudgetExceeded().contains("step limit of 1"), fd.getLastBudgetExceeded());
+      assertTrue(code.contains("Budget exceeded"), code);
+   }
+
+   @Test
+   void sufficientBudgetDecompilesNormally() throws Exception {
+      FileDecompiler fd = new FileDecompiler(NWSCRIPT,
+            new DecompilerOptions().withStepBudget(1000000L).withTimeBudgetMillis(60000L));
+      String code = fd.decompileToString(script);
+      assertNull(fd.getLastBudgetExceeded());
+      assertTrue(code.contains("PrintInteger"), code);
+   }
+}
@@ -0,0 +1,104 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The in-memory entry points of {@link FileDecompiler}: the caller's name is kept as given
+ * and nothing is looked up on disk under it.
+ */
+class InMemoryDecompileTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   private static final DecompilerOptions OPTIONS = new DecompilerOptions();
+   @TempDir
+   static Path cacheDir;
+   private static String previousCache;
+   private static byte[] ncs;
+   private static FileDecompiler decompiler;
+
+   @BeforeAll
+   static void load() throws Exception {
+      // Keep the action table cache out of the home directory
+      previousCache = System.setProperty(UserCache.PROPERTY, cacheDir.toString());
+      ncs = TestScripts.helpers();
+      decompiler = new FileDecompiler(NWSCRIPT, OPTIONS);
+   }
+
+   @AfterAll
+   static void restore() {
+      if (previousCache != null) {
+         System.setProperty(UserCache.PROPERTY, previousCache);
+      } else {
+         System.clearProperty(UserCache.PROPERTY);
+      }
+   }
+
+   @Test
+   void resultKeepsTheNameAsGiven() throws Exception {
+      DecompileResult result = decompiler.decompile("modules/end_m01aa/k_act_com.ncs", ByteBuffer.wrap(ncs), OPTIONS);
+      assertEquals("modules/end_m01aa/k_act_com.ncs", result.name());
+      assertTrue(result.code().contains("PrintInteger"), result.code());
+   }
+
+   @Test
+   void onlyTheRemainingBytesAreDecompiled() throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(ncs.length + 8);
+      buffer.position(4);
+      buffer.put(ncs);
+      buffer.position(4).limit(4 + ncs.length);
+      DecompileResult result = decompiler.decompile("test.ncs", buffer, OPTIONS);
+      assertTrue(result.code().contains("PrintInteger"), result.code());
+      assertEquals(4, buffer.position());
+      assertEquals(4 + ncs.length, buffer.limit());
+   }
+
+   @Test
+   void streamIsReadToItsEnd() throws Exception {
+      DecompileResult result = decompiler.decompile("test.ncs", new ByteArrayInputStream(ncs), OPTIONS);
+      assertTrue(result.code().contains("PrintInteger"), result.code());
+   }
+
+   @Test
+   void stubDescribesTheSuppliedBytes(@TempDir Path dir) throws Exception {
+      // A file of the same name on disk must not be described instead of the bytes
+      Path sameName = dir.resolve("k_act_com.ncs");
+      Files.write(sameName, new byte[1000]);
+      DecompilerOptions options = new DecompilerOptions().withStepBudget(1L);
+      DecompileResult result = new FileDecompiler(NWSCRIPT, options).decompile(sameName.toString(),
+            ByteBuffer.wrap(ncs), options);
+      String code = result.code();
+      assertTrue(code.contains("Budget exceeded"), code);
+      assertTrue(code.contains("Name: " + sameName), code);
+      assertTrue(code.contains("Path: (in memory)"), code);
+      assertTrue(code.contains("Size: " + ncs.length + " bytes"), code);
+      assertFalse(code.contains("Size: 1000 bytes"), code);
+      assertFalse(code.contains("Last Modified"), code);
+   }
+
+   @Test
+   void missingNameIsNotReportedAsAMissingFile() throws Exception {
+      DecompilerOptions options = new DecompilerOptions().withStepBudget(1L);
+      DecompileResult result = new FileDecompiler(NWSCRIPT, options).decompile("no/such/dir/k_act_com.ncs",
+            ByteBuffer.wrap(ncs), options);
+      assertTrue(result.code().contains("Budget exceeded"), result.code());
+      assertFalse(result.code().contains("DOES NOT EXIST"), result.code());
+      assertFalse(result.code().contains("Verify the file path"), result.code());
+   }
+}
@@ -0,0 +1,127 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Parsing and writing of the daemon and report JSON.
+ */
+class JsonTest {
+   @Test
+   void writesEscapes() {
+      assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\\u0001\"", Json.write("a\"b\\c\nd\re\tf\u0001"));
+   }
+
+   @Test
+   void readsEscapes() {
+      assertEquals("a\"b\\c/\nd\re\tf\bg\fh", Json.parse("\"a\\\"b\\\\c\\/\\nd\\re\\tf\\bg\\fh\""));
+   }
+
+   @Test
+   void readsUnicodeEscapes() {
+      assertEquals("A\u00e9\u4e2d", Json.parse("\"\\u0041\\u00E9\\u4e2d\""));
+      // A surrogate pair decodes to the two chars of one code point
+      assertEquals("\ud83d\ude00", Json.parse("\"\\ud83d\\ude00\""));
+   }
+
+   @Test
+   void stringsRoundTrip() {
+      String text = "line 1\nline \"2\"\t\\ \u0000 \u00ff \u4e2d";
+      assertEquals(text, Json.parse(Json.write(text)));
+   }
+
+   @Test
+   void readsNestedValues() {
+      Object parsed = Json.parse(" {\"id\": 7, \"list\": [1, [true, false, null], {\"k\": \"v\"}], \"empty\": {}, "
+            + "\"none\": []} ");
+      Map<?, ?> map = (Map<?, ?>) parsed;
+      assertEquals(Arrays.asList("id", "list", "empty", "none"), Arrays.asList(map.keySet().toArray()));
+      assertEquals(7L, map.get("id"));
+      List<?> list = (List<?>) map.get("list");
+      assertEquals(1L, list.get(0));
+      assertEquals(Arrays.asList(Boolean.TRUE, Boolean.FALSE, null), list.get(1));
+      assertEquals(Collections.singletonMap("k", "v"), list.get(2));
+      assertTrue(((Map<?, ?>) map.get("empty")).isEmpty());
+      assertTrue(((List<?>) map.get("none")).isEmpty());
+   }
+
+   @Test
+   void nestedValuesRoundTrip() {
+      Map<String, Object> inner = new LinkedHashMap<>();
+      inner.put("ms", 1.5);
+      inner.put("n", 3L);
+      Map<String, Object> outer = new LinkedHashMap<>();
+      outer.put("id", 1L);
+      outer.put("ok", Boolean.TRUE);
+      outer.put("error", null);
+      outer.put("timings", inner);
+      outer.put("tags", Arrays.asList("a", "b"));
+      String text = Json.write(outer);
+      assertEquals("{\"id\":1,\"ok\":true,\"error\":null,\"timings\":{\"ms\":1.5,\"n\":3},\"tags\":[\"a\",\"b\"]}", text);
+      assertEquals(outer, Json.parse(text));
+   }
+
+   @Test
+   void readsNumbers() {
+      assertEquals(0L, Json.parse("0"));
+      assertEquals(-42L, Json.parse("-42"));
+      assertEquals(Long.MAX_VALUE, Json.parse("9223372036854775807"));
+      assertEquals(2.5, Json.parse("2.5"));
+      assertEquals(-0.125, Json.parse("-1.25e-1"));
+      assertEquals(1000.0, Json.parse("1E3"));
+   }
+
+   @Test
+   void readsLiterals() {
+      assertEquals(Boolean.TRUE, Json.parse("true"));
+      assertEquals(Boolean.FALSE, Json.parse("false"));
+      assertNull(Json.parse("null"));
+   }
+
+   @Test
+   void rejectsMalformedInput() {
+      String[] malformed = {
+         "",
+         "   ",
+         "{",
+         "[1, 2",
+         "{\"a\" 1}",
+         "{\"a\": 1,}",
+         "{a: 1}",
+         "[1 2]",
+         "\"unterminated",
+         "\"bad \\u12\"",
+         "\"bad \\uzzzz\"",
+         "tru",
+         "nul",
+         "1.2.3",
+         "-",
+         "{} {}",
+         "[1],",
+      };
+      for (String text : malformed) {
+         assertThrows(IllegalArgumentException.class, () -> Json.parse(text), text);
+      }
+   }
+
+   @Test
+   void errorNamesOffset() {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Json.parse("[1, x]"));
+      assertTrue(e.getMessage().contains("offset 4"), e.getMessage());
+   }
+}
@@ -0,0 +1,237 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reading of {@code chitin.key} and the BIF archives it points into, built here byte by byte.
+ */
+class KeyFileTest {
+   @TempDir
+   File dir;
+
+   /** A KEY resource: resref, type and {@code bif << 20 | index}. */
+   private static final class Key {
+      final String resref;
+      final int restype;
+      final int id;
+
+      Key(String resref, int restype, int bif, int index) {
+         this.resref = resref;
+         this.restype = restype;
+         this.id = bif << 20 | index;
+      }
+   }
+
+   private static ByteBuffer buffer(int size) {
+      return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   private static void ascii(ByteBuffer buf, int offset, String text) {
+      byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+      for (int i = 0; i < bytes.length; i++) {
+         buf.put(offset + i, bytes[i]);
+      }
+   }
+
+   private File key(List<String> bifs, Key... keys) throws IOException {
+      int fileTable = 64;
+      int names = fileTable + bifs.size() * 12;
+      int nameBytes = 0;
+      for (String bif : bifs) {
+         nameBytes += bif.length() + 1;
+      }
+      int keyTable = names + nameBytes;
+      ByteBuffer buf = buffer(keyTable + keys.length * 22);
+      ascii(buf, 0, "KEY V1  ");
+      buf.putInt(8, bifs.size());
+      buf.putInt(12, keys.length);
+      buf.putInt(16, fileTable);
+      buf.putInt(20, keyTable);
+      int name = names;
+      for (int i = 0; i < bifs.size(); i++) {
+         int entry = fileTable + i * 12;
+         buf.putInt(entry + 4, name);
+         buf.putShort(entry + 8, (short) (bifs.get(i).length() + 1));
+         ascii(buf, name, bifs.get(i));
+         name += bifs.get(i).length() + 1;
+      }
+      for (int i = 0; i < keys.length; i++) {
+         int entry = keyTable + i * 22;
+         ascii(buf, entry, keys[i].resref);
+         buf.putShort(entry + 16, (short) keys[i].restype);
+         buf.putInt(entry + 18, keys[i].id);
+      }
+      return this.write("chitin.key", buf);
+   }
+
+   private File bif(String path, byte[]... resources) throws IOException {
+      int varTable = 20;
+      int data = varTable + resources.length * 16;
+      int size = data;
+      for (byte[] r : resources) {
+         size += r.length;
+      }
+      ByteBuffer buf = buffer(size);
+      ascii(buf, 0, "BIFFV1  ");
+      buf.putInt(8, resources.length);
+      buf.putInt(16, varTable);
+      for (int i = 0; i < resources.length; i++) {
+         int entry = varTable + i * 16;
+         buf.putInt(entry, i);
+         buf.putInt(entry + 4, data);
+         buf.putInt(entry + 8, resources[i].length);
+         buf.putInt(entry + 12, ResourceEntry.TYPE_NCS);
+         for (int b = 0; b < resources[i].length; b++) {
+            buf.put(data + b, resources[i][b]);
+         }
+         data += resources[i].length;
+      }
+      return this.write(path, buf);
+   }
+
+   private File write(String path, ByteBuffer buf) throws IOException {
+      File file = new File(this.dir, path);
+      Files.createDirectories(file.getParentFile().toPath());
+      Files.write(file.toPath(), buf.array());
+      return file;
+   }
+
+   private static byte[] bytes(ResourceEntry entry) {
+      ByteBuffer data = entry.data();
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      return bytes;
+   }
+
+   @Test
+   void readsScriptsFromBifs() throws IOException {
+      this.bif("data/scripts.bif", new byte[] {1, 2, 3}, new byte[] {4, 5});
+      this.bif("data/templates.bif", new byte[] {9});
+      File key = this.key(Arrays.asList("data\\scripts.bif", "data\\templates.bif"),
+            new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 1),
+            new Key("K_AI_MASTER", ResourceEntry.TYPE_NCS, 0, 0),
+            new Key("p_bastila", 2027, 1, 0));
+      KeyFile kf = KeyFile.read(key);
+      assertEquals(3, kf.size());
+      assertEquals(2, kf.size(ResourceEntry.TYPE_NCS));
+      assertEquals(0, kf.size(ResourceEntry.TYPE_NSS));
+
+      List<ResourceEntry> entries = kf.entries(ResourceEntry.TYPE_NCS, ResrefFilter.ALL);
+      assertEquals(2, entries.size());
+      assertEquals("k_act_com", entries.get(0).resref());
+      assertEquals("k_ai_master", entries.get(1).resref());
+      assertArrayEquals(new byte[] {4, 5}, bytes(entries.get(0)));
+      assertArrayEquals(new byte[] {1, 2, 3}, bytes(entries.get(1)));
+      assertTrue(entries.get(0).data().isReadOnly());
+      assertEquals(new File(this.dir, "data/scripts.bif").getAbsolutePath() + "!/k_act_com.ncs",
+            entries.get(0).path());
+   }
+
+   @Test
+   void filtersAndFindsByResref() throws IOException {
+      this.bif("data/scripts.bif", new byte[] {1}, new byte[] {2});
+      File key = this.key(Arrays.asList("data\\scripts.bif"),
+            new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 0),
+            new Key("k_ai_master", ResourceEntry.TYPE_NCS, 0, 1));
+      KeyFile kf = KeyFile.read(key);
+      List<ResourceEntry> selected = kf.entries(ResourceEntry.TYPE_NCS, ResrefFilter.of(Arrays.asList("k_ai_*")));
+      assertEquals(1, selected.size());
+      assertEquals("k_ai_master", selected.get(0).resref());
+      assertArrayEquals(new byte[] {1}, bytes(kf.find("K_ACT_COM", ResourceEntry.TYPE_NCS)));
+      assertNull(kf.find("k_act_com", ResourceEntry.TYPE_NSS));
+      assertNull(kf.find("missing", ResourceEntry.TYPE_NCS));
+   }
+
+   @Test
+   void laterKeysOverrideEarlierOnes() throws IOException {
+      this.bif("data/scripts.bif", new byte[] {1}, new byte[] {2});
+      File key = this.key(Arrays.asList("data\\scripts.bif"),
+            new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 0),
+            new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 1));
+      KeyFile kf = KeyFile.read(key);
+      assertEquals(1, kf.size());
+      assertArrayEquals(new byte[] {2}, bytes(kf.find("k_act_com", ResourceEntry.TYPE_NCS)));
+   }
+
+   @Test
+   void bifPathsIgnoreCase() throws IOException {
+      this.bif("Data/Scripts.BIF", new byte[] {7});
+      File key = this.key(Arrays.asList("data\\scripts.bif"), new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 0));
+      assertArrayEquals(new byte[] {7}, bytes(KeyFile.read(key).find("k_act_com", ResourceEntry.TYPE_NCS)));
+   }
+
+   @Test
+   void bifsAreOnlyOpenedWhenUsed() throws IOException {
+      this.bif("data/scripts.bif", new byte[] {1});
+      File key = this.key(Arrays.asList("data\\scripts.bif", "data\\missing.bif"),
+            new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 0),
+            new Key("p_bastila", 2027, 1, 0));
+      KeyFile kf = KeyFile.read(key);
+      assertEquals(1, kf.entries(ResourceEntry.TYPE_NCS, ResrefFilter.ALL).size());
+      IOException e = assertThrows(IOException.class, () -> kf.find("p_bastila", 2027));
+      assertTrue(e.getMessage().startsWith("BIF not found"), e.getMessage());
+   }
+
+   @Test
+   void rejectsOtherFiles() throws IOException {
+      File notKey = this.write("chitin.key", buffer(64).put(0, (byte) 'X'));
+      assertThrows(IOException.class, () -> KeyFile.read(notKey));
+      File tiny = this.write("tiny.key", buffer(8));
+      assertThrows(IOException.class, () -> KeyFile.read(tiny));
+   }
+
+   @Test
+   void rejectsTablesPastTheEnd() throws IOException {
+      File key = this.key(new ArrayList<String>(), new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 0));
+      ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(key.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+      buf.putInt(12, 1000);
+      this.write("chitin.key", buf);
+      IOException e = assertThrows(IOException.class, () -> KeyFile.read(key));
+      assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+   }
+
+   @Test
+   void rejectsIdsOutsideTheArchives() throws IOException {
+      this.bif("data/scripts.bif", new byte[] {1});
+      File key = this.key(Arrays.asList("data\\scripts.bif"),
+            new Key("bad_bif", ResourceEntry.TYPE_NCS, 3, 0),
+            new Key("bad_index", ResourceEntry.TYPE_NCS, 0, 5));
+      KeyFile kf = KeyFile.read(key);
+      assertThrows(IOException.class, () -> kf.find("bad_bif", ResourceEntry.TYPE_NCS));
+      assertThrows(IOException.class, () -> kf.find("bad_index", ResourceEntry.TYPE_NCS));
+   }
+
+   @Test
+   void rejectsResourcesPastTheEndOfTheBif() throws IOException {
+      File bif = this.bif("data/scripts.bif", new byte[] {1, 2, 3});
+      ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(bif.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+      buf.putInt(20 + 8, 100);
+      this.write("data/scripts.bif", buf);
+      File key = this.key(Arrays.asList("data\\scripts.bif"), new Key("k_act_com", ResourceEntry.TYPE_NCS, 0, 0));
+      IOException e = assertThrows(IOException.class,
+            () -> KeyFile.read(key).find("k_act_com", ResourceEntry.TYPE_NCS));
+      assertTrue(e.getMessage().contains("truncated"), e.getMessage());
+   }
+}
@@ -0,0 +1,112 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Batch runs through the worker pipeline: several workers behind a small
+ * {@code --queue-depth} must still write and report in worklist order, and
+ * {@code --fail-fast} must stop at the first failure.
+ */
+class NCSDecompCLIPipelineTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   /** Script names in worklist order; deliberately not sorted. */
+   private static final List<String> NAMES = Arrays.asList("k_e", "k_b", "k_h", "k_a", "k_g", "k_c", "k_f", "k_d");
+   @TempDir
+   static File scripts;
+   @TempDir
+   File dir;
+
+   @BeforeAll
+   static void write() throws Exception {
+      for (int i = 0; i < NAMES.size(); i++) {
+         Files.write(new File(scripts, NAMES.get(i) + ".ncs").toPath(), TestScripts.printInteger(i * 100));
+      }
+   }
+
+   private List<String> args(File out, String... extra) {
+      List<String> args = new ArrayList<>(Arrays.asList("--nwscript", NWSCRIPT.getAbsolutePath(), "--quiet",
+            "-j", "4", "--queue-depth", "2", "-o", out.getAbsolutePath()));
+      args.addAll(Arrays.asList(extra));
+      for (String name : NAMES) {
+         args.add("-i");
+         args.add(new File(scripts, name + ".ncs").getAbsolutePath());
+      }
+      return args;
+   }
+
+   /** Scripts in the order {@code --stdout} printed them, from the {@code // <name>.ncs} headers. */
+   private static List<String> scriptHeaders(CliProcess run) {
+      List<String> names = new ArrayList<>();
+      for (String line : run.stdout) {
+         if (line.startsWith("// ") && line.endsWith(".ncs")) {
+            names.add(line.substring(3, line.length() - 4));
+         }
+      }
+      return names;
+   }
+
+   @Test
+   void outputFollowsTheWorklist() throws Exception {
+      File out = new File(this.dir, "out");
+      assertTrue(out.mkdir());
+      CliProcess run = CliProcess.run(this.dir, this.args(out, "--stdout").toArray(new String[0]));
+      assertEquals(0, run.exitCode, run.toString());
+      assertEquals(NAMES, scriptHeaders(run));
+
+      run = CliProcess.run(this.dir, this.args(out).toArray(new String[0]));
+      assertEquals(0, run.exitCode, run.toString());
+      for (int i = 0; i < NAMES.size(); i++) {
+         String code = new String(Files.readAllBytes(new File(out, NAMES.get(i) + ".nss").toPath()),
+               StandardCharsets.ISO_8859_1);
+         assertTrue(code.contains("PrintInteger(" + i * 100 + ")"), code);
+      }
+   }
+
+   @Test
+   void failFastStopsAtTheFirstFailure() throws Exception {
+      File out = new File(this.dir, "out");
+      assertTrue(out.mkdir());
+      // The third script fails because its output exists and --overwrite is not given
+      File blocked = new File(out, NAMES.get(2) + ".nss");
+      Files.write(blocked.toPath(), "keep".getBytes(StandardCharsets.US_ASCII));
+      CliProcess run = CliProcess.run(this.dir, this.args(out, "--fail-fast").toArray(new String[0]));
+      assertEquals(1, run.exitCode, run.toString());
+      assertTrue(run.stderr.contains("Output file already exists: " + blocked.getAbsolutePath()), run.toString());
+      assertTrue(new File(out, NAMES.get(0) + ".nss").exists());
+      assertTrue(new File(out, NAMES.get(1) + ".nss").exists());
+      assertEquals("keep", new String(Files.readAllBytes(blocked.toPath()), StandardCharsets.US_ASCII));
+      for (String name : NAMES.subList(3, NAMES.size())) {
+         assertFalse(new File(out, name + ".nss").exists(), name + " was written after the failure");
+      }
+   }
+
+   @Test
+   void failureWithoutFailFastDoesNotStopTheRun() throws Exception {
+      File out = new File(this.dir, "out");
+      assertTrue(out.mkdir());
+      Files.write(new File(out, NAMES.get(2) + ".nss").toPath(), "keep".getBytes(StandardCharsets.US_ASCII));
+      CliProcess run = CliProcess.run(this.dir, this.args(out).toArray(new String[0]));
+      assertTrue(run.stderr.contains("Output file already exists"), run.toString());
+      for (String name : NAMES) {
+         assertTrue(new File(out, name + ".nss").exists(), name);
+      }
+   }
+}
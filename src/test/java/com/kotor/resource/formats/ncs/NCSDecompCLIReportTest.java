@@ -0,0 +1,165 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The JSON-lines records {@code --report} writes, one per input in worklist order.
+ */
+class NCSDecompCLIReportTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   @TempDir
+   File dir;
+
+   private File script(String name, byte[] ncs) throws Exception {
+      File file = new File(this.dir, name);
+      Files.write(file.toPath(), ncs);
+      return file;
+   }
+
+   private List<Map<?, ?>> report(String... args) throws Exception {
+      File report = new File(this.dir, "report.jsonl");
+      List<String> cmd = new ArrayList<>(Arrays.asList("--nwscript", NWSCRIPT.getAbsolutePath(), "--quiet",
+            "--report", report.getAbsolutePath()));
+      cmd.addAll(Arrays.asList(args));
+      CliProcess run = CliProcess.run(this.dir, cmd.toArray(new String[0]));
+      List<Map<?, ?>> records = new ArrayList<>();
+      for (String line : Files.readAllLines(report.toPath(), StandardCharsets.UTF_8)) {
+         records.add((Map<?, ?>) Json.parse(line));
+      }
+      assertTrue(records.size() > 0, run.toString());
+      return records;
+   }
+
+   private static long number(Map<?, ?> record, String key) {
+      return ((Number) record.get(key)).longValue();
+   }
+
+   /** Every stage has a non-negative time, and an allocation figure when the JVM counts them. */
+   private static void assertStages(Map<?, ?> record, String... expected) {
+      Map<?, ?> stages = (Map<?, ?>) record.get("stages");
+      assertEquals(Arrays.asList(expected), new ArrayList<Object>(stages.keySet()));
+      boolean counted = allocationsCounted();
+      for (Object stage : stages.values()) {
+         Map<?, ?> figures = (Map<?, ?>) stage;
+         assertTrue(((Number) figures.get("ms")).doubleValue() >= 0.0, figures.toString());
+         assertEquals(counted, figures.containsKey("allocatedBytes"), figures.toString());
+         if (counted) {
+            assertTrue(number(figures, "allocatedBytes") >= 0L, figures.toString());
+         }
+      }
+      assertTrue(((Number) record.get("totalMs")).doubleValue() >= 0.0);
+   }
+
+   private static boolean allocationsCounted() {
+      StageTimings timings = new StageTimings("probe");
+      timings.begin(StageTimings.DECODE);
+      timings.end();
+      return !timings.allocatedBytes().isEmpty();
+   }
+
+   @Test
+   void successRecords() throws Exception {
+      File print = this.script("k_print.ncs", TestScripts.printInteger(7));
+      File helpers = this.script("k_helpers.ncs", TestScripts.helpers());
+      File out = new File(this.dir, "out");
+      assertTrue(out.mkdir());
+      List<Map<?, ?>> records = this.report("-o", out.getAbsolutePath(), "-i", print.getAbsolutePath(), "-i",
+            helpers.getAbsolutePath());
+      assertEquals(2, records.size());
+
+      Map<?, ?> record = records.get(0);
+      assertEquals(print.getAbsolutePath(), record.get("file"));
+      assertEquals(new File(out, "k_print.nss").getAbsolutePath(), record.get("output"));
+      assertEquals("success", record.get("status"));
+      assertTrue(record.containsKey("failedStage"));
+      assertNull(record.get("failedStage"));
+      assertFalse(record.containsKey("message"));
+      assertEquals(Boolean.FALSE, record.get("cached"));
+      assertEquals(34L, number(record, "bytes"));
+      assertEquals(6L, number(record, "instructions"));
+      assertEquals(0L, number(record, "subroutines"));
+      assertEquals(0L, number(record, "typedSubroutines"));
+
+      record = records.get(1);
+      assertEquals(helpers.getAbsolutePath(), record.get("file"));
+      assertEquals("success", record.get("status"));
+      assertEquals(186L, number(record, "bytes"));
+      assertEquals(33L, number(record, "instructions"));
+      assertEquals(2L, number(record, "subroutines"));
+      assertEquals(2L, number(record, "typedSubroutines"));
+      assertTrue(number((Map<?, ?>) record.get("counters"), DecompileStats.NODES) > 0L, record.toString());
+      assertStages(record, StageTimings.DECODE, StageTimings.PARSE, StageTimings.ANALYSIS, StageTimings.DESTINATIONS,
+            StageTimings.DEADCODE, StageTimings.GLOBALS, StageTimings.PROTOTYPE, StageTimings.TYPES,
+            StageTimings.MAINPASS, StageTimings.GENERATE);
+   }
+
+   @Test
+   void stubRecordNamesTheStage() throws Exception {
+      File helpers = this.script("k_helpers.ncs", TestScripts.helpers());
+      List<Map<?, ?>> records = this.report("--step-budget", "1", "-o", new File(this.dir, "k_helpers.nss").getPath(),
+            "-i", helpers.getAbsolutePath());
+      assertEquals(1, records.size());
+      Map<?, ?> record = records.get(0);
+      assertEquals("stub", record.get("status"));
+      assertEquals(StageTimings.PROTOTYPE, record.get("failedStage"));
+      assertTrue(record.get("message").toString().contains("step limit of 1"), record.toString());
+      assertEquals(33L, number(record, "instructions"));
+      assertEquals(-1L, number(record, "subroutines"));
+      assertEquals(-1L, number(record, "typedSubroutines"));
+      assertStages(record, StageTimings.DECODE, StageTimings.PARSE, StageTimings.ANALYSIS, StageTimings.DESTINATIONS,
+            StageTimings.DEADCODE, StageTimings.GLOBALS, StageTimings.PROTOTYPE, StageTimings.GENERATE);
+   }
+
+   @Test
+   void failedRecordHasNoStats() throws Exception {
+      File helpers = this.script("k_helpers.ncs", TestScripts.helpers());
+      File existing = this.script("k_helpers.nss", new byte[] { 'x' });
+      List<Map<?, ?>> records = this.report("-o", existing.getAbsolutePath(), "-i", helpers.getAbsolutePath());
+      assertEquals(1, records.size());
+      Map<?, ?> record = records.get(0);
+      assertEquals("failed", record.get("status"));
+      assertTrue(record.containsKey("output"));
+      assertNull(record.get("output"));
+      assertTrue(record.get("message").toString().contains("Output file already exists"), record.toString());
+      assertEquals(186L, number(record, "bytes"));
+      assertFalse(record.containsKey("failedStage"));
+      assertFalse(record.containsKey("instructions"));
+      assertFalse(record.containsKey("stages"));
+   }
+
+   @Test
+   void recordsFollowTheWorklist() throws Exception {
+      List<String> args = new ArrayList<>(Arrays.asList("-j", "4", "-o", this.dir.getAbsolutePath()));
+      List<String> expected = new ArrayList<>();
+      for (int i = 9; i >= 0; i--) {
+         File file = this.script("k_" + i + ".ncs", i % 2 == 0 ? TestScripts.helpers() : TestScripts.printInteger(i));
+         args.add("-i");
+         args.add(file.getAbsolutePath());
+         expected.add(file.getAbsolutePath());
+      }
+      List<String> files = new ArrayList<>();
+      for (Map<?, ?> record : this.report(args.toArray(new String[0]))) {
+         files.add(record.get("file").toString());
+      }
+      assertEquals(expected, files);
+   }
+}
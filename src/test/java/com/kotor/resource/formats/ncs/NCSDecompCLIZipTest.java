@@ -0,0 +1,188 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The {@code --zip} archive: entry names keep the input hierarchy, {@code --zip-store} switches
+ * the method, and the entries hold the same sources a directory run writes.
+ */
+class NCSDecompCLIZipTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   private static final Charset OUTPUT = Charset.forName("Windows-1252");
+   @TempDir
+   File dir;
+
+   /** Writes the input tree and returns its root. */
+   private File inputs() throws IOException {
+      File in = new File(this.dir, "in");
+      File sub = new File(in, "sub");
+      assertTrue(sub.mkdirs());
+      Files.write(new File(in, "k_top.ncs").toPath(), TestScripts.printInteger(1));
+      Files.write(new File(sub, "k_nested.ncs").toPath(), TestScripts.printInteger(2));
+      return in;
+   }
+
+   private CliProcess run(String... extra) throws Exception {
+      String[] base = { "--nwscript", NWSCRIPT.getAbsolutePath(), "--quiet", "-r", "-i",
+            new File(this.dir, "in").getAbsolutePath() };
+      String[] args = Arrays.copyOf(base, base.length + extra.length);
+      System.arraycopy(extra, 0, args, base.length, extra.length);
+      return CliProcess.run(this.dir, args);
+   }
+
+   /** Entry name to contents, checking every entry's method on the way. */
+   private static Map<String, String> entries(File archive, int method) throws IOException {
+      Map<String, String> entries = new LinkedHashMap<>();
+      try (ZipFile zip = new ZipFile(archive)) {
+         Enumeration<? extends ZipEntry> e = zip.entries();
+         while (e.hasMoreElements()) {
+            ZipEntry entry = e.nextElement();
+            assertEquals(method, entry.getMethod(), entry.getName());
+            try (InputStream in = zip.getInputStream(entry)) {
+               ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+               byte[] buffer = new byte[4096];
+               int n;
+               while ((n = in.read(buffer)) != -1) {
+                  bytes.write(buffer, 0, n);
+               }
+               entries.put(entry.getName(), new String(bytes.toByteArray(), OUTPUT));
+            }
+         }
+      }
+      return entries;
+   }
+
+   @Test
+   void entriesKeepTheHierarchyAndMatchDirectoryOutput() throws Exception {
+      this.inputs();
+      File archive = new File(this.dir, "out.zip");
+      CliProcess run = this.run("--zip", archive.getAbsolutePath());
+      assertEquals(0, run.exitCode, run.toString());
+      Map<String, String> entries = entries(archive, ZipEntry.DEFLATED);
+      assertEquals(2, entries.size(), entries.keySet().toString());
+      assertTrue(entries.containsKey("k_top.nss"), entries.keySet().toString());
+      assertTrue(entries.containsKey("sub/k_nested.nss"), entries.keySet().toString());
+
+      File out = new File(this.dir, "out");
+      assertTrue(out.mkdir());
+      run = this.run("-o", out.getAbsolutePath());
+      assertEquals(0, run.exitCode, run.toString());
+      assertEquals(new String(Files.readAllBytes(new File(out, "k_top.nss").toPath()), OUTPUT), entries.get("k_top.nss"));
+      assertEquals(new String(Files.readAllBytes(new File(out, "sub/k_nested.nss").toPath()), OUTPUT),
+            entries.get("sub/k_nested.nss"));
+      assertTrue(entries.get("sub/k_nested.nss").contains("PrintInteger(2)"), entries.get("sub/k_nested.nss"));
+   }
+
+   /** A MOD capsule holding the given scripts, laid out like {@code CapsuleTest} builds ERFs. */
+   private static byte[] module(Map<String, byte[]> scripts) {
+      int keyList = 160;
+      int resourceList = keyList + scripts.size() * 24;
+      int data = resourceList + scripts.size() * 8;
+      int size = data;
+      for (byte[] ncs : scripts.values()) {
+         size += ncs.length;
+      }
+      ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+      buf.put("MOD V1.0".getBytes(StandardCharsets.US_ASCII));
+      buf.putInt(16, scripts.size());
+      buf.putInt(20, keyList);
+      buf.putInt(24, keyList);
+      buf.putInt(28, resourceList);
+      int i = 0;
+      for (Map.Entry<String, byte[]> e : scripts.entrySet()) {
+         int key = keyList + i * 24;
+         byte[] resref = e.getKey().getBytes(StandardCharsets.US_ASCII);
+         for (int j = 0; j < resref.length; j++) {
+            buf.put(key + j, resref[j]);
+         }
+         buf.putInt(key + 16, i);
+         buf.putShort(key + 20, (short) ResourceEntry.TYPE_NCS);
+         buf.putInt(resourceList + i * 8, data);
+         buf.putInt(resourceList + i * 8 + 4, e.getValue().length);
+         for (byte b : e.getValue()) {
+            buf.put(data++, b);
+         }
+         i++;
+      }
+      return buf.array();
+   }
+
+   @Test
+   void capsuleEntriesGoUnderTheCapsuleName() throws Exception {
+      File in = this.inputs();
+      Map<String, byte[]> scripts = new LinkedHashMap<>();
+      scripts.put("k_cap_a", TestScripts.printInteger(3));
+      scripts.put("k_cap_b", TestScripts.printInteger(4));
+      Files.write(new File(in, "sub/end_m01aa.mod").toPath(), module(scripts));
+      File archive = new File(this.dir, "out.zip");
+      CliProcess run = this.run("--zip", archive.getAbsolutePath());
+      assertEquals(0, run.exitCode, run.toString());
+      Map<String, String> entries = entries(archive, ZipEntry.DEFLATED);
+      assertEquals(4, entries.size(), entries.keySet().toString());
+      assertTrue(entries.get("sub/end_m01aa.mod/k_cap_a.nss").contains("PrintInteger(3)"), entries.toString());
+      assertTrue(entries.get("sub/end_m01aa.mod/k_cap_b.nss").contains("PrintInteger(4)"), entries.toString());
+   }
+
+   @Test
+   void storeWritesUncompressedEntries() throws Exception {
+      this.inputs();
+      File deflated = new File(this.dir, "deflated.zip");
+      File stored = new File(this.dir, "stored.zip");
+      assertEquals(0, this.run("--zip", deflated.getAbsolutePath()).exitCode);
+      CliProcess run = this.run("--zip", stored.getAbsolutePath(), "--zip-store");
+      assertEquals(0, run.exitCode, run.toString());
+      assertEquals(entries(deflated, ZipEntry.DEFLATED), entries(stored, ZipEntry.STORED));
+      try (ZipFile zip = new ZipFile(stored)) {
+         ZipEntry entry = zip.getEntry("k_top.nss");
+         assertNotNull(entry);
+         assertEquals(entry.getSize(), entry.getCompressedSize());
+      }
+   }
+
+   @Test
+   void existingArchiveIsKept() throws Exception {
+      this.inputs();
+      File archive = new File(this.dir, "out.zip");
+      Files.write(archive.toPath(), new byte[] { 1, 2, 3 });
+      CliProcess run = this.run("--zip", archive.getAbsolutePath());
+      assertEquals(1, run.exitCode, run.toString());
+      assertTrue(run.stderr.contains("archive already exists"), run.toString());
+      assertEquals(3L, archive.length());
+   }
+
+   @Test
+   void zipCannotBeCombinedWithOtherOutputs() throws Exception {
+      this.inputs();
+      File archive = new File(this.dir, "out.zip");
+      CliProcess run = this.run("--zip", archive.getAbsolutePath(), "--stdout");
+      assertEquals(1, run.exitCode, run.toString());
+      assertFalse(archive.exists());
+   }
+}
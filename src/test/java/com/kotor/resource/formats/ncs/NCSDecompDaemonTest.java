@@ -0,0 +1,140 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The JSON-lines protocol of {@link NCSDecompDaemon}, driven through {@link NCSDecompDaemon#handle(String)}.
+ */
+class NCSDecompDaemonTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   @TempDir
+   static Path cacheDir;
+   private static String previousCache;
+   private static String base64;
+   private NCSDecompDaemon daemon;
+
+   @BeforeAll
+   static void encode() {
+      // Keep the action table cache out of the home directory
+      previousCache = System.setProperty(UserCache.PROPERTY, cacheDir.toString());
+      base64 = Base64.getEncoder().encodeToString(TestScripts.printInteger(7));
+   }
+
+   @AfterAll
+   static void restore() {
+      if (previousCache != null) {
+         System.setProperty(UserCache.PROPERTY, previousCache);
+      } else {
+         System.clearProperty(UserCache.PROPERTY);
+      }
+   }
+
+   @BeforeEach
+   void start() {
+      this.daemon = new NCSDecompDaemon(new DecompilerOptions(), DecompilerServices.NONE, NWSCRIPT, null);
+   }
+
+   private Map<?, ?> request(String line) {
+      return (Map<?, ?>) Json.parse(this.daemon.handle(line));
+   }
+
+   @Test
+   void pingAnswersWithItsId() {
+      Map<?, ?> response = this.request("{\"id\": 5, \"op\": \"ping\"}");
+      assertEquals(Boolean.TRUE, response.get("ok"));
+      assertEquals(5, ((Number) response.get("id")).intValue());
+   }
+
+   @Test
+   void shutdownEndsTheServeLoop() throws Exception {
+      StringWriter out = new StringWriter();
+      this.daemon.serve(new BufferedReader(new StringReader(
+            "{\"id\": 1, \"op\": \"ping\"}\n\n{\"id\": 2, \"op\": \"shutdown\"}\n{\"id\": 3, \"op\": \"ping\"}\n")), out);
+      String[] lines = out.toString().split("\n");
+      assertEquals(2, lines.length, out.toString());
+      Map<?, ?> last = (Map<?, ?>) Json.parse(lines[1]);
+      assertEquals(2, ((Number) last.get("id")).intValue());
+      assertEquals(Boolean.TRUE, last.get("ok"));
+   }
+
+   @Test
+   void errorsEchoTheId() {
+      Map<?, ?> response = this.request("{\"id\": \"abc\", \"path\": \"no/such/script.ncs\"}");
+      assertEquals(Boolean.FALSE, response.get("ok"));
+      assertEquals("abc", response.get("id"));
+      assertTrue(response.get("error").toString().contains("File not found"), response.toString());
+      assertFalse(response.containsKey("code"), response.toString());
+   }
+
+   @Test
+   void unknownOpIsAnError() {
+      Map<?, ?> response = this.request("{\"id\": 1, \"op\": \"reload\"}");
+      assertEquals(Boolean.FALSE, response.get("ok"));
+      assertEquals("Unknown op: reload", response.get("error"));
+   }
+
+   @Test
+   void unknownGameIsAnError() {
+      Map<?, ?> response = this.request("{\"id\": 1, \"game\": \"k3\", \"bytes\": \"" + base64 + "\"}");
+      assertEquals(Boolean.FALSE, response.get("ok"));
+      assertEquals("Unknown game: k3", response.get("error"));
+   }
+
+   @Test
+   void gameWithoutNwscriptIsAnError() {
+      Map<?, ?> response = this.request("{\"id\": 1, \"game\": \"tsl\", \"bytes\": \"" + base64 + "\"}");
+      assertEquals(Boolean.FALSE, response.get("ok"));
+      assertTrue(response.get("error").toString().contains("TSL"), response.toString());
+   }
+
+   @Test
+   void malformedRequestIsAnError() {
+      Map<?, ?> response = this.request("[1, 2]");
+      assertEquals(Boolean.FALSE, response.get("ok"));
+      assertNull(response.get("id"));
+   }
+
+   @Test
+   void bytesAreDecompiledWithTimings() {
+      Map<?, ?> response = this.request("{\"id\": 1, \"game\": \"k1\", \"bytes\": \"" + base64 + "\"}");
+      assertEquals(Boolean.TRUE, response.get("ok"), response.toString());
+      assertTrue(response.get("code").toString().contains("PrintInteger(7)"), response.toString());
+      assertEquals(Boolean.FALSE, response.get("warm"));
+      Map<?, ?> timings = (Map<?, ?>) response.get("timingsMs");
+      assertTrue(timings.containsKey(StageTimings.DECODE), timings.toString());
+      assertTrue(((Number) response.get("totalMs")).doubleValue() >= 0.0);
+   }
+
+   @Test
+   void secondRequestReusesTheWarmDecompiler() {
+      this.request("{\"id\": 1, \"bytes\": \"" + base64 + "\"}");
+      Map<?, ?> response = this.request("{\"id\": 2, \"bytes\": \"" + base64 + "\"}");
+      assertEquals(Boolean.TRUE, response.get("ok"), response.toString());
+      assertEquals(Boolean.TRUE, response.get("warm"));
+      // Other options need a decompiler of their own
+      response = this.request("{\"id\": 3, \"preferSwitches\": true, \"bytes\": \"" + base64 + "\"}");
+      assertEquals(Boolean.FALSE, response.get("warm"));
+   }
+}
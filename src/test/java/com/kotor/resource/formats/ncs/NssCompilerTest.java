@@ -0,0 +1,419 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Bytecode produced by {@link NssCompiler} for each supported construct, compile, decompile,
+ * compile fixed points, and the constructs it rejects.
+ * <p>
+ * Listings are the decompiler's own {@link Decoder} output with the instruction offsets
+ * left out; jump and call targets are relative, so they still pin the layout down.
+ */
+class NssCompilerTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   @TempDir
+   static Path cacheDir;
+   private static String previousCache;
+   private static NssCompiler compiler;
+   private static ActionsData actions;
+
+   @BeforeAll
+   static void load() throws Exception {
+      // Keep the action table cache out of the home directory
+      previousCache = System.setProperty(UserCache.PROPERTY, cacheDir.toString());
+      compiler = NssCompiler.load(NWSCRIPT);
+      actions = ActionsData.load(NWSCRIPT);
+   }
+
+   @AfterAll
+   static void restore() {
+      if (previousCache != null) {
+         System.setProperty(UserCache.PROPERTY, previousCache);
+      } else {
+         System.clearProperty(UserCache.PROPERTY);
+      }
+   }
+
+   private static List<String> listing(byte[] ncs) throws Exception {
+      String decoded = new Decoder(new BufferedInputStream(new ByteArrayInputStream(ncs)), actions).decode();
+      List<String> lines = new ArrayList<>();
+      for (String instruction : decoded.split(";")) {
+         String[] parts = instruction.trim().split(" ", 3);
+         if (!parts[0].isEmpty()) {
+            lines.add(parts.length > 2 ? parts[0] + " " + parts[2] : parts[0]);
+         }
+      }
+      return lines;
+   }
+
+   private static void assertListing(String source, String... expected) throws Exception {
+      assertEquals(Arrays.asList(expected), listing(compiler.compile("test.nss", source)));
+   }
+
+   private static void assertFixedPoint(String source) throws Exception {
+      byte[] first = compiler.compile("test.nss", source);
+      DecompilerOptions options = new DecompilerOptions();
+      String decompiled = new FileDecompiler(NWSCRIPT, options).decompile("test.ncs", ByteBuffer.wrap(first), options)
+            .code();
+      byte[] second = compiler.compile("decompiled.nss", decompiled);
+      assertArrayEquals(first, second, "recompiled bytecode differs; decompiled source:\n" + decompiled);
+   }
+
+   private static DecompilerException assertRejected(String source) {
+      return assertThrows(DecompilerException.class, () -> compiler.compile("test.nss", source));
+   }
+
+   @Test
+   void emptyMain() throws Exception {
+      assertListing("void main() { }",
+            "T 23",
+            "JSR 0 8",
+            "RETN 0",
+            "RETN 0");
+   }
+
+   @Test
+   void globalsAreInitializedBeforeMain() throws Exception {
+      String source = "int nCount = 2;\n"
+            + "string sTag = \"k_tag\";\n"
+            + "void main() { nCount = nCount + 1; PrintString(sTag); }\n";
+      assertListing(source,
+            "T 131",
+            "JSR 0 8",
+            "RETN 0",
+            "RSADD 3",
+            "CONST 3 2",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "RSADD 5",
+            "CONST 5 \"k_tag\"",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "SAVEBP 0",
+            "JSR 0 16",
+            "RESTOREBP 0",
+            "MOVSP 0 -8",
+            "RETN 0",
+            "CPTOPBP 1 -8 4",
+            "CONST 3 1",
+            "ADD 32",
+            "CPDOWNBP 1 -8 4",
+            "MOVSP 0 -4",
+            "CPTOPBP 1 -4 4",
+            "ACTION 0 1 1",
+            "RETN 0");
+   }
+
+   @Test
+   void subroutineCallAndIfElse() throws Exception {
+      String source = "int Add(int a, int b) { return a + b; }\n"
+            + "void main() {\n"
+            + "   int x = Add(2, 3);\n"
+            + "   if (x > 4) { PrintInteger(x); } else { PrintString(\"small\"); }\n"
+            + "}\n";
+      assertListing(source,
+            "T 166",
+            "JSR 0 8",
+            "RETN 0",
+            // main: return slot reserved, arguments pushed last to first
+            "RSADD 3",
+            "RSADD 3",
+            "CONST 3 3",
+            "CONST 3 2",
+            "JSR 0 83",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "CPTOPSP 1 -4 4",
+            "CONST 3 4",
+            "GT 32",
+            "JZ 0 25",
+            "CPTOPSP 1 -4 4",
+            "ACTION 0 4 1",
+            "JMP 0 20",
+            "CONST 5 \"small\"",
+            "ACTION 0 1 1",
+            "MOVSP 0 -4",
+            "RETN 0",
+            // Add: the return jumps to the epilogue that pops the arguments
+            "CPTOPSP 1 -4 4",
+            "CPTOPSP 1 -12 4",
+            "ADD 32",
+            "CPDOWNSP 1 -16 4",
+            "MOVSP 0 -4",
+            "JMP 0 6",
+            "MOVSP 0 -8",
+            "RETN 0");
+   }
+
+   @Test
+   void forAndWhileLoops() throws Exception {
+      String source = "void main() {\n"
+            + "   int i;\n"
+            + "   for (i = 0; i < 3; i++) { PrintInteger(i); }\n"
+            + "   while (i > 0) { i--; }\n"
+            + "}\n";
+      assertListing(source,
+            "T 160",
+            "JSR 0 8",
+            "RETN 0",
+            "RSADD 3",
+            "CONST 3 0",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "CPTOPSP 1 -4 4",
+            "CONST 3 3",
+            "LT 32",
+            "JZ 0 45",
+            "CPTOPSP 1 -4 4",
+            "ACTION 0 4 1",
+            "CPTOPSP 1 -4 4",
+            "INCISP 3 -8",
+            "MOVSP 0 -4",
+            "JMP 0 -55",
+            "CPTOPSP 1 -4 4",
+            "CONST 3 0",
+            "GT 32",
+            "JZ 0 32",
+            "CPTOPSP 1 -4 4",
+            "DECISP 3 -8",
+            "MOVSP 0 -4",
+            "JMP 0 -42",
+            "MOVSP 0 -4",
+            "RETN 0");
+   }
+
+   @Test
+   void doWhileLoop() throws Exception {
+      assertListing("void main() { int i = 0; do { i++; } while (i < 2); }",
+            "T 99",
+            "JSR 0 8",
+            "RETN 0",
+            "RSADD 3",
+            "CONST 3 0",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "CPTOPSP 1 -4 4",
+            "INCISP 3 -8",
+            "MOVSP 0 -4",
+            "CPTOPSP 1 -4 4",
+            "CONST 3 2",
+            "LT 32",
+            "JZ 0 12",
+            "JMP 0 -42",
+            "MOVSP 0 -4",
+            "RETN 0");
+   }
+
+   @Test
+   void switchComparesACopyOfTheValue() throws Exception {
+      String source = "void main() {\n"
+            + "   int n = Random(3);\n"
+            + "   switch (n) {\n"
+            + "      case 0: PrintString(\"a\"); break;\n"
+            + "      case 1: PrintString(\"b\"); break;\n"
+            + "      default: PrintString(\"c\"); break;\n"
+            + "   }\n"
+            + "}\n";
+      assertListing(source,
+            "T 168",
+            "JSR 0 8",
+            "RETN 0",
+            "RSADD 3",
+            "CONST 3 3",
+            "ACTION 0 0 1",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "CPTOPSP 1 -4 4",
+            "CPTOPSP 1 -4 4",
+            "CONST 3 0",
+            "EQUAL 32",
+            "JNZ 0 34",
+            "CPTOPSP 1 -4 4",
+            "CONST 3 1",
+            "EQUAL 32",
+            "JNZ 0 28",
+            "JMP 0 38",
+            "CONST 5 \"a\"",
+            "ACTION 0 1 1",
+            "JMP 0 38",
+            "CONST 5 \"b\"",
+            "ACTION 0 1 1",
+            "JMP 0 22",
+            "CONST 5 \"c\"",
+            "ACTION 0 1 1",
+            "JMP 0 6",
+            "MOVSP 0 -4",
+            "MOVSP 0 -4",
+            "RETN 0");
+   }
+
+   @Test
+   void actionCallsWithDefaultsAndDeferredStatements() throws Exception {
+      String source = "void main() {\n"
+            + "   object o = GetNearestObjectByTag(\"door\");\n"
+            + "   DelayCommand(1.5, AssignCommand(o, ActionOpenDoor(o)));\n"
+            + "}\n";
+      assertListing(source,
+            "T 143",
+            "JSR 0 8",
+            "RETN 0",
+            "RSADD 6",
+            // Omitted arguments take nwscript.nss defaults: nNth = 1, oTarget = OBJECT_SELF
+            "CONST 3 1",
+            "CONST 6 0",
+            "CONST 5 \"door\"",
+            "ACTION 0 229 3",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "STORE_STATE 16 0 4",
+            "JMP 0 52",
+            "STORE_STATE 16 0 4",
+            "JMP 0 21",
+            "CPTOPSP 1 -4 4",
+            "ACTION 0 43 1",
+            "RETN 0",
+            "CPTOPSP 1 -4 4",
+            "ACTION 0 6 2",
+            "RETN 0",
+            "CONST 4 1.5",
+            "ACTION 0 7 2",
+            "MOVSP 0 -4",
+            "RETN 0");
+   }
+
+   @Test
+   void vectorsTakeThreeSlots() throws Exception {
+      assertListing("void main() { vector v = Vector(1.0, 2.5, -3.0); PrintVector(v, TRUE); }",
+            "T 91",
+            "JSR 0 8",
+            "RETN 0",
+            "RSADD 4",
+            "RSADD 4",
+            "RSADD 4",
+            "CONST 4 -3",
+            "CONST 4 2.5",
+            "CONST 4 1",
+            "ACTION 0 142 3",
+            "CPDOWNSP 1 -24 12",
+            "MOVSP 0 -12",
+            "CONST 3 1",
+            "CPTOPSP 1 -16 12",
+            "ACTION 0 141 2",
+            "MOVSP 0 -12",
+            "RETN 0");
+   }
+
+   @Test
+   void stringConstantsAreStoredUnescaped() throws Exception {
+      byte[] ncs = compiler.compile("test.nss", "void main() { PrintString(\"tab\\there \\\"q\\\"\"); }");
+      byte[] text = "tab\there \"q\"".getBytes(StandardCharsets.ISO_8859_1);
+      // CONST string: opcode 0x04, type 0x05, big-endian length, then the bytes
+      byte[] expected = new byte[4 + text.length];
+      expected[0] = 0x04;
+      expected[1] = 0x05;
+      expected[3] = (byte) text.length;
+      System.arraycopy(text, 0, expected, 4, text.length);
+      assertTrue(indexOf(ncs, expected) >= 0, "CONST string not found in " + listing(ncs));
+   }
+
+   private static int indexOf(byte[] haystack, byte[] needle) {
+      outer:
+      for (int i = 0; i + needle.length <= haystack.length; i++) {
+         for (int j = 0; j < needle.length; j++) {
+            if (haystack[i + j] != needle[j]) {
+               continue outer;
+            }
+         }
+         return i;
+      }
+      return -1;
+   }
+
+   @Test
+   void startingConditionalReservesItsResult() throws Exception {
+      assertListing("int StartingConditional() { return GetIsObjectValid(GetFirstPC()); }",
+            "T 55",
+            "RSADD 3",
+            "JSR 0 8",
+            "RETN 0",
+            "ACTION 0 548 0",
+            "ACTION 0 42 1",
+            "CPDOWNSP 1 -8 4",
+            "MOVSP 0 -4",
+            "JMP 0 6",
+            "RETN 0");
+   }
+
+   @Test
+   void decompiledScriptsRecompileToTheSameBytes() throws Exception {
+      assertFixedPoint("void main() { }");
+      assertFixedPoint("int nCount = 2;\nstring sTag = \"k_tag\";\n"
+            + "void main() { nCount = nCount + 1; PrintString(sTag); }");
+      assertFixedPoint("int Add(int a, int b) { return a + b; }\n"
+            + "void main() { int x = Add(2, 3); if (x > 4) { PrintInteger(x); } else { PrintString(\"small\"); } }");
+      assertFixedPoint("void main() { int i; for (i = 0; i < 3; i++) { PrintInteger(i); } while (i > 0) { i--; } }");
+      assertFixedPoint("void main() { int n = Random(3); switch (n) { case 0: PrintString(\"a\"); break; "
+            + "case 1: PrintString(\"b\"); break; default: PrintString(\"c\"); break; } }");
+      assertFixedPoint("void main() { object o = GetNearestObjectByTag(\"door\"); "
+            + "DelayCommand(1.5, AssignCommand(o, ActionOpenDoor(o))); }");
+      assertFixedPoint("void main() { vector v = Vector(1.0, 2.5, -3.0); float f = v.x; PrintFloat(f); }");
+      assertFixedPoint("int StartingConditional() { return GetIsObjectValid(GetFirstPC()); }");
+   }
+
+   private static DecompilerException assertUnsupported(String source) {
+      return assertThrows(NssCompiler.UnsupportedConstructException.class, () -> compiler.compile("test.nss", source));
+   }
+
+   @Test
+   void structsAreUnsupported() {
+      // The declarations the decompiler writes for structures kept on the stack
+      DecompilerException e = assertUnsupported("struct structtype1 {\n\tint int1;\n\tfloat float1;\n};\n\n"
+            + "void main() { }");
+      assertTrue(e.getMessage().contains("struct"), e.getMessage());
+      e = assertUnsupported("void main() { struct structtype1 s; }");
+      assertTrue(e.getMessage().contains("test.nss:1"), e.getMessage());
+   }
+
+   @Test
+   void includesAreUnsupported() {
+      DecompilerException e = assertUnsupported("#include \"k_inc_utility\"\nvoid main() { }");
+      assertTrue(e.getMessage().contains("#include"), e.getMessage());
+   }
+
+   @Test
+   void errorsAreNotReportedAsUnsupported() throws Exception {
+      DecompilerException e = assertRejected("void main() { int i = \"text\"; }");
+      assertFalse(e instanceof NssCompiler.UnsupportedConstructException);
+   }
+
+   @Test
+   void rejectsUnknownFunctionsAndTypeErrors() {
+      assertTrue(assertRejected("void main() { NoSuchFunction(); }").getMessage().contains("NoSuchFunction"));
+      assertTrue(assertRejected("void main() { int i = \"text\"; }").getMessage().contains("test.nss:1"));
+      assertTrue(assertRejected("void helper() { }").getMessage().contains("no main()"));
+   }
+}
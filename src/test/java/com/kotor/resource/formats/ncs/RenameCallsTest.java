@@ -0,0 +1,59 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Renaming of generic subroutine names to the canonical names of the signature database.
+ */
+class RenameCallsTest {
+   private static Map<String, String> renames(String... pairs) {
+      Map<String, String> map = new HashMap<>();
+      for (int i = 0; i < pairs.length; i += 2) {
+         map.put(pairs[i], pairs[i + 1]);
+      }
+      return map;
+   }
+
+   @Test
+   void renamesDeclarationsAndCalls() {
+      String code = "int sub1(int a);\nvoid main() {\n   int x = sub1(2) + sub1 (3);\n}\nint sub1(int a) {\n   return a;\n}\n";
+      String expected = "int Cost(int a);\nvoid main() {\n   int x = Cost(2) + sub1 (3);\n}\nint Cost(int a) {\n   return a;\n}\n";
+      assertEquals(expected, FileDecompiler.renameCalls(code, renames("sub1", "Cost")));
+   }
+
+   @Test
+   void leavesLongerNamesAndVariablesAlone() {
+      String code = "sub10(sub1); int sub1x = sub1;";
+      assertEquals(code, FileDecompiler.renameCalls(code, renames("sub1", "Cost")));
+   }
+
+   @Test
+   void leavesStringsAndCommentsAlone() {
+      String code = "PrintString(\"sub1(\\\" sub1(\"); // sub1(\n/* sub1( */ sub1(0);";
+      String expected = "PrintString(\"sub1(\\\" sub1(\"); // sub1(\n/* sub1( */ Cost(0);";
+      assertEquals(expected, FileDecompiler.renameCalls(code, renames("sub1", "Cost")));
+   }
+
+   @Test
+   void renamesInOnePass() {
+      // A new name that is itself a key is not renamed a second time
+      String code = "sub1(); sub2();";
+      assertEquals("sub2(); Helper();", FileDecompiler.renameCalls(code, renames("sub1", "sub2", "sub2", "Helper")));
+   }
+
+   @Test
+   void keepsNumericLiteralsWhole() {
+      String code = "f(0x1F); f(1e5);";
+      assertEquals("g(0x1F); g(1e5);", FileDecompiler.renameCalls(code, renames("f", "g", "x1F", "bad", "e5", "bad")));
+   }
+}
@@ -0,0 +1,79 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Glob matching of {@link ResrefFilter}.
+ */
+class ResrefFilterTest {
+   private static ResrefFilter filter(String... globs) {
+      return ResrefFilter.of(Arrays.asList(globs));
+   }
+
+   @Test
+   void noGlobsSelectsEverything() {
+      assertSame(ResrefFilter.ALL, ResrefFilter.of(Collections.<String>emptyList()));
+      assertTrue(ResrefFilter.ALL.isAll());
+      assertTrue(ResrefFilter.ALL.matches("k_act_com"));
+      assertEquals("*", ResrefFilter.ALL.toString());
+   }
+
+   @Test
+   void starMatchesAnyRun() {
+      ResrefFilter f = filter("k_act_*");
+      assertFalse(f.isAll());
+      assertTrue(f.matches("k_act_com"));
+      assertTrue(f.matches("k_act_"));
+      assertFalse(f.matches("k_ai_master"));
+      assertFalse(f.matches("xk_act_com"));
+   }
+
+   @Test
+   void questionMarkMatchesOneCharacter() {
+      ResrefFilter f = filter("k_pdan_?1");
+      assertTrue(f.matches("k_pdan_a1"));
+      assertFalse(f.matches("k_pdan_1"));
+      assertFalse(f.matches("k_pdan_ab1"));
+   }
+
+   @Test
+   void matchingIgnoresCase() {
+      assertTrue(filter("K_ACT_*").matches("k_act_com"));
+      assertTrue(filter("k_act_*").matches("K_Act_Com"));
+   }
+
+   @Test
+   void scriptExtensionIsIgnored() {
+      ResrefFilter f = filter("k_act_*.NCS");
+      assertTrue(f.matches("k_act_com"));
+   }
+
+   @Test
+   void otherCharactersAreLiteral() {
+      ResrefFilter f = filter("a.b+c[1]");
+      assertTrue(f.matches("a.b+c[1]"));
+      assertFalse(f.matches("axbbc1"));
+   }
+
+   @Test
+   void anyGlobMaySelect() {
+      ResrefFilter f = filter("k_act_*", "*_ud");
+      assertTrue(f.matches("k_act_com"));
+      assertTrue(f.matches("n_guard_ud"));
+      assertFalse(f.matches("n_guard_sp"));
+      assertEquals("k_act_* *_ud", f.toString());
+   }
+}
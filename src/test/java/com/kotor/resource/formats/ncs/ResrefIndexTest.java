@@ -0,0 +1,269 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Building, reloading and incremental updates of {@link ResrefIndex} over a small install
+ * made of one KEY with one BIF and module capsules.
+ */
+class ResrefIndexTest {
+   /** Modification time given to every file written, so later writes are told apart. */
+   private static final long EPOCH = 1500000000000L;
+   @TempDir
+   static Path cacheDir;
+   private static String previousCache;
+   @TempDir
+   File install;
+   private File indexFile;
+   private long clock = EPOCH;
+
+   @BeforeAll
+   static void isolateCache() {
+      previousCache = System.setProperty(UserCache.PROPERTY, cacheDir.toString());
+   }
+
+   @AfterAll
+   static void restore() {
+      if (previousCache != null) {
+         System.setProperty(UserCache.PROPERTY, previousCache);
+      } else {
+         System.clearProperty(UserCache.PROPERTY);
+      }
+   }
+
+   @BeforeEach
+   void writeInstall() throws IOException {
+      this.indexFile = new File(this.install.getParentFile(), this.install.getName() + "-index.tsv");
+      this.writeBif(new byte[] {1, 2, 3}, new byte[] {4, 5});
+      this.writeKey("k_act_com", "k_ai_master");
+      this.writeCapsule("modules/danm13.mod", "k_pdan_trig", new byte[] {6, 7});
+   }
+
+   private static ByteBuffer buffer(int size) {
+      return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   private static void ascii(ByteBuffer buf, int offset, String text) {
+      byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+      for (int i = 0; i < bytes.length; i++) {
+         buf.put(offset + i, bytes[i]);
+      }
+   }
+
+   private File write(String path, ByteBuffer buf) throws IOException {
+      File file = new File(this.install, path);
+      Files.createDirectories(file.getParentFile().toPath());
+      Files.write(file.toPath(), buf.array());
+      this.clock += 10000L;
+      assertTrue(file.setLastModified(this.clock));
+      return file;
+   }
+
+   /** A KEY listing {@code data/scripts.bif} and one script per resref, in BIF order. */
+   private File writeKey(String... resrefs) throws IOException {
+      String bif = "data\\scripts.bif";
+      int keyTable = 64 + 12 + bif.length() + 1;
+      ByteBuffer buf = buffer(keyTable + resrefs.length * 22);
+      ascii(buf, 0, "KEY V1  ");
+      buf.putInt(8, 1);
+      buf.putInt(12, resrefs.length);
+      buf.putInt(16, 64);
+      buf.putInt(20, keyTable);
+      buf.putInt(64 + 4, 64 + 12);
+      buf.putShort(64 + 8, (short) (bif.length() + 1));
+      ascii(buf, 64 + 12, bif);
+      for (int i = 0; i < resrefs.length; i++) {
+         ascii(buf, keyTable + i * 22, resrefs[i]);
+         buf.putShort(keyTable + i * 22 + 16, (short) ResourceEntry.TYPE_NCS);
+         buf.putInt(keyTable + i * 22 + 18, i);
+      }
+      return this.write("chitin.key", buf);
+   }
+
+   private File writeBif(byte[]... resources) throws IOException {
+      int data = 20 + resources.length * 16;
+      int size = data;
+      for (byte[] r : resources) {
+         size += r.length;
+      }
+      ByteBuffer buf = buffer(size);
+      ascii(buf, 0, "BIFFV1  ");
+      buf.putInt(8, resources.length);
+      buf.putInt(16, 20);
+      for (int i = 0; i < resources.length; i++) {
+         buf.putInt(20 + i * 16, i);
+         buf.putInt(20 + i * 16 + 4, data);
+         buf.putInt(20 + i * 16 + 8, resources[i].length);
+         buf.putInt(20 + i * 16 + 12, ResourceEntry.TYPE_NCS);
+         for (byte b : resources[i]) {
+            buf.put(data++, b);
+         }
+      }
+      return this.write("data/scripts.bif", buf);
+   }
+
+   /** An ERF holding one script. */
+   private File writeCapsule(String path, String resref, byte[] script) throws IOException {
+      ByteBuffer buf = buffer(160 + 24 + 8 + script.length);
+      ascii(buf, 0, "MOD V1.0");
+      buf.putInt(16, 1);
+      buf.putInt(24, 160);
+      buf.putInt(28, 160 + 24);
+      ascii(buf, 160, resref);
+      buf.putShort(160 + 20, (short) ResourceEntry.TYPE_NCS);
+      buf.putInt(160 + 24, 160 + 24 + 8);
+      buf.putInt(160 + 24 + 4, script.length);
+      for (int i = 0; i < script.length; i++) {
+         buf.put(160 + 24 + 8 + i, script[i]);
+      }
+      return this.write(path, buf);
+   }
+
+   private static ResrefIndex.Row only(ResrefIndex index, String resref) {
+      List<ResrefIndex.Row> rows = index.find(resref, ResourceEntry.TYPE_NCS);
+      assertEquals(1, rows.size(), resref);
+      return rows.get(0);
+   }
+
+   private static byte[] bytes(ResourceEntry entry) {
+      ByteBuffer data = entry.data();
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      return bytes;
+   }
+
+   @Test
+   void buildsIndexOfKeyAndCapsules() throws IOException {
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertTrue(this.indexFile.isFile());
+      assertEquals(3, index.size());
+      assertEquals(3, index.containerCount());
+      assertEquals(2, index.rebuiltCount());
+
+      ResrefIndex.Row row = only(index, "K_AI_MASTER");
+      assertEquals("data/scripts.bif", row.container());
+      assertEquals(HashUtil.calculateSHA256(new byte[] {4, 5}), row.sha256());
+      assertArrayEquals(new byte[] {4, 5}, bytes(index.open(row)));
+      ResrefIndex.Row capsule = only(index, "k_pdan_trig");
+      assertEquals("modules/danm13.mod", capsule.container());
+      assertArrayEquals(new byte[] {6, 7}, bytes(index.open(capsule)));
+      assertEquals(2, index.find(ResrefFilter.of(Arrays.asList("k_a*")), ResourceEntry.TYPE_NCS).size());
+   }
+
+   @Test
+   void loadReadsWhatUpdateWrote() throws IOException {
+      ResrefIndex built = ResrefIndex.update(this.install, this.indexFile);
+      ResrefIndex loaded = ResrefIndex.load(this.install, this.indexFile);
+      assertEquals(built.size(), loaded.size());
+      assertEquals(built.containerCount(), loaded.containerCount());
+      assertEquals(only(built, "k_act_com").sha256(), only(loaded, "k_act_com").sha256());
+   }
+
+   @Test
+   void unchangedInstallIsNotReadAgain() throws IOException {
+      ResrefIndex.update(this.install, this.indexFile);
+      long written = this.indexFile.lastModified();
+      assertTrue(this.indexFile.setLastModified(written - 60000L));
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(0, index.rebuiltCount());
+      assertEquals(3, index.size());
+      assertEquals(written - 60000L, this.indexFile.lastModified());
+   }
+
+   @Test
+   void changedCapsuleIsReadAgain() throws IOException {
+      ResrefIndex.update(this.install, this.indexFile);
+      this.writeCapsule("modules/danm13.mod", "k_pdan_trig", new byte[] {8, 9, 10});
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(1, index.rebuiltCount());
+      assertEquals(HashUtil.calculateSHA256(new byte[] {8, 9, 10}), only(index, "k_pdan_trig").sha256());
+      assertEquals(HashUtil.calculateSHA256(new byte[] {8, 9, 10}),
+            only(ResrefIndex.load(this.install, this.indexFile), "k_pdan_trig").sha256());
+   }
+
+   @Test
+   void addedAndRemovedCapsulesAreNoticed() throws IOException {
+      ResrefIndex.update(this.install, this.indexFile);
+      File added = this.writeCapsule("modules/danm14aa.mod", "k_pdan_door", new byte[] {11});
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(1, index.rebuiltCount());
+      assertEquals(4, index.size());
+
+      assertTrue(added.delete());
+      index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(0, index.rebuiltCount());
+      assertEquals(3, index.size());
+      assertTrue(ResrefIndex.load(this.install, this.indexFile).find("k_pdan_door", ResourceEntry.TYPE_NCS).isEmpty());
+   }
+
+   @Test
+   void changedKeyReusesHashesOfUnchangedBifs() throws IOException {
+      ResrefIndex first = ResrefIndex.update(this.install, this.indexFile);
+      String stale = only(first, "k_act_com").sha256();
+      // Same size and stamp, different bytes: only a reused hash can still be the old one
+      File bif = new File(this.install, "data/scripts.bif");
+      long stamp = bif.lastModified();
+      this.writeBif(new byte[] {9, 9, 9}, new byte[] {4, 5});
+      assertTrue(bif.setLastModified(stamp));
+      this.writeKey("k_act_com", "k_ai_master");
+
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(1, index.rebuiltCount());
+      assertEquals(stale, only(index, "k_act_com").sha256());
+   }
+
+   @Test
+   void changedBifIsReadAgain() throws IOException {
+      ResrefIndex.update(this.install, this.indexFile);
+      this.writeBif(new byte[] {9, 9, 9}, new byte[] {4, 5});
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(1, index.rebuiltCount());
+      assertEquals(HashUtil.calculateSHA256(new byte[] {9, 9, 9}), only(index, "k_act_com").sha256());
+   }
+
+   @Test
+   void unreadableIndexIsRebuilt() throws IOException {
+      Files.write(this.indexFile.toPath(), Arrays.asList("something else"), StandardCharsets.UTF_8);
+      assertThrows(IOException.class, () -> ResrefIndex.load(this.install, this.indexFile));
+      ResrefIndex index = ResrefIndex.update(this.install, this.indexFile);
+      assertEquals(2, index.rebuiltCount());
+      assertEquals(3, ResrefIndex.load(this.install, this.indexFile).size());
+   }
+
+   @Test
+   void defaultFilesAreKeptPerInstall() throws IOException {
+      File other = new File(this.install, "copy of install");
+      File mine = ResrefIndex.defaultFile(this.install);
+      File theirs = ResrefIndex.defaultFile(other);
+      assertEquals(UserCache.directory("index"), mine.getParentFile());
+      assertNotEquals(mine, theirs);
+      assertTrue(theirs.getName().startsWith("copy_of_install-"), theirs.getName());
+      assertTrue(theirs.getName().endsWith(".tsv"), theirs.getName());
+      assertEquals(mine, ResrefIndex.defaultFile(new File(this.install, "data/..")));
+   }
+}
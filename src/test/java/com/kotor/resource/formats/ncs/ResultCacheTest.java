@@ -0,0 +1,155 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.kotor.resource.formats.ncs.analysis.SignatureDatabase;
+import com.kotor.resource.formats.ncs.analysis.SubroutineSignature;
+import com.kotor.resource.formats.ncs.utils.Type;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Entries, keys and store policy of {@link ResultCache}.
+ */
+class ResultCacheTest {
+   private static final File NWSCRIPT = new File("src/main/resources/k1_nwscript.nss");
+   private static final byte[] NCS = { 'N', 'C', 'S', ' ', 'V', '1', '.', '0' };
+   @TempDir
+   static Path userCache;
+   private static String previousCache;
+   @TempDir
+   File dir;
+
+   @BeforeAll
+   static void redirectUserCache() {
+      // Keep the action table cache out of the home directory
+      previousCache = System.setProperty(UserCache.PROPERTY, userCache.toString());
+   }
+
+   @AfterAll
+   static void restore() {
+      if (previousCache != null) {
+         System.setProperty(UserCache.PROPERTY, previousCache);
+      } else {
+         System.clearProperty(UserCache.PROPERTY);
+      }
+   }
+
+   private static long entries(File root) throws IOException {
+      if (!root.isDirectory()) {
+         return 0L;
+      }
+      try (Stream<Path> files = Files.walk(root.toPath())) {
+         return files.filter(p -> p.toString().endsWith(".nss")).count();
+      }
+   }
+
+   @Test
+   void storedEntryReadsBack() {
+      ResultCache cache = new ResultCache(this.dir);
+      String key = cache.key(NCS, "nwscript", new DecompilerOptions());
+      assertNull(cache.get(key));
+
+      Map<String, List<String>> variables = new LinkedHashMap<>();
+      variables.put("main", Arrays.asList("int int1", "string string2"));
+      variables.put("sub1", Collections.singletonList("float float1"));
+      cache.put(key, "void main() {\n}\n", variables);
+
+      ResultCache.Entry entry = cache.get(key);
+      assertNotNull(entry);
+      assertEquals("void main() {\n}\n", entry.code());
+      assertEquals(variables, entry.variables());
+      assertEquals(1, cache.hits());
+      assertEquals(1, cache.misses());
+      // Another instance over the same directory sees the entry
+      assertNotNull(new ResultCache(this.dir).get(key));
+   }
+
+   @Test
+   void keyIsStableForTheSameInput() {
+      ResultCache cache = new ResultCache(this.dir);
+      DecompilerOptions options = new DecompilerOptions();
+      assertEquals(cache.key(NCS, "nwscript", options), cache.key(NCS.clone(), "nwscript", new DecompilerOptions()));
+   }
+
+   @Test
+   void keyChangesWithEveryInput() {
+      ResultCache cache = new ResultCache(this.dir);
+      DecompilerOptions options = new DecompilerOptions();
+      String base = cache.key(NCS, "nwscript", options);
+      byte[] other = NCS.clone();
+      other[7] = '1';
+      assertNotEquals(base, cache.key(other, "nwscript", options));
+      assertNotEquals(base, cache.key(NCS, "other nwscript", options));
+      assertNotEquals(base, cache.key(NCS, "nwscript", options.withK2(!options.isK2())));
+      assertNotEquals(base, cache.key(NCS, "nwscript", options.withPreferSwitches(!options.preferSwitches())));
+      assertNotEquals(base, cache.key(NCS, "nwscript", options.withStrictSignatures(!options.strictSignatures())));
+      assertNotEquals(base, cache.key(NCS, "nwscript", options.withSubroutineCache(!options.subroutineCache())));
+   }
+
+   @Test
+   void keyChangesWithTheSignatureDatabaseContents() {
+      ResultCache cache = new ResultCache(this.dir);
+      DecompilerOptions options = new DecompilerOptions();
+      SignatureDatabase db = new SignatureDatabase();
+      String empty = cache.key(NCS, "nwscript", options.withSignatureDatabase(db));
+      assertNotEquals(cache.key(NCS, "nwscript", options), empty);
+      db.put("AAAA", new SubroutineSignature("UT_Helper", Type.declared(Type.VT_INTEGER),
+            Collections.<Type>emptyList()));
+      assertNotEquals(empty, cache.key(NCS, "nwscript", options.withSignatureDatabase(db)));
+   }
+
+   @Test
+   void completeDecompilesAreStoredAndReused() throws Exception {
+      File script = new File(this.dir, "test.ncs");
+      Files.write(script.toPath(), TestScripts.helpers());
+      ResultCache cache = new ResultCache(new File(this.dir, "cache"));
+      FileDecompiler fd = new FileDecompiler(NWSCRIPT, new DecompilerOptions(),
+            DecompilerServices.builder().resultCache(cache).build());
+      String first = fd.decompileToString(script);
+      assertEquals(0, cache.hits());
+      assertEquals(1L, entries(cache.getRoot()));
+
+      assertEquals(first, fd.decompileToString(script));
+      assertEquals(1, cache.hits());
+      assertEquals(1L, entries(cache.getRoot()));
+   }
+
+   @Test
+   void stubsAreNeverStored() throws Exception {
+      // A valid header followed by an unknown opcode
+      byte[] broken = Arrays.copyOf(TestScripts.printInteger(7), 15);
+      broken[13] = 0x7F;
+      File script = new File(this.dir, "broken.ncs");
+      Files.write(script.toPath(), broken);
+      ResultCache cache = new ResultCache(new File(this.dir, "cache"));
+      FileDecompiler fd = new FileDecompiler(NWSCRIPT, new DecompilerOptions(),
+            DecompilerServices.builder().resultCache(cache).build());
+      fd.decompileToString(script);
+      fd.decompileToString(script);
+      assertEquals(0L, entries(cache.getRoot()));
+      assertEquals(0, cache.hits());
+      assertEquals(2, cache.misses());
+   }
+}
@@ -0,0 +1,44 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Small KotOR 1 scripts in compiled form, so decompiler tests do not depend on a compiler.
+ */
+final class TestScripts {
+   /** {@code void main() { PrintInteger(7); }} */
+   private static final String PRINT_INTEGER = "TkNTIFYxLjBCAAAAIh4AAAAACCAABAMAAAAHBQAABAEgAA==";
+   /** Offset of the integer constant in {@link #PRINT_INTEGER}. */
+   private static final int PRINT_INTEGER_VALUE = 23;
+   /**
+    * <pre>
+    * int Twice(int n) { return n * 2; }
+    * void Report(int n) { PrintInteger(Twice(n)); }
+    * void main() { int i; for (i = 0; i < 3; i++) { Report(i); } }
+    * </pre>
+    */
+   private static final String HELPERS = "TkNTIFYxLjBCAAAAuh4AAAAACCAAAgMEAwAAAAABAf////gABBsA/////AMB/////AAEBAMAAAADDyAf"
+         + "AAAAAC4DAf////wABB4AAAAAVAMB/////AAEJAP////4GwD////8HQD////IGwD////8IAADAf////wABAQDAAAAAhYgAQH////0AAQbAP////wd"
+         + "AAAAAAYbAP////wgAAIDAwH////4AAQeAP///8oFAAAEARsA/////CAA";
+
+   private TestScripts() {
+   }
+
+   /** {@code void main() { PrintInteger(value); }} */
+   static byte[] printInteger(int value) {
+      byte[] ncs = Base64.getDecoder().decode(PRINT_INTEGER);
+      ByteBuffer.wrap(ncs).putInt(PRINT_INTEGER_VALUE, value);
+      return ncs;
+   }
+
+   /** A main loop calling two helper subroutines, enough work to run out of a small step budget. */
+   static byte[] helpers() {
+      return Base64.getDecoder().decode(HELPERS);
+   }
+}
@@ -0,0 +1,116 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.kotor.resource.formats.ncs.utils.Type;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * TSV round-trip of {@link SignatureDatabase} and the prototype encoding it stores.
+ */
+class SignatureDatabaseTest {
+   @TempDir
+   File dir;
+
+   private static SubroutineSignature signature(String name, byte ret, byte... params) {
+      Type[] types = new Type[params.length];
+      for (int i = 0; i < params.length; i++) {
+         types[i] = Type.declared(params[i]);
+      }
+      return new SubroutineSignature(name, Type.declared(ret), Arrays.asList(types));
+   }
+
+   @Test
+   void savedDatabaseLoadsBack() throws IOException {
+      SignatureDatabase db = new SignatureDatabase();
+      db.put("BBBB", signature("UT_DeterminesItemCost", Type.VT_INTEGER, Type.VT_INTEGER, Type.VT_INTEGER));
+      db.put("AAAA", signature(null, Type.VT_NONE, Type.VT_OBJECT, Type.VT_VECTOR));
+      File file = new File(this.dir, "sub/signatures.tsv");
+      db.save(file);
+
+      List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+      assertEquals(Arrays.asList("AAAA\t-\t0(6,-16,)", "BBBB\tUT_DeterminesItemCost\t3(3,3,)"),
+            lines.subList(1, lines.size()));
+
+      SignatureDatabase loaded = SignatureDatabase.load(file);
+      assertEquals(2, loaded.size());
+      assertEquals(db.digest(), loaded.digest());
+      assertEquals("UT_DeterminesItemCost", loaded.find("BBBB").name());
+      assertNull(loaded.find("AAAA").name());
+      assertEquals("0(6,-16,)", loaded.find("AAAA").encodePrototype());
+   }
+
+   @Test
+   void loadSkipsCommentsAndMalformedLines() throws IOException {
+      File file = new File(this.dir, "signatures.tsv");
+      Files.write(file.toPath(), Arrays.asList(
+            "# hand edited",
+            "",
+            "abcd\tHelper\t4(5,)",
+            "too\tfew",
+            "beef\tBroken\tnot a prototype",
+            "cafe\t-\t3()"), StandardCharsets.UTF_8);
+      SignatureDatabase db = SignatureDatabase.load(file);
+      assertEquals(2, db.size());
+      // Fingerprints are matched upper case, as SubroutineFingerprint produces them
+      assertEquals("Helper", db.find("ABCD").name());
+      assertEquals("3()", db.find("CAFE").encodePrototype());
+      assertNull(db.find("BEEF"));
+      assertNull(db.find(null));
+   }
+
+   @Test
+   void unnamedEntryKeepsCanonicalName() {
+      SignatureDatabase db = new SignatureDatabase();
+      db.put("AAAA", signature("Helper", Type.VT_INTEGER));
+      db.put("AAAA", signature(null, Type.VT_FLOAT));
+      assertEquals("Helper", db.find("AAAA").name());
+      assertEquals("4()", db.find("AAAA").encodePrototype());
+      db.put("AAAA", signature("Renamed", Type.VT_FLOAT));
+      assertEquals("Renamed", db.find("AAAA").name());
+   }
+
+   @Test
+   void digestFollowsContent() {
+      SignatureDatabase db = new SignatureDatabase();
+      String empty = db.digest();
+      db.put("AAAA", signature("Helper", Type.VT_INTEGER));
+      String one = db.digest();
+      assertNotEquals(empty, one);
+      db.put("AAAA", signature("Other", Type.VT_INTEGER));
+      assertNotEquals(one, db.digest());
+   }
+
+   @Test
+   void decodedPrototypesAreSized() {
+      SubroutineSignature sig = SubroutineSignature.decodePrototype("f", "-16(3,-16,4,)");
+      assertEquals(3, sig.returnType().size());
+      assertEquals(Arrays.asList(1, 3, 1), Arrays.asList(sig.params().get(0).size(), sig.params().get(1).size(),
+            sig.params().get(2).size()));
+      assertEquals("-16(3,-16,4,)", sig.encodePrototype());
+      assertEquals(Collections.emptyList(), SubroutineSignature.decodePrototype(null, "0()").params());
+   }
+
+   @Test
+   void malformedPrototypesAreRejected() {
+      for (String text : new String[] {"", "3", "(3,)", "3(3,", "x(3,)", "3(y,)"}) {
+         assertThrows(IllegalArgumentException.class, () -> SubroutineSignature.decodePrototype(null, text), text);
+      }
+   }
+}
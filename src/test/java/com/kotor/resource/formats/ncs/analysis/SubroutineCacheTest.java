@@ -0,0 +1,81 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.kotor.resource.formats.ncs.utils.Type;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lookups, counters and LRU eviction of {@link SubroutineCache}.
+ */
+class SubroutineCacheTest {
+   private static final SubroutineSignature INT_OF_STRING =
+         new SubroutineSignature(null, Type.declared(Type.VT_INTEGER),
+               Collections.singletonList(Type.declared(Type.VT_STRING)));
+
+   private static Map<Byte, Map.Entry<String, SubroutineSignature>> fingerprints(String... keys) {
+      Map<Byte, Map.Entry<String, SubroutineSignature>> map = new LinkedHashMap<>();
+      byte id = 0;
+      for (String key : keys) {
+         map.put(id++, new AbstractMap.SimpleImmutableEntry<>(key, INT_OF_STRING));
+      }
+      return map;
+   }
+
+   @Test
+   void storedPrototypesAreFound() {
+      SubroutineCache cache = new SubroutineCache();
+      assertNull(cache.find("A"));
+      cache.store(fingerprints("A", "B"));
+      assertSame(INT_OF_STRING, cache.find("A"));
+      assertSame(INT_OF_STRING, cache.find("B"));
+      assertEquals(2, cache.size());
+      assertEquals(2, cache.hits());
+      assertEquals(1, cache.misses());
+   }
+
+   @Test
+   void missingFingerprintIsAMiss() {
+      SubroutineCache cache = new SubroutineCache();
+      cache.store(fingerprints("A"));
+      assertNull(cache.find(null));
+      assertEquals(1, cache.misses());
+   }
+
+   @Test
+   void leastRecentlyUsedEntryIsEvicted() {
+      SubroutineCache cache = new SubroutineCache(2);
+      cache.store(fingerprints("A", "B"));
+      // Touch A so that B is the eldest
+      cache.find("A");
+      cache.store(fingerprints("C"));
+      assertEquals(2, cache.size());
+      assertNull(cache.find("B"));
+      assertSame(INT_OF_STRING, cache.find("A"));
+      assertSame(INT_OF_STRING, cache.find("C"));
+   }
+
+   @Test
+   void clearDropsEntriesAndCounters() {
+      SubroutineCache cache = new SubroutineCache();
+      cache.store(fingerprints("A"));
+      cache.find("A");
+      cache.find("B");
+      cache.clear();
+      assertEquals(0, cache.size());
+      assertEquals(0, cache.hits());
+      assertEquals(0, cache.misses());
+      assertNull(cache.find("A"));
+   }
+}
@@ -0,0 +1,129 @@
+// Copyright 2021-2025 NCSDecomp
+// Licensed under the Business Source License 1.1 (BSL 1.1).
+// Visit https://bolabaden.org for more information and other ventures
+// See LICENSE.txt file in the project root for full license information.
+
+package com.kotor.resource.formats.ncs.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.kotor.resource.formats.ncs.utils.SubroutineState;
+import com.kotor.resource.formats.ncs.utils.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fingerprints of decoder command text: independent of where a subroutine sits, sensitive
+ * to what it does and to the prototypes of what it calls.
+ */
+class SubroutineFingerprintTest {
+   private static final List<SubroutineState> NO_CALLEES = Collections.emptyList();
+
+   /** Adds one to its int parameter, laid out from {@code start}. */
+   private static String increment(int start) {
+      return "CPTOPSP " + start + " 1 -4 4; CONST " + (start + 8) + " 3 1; ADD " + (start + 14) + " 32; "
+            + "CPDOWNSP " + (start + 16) + " 1 -12 4; MOVSP " + (start + 24) + " 0 -4; RETN " + (start + 30) + " 0; ";
+   }
+
+   private static SubroutineState prototyped(byte returnType, byte... params) {
+      SubroutineState state = new SubroutineState(null, null, (byte) 1);
+      Type[] types = new Type[params.length];
+      for (int i = 0; i < params.length; i++) {
+         types[i] = Type.declared(params[i]);
+      }
+      state.applyPrototype(Type.declared(returnType), Arrays.asList(types));
+      return state;
+   }
+
+   @Test
+   void sameCodeAtDifferentPositionsMatches() {
+      String a = SubroutineFingerprint.index(increment(100)).compute(100, 130, NO_CALLEES);
+      String b = SubroutineFingerprint.index("RETN 13 0; " + increment(400)).compute(400, 430, NO_CALLEES);
+      assertNotNull(a);
+      assertEquals(a, b);
+   }
+
+   @Test
+   void differentCodeDiffers() {
+      String a = SubroutineFingerprint.index(increment(100)).compute(100, 130, NO_CALLEES);
+      String b = SubroutineFingerprint.index(increment(100).replace("CONST 108 3 1", "CONST 108 3 2"))
+            .compute(100, 130, NO_CALLEES);
+      assertNotEquals(a, b);
+   }
+
+   @Test
+   void rangeIsInclusiveAndBounded() {
+      SubroutineFingerprint index = SubroutineFingerprint.index(increment(100) + increment(200));
+      assertEquals(index.compute(100, 130, NO_CALLEES), index.compute(200, 230, NO_CALLEES));
+      assertNotEquals(index.compute(100, 130, NO_CALLEES), index.compute(100, 124, NO_CALLEES));
+   }
+
+   @Test
+   void globalAccessIsNotFingerprinted() {
+      String text = "CPTOPBP 100 1 -4 4; RETN 108 0; ";
+      assertNull(SubroutineFingerprint.index(text).compute(100, 108, NO_CALLEES));
+   }
+
+   @Test
+   void callTargetsAreReplacedByCalleeOrdinal() {
+      // The same caller linked at two places calls its helper at two different offsets
+      String near = "JSR 100 0 50; JSR 106 0 44; RETN 112 0; ";
+      String far = "JSR 500 0 400; JSR 506 0 394; RETN 512 0; ";
+      SubroutineFingerprint nearIndex = SubroutineFingerprint.index(near);
+      SubroutineFingerprint farIndex = SubroutineFingerprint.index(far);
+      assertEquals(Collections.singletonList(150), nearIndex.callees(100, 112));
+      assertEquals(Collections.singletonList(900), farIndex.callees(500, 512));
+
+      List<SubroutineState> callee = Collections.singletonList(prototyped(Type.VT_NONE));
+      String a = nearIndex.compute(100, 112, callee);
+      assertNotNull(a);
+      assertEquals(a, farIndex.compute(500, 512, callee));
+   }
+
+   @Test
+   void calleePrototypesArePartOfTheFingerprint() {
+      SubroutineFingerprint index = SubroutineFingerprint.index("JSR 100 0 50; RETN 106 0; ");
+      String voidCallee = index.compute(100, 106, Collections.singletonList(prototyped(Type.VT_NONE)));
+      String intCallee = index.compute(100, 106,
+            Collections.singletonList(prototyped(Type.VT_INTEGER, Type.VT_STRING)));
+      assertNotNull(voidCallee);
+      assertNotNull(intCallee);
+      assertNotEquals(voidCallee, intCallee);
+   }
+
+   @Test
+   void unknownOrMissingCalleesGiveNoFingerprint() {
+      SubroutineFingerprint index = SubroutineFingerprint.index("JSR 100 0 50; RETN 106 0; ");
+      SubroutineState untyped = new SubroutineState(null, null, (byte) 2);
+      assertNull(index.compute(100, 106, Collections.singletonList(untyped)));
+      assertNull(index.compute(100, 106, NO_CALLEES));
+   }
+
+   @Test
+   void semicolonsInsideStringsDoNotSplitInstructions() {
+      String text = "CONST 100 5 \"a; b\"; ACTION 110 0 1 1; RETN 115 0; ";
+      SubroutineFingerprint index = SubroutineFingerprint.index(text);
+      String withSemicolon = index.compute(100, 115, NO_CALLEES);
+      String withComma = SubroutineFingerprint.index(text.replace("a; b", "a, b")).compute(100, 115, NO_CALLEES);
+      assertNotNull(withSemicolon);
+      assertNotEquals(withSemicolon, withComma);
+      // The RETN after the string is still an instruction of the range
+      assertNotEquals(withSemicolon, index.compute(100, 110, NO_CALLEES));
+   }
+
+   @Test
+   void signatureCapturesOnlyCompletePlainPrototypes() {
+      SubroutineSignature sig = SubroutineSignature.of(prototyped(Type.VT_INTEGER, Type.VT_STRING, Type.VT_VECTOR));
+      assertNotNull(sig);
+      assertEquals("3(5,-16,)", sig.encodePrototype());
+      assertNull(SubroutineSignature.of(new SubroutineState(null, null, (byte) 3)));
+      SubroutineState struct = new SubroutineState(null, null, (byte) 4);
+      struct.applyPrototype(new Type(Type.VT_STRUCT), Collections.<Type>emptyList());
+      assertNull(SubroutineSignature.of(struct));
+   }
+}